@@ -12,6 +12,8 @@
 
 package org.eclipse.tracecompass.analysis.os.linux.core.tests.cpuusage;
 
+import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
@@ -25,6 +27,7 @@ import java.util.Map;
 
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IStatus;
+import org.eclipse.tracecompass.analysis.os.linux.core.cpuusage.CpuUsage;
 import org.eclipse.tracecompass.analysis.os.linux.core.cpuusage.KernelCpuUsageAnalysis;
 import org.eclipse.tracecompass.analysis.os.linux.core.kernelanalysis.Attributes;
 import org.eclipse.tracecompass.analysis.os.linux.core.kernelanalysis.KernelAnalysis;
@@ -269,4 +272,60 @@ public class CpuUsageStateProviderTest {
         assertEquals(expected, resultMap);
 
     }
+
+    /**
+     * Test the {@link KernelCpuUsageAnalysis#getCpuUsage(long, long)} method
+     * and the queries of its result.
+     */
+    @Test
+    public void testCpuUsage() {
+        fModule.schedule();
+        fModule.waitForCompletion();
+
+        CpuUsage usage = fModule.getCpuUsage(0L, 30L);
+        assertNotNull(usage);
+        assertEquals(48L, usage.getTotal());
+        assertEquals(2, usage.getNbCpus());
+        for (int i = 0; i < usage.getNbCpus(); i++) {
+            assertEquals(24L, usage.getCpuTime(i));
+        }
+        assertEquals(5L, usage.getThreadTime(1));
+        assertEquals(19L, usage.getThreadTime(2));
+        assertEquals(11L, usage.getThreadTime(3));
+        assertEquals(13L, usage.getThreadTime(4));
+        assertEquals(0L, usage.getThreadTime(5));
+        assertEquals(4, usage.getTids().length);
+
+        /* The threads that spent the most time, by decreasing time */
+        assertArrayEquals(new long[] { 2, 4 }, usage.getTopThreads(2));
+        assertArrayEquals(new long[] { 2, 4, 3, 1 }, usage.getTopThreads(10));
+        assertEquals(0, usage.getTopThreads(0).length);
+
+        assertEquals(fModule.getCpuUsageInRange(4L, 13L), checkNotNull(fModule.getCpuUsage(4L, 13L)).toMap());
+    }
+
+    /**
+     * Test the {@link KernelCpuUsageAnalysis#getTotalCpuUsage(long[])} method,
+     * which reads the busy times of the CPUs.
+     */
+    @Test
+    public void testTotalCpuUsage() {
+        fModule.schedule();
+        fModule.waitForCompletion();
+
+        /* Both CPUs are always running a thread other than the idle one */
+        double[] usage = fModule.getTotalCpuUsage(new long[] { 1L, 13L, 25L });
+        assertNotNull(usage);
+        assertArrayEquals(new double[] { 2.0, 2.0 }, usage, 1e-9);
+
+        /* The times are brought back to the range of the state system */
+        usage = fModule.getTotalCpuUsage(new long[] { 0L, 30L });
+        assertNotNull(usage);
+        assertArrayEquals(new double[] { 2.0 }, usage, 1e-9);
+
+        /* An empty range has no usage */
+        usage = fModule.getTotalCpuUsage(new long[] { 5L, 5L });
+        assertNotNull(usage);
+        assertArrayEquals(new double[] { 0.0 }, usage, 1e-9);
+    }
 }
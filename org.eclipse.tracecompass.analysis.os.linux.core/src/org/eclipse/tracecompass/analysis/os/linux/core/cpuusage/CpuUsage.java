@@ -0,0 +1,284 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.analysis.os.linux.core.cpuusage;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The time spent on the CPUs by the threads of a system during a time range,
+ * as returned by {@link KernelCpuUsageAnalysis#getCpuUsage(long, long)}.
+ * <p>
+ * The times are kept in primitive arrays, per CPU and per thread, so they can
+ * be queried without building a string key for each CPU and thread
+ * combination. {@link #toMap()} gives the map returned by
+ * {@link KernelCpuUsageAnalysis#getCpuUsageInRange(long, long)}.
+ *
+ * @since 1.0
+ */
+public final class CpuUsage {
+
+    /* Marks the free slots of the table of thread totals */
+    private static final long NO_TID = Long.MIN_VALUE;
+
+    private final long fStart;
+    private final long fEnd;
+
+    /* Per CPU: its name, its total, and the TIDs that ran on it */
+    private final String[] fCpuNames;
+    private final long[] fCpuTimes;
+    private final long[][] fCpuTids;
+    private final long[][] fCpuTidTimes;
+
+    /* The distinct TIDs, in the order they were first seen */
+    private final long[] fTids;
+    /* Open addressing table of TID -> time on all the CPUs */
+    private final long[] fTableTids;
+    private final long[] fTableTimes;
+    private final long fTotal;
+
+    /**
+     * Constructor
+     *
+     * @param start
+     *            The start of the time range
+     * @param end
+     *            The end of the time range
+     * @param cpuNames
+     *            The names of the CPUs
+     * @param cpuTids
+     *            For each CPU, the TIDs of the threads that ran on it
+     * @param cpuTidTimes
+     *            For each CPU, the time spent on it by each of its threads
+     */
+    CpuUsage(long start, long end, String[] cpuNames, long[][] cpuTids, long[][] cpuTidTimes) {
+        fStart = start;
+        fEnd = end;
+        fCpuNames = cpuNames;
+        fCpuTids = cpuTids;
+        fCpuTidTimes = cpuTidTimes;
+        fCpuTimes = new long[cpuNames.length];
+
+        int nbEntries = 0;
+        for (long[] tids : cpuTids) {
+            nbEntries += tids.length;
+        }
+        int capacity = Integer.highestOneBit(Math.max(4, nbEntries) * 2 - 1) << 1;
+        fTableTids = new long[capacity];
+        fTableTimes = new long[capacity];
+        Arrays.fill(fTableTids, NO_TID);
+
+        long[] tids = new long[nbEntries];
+        int nbTids = 0;
+        long total = 0;
+        for (int i = 0; i < cpuNames.length; i++) {
+            long cpuTotal = 0;
+            for (int j = 0; j < cpuTids[i].length; j++) {
+                long tid = cpuTids[i][j];
+                long time = cpuTidTimes[i][j];
+                int slot = findSlot(tid);
+                if (fTableTids[slot] == NO_TID) {
+                    fTableTids[slot] = tid;
+                    tids[nbTids++] = tid;
+                }
+                fTableTimes[slot] += time;
+                cpuTotal += time;
+            }
+            fCpuTimes[i] = cpuTotal;
+            total += cpuTotal;
+        }
+        fTids = Arrays.copyOf(tids, nbTids);
+        fTotal = total;
+    }
+
+    private int findSlot(long tid) {
+        int mask = fTableTids.length - 1;
+        int slot = (int) (tid ^ (tid >>> 32)) * 0x9E3779B9 & mask;
+        while (fTableTids[slot] != NO_TID && fTableTids[slot] != tid) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * @return The start of the time range
+     */
+    public long getStart() {
+        return fStart;
+    }
+
+    /**
+     * @return The end of the time range
+     */
+    public long getEnd() {
+        return fEnd;
+    }
+
+    /**
+     * @return The time spent on all the CPUs by all the threads
+     */
+    public long getTotal() {
+        return fTotal;
+    }
+
+    /**
+     * @return The number of CPUs
+     */
+    public int getNbCpus() {
+        return fCpuNames.length;
+    }
+
+    /**
+     * Get the name of a CPU, which is its number in the trace
+     *
+     * @param index
+     *            The index of the CPU, from 0 to {@link #getNbCpus()} - 1
+     * @return The name of the CPU
+     */
+    public String getCpuName(int index) {
+        return fCpuNames[index];
+    }
+
+    /**
+     * Get the time spent on a CPU by all the threads
+     *
+     * @param index
+     *            The index of the CPU, from 0 to {@link #getNbCpus()} - 1
+     * @return The time spent on the CPU
+     */
+    public long getCpuTime(int index) {
+        return fCpuTimes[index];
+    }
+
+    /**
+     * Get the TIDs of all the threads that ran during the time range
+     *
+     * @return A new array of the TIDs
+     */
+    public long[] getTids() {
+        return Arrays.copyOf(fTids, fTids.length);
+    }
+
+    /**
+     * Get the time spent on all the CPUs by a thread
+     *
+     * @param tid
+     *            The TID of the thread
+     * @return The time spent on the CPUs, 0 if the thread did not run
+     */
+    public long getThreadTime(long tid) {
+        if (tid == NO_TID) {
+            return 0;
+        }
+        return fTableTimes[findSlot(tid)];
+    }
+
+    /**
+     * Get the TIDs of the threads that spent the most time on the CPUs, by
+     * decreasing time. Only these threads are sorted, so this is cheaper than
+     * sorting all the threads when there are many.
+     *
+     * @param maxThreads
+     *            The maximum number of threads to return
+     * @return The TIDs of at most maxThreads threads
+     */
+    public long[] getTopThreads(int maxThreads) {
+        int size = Math.min(Math.max(maxThreads, 0), fTids.length);
+        /* Min-heap of the times of the largest threads seen so far */
+        long[] heapTids = new long[size];
+        long[] heapTimes = new long[size];
+        int nb = 0;
+        for (long tid : fTids) {
+            long time = getThreadTime(tid);
+            if (nb < size) {
+                heapTids[nb] = tid;
+                heapTimes[nb] = time;
+                siftUp(heapTids, heapTimes, nb++);
+            } else if (size > 0 && time > heapTimes[0]) {
+                heapTids[0] = tid;
+                heapTimes[0] = time;
+                siftDown(heapTids, heapTimes, size);
+            }
+        }
+        /* Removing the minimums fills the array from its end */
+        long[] result = new long[size];
+        for (int i = size - 1; i >= 0; i--) {
+            result[i] = heapTids[0];
+            heapTids[0] = heapTids[i];
+            heapTimes[0] = heapTimes[i];
+            siftDown(heapTids, heapTimes, i);
+        }
+        return result;
+    }
+
+    private static void siftUp(long[] tids, long[] times, int index) {
+        int i = index;
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (times[parent] <= times[i]) {
+                return;
+            }
+            swap(tids, times, i, parent);
+            i = parent;
+        }
+    }
+
+    private static void siftDown(long[] tids, long[] times, int size) {
+        int i = 0;
+        while (true) {
+            int smallest = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < size && times[left] < times[smallest]) {
+                smallest = left;
+            }
+            if (right < size && times[right] < times[smallest]) {
+                smallest = right;
+            }
+            if (smallest == i) {
+                return;
+            }
+            swap(tids, times, i, smallest);
+            i = smallest;
+        }
+    }
+
+    private static void swap(long[] tids, long[] times, int i, int j) {
+        long tid = tids[i];
+        tids[i] = tids[j];
+        tids[j] = tid;
+        long time = times[i];
+        times[i] = times[j];
+        times[j] = time;
+    }
+
+    /**
+     * Get this CPU usage as a map with string keys, in the format of
+     * {@link KernelCpuUsageAnalysis#getCpuUsageInRange(long, long)}
+     *
+     * @return The map of the CPU usage
+     */
+    public Map<String, Long> toMap() {
+        Map<String, Long> map = new HashMap<>();
+        for (int i = 0; i < fCpuNames.length; i++) {
+            String cpuName = fCpuNames[i];
+            for (int j = 0; j < fCpuTids[i].length; j++) {
+                map.put(cpuName + KernelCpuUsageAnalysis.SPLIT_STRING + fCpuTids[i][j], fCpuTidTimes[i][j]);
+            }
+            map.put(cpuName, fCpuTimes[i]);
+        }
+        for (long tid : fTids) {
+            map.put(KernelCpuUsageAnalysis.TOTAL + KernelCpuUsageAnalysis.SPLIT_STRING + tid, getThreadTime(tid));
+        }
+        map.put(KernelCpuUsageAnalysis.TOTAL, fTotal);
+        return map;
+    }
+}
@@ -14,12 +14,16 @@ package org.eclipse.tracecompass.analysis.os.linux.core.cpuusage;
 
 import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.eclipse.jdt.annotation.Nullable;
 
 import org.eclipse.tracecompass.analysis.os.linux.core.kernelanalysis.Attributes;
 import org.eclipse.tracecompass.analysis.os.linux.core.kernelanalysis.KernelAnalysis;
@@ -56,6 +60,15 @@ public class KernelCpuUsageAnalysis extends TmfStateSystemAnalysisModule {
     /** Idle process thread ID */
     public static final String TID_ZERO = "0"; //$NON-NLS-1$
 
+    /*
+     * Below this number of CPU usage attributes, the CPUs are computed on the
+     * calling thread, which is faster than sharing the work.
+     */
+    private static final int PARALLEL_THRESHOLD = 2048;
+
+    /* The pool shared by the CPU usage computations of all the traces */
+    private static final ForkJoinPool POOL = new ForkJoinPool();
+
     @Override
     protected ITmfStateProvider createStateProvider() {
         ITmfTrace trace = checkNotNull(getTrace());
@@ -107,19 +120,95 @@ public class KernelCpuUsageAnalysis extends TmfStateSystemAnalysisModule {
      * @return A map of TID -> time spent on CPU in the [start, end] interval
      */
     public Map<String, Long> getCpuUsageInRange(long start, long end) {
-        Map<String, Long> map = new HashMap<>();
-        Map<String, Long> totalMap = new HashMap<>();
+        CpuUsage usage = getCpuUsage(start, end);
+        if (usage == null) {
+            return new HashMap<>();
+        }
+        return usage.toMap();
+    }
 
+    /**
+     * Get the time spent on CPU by the threads during a time range. The CPUs
+     * are computed in parallel when there are many threads.
+     *
+     * @param start
+     *            Start time of requested range
+     * @param end
+     *            End time of requested range
+     * @return The time spent on each CPU by each thread in the [start, end]
+     *         interval, or null if it is not available
+     * @since 1.0
+     */
+    public @Nullable CpuUsage getCpuUsage(long start, long end) {
         ITmfTrace trace = getTrace();
         ITmfStateSystem cpuSs = getStateSystem();
         if (trace == null || cpuSs == null) {
-            return map;
+            return null;
         }
         ITmfStateSystem kernelSs = TmfStateSystemAnalysisModule.getStateSystem(trace, KernelAnalysis.ID);
         if (kernelSs == null) {
-            return map;
+            return null;
         }
+        return computeCpuUsage(cpuSs, kernelSs, start, end);
+    }
 
+    /**
+     * Get the CPU usage of all the threads, except the idle thread, in
+     * consecutive time ranges. This is computed from the busy time of each
+     * CPU, with one query per bound of the ranges, instead of the four
+     * queries and the computation of every thread of
+     * {@link #getCpuUsage(long, long)}.
+     *
+     * @param times
+     *            The bounds of the time ranges, in increasing order. There is
+     *            one range between each pair of consecutive times.
+     * @return For each range, the average number of CPUs that were busy, so
+     *         100% of one CPU is 1.0. Null if the state system does not have
+     *         the busy times of the CPUs, in which case
+     *         {@link #getCpuUsage(long, long)} must be used.
+     * @since 1.0
+     */
+    public @Nullable double[] getTotalCpuUsage(long[] times) {
+        ITmfStateSystem cpuSs = getStateSystem();
+        if (cpuSs == null || times.length == 0) {
+            return null;
+        }
+        return computeTotalCpuUsage(cpuSs, times);
+    }
+
+    private static @Nullable double[] computeTotalCpuUsage(ITmfStateSystem cpuSs, long[] times) {
+        double[] usage = new double[times.length - 1];
+        try {
+            int busyCpusNode = cpuSs.getQuarkAbsolute(KernelCpuUsageStateProvider.BUSY_CPUS);
+            List<Integer> busyQuarks = cpuSs.getSubAttributes(busyCpusNode, false);
+            long ssStart = cpuSs.getStartTime();
+            long ssEnd = cpuSs.getCurrentEndTime();
+            long prevTime = 0;
+            long prevBusyTime = 0;
+            for (int i = 0; i < times.length; i++) {
+                long time = Math.max(ssStart, Math.min(ssEnd, times[i]));
+                List<ITmfStateInterval> state = cpuSs.queryFullState(time);
+                long busyTime = 0;
+                for (int busyQuark : busyQuarks) {
+                    busyTime += KernelCpuUsageStateProvider.getBusyTime(state.get(busyQuark), time);
+                }
+                if (i > 0 && time > prevTime) {
+                    usage[i - 1] = (double) (busyTime - prevBusyTime) / (double) (time - prevTime);
+                }
+                prevTime = time;
+                prevBusyTime = busyTime;
+            }
+        } catch (AttributeNotFoundException e) {
+            /* The state system was built without the busy times */
+            return null;
+        } catch (TimeRangeException | StateValueTypeException | StateSystemDisposedException e) {
+            Activator.getDefault().logError("Error getting the total CPU usage", e); //$NON-NLS-1$
+            return null;
+        }
+        return usage;
+    }
+
+    private static @Nullable CpuUsage computeCpuUsage(ITmfStateSystem cpuSs, ITmfStateSystem kernelSs, long start, long end) {
         /*
          * Make sure the start/end times are within the state history, so we
          * don't get TimeRange exceptions.
@@ -128,17 +217,26 @@ public class KernelCpuUsageAnalysis extends TmfStateSystemAnalysisModule {
         startTime = Math.max(startTime, kernelSs.getStartTime());
         long endTime = Math.min(end, cpuSs.getCurrentEndTime());
         endTime = Math.min(endTime, kernelSs.getCurrentEndTime());
-        long totalTime = 0;
         if (endTime < startTime) {
-            return map;
+            return null;
         }
 
         try {
-            /* Get the list of quarks for each CPU and CPU's TIDs */
+            /*
+             * Get the quarks of each CPU's TIDs, and of the thread running on
+             * each CPU
+             */
             int cpusNode = cpuSs.getQuarkAbsolute(Attributes.CPUS);
-            Map<Integer, List<Integer>> tidsPerCpu = new HashMap<>();
-            for (int cpuNode : cpuSs.getSubAttributes(cpusNode, false)) {
-                tidsPerCpu.put(cpuNode, cpuSs.getSubAttributes(cpuNode, false));
+            List<Integer> cpuNodes = cpuSs.getSubAttributes(cpusNode, false);
+            int nbCpus = cpuNodes.size();
+            String[] cpuNames = new String[nbCpus];
+            List<List<Integer>> tidsPerCpu = new ArrayList<>(nbCpus);
+            int[] currentThreadQuarks = new int[nbCpus];
+            for (int i = 0; i < nbCpus; i++) {
+                int cpuNode = cpuNodes.get(i);
+                cpuNames[i] = cpuSs.getAttributeName(cpuNode);
+                tidsPerCpu.add(cpuSs.getSubAttributes(cpuNode, false));
+                currentThreadQuarks[i] = kernelSs.getQuarkAbsolute(Attributes.CPUS, cpuNames[i], Attributes.CURRENT_THREAD);
             }
 
             /* Query full states at start and end times */
@@ -147,88 +245,19 @@ public class KernelCpuUsageAnalysis extends TmfStateSystemAnalysisModule {
             List<ITmfStateInterval> kernelStartState = kernelSs.queryFullState(startTime);
             List<ITmfStateInterval> startState = cpuSs.queryFullState(startTime);
 
-            long countAtStart, countAtEnd;
-
-            for (Entry<Integer, List<Integer>> entry : tidsPerCpu.entrySet()) {
-                int cpuNode = entry.getKey();
-                List<Integer> tidNodes = entry.getValue();
-
-                String curCpuName = cpuSs.getAttributeName(cpuNode);
-                long cpuTotal = 0;
-
-                /* Get the quark of the thread running on this CPU */
-                int currentThreadQuark = kernelSs.getQuarkAbsolute(Attributes.CPUS, curCpuName, Attributes.CURRENT_THREAD);
-                /* Get the currently running thread on this CPU */
-                int startThread = kernelStartState.get(currentThreadQuark).getStateValue().unboxInt();
-                int endThread = kernelEndState.get(currentThreadQuark).getStateValue().unboxInt();
-
-                for (int tidNode : tidNodes) {
-                    String curTidName = cpuSs.getAttributeName(tidNode);
-                    int tid = Integer.parseInt(curTidName);
-
-                    countAtEnd = endState.get(tidNode).getStateValue().unboxLong();
-                    countAtStart = startState.get(tidNode).getStateValue().unboxLong();
-                    if (countAtStart == -1) {
-                        countAtStart = 0;
-                    }
-                    if (countAtEnd == -1) {
-                        countAtEnd = 0;
-                    }
-
-                    /*
-                     * Interpolate start and end time of threads running at
-                     * those times
-                     */
-                    if (tid == startThread || startThread == -1) {
-                        long runningTime = kernelStartState.get(currentThreadQuark).getEndTime() - kernelStartState.get(currentThreadQuark).getStartTime();
-                        long runningEnd = kernelStartState.get(currentThreadQuark).getEndTime();
-
-                        countAtStart = interpolateCount(countAtStart, startTime, runningEnd, runningTime);
-                    }
-                    if (tid == endThread) {
-                        long runningTime = kernelEndState.get(currentThreadQuark).getEndTime() - kernelEndState.get(currentThreadQuark).getStartTime();
-                        long runningEnd = kernelEndState.get(currentThreadQuark).getEndTime();
-
-                        countAtEnd = interpolateCount(countAtEnd, endTime, runningEnd, runningTime);
-                    }
-                    /*
-                     * If startThread is -1, we made the hypothesis that the
-                     * process running at start was the current one. If the
-                     * count is negative, we were wrong in this hypothesis. Also
-                     * if the time at end is 0, it either means the process
-                     * hasn't been on the CPU or that we still don't know who is
-                     * running. In both cases, that invalidates the hypothesis.
-                     */
-                    if ((startThread == -1) && ((countAtEnd - countAtStart < 0) || (countAtEnd == 0))) {
-                        countAtStart = 0;
-                    }
-
-                    long currentCount = countAtEnd - countAtStart;
-                    if (currentCount < 0) {
-                        Activator.getDefault().logWarning(checkNotNull(String.format("Negative count: start %d, end %d", countAtStart, countAtEnd))); //$NON-NLS-1$
-                        currentCount = 0;
-                    } else if (currentCount > endTime - startTime) {
-                        Activator.getDefault().logWarning(checkNotNull(String.format("CPU Usage: Spent more time on CPU than allowed: %s spent %d when max should be %d", curTidName, currentCount, endTime - startTime))); //$NON-NLS-1$
-                        currentCount = 0;
-                    }
-                    cpuTotal += currentCount;
-                    map.put(curCpuName + SPLIT_STRING + curTidName, currentCount);
-                    addToMap(totalMap, curTidName, currentCount);
-                    totalTime += (currentCount);
-                }
-                map.put(curCpuName, cpuTotal);
-            }
-
-            /* Add the totals to the map */
-            for (Entry<String, Long> entry : totalMap.entrySet()) {
-                map.put(TOTAL + SPLIT_STRING + entry.getKey(), entry.getValue());
+            CpuUsageTask task = new CpuUsageTask(cpuSs, startTime, endTime, tidsPerCpu, currentThreadQuarks,
+                    startState, endState, kernelStartState, kernelEndState, 0, nbCpus);
+            if (cpuSs.getNbAttributes() >= PARALLEL_THRESHOLD) {
+                POOL.invoke(task);
+            } else {
+                task.compute();
             }
-            map.put(TOTAL, totalTime);
+            return new CpuUsage(startTime, endTime, cpuNames, task.fCpuTids, task.fCpuTidTimes);
 
         } catch (TimeRangeException | AttributeNotFoundException e) {
             /*
              * Assume there is no events or the attribute does not exist yet,
-             * nothing will be put in the map.
+             * nothing will be returned.
              */
         } catch (StateValueTypeException | StateSystemDisposedException e) {
             /*
@@ -237,8 +266,142 @@ public class KernelCpuUsageAnalysis extends TmfStateSystemAnalysisModule {
              */
             Activator.getDefault().logError("Error getting CPU usage in a time range", e); //$NON-NLS-1$
         }
+        return null;
+    }
 
-        return map;
+    /**
+     * Computes the time spent by the threads of a range of CPUs, splitting the
+     * range in two until there is one CPU per task. The results are written in
+     * the arrays of the root task, at the index of each CPU.
+     */
+    private static final class CpuUsageTask extends RecursiveAction {
+
+        private static final long serialVersionUID = -3553454934946497624L;
+
+        private final ITmfStateSystem fCpuSs;
+        private final long fStartTime;
+        private final long fEndTime;
+        private final List<List<Integer>> fTidsPerCpu;
+        private final int[] fCurrentThreadQuarks;
+        private final List<ITmfStateInterval> fStartState;
+        private final List<ITmfStateInterval> fEndState;
+        private final List<ITmfStateInterval> fKernelStartState;
+        private final List<ITmfStateInterval> fKernelEndState;
+        private final long[][] fCpuTids;
+        private final long[][] fCpuTidTimes;
+        private final int fFrom;
+        private final int fTo;
+
+        CpuUsageTask(ITmfStateSystem cpuSs, long startTime, long endTime, List<List<Integer>> tidsPerCpu, int[] currentThreadQuarks,
+                List<ITmfStateInterval> startState, List<ITmfStateInterval> endState,
+                List<ITmfStateInterval> kernelStartState, List<ITmfStateInterval> kernelEndState, int from, int to) {
+            this(cpuSs, startTime, endTime, tidsPerCpu, currentThreadQuarks, startState, endState, kernelStartState, kernelEndState,
+                    new long[tidsPerCpu.size()][], new long[tidsPerCpu.size()][], from, to);
+        }
+
+        private CpuUsageTask(ITmfStateSystem cpuSs, long startTime, long endTime, List<List<Integer>> tidsPerCpu, int[] currentThreadQuarks,
+                List<ITmfStateInterval> startState, List<ITmfStateInterval> endState,
+                List<ITmfStateInterval> kernelStartState, List<ITmfStateInterval> kernelEndState,
+                long[][] cpuTids, long[][] cpuTidTimes, int from, int to) {
+            fCpuSs = cpuSs;
+            fStartTime = startTime;
+            fEndTime = endTime;
+            fTidsPerCpu = tidsPerCpu;
+            fCurrentThreadQuarks = currentThreadQuarks;
+            fStartState = startState;
+            fEndState = endState;
+            fKernelStartState = kernelStartState;
+            fKernelEndState = kernelEndState;
+            fCpuTids = cpuTids;
+            fCpuTidTimes = cpuTidTimes;
+            fFrom = from;
+            fTo = to;
+        }
+
+        private CpuUsageTask split(int from, int to) {
+            return new CpuUsageTask(fCpuSs, fStartTime, fEndTime, fTidsPerCpu, fCurrentThreadQuarks, fStartState, fEndState,
+                    fKernelStartState, fKernelEndState, fCpuTids, fCpuTidTimes, from, to);
+        }
+
+        @Override
+        protected void compute() {
+            if (fTo - fFrom > 1 && inForkJoinPool()) {
+                int middle = (fFrom + fTo) >>> 1;
+                invokeAll(split(fFrom, middle), split(middle, fTo));
+                return;
+            }
+            for (int i = fFrom; i < fTo; i++) {
+                computeCpu(i);
+            }
+        }
+
+        private void computeCpu(int index) {
+            List<Integer> tidNodes = fTidsPerCpu.get(index);
+            long[] tids = new long[tidNodes.size()];
+            long[] times = new long[tidNodes.size()];
+
+            /* Get the currently running thread on this CPU */
+            ITmfStateInterval startThreadInterval = fKernelStartState.get(fCurrentThreadQuarks[index]);
+            ITmfStateInterval endThreadInterval = fKernelEndState.get(fCurrentThreadQuarks[index]);
+            int startThread = startThreadInterval.getStateValue().unboxInt();
+            int endThread = endThreadInterval.getStateValue().unboxInt();
+
+            for (int j = 0; j < tids.length; j++) {
+                int tidNode = tidNodes.get(j);
+                String curTidName = fCpuSs.getAttributeName(tidNode);
+                long tid = Long.parseLong(curTidName);
+
+                long countAtEnd = fEndState.get(tidNode).getStateValue().unboxLong();
+                long countAtStart = fStartState.get(tidNode).getStateValue().unboxLong();
+                if (countAtStart == -1) {
+                    countAtStart = 0;
+                }
+                if (countAtEnd == -1) {
+                    countAtEnd = 0;
+                }
+
+                /*
+                 * Interpolate start and end time of threads running at those
+                 * times
+                 */
+                if (tid == startThread || startThread == -1) {
+                    long runningTime = startThreadInterval.getEndTime() - startThreadInterval.getStartTime();
+                    long runningEnd = startThreadInterval.getEndTime();
+
+                    countAtStart = interpolateCount(countAtStart, fStartTime, runningEnd, runningTime);
+                }
+                if (tid == endThread) {
+                    long runningTime = endThreadInterval.getEndTime() - endThreadInterval.getStartTime();
+                    long runningEnd = endThreadInterval.getEndTime();
+
+                    countAtEnd = interpolateCount(countAtEnd, fEndTime, runningEnd, runningTime);
+                }
+                /*
+                 * If startThread is -1, we made the hypothesis that the process
+                 * running at start was the current one. If the count is
+                 * negative, we were wrong in this hypothesis. Also if the time
+                 * at end is 0, it either means the process hasn't been on the
+                 * CPU or that we still don't know who is running. In both
+                 * cases, that invalidates the hypothesis.
+                 */
+                if ((startThread == -1) && ((countAtEnd - countAtStart < 0) || (countAtEnd == 0))) {
+                    countAtStart = 0;
+                }
+
+                long currentCount = countAtEnd - countAtStart;
+                if (currentCount < 0) {
+                    Activator.getDefault().logWarning(checkNotNull(String.format("Negative count: start %d, end %d", countAtStart, countAtEnd))); //$NON-NLS-1$
+                    currentCount = 0;
+                } else if (currentCount > fEndTime - fStartTime) {
+                    Activator.getDefault().logWarning(checkNotNull(String.format("CPU Usage: Spent more time on CPU than allowed: %s spent %d when max should be %d", curTidName, currentCount, fEndTime - fStartTime))); //$NON-NLS-1$
+                    currentCount = 0;
+                }
+                tids[j] = tid;
+                times[j] = currentCount;
+            }
+            fCpuTids[index] = tids;
+            fCpuTidTimes[index] = times;
+        }
     }
 
     private static long interpolateCount(long count, long ts, long runningEnd, long runningTime) {
@@ -262,17 +425,4 @@ public class KernelCpuUsageAnalysis extends TmfStateSystemAnalysisModule {
         return newCount;
     }
 
-    /*
-     * Add the value to the previous value in the map. If the key was not set,
-     * assume 0
-     */
-    private static void addToMap(Map<String, Long> map, String key, Long value) {
-        Long addTo = map.get(key);
-        if (addTo == null) {
-            map.put(key, value);
-        } else {
-            map.put(key, addTo + value);
-        }
-    }
-
 }
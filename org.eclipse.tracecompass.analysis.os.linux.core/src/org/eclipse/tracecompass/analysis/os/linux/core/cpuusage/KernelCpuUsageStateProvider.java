@@ -24,6 +24,7 @@ import org.eclipse.tracecompass.analysis.os.linux.core.trace.IKernelAnalysisEven
 import org.eclipse.tracecompass.internal.analysis.os.linux.core.Activator;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
 import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
+import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
 import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
 import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
@@ -44,16 +45,32 @@ import org.eclipse.tracecompass.tmf.core.trace.TmfTraceUtils;
  *
  * It requires only the 'sched_switch' events enabled on the trace.
  *
+ * It also keeps, for each CPU, the total time spent running threads other than
+ * the idle thread. The CPU usage of all the threads over a time range can then
+ * be queried on one attribute per CPU, instead of on the attributes of all the
+ * threads.
+ *
  * @author François Rajotte
  */
 public class KernelCpuUsageStateProvider extends AbstractTmfStateProvider {
 
-    private static final int VERSION = 2;
+    private static final int VERSION = 3;
+
+    /**
+     * The root of the attributes of the time each CPU spent running threads
+     * other than the idle thread, from the start of the trace to the start of
+     * each interval. The busy time in a time range is then the difference of
+     * the busy times at its bounds. While the CPU is busy, the value is stored
+     * as its bitwise complement, which is negative, so a single query tells
+     * whether the busy time grows during the interval.
+     */
+    static final String BUSY_CPUS = "Busy_CPUs"; //$NON-NLS-1$
 
     /* For each CPU, maps the last time a thread was scheduled in */
     private final Map<Integer, Long> fLastStartTimes = new HashMap<>();
     private final long fTraceStart;
     private final IKernelAnalysisEventLayout fLayout;
+    private int fBusyCpusQuark = -1;
 
     /**
      * Constructor
@@ -91,12 +108,11 @@ public class KernelCpuUsageStateProvider extends AbstractTmfStateProvider {
         final String eventName = event.getType().getName();
 
         if (eventName.equals(fLayout.eventSchedSwitch())) {
-            Object cpuObj = TmfTraceUtils.resolveEventAspectOfClassForEvent(event.getTrace(), TmfCpuAspect.class, event);
-            if (cpuObj == null) {
+            int cpu = TmfTraceUtils.resolveCpuOfEvent(event.getTrace(), event);
+            if (cpu == TmfCpuAspect.UNKNOWN_CPU) {
                 /* We couldn't find any CPU information, ignore this event */
                 return;
             }
-            Integer cpu = (Integer) cpuObj;
 
             /*
              * Fields: string prev_comm, int32 prev_tid, int32 prev_prio, int64
@@ -106,11 +122,12 @@ public class KernelCpuUsageStateProvider extends AbstractTmfStateProvider {
             long ts = event.getTimestamp().getValue();
 
             Long prevTid = (Long) content.getField(fLayout.fieldPrevTid()).getValue();
+            Long nextTid = (Long) content.getField(fLayout.fieldNextTid()).getValue();
 
             try {
                 final ITmfStateSystemBuilder ss = checkNotNull(getStateSystemBuilder());
 
-                Integer currentCPUNode = ss.getQuarkRelativeAndAdd(getNodeCPUs(ss), cpu.toString());
+                Integer currentCPUNode = ss.getQuarkRelativeAndAdd(getNodeCPUs(ss), cpu);
 
                 /*
                  * This quark contains the value of the cumulative time spent on
@@ -145,6 +162,8 @@ public class KernelCpuUsageStateProvider extends AbstractTmfStateProvider {
                     ss.modifyAttribute(ts, value, cumulativeTimeQuark);
                     fLastStartTimes.put(cpu, ts);
                 }
+
+                updateBusyTime(ss, cpu, ts, prevTid, nextTid);
             } catch (AttributeNotFoundException e) {
                 Activator.getDefault().logError("Attribute not found in LttngKernelCpuStateProvider", e); //$NON-NLS-1$
             }
@@ -152,6 +171,60 @@ public class KernelCpuUsageStateProvider extends AbstractTmfStateProvider {
         }
     }
 
+    /*
+     * Update the busy time of a CPU at a thread switch. Like the times of the
+     * threads, the first thread scheduled out of a CPU is assumed to have run
+     * since the beginning of the trace.
+     */
+    private void updateBusyTime(ITmfStateSystemBuilder ss, int cpu, long ts, Long prevTid, Long nextTid) throws AttributeNotFoundException {
+        int busyQuark = ss.getQuarkRelativeAndAdd(getNodeBusyCPUs(ss), cpu);
+        ITmfStateValue value = ss.queryOngoingState(busyQuark);
+        long startTime = ss.getOngoingStartTime(busyQuark);
+        if (value.isNull()) {
+            startTime = Math.max(startTime, fTraceStart);
+            value = TmfStateValue.newValueLong(prevTid.longValue() == 0 ? 0 : ~0L);
+            ss.modifyAttribute(startTime, value, busyQuark);
+        }
+        long busyTime = value.unboxLong();
+        if (busyTime < 0) {
+            busyTime = ~busyTime + (ts - startTime);
+        }
+        value = TmfStateValue.newValueLong(nextTid.longValue() == 0 ? busyTime : ~busyTime);
+        ss.modifyAttribute(ts, value, busyQuark);
+    }
+
+    /**
+     * Get the busy time of a CPU at a given time
+     *
+     * @param interval
+     *            The interval of the busy time attribute of the CPU at that
+     *            time
+     * @param ts
+     *            The time
+     * @return The time spent by the CPU running threads other than the idle
+     *         thread, from the start of the trace to ts
+     */
+    static long getBusyTime(ITmfStateInterval interval, long ts) {
+        ITmfStateValue value = interval.getStateValue();
+        if (value.isNull()) {
+            return 0;
+        }
+        long busyTime = value.unboxLong();
+        if (busyTime < 0) {
+            return ~busyTime + (ts - interval.getStartTime());
+        }
+        return busyTime;
+    }
+
+    private int getNodeBusyCPUs(ITmfStateSystemBuilder ss) {
+        int quark = fBusyCpusQuark;
+        if (quark == -1) {
+            quark = ss.getQuarkAbsoluteAndAdd(BUSY_CPUS);
+            fBusyCpusQuark = quark;
+        }
+        return quark;
+    }
+
     /* Shortcut for the "current CPU" attribute node */
     private static int getNodeCPUs(ITmfStateSystemBuilder ssb) {
         return ssb.getQuarkAbsoluteAndAdd(Attributes.CPUS);
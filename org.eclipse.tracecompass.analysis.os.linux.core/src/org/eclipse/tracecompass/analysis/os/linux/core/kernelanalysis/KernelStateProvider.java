@@ -14,6 +14,8 @@ package org.eclipse.tracecompass.analysis.os.linux.core.kernelanalysis;
 
 import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Map;
 
 import org.eclipse.jdt.annotation.Nullable;
@@ -67,6 +69,22 @@ public class KernelStateProvider extends AbstractTmfStateProvider {
     private static final int STATEDUMP_PROCESS_STATE_INDEX = 10;
     private static final int SCHED_WAKEUP_INDEX = 11;
     private static final int SCHED_PI_SETPRIO_INDEX = 12;
+    private static final int SYSCALL_ENTRY_INDEX = 13;
+    private static final int SYSCALL_EXIT_INDEX = 14;
+
+    /* The sub-attributes of the CPU and thread nodes whose quarks are kept */
+    private static final String[] CACHED_ATTRIBUTES = {
+            Attributes.STATUS, Attributes.SYSTEM_CALL, Attributes.PRIO,
+            Attributes.EXEC_NAME, Attributes.PPID, Attributes.CURRENT_THREAD };
+    private static final int STATUS_ATTRIBUTE = 0;
+    private static final int SYSTEM_CALL_ATTRIBUTE = 1;
+    private static final int PRIO_ATTRIBUTE = 2;
+    private static final int EXEC_NAME_ATTRIBUTE = 3;
+    private static final int PPID_ATTRIBUTE = 4;
+    private static final int CURRENT_THREAD_ATTRIBUTE = 5;
+
+    /* Threads with larger TIDs are kept in a map instead of the array */
+    private static final int MAX_ARRAY_TID = 1 << 22;
 
 
     // ------------------------------------------------------------------------
@@ -76,6 +94,60 @@ public class KernelStateProvider extends AbstractTmfStateProvider {
     private final Map<String, Integer> fEventNames;
     private final IKernelAnalysisEventLayout fLayout;
 
+    /*
+     * The quarks of the CPU and thread nodes, by CPU and by TID (plus one, for
+     * the -1 thread), which most events need. Attributes are never removed
+     * from the attribute tree, so these quarks stay valid. They are only used
+     * by the event handler thread.
+     */
+    private NodeQuarks[] fCpuQuarks = new NodeQuarks[0];
+    private NodeQuarks[] fThreadQuarks = new NodeQuarks[0];
+    private final Map<Integer, NodeQuarks> fOtherThreadQuarks = new HashMap<>();
+    private int fCpusNode = -1;
+    private int fThreadsNode = -1;
+    private int fIrqsNode = -1;
+    private int fSoftIrqsNode = -1;
+
+    /**
+     * The quarks of a CPU or thread node and of its sub-attributes. The
+     * sub-attributes are only added the first time they are used, so that the
+     * attribute tree is the same as when they are looked up by name.
+     */
+    private static final class NodeQuarks {
+
+        private final int fNode;
+        private final int[] fQuarks = new int[CACHED_ATTRIBUTES.length];
+
+        public NodeQuarks(int node) {
+            fNode = node;
+            Arrays.fill(fQuarks, -1);
+        }
+
+        public int getNode() {
+            return fNode;
+        }
+
+        /* Get the quark of a sub-attribute, adding it if necessary */
+        public int getQuark(ITmfStateSystemBuilder ss, int attribute) {
+            int quark = fQuarks[attribute];
+            if (quark == -1) {
+                quark = ss.getQuarkRelativeAndAdd(fNode, CACHED_ATTRIBUTES[attribute]);
+                fQuarks[attribute] = quark;
+            }
+            return quark;
+        }
+
+        /* Get the quark of a sub-attribute, which must already exist */
+        public int findQuark(ITmfStateSystemBuilder ss, int attribute) throws AttributeNotFoundException {
+            int quark = fQuarks[attribute];
+            if (quark == -1) {
+                quark = ss.getQuarkRelative(fNode, CACHED_ATTRIBUTES[attribute]);
+                fQuarks[attribute] = quark;
+            }
+            return quark;
+        }
+    }
+
     // ------------------------------------------------------------------------
     // Constructor
     // ------------------------------------------------------------------------
@@ -140,6 +212,22 @@ public class KernelStateProvider extends AbstractTmfStateProvider {
         super.assignTargetStateSystem(ssb);
     }
 
+    @Override
+    protected int resolveEventTypeIndex(String eventTypeName) {
+        Integer idx = fEventNames.get(eventTypeName);
+        if (idx != null) {
+            return idx.intValue();
+        }
+        if (eventTypeName.startsWith(fLayout.eventSyscallEntryPrefix())
+                || eventTypeName.startsWith(fLayout.eventCompatSyscallEntryPrefix())) {
+            return SYSCALL_ENTRY_INDEX;
+        }
+        if (eventTypeName.startsWith(fLayout.eventSyscallExitPrefix())) {
+            return SYSCALL_EXIT_INDEX;
+        }
+        return NO_EVENT_TYPE_INDEX;
+    }
+
     @Override
     public KernelStateProvider getNewInstance() {
         return new KernelStateProvider(this.getTrace(), fLayout);
@@ -151,38 +239,34 @@ public class KernelStateProvider extends AbstractTmfStateProvider {
             return;
         }
 
-        Object cpuObj = TmfTraceUtils.resolveEventAspectOfClassForEvent(event.getTrace(), TmfCpuAspect.class, event);
-        if (cpuObj == null) {
+        int cpu = TmfTraceUtils.resolveCpuOfEvent(event.getTrace(), event);
+        if (cpu == TmfCpuAspect.UNKNOWN_CPU) {
             /* We couldn't find any CPU information, ignore this event */
             return;
         }
-        Integer cpu = (Integer) cpuObj;
 
-        final String eventName = event.getType().getName();
         final long ts = event.getTimestamp().getValue();
 
         try {
             final ITmfStateSystemBuilder ss = checkNotNull(getStateSystemBuilder());
 
             /* Shortcut for the "current CPU" attribute node */
-            final int currentCPUNode = ss.getQuarkRelativeAndAdd(getNodeCPUs(ss), cpu.toString());
+            final NodeQuarks currentCPU = getCpuQuarks(ss, cpu);
 
             /*
              * Shortcut for the "current thread" attribute node. It requires
              * querying the current CPU's current thread.
              */
-            int quark = ss.getQuarkRelativeAndAdd(currentCPUNode, Attributes.CURRENT_THREAD);
+            int quark = currentCPU.getQuark(ss, CURRENT_THREAD_ATTRIBUTE);
             ITmfStateValue value = ss.queryOngoingState(quark);
             int thread = value.isNull() ? -1 : value.unboxInt();
-            final int currentThreadNode = ss.getQuarkRelativeAndAdd(getNodeThreads(ss), String.valueOf(thread));
+            final NodeQuarks currentThread = getThreadQuarks(ss, thread);
 
             /*
              * Feed event to the history system if it's known to cause a state
              * transition.
              */
-            Integer idx = fEventNames.get(eventName);
-            int intval = (idx == null ? -1 : idx.intValue());
-            switch (intval) {
+            switch (getEventTypeIndex(event)) {
 
             case IRQ_HANDLER_ENTRY_INDEX:
             {
@@ -190,17 +274,17 @@ public class KernelStateProvider extends AbstractTmfStateProvider {
 
                 /* Mark this IRQ as active in the resource tree.
                  * The state value = the CPU on which this IRQ is sitting */
-                quark = ss.getQuarkRelativeAndAdd(getNodeIRQs(ss), irqId.toString());
-                value = TmfStateValue.newValueInt(cpu.intValue());
+                quark = ss.getQuarkRelativeAndAdd(getNodeIRQs(ss), irqId);
+                value = TmfStateValue.newValueInt(cpu);
                 ss.modifyAttribute(ts, value, quark);
 
                 /* Change the status of the running process to interrupted */
-                quark = ss.getQuarkRelativeAndAdd(currentThreadNode, Attributes.STATUS);
+                quark = currentThread.getQuark(ss, STATUS_ATTRIBUTE);
                 value = StateValues.PROCESS_STATUS_INTERRUPTED_VALUE;
                 ss.modifyAttribute(ts, value, quark);
 
                 /* Change the status of the CPU to interrupted */
-                quark = ss.getQuarkRelativeAndAdd(currentCPUNode, Attributes.STATUS);
+                quark = currentCPU.getQuark(ss, STATUS_ATTRIBUTE);
                 value = StateValues.CPU_STATUS_IRQ_VALUE;
                 ss.modifyAttribute(ts, value, quark);
             }
@@ -211,15 +295,15 @@ public class KernelStateProvider extends AbstractTmfStateProvider {
                 Integer irqId = ((Long) event.getContent().getField(fLayout.fieldIrq()).getValue()).intValue();
 
                 /* Put this IRQ back to inactive in the resource tree */
-                quark = ss.getQuarkRelativeAndAdd(getNodeIRQs(ss), irqId.toString());
+                quark = ss.getQuarkRelativeAndAdd(getNodeIRQs(ss), irqId);
                 value = TmfStateValue.nullValue();
                 ss.modifyAttribute(ts, value, quark);
 
                 /* Set the previous process back to running */
-                setProcessToRunning(ss, ts, currentThreadNode);
+                setProcessToRunning(ss, ts, currentThread);
 
                 /* Set the CPU status back to running or "idle" */
-                cpuExitInterrupt(ss, ts, currentCPUNode, currentThreadNode);
+                cpuExitInterrupt(ss, ts, currentCPU, currentThread);
             }
                 break;
 
@@ -229,17 +313,17 @@ public class KernelStateProvider extends AbstractTmfStateProvider {
 
                 /* Mark this SoftIRQ as active in the resource tree.
                  * The state value = the CPU on which this SoftIRQ is processed */
-                quark = ss.getQuarkRelativeAndAdd(getNodeSoftIRQs(ss), softIrqId.toString());
-                value = TmfStateValue.newValueInt(cpu.intValue());
+                quark = ss.getQuarkRelativeAndAdd(getNodeSoftIRQs(ss), softIrqId);
+                value = TmfStateValue.newValueInt(cpu);
                 ss.modifyAttribute(ts, value, quark);
 
                 /* Change the status of the running process to interrupted */
-                quark = ss.getQuarkRelativeAndAdd(currentThreadNode, Attributes.STATUS);
+                quark = currentThread.getQuark(ss, STATUS_ATTRIBUTE);
                 value = StateValues.PROCESS_STATUS_INTERRUPTED_VALUE;
                 ss.modifyAttribute(ts, value, quark);
 
                 /* Change the status of the CPU to interrupted */
-                quark = ss.getQuarkRelativeAndAdd(currentCPUNode, Attributes.STATUS);
+                quark = currentCPU.getQuark(ss, STATUS_ATTRIBUTE);
                 value = StateValues.CPU_STATUS_SOFTIRQ_VALUE;
                 ss.modifyAttribute(ts, value, quark);
             }
@@ -250,15 +334,15 @@ public class KernelStateProvider extends AbstractTmfStateProvider {
                 Integer softIrqId = ((Long) event.getContent().getField(fLayout.fieldVec()).getValue()).intValue();
 
                 /* Put this SoftIRQ back to inactive (= -1) in the resource tree */
-                quark = ss.getQuarkRelativeAndAdd(getNodeSoftIRQs(ss), softIrqId.toString());
+                quark = ss.getQuarkRelativeAndAdd(getNodeSoftIRQs(ss), softIrqId);
                 value = TmfStateValue.nullValue();
                 ss.modifyAttribute(ts, value, quark);
 
                 /* Set the previous process back to running */
-                setProcessToRunning(ss, ts, currentThreadNode);
+                setProcessToRunning(ss, ts, currentThread);
 
                 /* Set the CPU status back to "busy" or "idle" */
-                cpuExitInterrupt(ss, ts, currentCPUNode, currentThreadNode);
+                cpuExitInterrupt(ss, ts, currentCPU, currentThread);
             }
                 break;
 
@@ -269,7 +353,7 @@ public class KernelStateProvider extends AbstractTmfStateProvider {
 
                 /* Mark this SoftIRQ as *raised* in the resource tree.
                  * State value = -2 */
-                quark = ss.getQuarkRelativeAndAdd(getNodeSoftIRQs(ss), softIrqId.toString());
+                quark = ss.getQuarkRelativeAndAdd(getNodeSoftIRQs(ss), softIrqId);
                 value = StateValues.SOFT_IRQ_RAISED_VALUE;
                 ss.modifyAttribute(ts, value, quark);
             }
@@ -284,11 +368,11 @@ public class KernelStateProvider extends AbstractTmfStateProvider {
                 Integer nextTid = ((Long) content.getField(fLayout.fieldNextTid()).getValue()).intValue();
                 Integer nextPrio = ((Long) content.getField(fLayout.fieldNextPrio()).getValue()).intValue();
 
-                Integer formerThreadNode = ss.getQuarkRelativeAndAdd(getNodeThreads(ss), prevTid.toString());
-                Integer newCurrentThreadNode = ss.getQuarkRelativeAndAdd(getNodeThreads(ss), nextTid.toString());
+                NodeQuarks formerThread = getThreadQuarks(ss, prevTid);
+                NodeQuarks newCurrentThread = getThreadQuarks(ss, nextTid);
 
                 /* Set the status of the process that got scheduled out. */
-                quark = ss.getQuarkRelativeAndAdd(formerThreadNode, Attributes.STATUS);
+                quark = formerThread.getQuark(ss, STATUS_ATTRIBUTE);
                 if (prevState != 0) {
                     value = StateValues.PROCESS_STATUS_WAIT_BLOCKED_VALUE;
                 } else {
@@ -297,31 +381,31 @@ public class KernelStateProvider extends AbstractTmfStateProvider {
                 ss.modifyAttribute(ts, value, quark);
 
                 /* Set the status of the new scheduled process */
-                setProcessToRunning(ss, ts, newCurrentThreadNode);
+                setProcessToRunning(ss, ts, newCurrentThread);
 
                 /* Set the exec name of the new process */
-                quark = ss.getQuarkRelativeAndAdd(newCurrentThreadNode, Attributes.EXEC_NAME);
+                quark = newCurrentThread.getQuark(ss, EXEC_NAME_ATTRIBUTE);
                 value = TmfStateValue.newValueString(nextProcessName);
                 ss.modifyAttribute(ts, value, quark);
 
                 /* Set the current prio for the new process */
-                quark = ss.getQuarkRelativeAndAdd(newCurrentThreadNode, Attributes.PRIO);
+                quark = newCurrentThread.getQuark(ss, PRIO_ATTRIBUTE);
                 value = TmfStateValue.newValueInt(nextPrio);
                 ss.modifyAttribute(ts, value, quark);
 
                 /* Make sure the PPID and system_call sub-attributes exist */
-                ss.getQuarkRelativeAndAdd(newCurrentThreadNode, Attributes.SYSTEM_CALL);
-                ss.getQuarkRelativeAndAdd(newCurrentThreadNode, Attributes.PPID);
+                newCurrentThread.getQuark(ss, SYSTEM_CALL_ATTRIBUTE);
+                newCurrentThread.getQuark(ss, PPID_ATTRIBUTE);
 
                 /* Set the current scheduled process on the relevant CPU */
-                quark = ss.getQuarkRelativeAndAdd(currentCPUNode, Attributes.CURRENT_THREAD);
+                quark = currentCPU.getQuark(ss, CURRENT_THREAD_ATTRIBUTE);
                 value = TmfStateValue.newValueInt(nextTid);
                 ss.modifyAttribute(ts, value, quark);
 
                 /* Set the status of the CPU itself */
                 if (nextTid > 0) {
                     /* Check if the entering process is in kernel or user mode */
-                    quark = ss.getQuarkRelativeAndAdd(newCurrentThreadNode, Attributes.SYSTEM_CALL);
+                    quark = newCurrentThread.getQuark(ss, SYSTEM_CALL_ATTRIBUTE);
                     if (ss.queryOngoingState(quark).isNull()) {
                         value = StateValues.CPU_STATUS_RUN_USERMODE_VALUE;
                     } else {
@@ -330,7 +414,7 @@ public class KernelStateProvider extends AbstractTmfStateProvider {
                 } else {
                     value = StateValues.CPU_STATUS_IDLE_VALUE;
                 }
-                quark = ss.getQuarkRelativeAndAdd(currentCPUNode, Attributes.STATUS);
+                quark = currentCPU.getQuark(ss, STATUS_ATTRIBUTE);
                 ss.modifyAttribute(ts, value, quark);
             }
                 break;
@@ -341,10 +425,10 @@ public class KernelStateProvider extends AbstractTmfStateProvider {
                 Integer tid = ((Long) content.getField(fLayout.fieldTid()).getValue()).intValue();
                 Integer prio = ((Long) content.getField(fLayout.fieldNewPrio()).getValue()).intValue();
 
-                Integer updateThreadNode = ss.getQuarkRelativeAndAdd(getNodeThreads(ss), tid.toString());
+                NodeQuarks updateThread = getThreadQuarks(ss, tid);
 
                 /* Set the current prio for the new process */
-                quark = ss.getQuarkRelativeAndAdd(updateThreadNode, Attributes.PRIO);
+                quark = updateThread.getQuark(ss, PRIO_ATTRIBUTE);
                 value = TmfStateValue.newValueInt(prio);
                 ss.modifyAttribute(ts, value, quark);
             }
@@ -360,26 +444,26 @@ public class KernelStateProvider extends AbstractTmfStateProvider {
                 Integer parentTid = ((Long) content.getField(fLayout.fieldParentTid()).getValue()).intValue();
                 Integer childTid = ((Long) content.getField(fLayout.fieldChildTid()).getValue()).intValue();
 
-                Integer parentTidNode = ss.getQuarkRelativeAndAdd(getNodeThreads(ss), parentTid.toString());
-                Integer childTidNode = ss.getQuarkRelativeAndAdd(getNodeThreads(ss), childTid.toString());
+                NodeQuarks parentThread = getThreadQuarks(ss, parentTid);
+                NodeQuarks childThread = getThreadQuarks(ss, childTid);
 
                 /* Assign the PPID to the new process */
-                quark = ss.getQuarkRelativeAndAdd(childTidNode, Attributes.PPID);
+                quark = childThread.getQuark(ss, PPID_ATTRIBUTE);
                 value = TmfStateValue.newValueInt(parentTid);
                 ss.modifyAttribute(ts, value, quark);
 
                 /* Set the new process' exec_name */
-                quark = ss.getQuarkRelativeAndAdd(childTidNode, Attributes.EXEC_NAME);
+                quark = childThread.getQuark(ss, EXEC_NAME_ATTRIBUTE);
                 value = TmfStateValue.newValueString(childProcessName);
                 ss.modifyAttribute(ts, value, quark);
 
                 /* Set the new process' status */
-                quark = ss.getQuarkRelativeAndAdd(childTidNode, Attributes.STATUS);
+                quark = childThread.getQuark(ss, STATUS_ATTRIBUTE);
                 value = StateValues.PROCESS_STATUS_WAIT_FOR_CPU_VALUE;
                 ss.modifyAttribute(ts, value, quark);
 
                 /* Set the process' syscall name, to be the same as the parent's */
-                quark = ss.getQuarkRelativeAndAdd(parentTidNode, Attributes.SYSTEM_CALL);
+                quark = parentThread.getQuark(ss, SYSTEM_CALL_ATTRIBUTE);
                 value = ss.queryOngoingState(quark);
                 if (value.isNull()) {
                     /*
@@ -388,7 +472,7 @@ public class KernelStateProvider extends AbstractTmfStateProvider {
                      */
                     value = TmfStateValue.newValueString(fLayout.eventSyscallEntryPrefix() + IKernelAnalysisEventLayout.INITIAL_SYSCALL_NAME);
                 }
-                quark = ss.getQuarkRelativeAndAdd(childTidNode, Attributes.SYSTEM_CALL);
+                quark = childThread.getQuark(ss, SYSTEM_CALL_ATTRIBUTE);
                 ss.modifyAttribute(ts, value, quark);
             }
                 break;
@@ -403,7 +487,7 @@ public class KernelStateProvider extends AbstractTmfStateProvider {
                  * Remove the process and all its sub-attributes from the
                  * current state
                  */
-                quark = ss.getQuarkRelativeAndAdd(getNodeThreads(ss), tid.toString());
+                quark = getThreadQuarks(ss, tid).getNode();
                 ss.removeAttribute(ts, quark);
             }
                 break;
@@ -422,10 +506,10 @@ public class KernelStateProvider extends AbstractTmfStateProvider {
                  * populated with anything relevant for now.
                  */
 
-                int curThreadNode = ss.getQuarkRelativeAndAdd(getNodeThreads(ss), String.valueOf(tid));
+                NodeQuarks curThread = getThreadQuarks(ss, tid);
 
                 /* Set the process' name */
-                quark = ss.getQuarkRelativeAndAdd(curThreadNode, Attributes.EXEC_NAME);
+                quark = curThread.getQuark(ss, EXEC_NAME_ATTRIBUTE);
                 if (ss.queryOngoingState(quark).isNull()) {
                     /* If the value didn't exist previously, set it */
                     value = TmfStateValue.newValueString(name);
@@ -433,7 +517,7 @@ public class KernelStateProvider extends AbstractTmfStateProvider {
                 }
 
                 /* Set the process' PPID */
-                quark = ss.getQuarkRelativeAndAdd(curThreadNode, Attributes.PPID);
+                quark = curThread.getQuark(ss, PPID_ATTRIBUTE);
                 if (ss.queryOngoingState(quark).isNull()) {
                     if (pid == tid) {
                         /* We have a process. Use the 'PPID' field. */
@@ -446,7 +530,7 @@ public class KernelStateProvider extends AbstractTmfStateProvider {
                 }
 
                 /* Set the process' status */
-                quark = ss.getQuarkRelativeAndAdd(curThreadNode, Attributes.STATUS);
+                quark = curThread.getQuark(ss, STATUS_ATTRIBUTE);
                 if (ss.queryOngoingState(quark).isNull()) {
                     switch (status) {
                     case LinuxValues.STATEDUMP_PROCESS_STATUS_WAIT_CPU:
@@ -473,14 +557,14 @@ public class KernelStateProvider extends AbstractTmfStateProvider {
             {
                 final int tid = ((Long) event.getContent().getField(fLayout.fieldTid()).getValue()).intValue();
                 final int prio = ((Long) event.getContent().getField(fLayout.fieldPrio()).getValue()).intValue();
-                final int threadNode = ss.getQuarkRelativeAndAdd(getNodeThreads(ss), String.valueOf(tid));
+                NodeQuarks wokenThread = getThreadQuarks(ss, tid);
 
                 /*
                  * The process indicated in the event's payload is now ready to
                  * run. Assign it to the "wait for cpu" state, but only if it
                  * was not already running.
                  */
-                quark = ss.getQuarkRelativeAndAdd(threadNode, Attributes.STATUS);
+                quark = wokenThread.getQuark(ss, STATUS_ATTRIBUTE);
                 int status = ss.queryOngoingState(quark).unboxInt();
 
                 if (status != StateValues.PROCESS_STATUS_RUN_SYSCALL &&
@@ -493,53 +577,53 @@ public class KernelStateProvider extends AbstractTmfStateProvider {
                  * When a user changes a threads prio (e.g. with pthread_setschedparam),
                  * it shows in ftrace with a sched_wakeup.
                  */
-                quark = ss.getQuarkRelativeAndAdd(threadNode, Attributes.PRIO);
+                quark = wokenThread.getQuark(ss, PRIO_ATTRIBUTE);
                 value = TmfStateValue.newValueInt(prio);
                 ss.modifyAttribute(ts, value, quark);
             }
                 break;
 
-            default:
-            /* Other event types not covered by the main switch */
+            case SYSCALL_ENTRY_INDEX:
             {
-                if (eventName.startsWith(fLayout.eventSyscallEntryPrefix())
-                        || eventName.startsWith(fLayout.eventCompatSyscallEntryPrefix())) {
-
-                    /* Assign the new system call to the process */
-                    quark = ss.getQuarkRelativeAndAdd(currentThreadNode, Attributes.SYSTEM_CALL);
-                    value = TmfStateValue.newValueString(eventName);
-                    ss.modifyAttribute(ts, value, quark);
-
-                    /* Put the process in system call mode */
-                    quark = ss.getQuarkRelativeAndAdd(currentThreadNode, Attributes.STATUS);
-                    value = StateValues.PROCESS_STATUS_RUN_SYSCALL_VALUE;
-                    ss.modifyAttribute(ts, value, quark);
-
-                    /* Put the CPU in system call (kernel) mode */
-                    quark = ss.getQuarkRelativeAndAdd(currentCPUNode, Attributes.STATUS);
-                    value = StateValues.CPU_STATUS_RUN_SYSCALL_VALUE;
-                    ss.modifyAttribute(ts, value, quark);
+                /* Assign the new system call to the process */
+                quark = currentThread.getQuark(ss, SYSTEM_CALL_ATTRIBUTE);
+                value = TmfStateValue.newValueString(event.getType().getName());
+                ss.modifyAttribute(ts, value, quark);
 
-                } else if (eventName.startsWith(fLayout.eventSyscallExitPrefix())) {
+                /* Put the process in system call mode */
+                quark = currentThread.getQuark(ss, STATUS_ATTRIBUTE);
+                value = StateValues.PROCESS_STATUS_RUN_SYSCALL_VALUE;
+                ss.modifyAttribute(ts, value, quark);
 
-                    /* Clear the current system call on the process */
-                    quark = ss.getQuarkRelativeAndAdd(currentThreadNode, Attributes.SYSTEM_CALL);
-                    value = TmfStateValue.nullValue();
-                    ss.modifyAttribute(ts, value, quark);
+                /* Put the CPU in system call (kernel) mode */
+                quark = currentCPU.getQuark(ss, STATUS_ATTRIBUTE);
+                value = StateValues.CPU_STATUS_RUN_SYSCALL_VALUE;
+                ss.modifyAttribute(ts, value, quark);
+            }
+                break;
 
-                    /* Put the process' status back to user mode */
-                    quark = ss.getQuarkRelativeAndAdd(currentThreadNode, Attributes.STATUS);
-                    value = StateValues.PROCESS_STATUS_RUN_USERMODE_VALUE;
-                    ss.modifyAttribute(ts, value, quark);
+            case SYSCALL_EXIT_INDEX:
+            {
+                /* Clear the current system call on the process */
+                quark = currentThread.getQuark(ss, SYSTEM_CALL_ATTRIBUTE);
+                value = TmfStateValue.nullValue();
+                ss.modifyAttribute(ts, value, quark);
 
-                    /* Put the CPU's status back to user mode */
-                    quark = ss.getQuarkRelativeAndAdd(currentCPUNode, Attributes.STATUS);
-                    value = StateValues.CPU_STATUS_RUN_USERMODE_VALUE;
-                    ss.modifyAttribute(ts, value, quark);
-                }
+                /* Put the process' status back to user mode */
+                quark = currentThread.getQuark(ss, STATUS_ATTRIBUTE);
+                value = StateValues.PROCESS_STATUS_RUN_USERMODE_VALUE;
+                ss.modifyAttribute(ts, value, quark);
 
+                /* Put the CPU's status back to user mode */
+                quark = currentCPU.getQuark(ss, STATUS_ATTRIBUTE);
+                value = StateValues.CPU_STATUS_RUN_USERMODE_VALUE;
+                ss.modifyAttribute(ts, value, quark);
             }
                 break;
+
+            default:
+                /* Other event types do not change the state */
+                break;
             } // End of big switch
 
         } catch (AttributeNotFoundException ae) {
@@ -571,20 +655,62 @@ public class KernelStateProvider extends AbstractTmfStateProvider {
     // Convenience methods for commonly-used attribute tree locations
     // ------------------------------------------------------------------------
 
-    private static int getNodeCPUs(ITmfStateSystemBuilder ssb) {
-        return ssb.getQuarkAbsoluteAndAdd(Attributes.CPUS);
+    private NodeQuarks getCpuQuarks(ITmfStateSystemBuilder ssb, int cpu) {
+        if (cpu >= fCpuQuarks.length) {
+            fCpuQuarks = Arrays.copyOf(fCpuQuarks, cpu + 1);
+        }
+        NodeQuarks quarks = fCpuQuarks[cpu];
+        if (quarks == null) {
+            if (fCpusNode == -1) {
+                fCpusNode = ssb.getQuarkAbsoluteAndAdd(Attributes.CPUS);
+            }
+            quarks = new NodeQuarks(ssb.getQuarkRelativeAndAdd(fCpusNode, cpu));
+            fCpuQuarks[cpu] = quarks;
+        }
+        return quarks;
+    }
+
+    private NodeQuarks getThreadQuarks(ITmfStateSystemBuilder ssb, int tid) {
+        int index = tid + 1;
+        NodeQuarks quarks;
+        if (index >= 0 && index < MAX_ARRAY_TID) {
+            if (index >= fThreadQuarks.length) {
+                fThreadQuarks = Arrays.copyOf(fThreadQuarks, Math.min(MAX_ARRAY_TID, Math.max(index + 1, fThreadQuarks.length * 2)));
+            }
+            quarks = fThreadQuarks[index];
+            if (quarks == null) {
+                quarks = new NodeQuarks(ssb.getQuarkRelativeAndAdd(getNodeThreads(ssb), tid));
+                fThreadQuarks[index] = quarks;
+            }
+        } else {
+            quarks = fOtherThreadQuarks.get(tid);
+            if (quarks == null) {
+                quarks = new NodeQuarks(ssb.getQuarkRelativeAndAdd(getNodeThreads(ssb), tid));
+                fOtherThreadQuarks.put(tid, quarks);
+            }
+        }
+        return quarks;
     }
 
-    private static int getNodeThreads(ITmfStateSystemBuilder ssb) {
-        return ssb.getQuarkAbsoluteAndAdd(Attributes.THREADS);
+    private int getNodeThreads(ITmfStateSystemBuilder ssb) {
+        if (fThreadsNode == -1) {
+            fThreadsNode = ssb.getQuarkAbsoluteAndAdd(Attributes.THREADS);
+        }
+        return fThreadsNode;
     }
 
-    private static int getNodeIRQs(ITmfStateSystemBuilder ssb) {
-        return ssb.getQuarkAbsoluteAndAdd(Attributes.RESOURCES, Attributes.IRQS);
+    private int getNodeIRQs(ITmfStateSystemBuilder ssb) {
+        if (fIrqsNode == -1) {
+            fIrqsNode = ssb.getQuarkAbsoluteAndAdd(Attributes.RESOURCES, Attributes.IRQS);
+        }
+        return fIrqsNode;
     }
 
-    private static int getNodeSoftIRQs(ITmfStateSystemBuilder ssb) {
-        return ssb.getQuarkAbsoluteAndAdd(Attributes.RESOURCES, Attributes.SOFT_IRQS);
+    private int getNodeSoftIRQs(ITmfStateSystemBuilder ssb) {
+        if (fSoftIrqsNode == -1) {
+            fSoftIrqsNode = ssb.getQuarkAbsoluteAndAdd(Attributes.RESOURCES, Attributes.SOFT_IRQS);
+        }
+        return fSoftIrqsNode;
     }
 
     // ------------------------------------------------------------------------
@@ -597,13 +723,13 @@ public class KernelStateProvider extends AbstractTmfStateProvider {
      * put the process back in the syscall state. If not, we put it back in
      * user mode state.
      */
-    private static void setProcessToRunning(ITmfStateSystemBuilder ssb, long ts, int currentThreadNode)
+    private static void setProcessToRunning(ITmfStateSystemBuilder ssb, long ts, NodeQuarks currentThread)
             throws AttributeNotFoundException, TimeRangeException,
             StateValueTypeException {
         int quark;
         ITmfStateValue value;
 
-        quark = ssb.getQuarkRelativeAndAdd(currentThreadNode, Attributes.SYSTEM_CALL);
+        quark = currentThread.getQuark(ssb, SYSTEM_CALL_ATTRIBUTE);
         if (ssb.queryOngoingState(quark).isNull()) {
             /* We were in user mode before the interruption */
             value = StateValues.PROCESS_STATUS_RUN_USERMODE_VALUE;
@@ -611,7 +737,7 @@ public class KernelStateProvider extends AbstractTmfStateProvider {
             /* We were previously in kernel mode */
             value = StateValues.PROCESS_STATUS_RUN_SYSCALL_VALUE;
         }
-        quark = ssb.getQuarkRelativeAndAdd(currentThreadNode, Attributes.STATUS);
+        quark = currentThread.getQuark(ssb, STATUS_ATTRIBUTE);
         ssb.modifyAttribute(ts, value, quark);
     }
 
@@ -620,16 +746,16 @@ public class KernelStateProvider extends AbstractTmfStateProvider {
      * of an interruption.
      */
     private static void cpuExitInterrupt(ITmfStateSystemBuilder ssb, long ts,
-            int currentCpuNode, int currentThreadNode)
+            NodeQuarks currentCpu, NodeQuarks currentThread)
             throws StateValueTypeException, AttributeNotFoundException,
             TimeRangeException {
         int quark;
         ITmfStateValue value;
 
-        quark = ssb.getQuarkRelativeAndAdd(currentCpuNode, Attributes.CURRENT_THREAD);
+        quark = currentCpu.getQuark(ssb, CURRENT_THREAD_ATTRIBUTE);
         if (ssb.queryOngoingState(quark).unboxInt() > 0) {
             /* There was a process on the CPU */
-            quark = ssb.getQuarkRelative(currentThreadNode, Attributes.SYSTEM_CALL);
+            quark = currentThread.findQuark(ssb, SYSTEM_CALL_ATTRIBUTE);
             if (ssb.queryOngoingState(quark).isNull()) {
                 /* That process was in user mode */
                 value = StateValues.CPU_STATUS_RUN_USERMODE_VALUE;
@@ -641,7 +767,7 @@ public class KernelStateProvider extends AbstractTmfStateProvider {
             /* There was no real process scheduled, CPU was idle */
             value = StateValues.CPU_STATUS_IDLE_VALUE;
         }
-        quark = ssb.getQuarkRelativeAndAdd(currentCpuNode, Attributes.STATUS);
+        quark = currentCpu.getQuark(ssb, STATUS_ATTRIBUTE);
         ssb.modifyAttribute(ts, value, quark);
     }
 }
@@ -36,12 +36,10 @@ public final class KernelTidAspect extends LinuxTidAspect {
     @Override
     public @Nullable Integer resolve(ITmfEvent event) {
         /* Find the CPU this event is run on */
-        Object cpuObj = TmfTraceUtils.resolveEventAspectOfClassForEvent(event.getTrace(),
-                TmfCpuAspect.class, event);
-        if (cpuObj == null) {
+        int cpu = TmfTraceUtils.resolveCpuOfEvent(event.getTrace(), event);
+        if (cpu == TmfCpuAspect.UNKNOWN_CPU) {
             return null;
         }
-        Integer cpu = (Integer) cpuObj;
 
         /* Find the analysis module for the trace */
         KernelAnalysis analysis = TmfTraceUtils.getAnalysisModuleOfClass(event.getTrace(),
@@ -19,12 +19,12 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 
 import org.eclipse.jface.viewers.Viewer;
 import org.eclipse.jface.viewers.ViewerComparator;
 import org.eclipse.osgi.util.NLS;
 import org.eclipse.swt.widgets.Composite;
+import org.eclipse.tracecompass.analysis.os.linux.core.cpuusage.CpuUsage;
 import org.eclipse.tracecompass.analysis.os.linux.core.cpuusage.KernelCpuUsageAnalysis;
 import org.eclipse.tracecompass.analysis.os.linux.core.kernelanalysis.Attributes;
 import org.eclipse.tracecompass.analysis.os.linux.core.kernelanalysis.KernelAnalysis;
@@ -230,28 +230,26 @@ public class CpuUsageComposite extends AbstractTmfTreeViewer {
         }
 
         /* Initialize the data */
-        Map<String, Long> cpuUsageMap = fModule.getCpuUsageInRange(Math.max(start, getStartTime()), Math.min(end, getEndTime()));
+        CpuUsage usage = fModule.getCpuUsage(Math.max(start, getStartTime()), Math.min(end, getEndTime()));
 
         TmfTreeViewerEntry root = new TmfTreeViewerEntry(""); //$NON-NLS-1$
         List<ITmfTreeViewerEntry> entryList = root.getChildren();
+        if (usage == null) {
+            return root;
+        }
 
-        for (Entry<String, Long> entry : cpuUsageMap.entrySet()) {
+        for (long tid : usage.getTids()) {
             /*
-             * Process only entries representing the total of all CPUs and that
-             * have time on CPU
+             * Process only the threads that have time on CPU, except the idle
+             * thread
              */
-            if (entry.getValue() == 0) {
-                continue;
-            }
-            if (!entry.getKey().startsWith(KernelCpuUsageAnalysis.TOTAL)) {
+            long time = usage.getThreadTime(tid);
+            if (time == 0 || tid == 0) {
                 continue;
             }
-            String[] strings = entry.getKey().split(KernelCpuUsageAnalysis.SPLIT_STRING, 2);
-
-            if ((strings.length > 1) && !(strings[1].equals(KernelCpuUsageAnalysis.TID_ZERO))) {
-                CpuUsageEntry obj = new CpuUsageEntry(strings[1], getProcessName(strings[1]), (double) entry.getValue() / (double) (end - start) * 100, entry.getValue());
-                entryList.add(obj);
-            }
+            String tidName = Long.toString(tid);
+            CpuUsageEntry obj = new CpuUsageEntry(tidName, getProcessName(tidName), (double) time / (double) (end - start) * 100, time);
+            entryList.add(obj);
         }
 
         return root;
@@ -13,13 +13,13 @@
 package org.eclipse.tracecompass.analysis.os.linux.ui.views.cpuusage;
 
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.swt.widgets.Composite;
+import org.eclipse.tracecompass.analysis.os.linux.core.cpuusage.CpuUsage;
 import org.eclipse.tracecompass.analysis.os.linux.core.cpuusage.KernelCpuUsageAnalysis;
 import org.eclipse.tracecompass.internal.analysis.os.linux.ui.Activator;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
@@ -49,6 +49,9 @@ public class CpuUsageXYViewer extends TmfCommonXLineChartViewer {
     // Timeout between updates in the updateData thread
     private static final long BUILD_UPDATE_TIMEOUT = 500;
 
+    // Number of points computed between partial updates of the chart
+    private static final int INCREMENTAL_UPDATE_POINTS = 50;
+
     private long fSelectedThread = -1;
 
     /**
@@ -115,8 +118,6 @@ public class CpuUsageXYViewer extends TmfCommonXLineChartViewer {
                 currentEnd = ss.getCurrentEndTime();
 
                 /* Initialize the data */
-                Map<String, Long> cpuUsageMap = fModule.getCpuUsageInRange(Math.max(start, traceStart), Math.min(end, traceEnd));
-                Map<String, String> totalEntries = new HashMap<>();
                 fYValues.clear();
                 fYValues.put(Messages.CpuUsageXYViewer_Total, zeroFill(xvalues.length));
                 String stringSelectedThread = Long.toString(selectedThread);
@@ -124,64 +125,86 @@ public class CpuUsageXYViewer extends TmfCommonXLineChartViewer {
                     fYValues.put(stringSelectedThread, zeroFill(xvalues.length));
                 }
 
-                for (Entry<String, Long> entry : cpuUsageMap.entrySet()) {
+                long[] times = new long[xvalues.length];
+                for (int i = 0; i < xvalues.length; i++) {
+                    long time = (long) xvalues[i] + offset;
                     /*
-                     * Process only entries representing the total of all CPUs
-                     * and that have time on CPU
+                     * make sure that time is in the trace range after double
+                     * to long conversion
                      */
-                    if (entry.getValue() == 0) {
-                        continue;
-                    }
-                    if (!entry.getKey().startsWith(KernelCpuUsageAnalysis.TOTAL)) {
-                        continue;
-                    }
-                    String[] strings = entry.getKey().split(KernelCpuUsageAnalysis.SPLIT_STRING, 2);
+                    time = Math.max(traceStart, time);
+                    time = Math.min(traceEnd, time);
+                    times[i] = time;
+                }
 
-                    if ((strings.length > 1) && !(strings[1].equals(KernelCpuUsageAnalysis.TID_ZERO))) {
-                        /* This is the total cpu usage for a thread */
-                        totalEntries.put(strings[1], entry.getKey());
+                /* The total is computed from the busy times of the CPUs */
+                double[] totalUsage = fModule.getTotalCpuUsage(times);
+                if (totalUsage != null) {
+                    double[] totalValues = fYValues.get(Messages.CpuUsageXYViewer_Total);
+                    for (int i = 1; i < xvalues.length; i++) {
+                        totalValues[i] = totalUsage[i - 1] * 100;
                     }
                 }
 
-                double prevX = xvalues[0];
-                long prevTime = (long) prevX + offset;
                 /*
-                 * make sure that time is in the trace range after double to
-                 * long conversion
+                 * Without the busy times, or for the selected thread, process
+                 * only the threads that have time on CPU, except the idle
+                 * thread
                  */
-                prevTime = Math.max(traceStart, prevTime);
-                prevTime = Math.min(traceEnd, prevTime);
+                long[] tids = new long[0];
+                int nbThreads = 0;
+                boolean selectedRan = false;
+                CpuUsage rangeUsage = null;
+                if (totalUsage == null || selectedThread != -1) {
+                    rangeUsage = fModule.getCpuUsage(Math.max(start, traceStart), Math.min(end, traceEnd));
+                }
+                if (rangeUsage != null) {
+                    tids = rangeUsage.getTids();
+                    for (long tid : tids) {
+                        if (tid != 0 && rangeUsage.getThreadTime(tid) != 0) {
+                            tids[nbThreads++] = tid;
+                            selectedRan |= (tid == selectedThread);
+                        }
+                    }
+                }
+
                 /* Get CPU usage statistics for each x value */
-                for (int i = 1; i < xvalues.length; i++) {
+                for (int i = 1; i < xvalues.length && (totalUsage == null || selectedRan); i++) {
                     if (monitor.isCanceled()) {
                         return;
                     }
                     long totalCpu = 0;
-                    double x = xvalues[i];
-                    long time = (long) x + offset;
-                    time = Math.max(traceStart, time);
-                    time = Math.min(traceEnd, time);
+                    long prevTime = times[i - 1];
+                    long time = times[i];
 
-                    cpuUsageMap = fModule.getCpuUsageInRange(prevTime, time);
+                    CpuUsage usage = fModule.getCpuUsage(prevTime, time);
 
                     /*
-                     * Calculate the sum of all total entries, and add a data
+                     * Calculate the sum of all the threads, and add a data
                      * point to the selected one
                      */
-                    for (Entry<String, String> entry : totalEntries.entrySet()) {
-                        Long cpuEntry = cpuUsageMap.get(entry.getValue());
-                        cpuEntry = cpuEntry != null ? cpuEntry : 0L;
-
-                        totalCpu += cpuEntry;
-
-                        if (entry.getKey().equals(stringSelectedThread)) {
-                            /* This is the total cpu usage for a thread */
-                            fYValues.get(entry.getKey())[i] = (double) cpuEntry / (double) (time - prevTime) * 100;
+                    if (usage != null) {
+                        for (int j = 0; j < nbThreads && totalUsage == null; j++) {
+                            totalCpu += usage.getThreadTime(tids[j]);
+                        }
+                        if (selectedRan) {
+                            fYValues.get(stringSelectedThread)[i] = (double) usage.getThreadTime(selectedThread) / (double) (time - prevTime) * 100;
                         }
+                    }
+                    if (totalUsage == null) {
+                        fYValues.get(Messages.CpuUsageXYViewer_Total)[i] = (double) totalCpu / (double) (time - prevTime) * 100;
+                    }
 
+                    /*
+                     * Show the points computed so far from time to time, so
+                     * the chart is refined while the others are computed
+                     */
+                    if (i % INCREMENTAL_UPDATE_POINTS == 0 && i < xvalues.length - 1) {
+                        for (Entry<String, double[]> entry : fYValues.entrySet()) {
+                            setSeries(entry.getKey(), entry.getValue().clone());
+                        }
+                        updateDisplay();
                     }
-                    fYValues.get(Messages.CpuUsageXYViewer_Total)[i] = (double) totalCpu / (double) (time - prevTime) * 100;
-                    prevTime = time;
                 }
                 for (Entry<String, double[]> entry : fYValues.entrySet()) {
                     setSeries(entry.getKey(), entry.getValue());
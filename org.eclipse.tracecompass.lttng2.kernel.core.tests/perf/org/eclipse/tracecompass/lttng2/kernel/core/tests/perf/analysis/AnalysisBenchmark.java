@@ -50,6 +50,16 @@ public class AnalysisBenchmark {
         runTest(CtfTmfTestTrace.TRACE2, "Trace2");
     }
 
+    /**
+     * Run the benchmark with the django httpd trace, whose many scheduling
+     * events and system calls go through the per-CPU and per-thread paths of
+     * the kernel state provider
+     */
+    @Test
+    public void testDjangoHttpd() {
+        runTest(CtfTmfTestTrace.DJANGO_HTTPD, "Django httpd");
+    }
+
     private static void runTest(CtfTmfTestTrace testTrace, String testName) {
         assumeTrue(testTrace.exists());
 
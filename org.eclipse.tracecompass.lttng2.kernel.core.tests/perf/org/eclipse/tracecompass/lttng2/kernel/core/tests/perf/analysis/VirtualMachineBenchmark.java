@@ -0,0 +1,280 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.lttng2.kernel.core.tests.perf.analysis;
+
+import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.eclipse.test.performance.Dimension;
+import org.eclipse.test.performance.Performance;
+import org.eclipse.test.performance.PerformanceMeter;
+import org.eclipse.tracecompass.analysis.os.linux.core.kernelanalysis.KernelAnalysis;
+import org.eclipse.tracecompass.internal.lttng2.kernel.core.analysis.vm.module.VirtualMachineCpuAnalysis;
+import org.eclipse.tracecompass.internal.lttng2.kernel.core.analysis.vm.trace.VirtualMachineExperiment;
+import org.eclipse.tracecompass.tmf.core.event.TmfEvent;
+import org.eclipse.tracecompass.tmf.core.exceptions.TmfTraceException;
+import org.eclipse.tracecompass.tmf.core.signal.TmfTraceOpenedSignal;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceUtils;
+import org.eclipse.tracecompass.tmf.tests.stubs.trace.xml.TmfXmlTraceStub;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Benchmark of the virtual machine analysis on synthetic experiments, with one
+ * host and many guests running the same workload. The time per guest should
+ * stay the same as the number of guests grows.
+ */
+public class VirtualMachineBenchmark {
+
+    private static final String TEST_ID = "org.eclipse.linuxtools#Virtual machine analysis";
+    private static final int LOOP_COUNT = 5;
+
+    /* The workload of each guest */
+    private static final int NB_HOST_CPUS = 8;
+    private static final int NB_ROUNDS = 100;
+    private static final int NB_HYPERVISOR_EXITS = 8;
+    private static final long SLOT_DURATION = 1000;
+    private static final long VM_UID_BASE = 100000;
+
+    private static File fTraceDir;
+
+    /**
+     * Create the directory of the generated traces
+     *
+     * @throws IOException
+     *             If the directory cannot be created
+     */
+    @BeforeClass
+    public static void setUp() throws IOException {
+        fTraceDir = Files.createTempDirectory("vm-benchmark").toFile();
+    }
+
+    /**
+     * Delete the generated traces
+     */
+    @AfterClass
+    public static void tearDown() {
+        for (File file : fTraceDir.listFiles()) {
+            file.delete();
+        }
+        fTraceDir.delete();
+    }
+
+    /**
+     * Run the benchmark with 5 guests
+     */
+    @Test
+    public void testFiveGuests() {
+        runTest(5, "5 guests");
+    }
+
+    /**
+     * Run the benchmark with 50 guests
+     */
+    @Test
+    public void testFiftyGuests() {
+        runTest(50, "50 guests");
+    }
+
+    private static void runTest(int nbGuests, String testName) {
+        File[] files;
+        try {
+            files = generateTraces(nbGuests);
+        } catch (IOException e) {
+            fail(e.getMessage());
+            return;
+        }
+
+        Performance perf = Performance.getDefault();
+        PerformanceMeter pm = perf.createPerformanceMeter(TEST_ID + '#' + testName);
+        perf.tagAsSummary(pm, "Virtual Machine Analysis: " + testName, Dimension.CPU_TIME);
+
+        for (int i = 0; i < LOOP_COUNT; i++) {
+            Set<ITmfTrace> traces = new HashSet<>();
+            for (File file : files) {
+                traces.add(openTrace(file));
+            }
+            VirtualMachineExperiment experiment = new VirtualMachineExperiment("vm-benchmark-" + nbGuests, traces);
+            try {
+                /* Make sure the kernel analyses are done, they are not measured */
+                for (ITmfTrace trace : experiment.getTraces()) {
+                    ((TmfTrace) trace).traceOpened(new TmfTraceOpenedSignal(VirtualMachineBenchmark.class, trace, null));
+                    for (KernelAnalysis module : TmfTraceUtils.getAnalysisModulesOfClass(checkNotNull(trace), KernelAnalysis.class)) {
+                        module.schedule();
+                        module.waitForCompletion();
+                    }
+                }
+                experiment.traceOpened(new TmfTraceOpenedSignal(VirtualMachineBenchmark.class, experiment, null));
+                VirtualMachineCpuAnalysis module = null;
+                for (VirtualMachineCpuAnalysis mod : TmfTraceUtils.getAnalysisModulesOfClass(experiment, VirtualMachineCpuAnalysis.class)) {
+                    module = mod;
+                    break;
+                }
+                assertNotNull(module);
+
+                pm.start();
+                module.schedule();
+                assertTrue(module.waitForCompletion());
+                pm.stop();
+            } finally {
+                deleteSupplementaryFiles(experiment);
+                for (ITmfTrace trace : experiment.getTraces()) {
+                    deleteSupplementaryFiles(checkNotNull(trace));
+                }
+                experiment.dispose();
+            }
+        }
+        pm.commit();
+    }
+
+    private static ITmfTrace openTrace(File file) {
+        TmfXmlTraceStub trace = new TmfXmlTraceStub();
+        try {
+            trace.initTrace(null, file.getAbsolutePath(), TmfEvent.class);
+        } catch (TmfTraceException e) {
+            fail(e.getMessage());
+        }
+        return trace;
+    }
+
+    private static void deleteSupplementaryFiles(ITmfTrace trace) {
+        /*
+         * Delete the supplementary files, so that the next iteration rebuilds
+         * the state systems.
+         */
+        File suppDir = new File(TmfTraceManager.getSupplementaryFileDir(trace));
+        File[] files = suppDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Trace generation
+    // ------------------------------------------------------------------------
+
+    /**
+     * Write the host trace and the guest traces. Each guest has one virtual
+     * CPU, run by one thread of the host. The guests are spread on the CPUs
+     * of the host, and the guests sharing a CPU run one after the other in
+     * each round. While it runs, a virtual CPU exits to the hypervisor a few
+     * times, and its guest switches between two threads.
+     */
+    private static File[] generateTraces(int nbGuests) throws IOException {
+        int nbSlots = (nbGuests + NB_HOST_CPUS - 1) / NB_HOST_CPUS;
+        long roundDuration = nbSlots * SLOT_DURATION;
+        File[] files = new File[nbGuests + 1];
+
+        files[0] = new File(fTraceDir, "vmbench-" + nbGuests + "-host.xml");
+        try (Writer host = new BufferedWriter(new FileWriter(files[0]))) {
+            startTrace(host);
+            long step = (SLOT_DURATION - 200) / (NB_HYPERVISOR_EXITS * 2);
+            for (int round = 0; round < NB_ROUNDS; round++) {
+                for (int slot = 0; slot < nbSlots; slot++) {
+                    long start = round * roundDuration + slot * SLOT_DURATION + 10;
+                    int first = slot * NB_HOST_CPUS;
+                    int last = Math.min(first + NB_HOST_CPUS, nbGuests);
+                    for (int guest = first; guest < last; guest++) {
+                        writeSchedSwitch(host, start + guest - first, guest - first, 0, getVcpuTid(guest));
+                    }
+                    for (int exit = 0; exit < NB_HYPERVISOR_EXITS; exit++) {
+                        long time = start + 50 + exit * step * 2;
+                        for (int guest = first; guest < last; guest++) {
+                            writeEvent(host, time + guest - first, "kvm_entry", guest - first, "<field name=\"vcpu_id\" value=\"0\" type=\"long\" />");
+                        }
+                        if (round == 0 && exit == 0) {
+                            /* Associate the threads with their guests */
+                            for (int guest = first; guest < last; guest++) {
+                                writeEvent(host, time + step / 2 + guest - first, "vmsync_gh_host", guest - first, getVmUidField(guest));
+                            }
+                        }
+                        for (int guest = first; guest < last; guest++) {
+                            writeEvent(host, time + step + guest - first, "kvm_exit", guest - first, "<field name=\"exit_reason\" value=\"32\" type=\"int\" />");
+                        }
+                    }
+                    for (int guest = first; guest < last; guest++) {
+                        writeSchedSwitch(host, start + SLOT_DURATION - 100 + guest - first, guest - first, getVcpuTid(guest), 0);
+                    }
+                }
+            }
+            endTrace(host);
+        }
+
+        for (int guest = 0; guest < nbGuests; guest++) {
+            files[guest + 1] = new File(fTraceDir, "vmbench-" + nbGuests + "-guest" + guest + ".xml");
+            try (Writer writer = new BufferedWriter(new FileWriter(files[guest + 1]))) {
+                startTrace(writer);
+                writeEvent(writer, 1, "vmsync_gh_guest", 0, getVmUidField(guest));
+                long offset = (guest / NB_HOST_CPUS) * SLOT_DURATION;
+                for (int round = 0; round < NB_ROUNDS; round++) {
+                    long start = round * roundDuration + offset + 100;
+                    writeSchedSwitch(writer, start, 0, 0, 100);
+                    writeSchedSwitch(writer, start + 200, 0, 100, 101);
+                    writeSchedSwitch(writer, start + 400, 0, 101, 100);
+                    writeSchedSwitch(writer, start + 600, 0, 100, 0);
+                }
+                endTrace(writer);
+            }
+        }
+        return files;
+    }
+
+    private static int getVcpuTid(int guest) {
+        return 1000 + guest;
+    }
+
+    private static String getVmUidField(int guest) {
+        return "<field name=\"vm_uid\" value=\"" + (VM_UID_BASE + guest) + "\" type=\"long\" />";
+    }
+
+    private static void startTrace(Writer writer) throws IOException {
+        writer.write("<trace>\n");
+        writer.write("<event timestamp=\"0\" name=\"set_aspects\">\n<field name=\"cpu\" value=\"1\" type=\"int\" />\n</event>\n");
+    }
+
+    private static void endTrace(Writer writer) throws IOException {
+        writer.write("</trace>\n");
+    }
+
+    private static void writeSchedSwitch(Writer writer, long time, int cpu, int prevTid, int nextTid) throws IOException {
+        writeEvent(writer, time, "sched_switch", cpu,
+                "<field name=\"prev_comm\" value=\"t" + prevTid + "\" type=\"string\" />\n" +
+                "<field name=\"prev_tid\" value=\"" + prevTid + "\" type=\"long\" />\n" +
+                "<field name=\"prev_prio\" value=\"20\" type=\"long\" />\n" +
+                "<field name=\"prev_state\" value=\"0\" type=\"long\" />\n" +
+                "<field name=\"next_comm\" value=\"t" + nextTid + "\" type=\"string\" />\n" +
+                "<field name=\"next_tid\" value=\"" + nextTid + "\" type=\"long\" />\n" +
+                "<field name=\"next_prio\" value=\"20\" type=\"long\" />");
+    }
+
+    private static void writeEvent(Writer writer, long time, String name, int cpu, String fields) throws IOException {
+        writer.write("<event timestamp=\"" + time + "\" name=\"" + name + "\">\n");
+        writer.write("<field name=\"cpu\" value=\"" + cpu + "\" type=\"int\" />\n");
+        writer.write(fields);
+        writer.write("\n</event>\n");
+    }
+}
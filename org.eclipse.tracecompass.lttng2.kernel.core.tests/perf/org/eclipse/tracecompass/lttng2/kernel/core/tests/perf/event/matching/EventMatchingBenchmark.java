@@ -82,6 +82,24 @@ public class EventMatchingBenchmark {
         }
     }
 
+    /**
+     * Run the benchmark with an increasing number of the bigger traces, to
+     * see how the matching scales with the number of traces read in parallel
+     */
+    @Test
+    public void testTraceCount() {
+        assumeTrue(CtfTmfTestTrace.DJANGO_CLIENT.exists());
+        assumeTrue(CtfTmfTestTrace.DJANGO_DB.exists());
+        assumeTrue(CtfTmfTestTrace.DJANGO_HTTPD.exists());
+        try (CtfTmfTrace trace1 = CtfTmfTestTrace.DJANGO_CLIENT.getTrace();
+                CtfTmfTrace trace2 = CtfTmfTestTrace.DJANGO_DB.getTrace();
+                CtfTmfTrace trace3 = CtfTmfTestTrace.DJANGO_HTTPD.getTrace();) {
+            runCpuTest(ImmutableSet.of((ITmfTrace) trace1), "Django traces (1 trace)", 10);
+            runCpuTest(ImmutableSet.of((ITmfTrace) trace1, trace2), "Django traces (2 traces)", 10);
+            runCpuTest(ImmutableSet.of((ITmfTrace) trace1, trace2, trace3), "Django traces (3 traces)", 10);
+        }
+    }
+
     private static void runCpuTest(Set<ITmfTrace> testTraces, String testName, int loop_count) {
         Performance perf = Performance.getDefault();
         PerformanceMeter pm = perf.createPerformanceMeter(TEST_ID + testName + TIME);
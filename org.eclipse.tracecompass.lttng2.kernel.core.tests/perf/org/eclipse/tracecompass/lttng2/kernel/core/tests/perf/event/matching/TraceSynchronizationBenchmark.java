@@ -87,6 +87,30 @@ public class TraceSynchronizationBenchmark {
         }
     }
 
+    /**
+     * Run the benchmark with an increasing number of the bigger traces, to
+     * see how the synchronization scales with the number of traces read in
+     * parallel
+     */
+    @Test
+    public void testTraceCount() {
+        assumeTrue(CtfTmfTestTrace.DJANGO_CLIENT.exists());
+        assumeTrue(CtfTmfTestTrace.DJANGO_DB.exists());
+        assumeTrue(CtfTmfTestTrace.DJANGO_HTTPD.exists());
+        try (CtfTmfTrace trace1 = CtfTmfTestTrace.DJANGO_CLIENT.getTrace();
+                CtfTmfTrace trace2 = CtfTmfTestTrace.DJANGO_DB.getTrace();
+                CtfTmfTrace trace3 = CtfTmfTestTrace.DJANGO_HTTPD.getTrace();) {
+            ITmfTrace[] traces = { trace1, trace2 };
+            TmfExperiment experiment = new TmfExperiment(CtfTmfEvent.class, "Test experiment", traces, TmfExperiment.DEFAULT_INDEX_PAGE_SIZE, null);
+            runCpuTest(experiment, "Django traces (2 traces)", 10);
+            experiment.dispose();
+
+            traces = new ITmfTrace[] { trace1, trace2, trace3 };
+            experiment = new TmfExperiment(CtfTmfEvent.class, "Test experiment", traces, TmfExperiment.DEFAULT_INDEX_PAGE_SIZE, null);
+            runCpuTest(experiment, "Django traces (3 traces)", 10);
+        }
+    }
+
     private static void runCpuTest(TmfExperiment experiment, String testName, int loop_count) {
         Performance perf = Performance.getDefault();
         PerformanceMeter pm = perf.createPerformanceMeter(TEST_ID + testName + TIME);
@@ -15,7 +15,6 @@ package org.eclipse.tracecompass.internal.lttng2.kernel.core.analysis.vm.model.q
 
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
 
 import org.eclipse.jdt.annotation.Nullable;
@@ -54,6 +53,10 @@ public class QemuKvmVmModel implements IVirtualMachineModel {
     private final Map<HostThread, VirtualMachine> fTidToVm = new HashMap<>();
     /* Maps a virtual machine name to a virtual machine */
     private final Map<String, VirtualMachine> fKnownMachines = new HashMap<>();
+    /* Maps a guest's vm uid to the guest */
+    private final Map<Long, VirtualMachine> fGuestsByUid = new HashMap<>();
+    /* The kernel analysis of each host ID, null if the host has none */
+    private final Map<String, KernelAnalysis> fKernelModules = new HashMap<>();
 
     private final TmfExperiment fExperiment;
 
@@ -105,6 +108,7 @@ public class QemuKvmVmModel implements IVirtualMachineModel {
             ITmfEventField data = field.getField(QemuKvmStrings.VM_UID_PAYLOAD);
             if (data != null) {
                 machine = VirtualMachine.newGuestMachine((Long) data.getValue(), hostId);
+                fGuestsByUid.put(machine.getVmUid(), machine);
             }
         }
         if (machine != null) {
@@ -172,8 +176,11 @@ public class QemuKvmVmModel implements IVirtualMachineModel {
         final ITmfEventField content = event.getContent();
         long vcpu_id = (Long) content.getField(QemuKvmStrings.VCPU_ID).getValue();
 
-        VirtualCPU virtualCPU = VirtualCPU.getVirtualCPU(vm, vcpu_id);
-        fTidToVcpu.put(ht, virtualCPU);
+        VirtualCPU virtualCPU = fTidToVcpu.get(ht);
+        if (virtualCPU == null || virtualCPU.getVm() != vm || virtualCPU.getCpuId().longValue() != vcpu_id) {
+            virtualCPU = VirtualCPU.getVirtualCPU(vm, vcpu_id);
+            fTidToVcpu.put(ht, virtualCPU);
+        }
 
         return virtualCPU;
     }
@@ -209,12 +216,11 @@ public class QemuKvmVmModel implements IVirtualMachineModel {
         final long ts = event.getTimestamp().getValue();
         final String hostId = event.getTrace().getHostId();
 
-        Object cpuObj = TmfTraceUtils.resolveEventAspectOfClassForEvent(event.getTrace(), TmfCpuAspect.class, event);
-        if (cpuObj == null) {
+        int cpu = TmfTraceUtils.resolveCpuOfEvent(event.getTrace(), event);
+        if (cpu == TmfCpuAspect.UNKNOWN_CPU) {
             /* We couldn't find any CPU information, ignore this event */
             return;
         }
-        Integer cpu = (Integer) cpuObj;
 
         /* Find a virtual machine with the vm uid payload value */
         ITmfEventField data = content.getField(QemuKvmStrings.VM_UID_PAYLOAD);
@@ -222,42 +228,45 @@ public class QemuKvmVmModel implements IVirtualMachineModel {
             return;
         }
         long vmUid = (Long) data.getValue();
-        for (Entry<String, VirtualMachine> entry : fKnownMachines.entrySet()) {
-            if (entry.getValue().getVmUid() == vmUid) {
-                /*
-                 * We found the VM being run, let's associate it with the thread
-                 * ID
-                 */
-                KernelAnalysis module = getLttngKernelModuleFor(hostId);
-                if (module == null) {
-                    break;
-                }
-                Integer tid = KernelThreadInformationProvider.getThreadOnCpu(module, cpu, ts);
-                if (tid == null) {
-                    /*
-                     * We do not know which process is running at this point. It
-                     * may happen at the beginning of the trace.
-                     */
-                    break;
-                }
-                HostThread ht = new HostThread(hostId, tid);
-                fTidToVm.put(ht, entry.getValue());
-
-                /*
-                 * To make sure siblings are also associated with this VM, also
-                 * add an entry for the parent TID
-                 */
-                Integer ppid = KernelThreadInformationProvider.getParentPid(module, tid, ts);
-                if (ppid != null) {
-                    HostThread parentHt = new HostThread(hostId, ppid);
-                    fTidToVm.put(parentHt, entry.getValue());
-                }
-            }
+        VirtualMachine vm = fGuestsByUid.get(vmUid);
+        if (vm == null) {
+            return;
+        }
+
+        /* We found the VM being run, let's associate it with the thread ID */
+        KernelAnalysis module = getLttngKernelModuleFor(hostId);
+        if (module == null) {
+            return;
+        }
+        Integer tid = KernelThreadInformationProvider.getThreadOnCpu(module, cpu, ts);
+        if (tid == null) {
+            /*
+             * We do not know which process is running at this point. It may
+             * happen at the beginning of the trace.
+             */
+            return;
+        }
+        HostThread ht = new HostThread(hostId, tid);
+        fTidToVm.put(ht, vm);
+
+        /*
+         * To make sure siblings are also associated with this VM, also add an
+         * entry for the parent TID
+         */
+        Integer ppid = KernelThreadInformationProvider.getParentPid(module, tid, ts);
+        if (ppid != null) {
+            HostThread parentHt = new HostThread(hostId, ppid);
+            fTidToVm.put(parentHt, vm);
         }
     }
 
     private @Nullable KernelAnalysis getLttngKernelModuleFor(String hostId) {
-        return TmfExperimentUtils.getAnalysisModuleOfClassForHost(fExperiment, hostId, KernelAnalysis.class);
+        if (fKernelModules.containsKey(hostId)) {
+            return fKernelModules.get(hostId);
+        }
+        KernelAnalysis module = TmfExperimentUtils.getAnalysisModuleOfClassForHost(fExperiment, hostId, KernelAnalysis.class);
+        fKernelModules.put(hostId, module);
+        return module;
     }
 
 }
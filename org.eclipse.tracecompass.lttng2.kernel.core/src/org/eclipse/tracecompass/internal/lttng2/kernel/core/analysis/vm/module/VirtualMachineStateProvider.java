@@ -14,7 +14,8 @@ package org.eclipse.tracecompass.internal.lttng2.kernel.core.analysis.vm.module;
 
 import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.Map;
 
 import org.eclipse.jdt.annotation.Nullable;
@@ -22,7 +23,6 @@ import org.eclipse.tracecompass.analysis.os.linux.core.kernelanalysis.KernelAnal
 import org.eclipse.tracecompass.analysis.os.linux.core.kernelanalysis.KernelThreadInformationProvider;
 import org.eclipse.tracecompass.analysis.os.linux.core.model.HostThread;
 import org.eclipse.tracecompass.analysis.os.linux.core.trace.IKernelAnalysisEventLayout;
-import org.eclipse.tracecompass.common.core.NonNullUtils;
 import org.eclipse.tracecompass.internal.lttng2.kernel.core.Activator;
 import org.eclipse.tracecompass.internal.lttng2.kernel.core.analysis.vm.VcpuStateValues;
 import org.eclipse.tracecompass.internal.lttng2.kernel.core.analysis.vm.VmAttributes;
@@ -47,9 +47,6 @@ import org.eclipse.tracecompass.tmf.core.trace.TmfTraceUtils;
 import org.eclipse.tracecompass.tmf.core.trace.experiment.TmfExperiment;
 import org.eclipse.tracecompass.tmf.core.trace.experiment.TmfExperimentUtils;
 
-import com.google.common.collect.HashBasedTable;
-import com.google.common.collect.Table;
-
 /**
  * This is the state provider which translates the virtual machine experiment
  * events to a state system.
@@ -69,6 +66,11 @@ import com.google.common.collect.Table;
  * and/or {@link VcpuStateValues#VCPU_PREEMPT} to indicate respectively whether
  * they are in hypervisor mode or preempted on the host.
  *
+ * The layout, host ID and kernel analysis of each trace, and the quarks of
+ * each virtual CPU, are looked up once and then kept by the provider, so the
+ * cost of an event does not grow with the number of traces and guests in the
+ * experiment.
+ *
  * @author Mohamad Gebai
  */
 public class VirtualMachineStateProvider extends AbstractTmfStateProvider {
@@ -79,12 +81,80 @@ public class VirtualMachineStateProvider extends AbstractTmfStateProvider {
      */
     private static final int VERSION = 1;
 
+    /* TODO When requirements work again, don't hardcode this */
+    private static final String SCHED_SWITCH = "sched_switch"; //$NON-NLS-1$
+
     private static final int SCHED_SWITCH_INDEX = 0;
+    private static final int MODEL_EVENT_INDEX = 1;
+
+    /* The quarks of the virtual CPUs with larger IDs are not kept */
+    private static final int MAX_CACHED_VCPUS = 1024;
 
     /* TODO: An analysis should support many hypervisor models */
     private IVirtualMachineModel fModel;
-    private final Table<ITmfTrace, String, Integer> fEventNames;
-    private final Map<ITmfTrace, IKernelAnalysisEventLayout> fLayouts;
+
+    /* The information of each trace of the experiment, see getTraceInfo() */
+    private final Map<ITmfTrace, TraceInfo> fTraceInfos = new IdentityHashMap<>();
+    private @Nullable ITmfTrace fLastTrace = null;
+    private @Nullable TraceInfo fLastTraceInfo = null;
+
+    /* The quarks of the guests and of their virtual CPUs */
+    private final Map<VirtualMachine, GuestQuarks> fGuestQuarks = new IdentityHashMap<>();
+    private int fVirtualMachinesQuark = -1;
+
+    /**
+     * What is needed to handle the events of one trace of the experiment
+     */
+    private static final class TraceInfo {
+
+        final String fHostId;
+        final IKernelAnalysisEventLayout fLayout;
+        @Nullable KernelAnalysis fKernelModule = null;
+        boolean fKernelModuleResolved = false;
+        boolean fGuestAdded = false;
+
+        TraceInfo(ITmfTrace trace) {
+            fHostId = trace.getHostId();
+            if (trace instanceof LttngKernelTrace) {
+                fLayout = ((LttngKernelTrace) trace).getKernelEventLayout();
+            } else {
+                /* Fall-back to the base LttngEventLayout */
+                fLayout = LttngEventLayout.getInstance();
+            }
+        }
+    }
+
+    /**
+     * The quarks of a guest and of the statuses of its virtual CPUs, indexed
+     * by CPU ID
+     */
+    private static final class GuestQuarks {
+
+        final int fGuestQuark;
+        int[] fStatusQuarks = new int[0];
+
+        GuestQuarks(int guestQuark) {
+            fGuestQuark = guestQuark;
+        }
+
+        int getStatusQuark(ITmfStateSystemBuilder ss, long cpu) {
+            if (cpu < 0 || cpu >= MAX_CACHED_VCPUS) {
+                return ss.getQuarkRelativeAndAdd(ss.getQuarkRelativeAndAdd(fGuestQuark, cpu), VmAttributes.STATUS);
+            }
+            int index = (int) cpu;
+            if (index >= fStatusQuarks.length) {
+                int oldLength = fStatusQuarks.length;
+                fStatusQuarks = Arrays.copyOf(fStatusQuarks, Math.max(index + 1, oldLength * 2));
+                Arrays.fill(fStatusQuarks, oldLength, fStatusQuarks.length, -1);
+            }
+            int quark = fStatusQuarks[index];
+            if (quark == -1) {
+                quark = ss.getQuarkRelativeAndAdd(ss.getQuarkRelativeAndAdd(fGuestQuark, cpu), VmAttributes.STATUS);
+                fStatusQuarks[index] = quark;
+            }
+            return quark;
+        }
+    }
 
     // ------------------------------------------------------------------------
     // Constructor
@@ -100,25 +170,36 @@ public class VirtualMachineStateProvider extends AbstractTmfStateProvider {
         super(experiment, "Virtual Machine State Provider"); //$NON-NLS-1$
 
         fModel = new QemuKvmVmModel(experiment);
-        Table<ITmfTrace, String, Integer> table = NonNullUtils.checkNotNull(HashBasedTable.<ITmfTrace, String, Integer> create());
-        fEventNames = table;
-        fLayouts = new HashMap<>();
     }
 
     // ------------------------------------------------------------------------
     // Event names management
     // ------------------------------------------------------------------------
 
-    private void buildEventNames(ITmfTrace trace) {
-        IKernelAnalysisEventLayout layout;
-        if (trace instanceof LttngKernelTrace) {
-            layout = ((LttngKernelTrace) trace).getKernelEventLayout();
-        } else {
-            /* Fall-back to the base LttngEventLayout */
-            layout = LttngEventLayout.getInstance();
+    @Override
+    protected int resolveEventTypeIndex(String eventTypeName) {
+        if (eventTypeName.equals(SCHED_SWITCH)) {
+            return SCHED_SWITCH_INDEX;
+        }
+        if (fModel.getRequiredEvents().contains(eventTypeName)) {
+            return MODEL_EVENT_INDEX;
+        }
+        return NO_EVENT_TYPE_INDEX;
+    }
+
+    private TraceInfo getTraceInfo(ITmfTrace trace) {
+        TraceInfo info = fLastTraceInfo;
+        if (trace == fLastTrace && info != null) {
+            return info;
         }
-        fLayouts.put(trace, layout);
-        fEventNames.put(trace, layout.eventSchedSwitch(), SCHED_SWITCH_INDEX);
+        info = fTraceInfos.get(trace);
+        if (info == null) {
+            info = new TraceInfo(trace);
+            fTraceInfos.put(trace, info);
+        }
+        fLastTrace = trace;
+        fLastTraceInfo = info;
+        return info;
     }
 
     // ------------------------------------------------------------------------
@@ -152,20 +233,18 @@ public class VirtualMachineStateProvider extends AbstractTmfStateProvider {
         }
 
         /* Is the event managed by this analysis */
-        final String eventName = event.getType().getName();
-
-        /* TODO When requirements work again, don't hardcode this */
-        if (!eventName.equals("sched_switch") && //$NON-NLS-1$
-                !fModel.getRequiredEvents().contains(eventName)) {
+        final int eventIndex = getEventTypeIndex(event);
+        if (eventIndex == NO_EVENT_TYPE_INDEX) {
             return;
         }
 
         ITmfStateSystemBuilder ss = checkNotNull(getStateSystemBuilder());
         ITmfStateValue value;
 
+        final ITmfTrace trace = event.getTrace();
+        final TraceInfo traceInfo = getTraceInfo(trace);
         final ITmfEventField content = event.getContent();
         final long ts = event.getTimestamp().getValue();
-        final String hostId = event.getTrace().getHostId();
         try {
             /* Do we know this trace's role yet? */
             VirtualMachine host = fModel.getCurrentMachine(event);
@@ -174,64 +253,53 @@ public class VirtualMachineStateProvider extends AbstractTmfStateProvider {
             }
 
             /* Make sure guest traces are added to the state system */
-            if (host.isGuest()) {
+            if (host.isGuest() && !traceInfo.fGuestAdded) {
                 /*
                  * If event from a guest OS, make sure the guest exists in the
                  * state system
                  */
-                int vmQuark = -1;
                 try {
-                    vmQuark = ss.getQuarkRelative(getNodeVirtualMachines(), host.getHostId());
+                    ss.getQuarkRelative(getNodeVirtualMachines(ss), host.getHostId());
                 } catch (AttributeNotFoundException e) {
                     /*
                      * We should enter this catch only once per machine, so it
                      * is not so costly to do compared with adding the trace's
                      * name for each guest event
                      */
-                    vmQuark = ss.getQuarkRelativeAndAdd(getNodeVirtualMachines(), host.getHostId());
-                    TmfStateValue machineName = TmfStateValue.newValueString(event.getTrace().getName());
+                    int vmQuark = ss.getQuarkRelativeAndAdd(getNodeVirtualMachines(ss), host.getHostId());
+                    TmfStateValue machineName = TmfStateValue.newValueString(trace.getName());
                     ss.modifyAttribute(ts, machineName, vmQuark);
                 }
+                traceInfo.fGuestAdded = true;
             }
 
             /* Have the hypervisor models handle the event first */
             fModel.handleEvent(event);
 
             /* Handle the event here */
-            if (!fEventNames.containsRow(event.getTrace())) {
-                buildEventNames(event.getTrace());
-            }
-            Integer idx = fEventNames.get(event.getTrace(), eventName);
-            int intval = (idx == null ? -1 : idx.intValue());
-            switch (intval) {
+            switch (eventIndex) {
             case SCHED_SWITCH_INDEX: // "sched_switch":
             /*
              * Fields: string prev_comm, int32 prev_tid, int32 prev_prio, int64
              * prev_state, string next_comm, int32 next_tid, int32 next_prio
              */
             {
-                Integer prevTid = ((Long) content.getField(fLayouts.get(event.getTrace()).fieldPrevTid()).getValue()).intValue();
-                Integer nextTid = ((Long) content.getField(fLayouts.get(event.getTrace()).fieldNextTid()).getValue()).intValue();
-
-                if (prevTid == null || nextTid == null) {
-                    break;
-                }
+                int prevTid = ((Long) content.getField(traceInfo.fLayout.fieldPrevTid()).getValue()).intValue();
+                int nextTid = ((Long) content.getField(traceInfo.fLayout.fieldNextTid()).getValue()).intValue();
 
                 if (host.isGuest()) {
                     /* Get the event's CPU */
-                    Object cpuObj = TmfTraceUtils.resolveEventAspectOfClassForEvent(event.getTrace(), TmfCpuAspect.class, event);
-                    if (cpuObj == null) {
+                    int cpu = TmfTraceUtils.resolveCpuOfEvent(trace, event);
+                    if (cpu == TmfCpuAspect.UNKNOWN_CPU) {
                         /* We couldn't find any CPU information, ignore this event */
                         break;
                     }
-                    Integer cpu = (Integer) cpuObj;
 
                     /*
                      * If sched switch is from a guest, just update the status
                      * of the virtual CPU to either idle or running
                      */
-                    int curStatusQuark = ss.getQuarkRelativeAndAdd(getNodeVirtualMachines(), host.getHostId(),
-                            cpu.toString(), VmAttributes.STATUS);
+                    int curStatusQuark = getVcpuStatusQuark(ss, host, cpu);
                     value = TmfStateValue.newValueInt(VcpuStateValues.VCPU_IDLE);
                     if (nextTid > 0) {
                         value = TmfStateValue.newValueInt(VcpuStateValues.VCPU_RUNNING);
@@ -242,7 +310,7 @@ public class VirtualMachineStateProvider extends AbstractTmfStateProvider {
 
                 /* Event is not from a guest */
                 /* Verify if the previous thread corresponds to a virtual CPU */
-                HostThread ht = new HostThread(hostId, prevTid);
+                HostThread ht = new HostThread(traceInfo.fHostId, prevTid);
                 VirtualCPU vcpu = fModel.getVirtualCpu(ht);
 
                 /*
@@ -250,10 +318,7 @@ public class VirtualMachineStateProvider extends AbstractTmfStateProvider {
                  * virtual CPU to preempted
                  */
                 if (vcpu != null) {
-                    VirtualMachine vm = vcpu.getVm();
-
-                    int curStatusQuark = ss.getQuarkRelativeAndAdd(getNodeVirtualMachines(), vm.getHostId(),
-                            vcpu.getCpuId().toString(), VmAttributes.STATUS);
+                    int curStatusQuark = getVcpuStatusQuark(ss, vcpu.getVm(), vcpu.getCpuId());
 
                     /* Add the preempted flag to the status */
                     value = ss.queryOngoingState(curStatusQuark);
@@ -263,7 +328,7 @@ public class VirtualMachineStateProvider extends AbstractTmfStateProvider {
                 }
 
                 /* Verify if the next thread corresponds to a virtual CPU */
-                ht = new HostThread(hostId, nextTid);
+                ht = new HostThread(traceInfo.fHostId, nextTid);
                 vcpu = fModel.getVirtualCpu(ht);
 
                 /*
@@ -271,9 +336,7 @@ public class VirtualMachineStateProvider extends AbstractTmfStateProvider {
                  * CPU the previous status
                  */
                 if (vcpu != null) {
-                    VirtualMachine vm = vcpu.getVm();
-                    int curStatusQuark = ss.getQuarkRelativeAndAdd(getNodeVirtualMachines(), vm.getHostId(),
-                            vcpu.getCpuId().toString(), VmAttributes.STATUS);
+                    int curStatusQuark = getVcpuStatusQuark(ss, vcpu.getVm(), vcpu.getCpuId());
 
                     /* Remove the preempted flag from the status */
                     value = ss.queryOngoingState(curStatusQuark);
@@ -289,7 +352,7 @@ public class VirtualMachineStateProvider extends AbstractTmfStateProvider {
             default:
             /* Other events not covered by the main switch */
             {
-                HostThread ht = getCurrentHostThread(event, ts);
+                HostThread ht = getCurrentHostThread(event, traceInfo, ts);
                 if (ht == null) {
                     break;
                 }
@@ -301,9 +364,7 @@ public class VirtualMachineStateProvider extends AbstractTmfStateProvider {
                 VirtualCPU virtualCpu = fModel.getVCpuEnteringHypervisorMode(event, ht);
                 if (virtualCpu != null) {
                     /* Add the hypervisor flag to the status */
-                    VirtualMachine vm = virtualCpu.getVm();
-                    int curStatusQuark = ss.getQuarkRelativeAndAdd(getNodeVirtualMachines(), vm.getHostId(),
-                            Long.toString(virtualCpu.getCpuId()), VmAttributes.STATUS);
+                    int curStatusQuark = getVcpuStatusQuark(ss, virtualCpu.getVm(), virtualCpu.getCpuId());
                     value = ss.queryOngoingState(curStatusQuark);
                     int newVal = Math.max(VcpuStateValues.VCPU_UNKNOWN, value.unboxInt());
                     value = TmfStateValue.newValueInt(newVal | VcpuStateValues.VCPU_VMM);
@@ -317,9 +378,7 @@ public class VirtualMachineStateProvider extends AbstractTmfStateProvider {
                 virtualCpu = fModel.getVCpuExitingHypervisorMode(event, ht);
                 if (virtualCpu != null) {
                     /* Remove the hypervisor flag from the status */
-                    VirtualMachine vm = virtualCpu.getVm();
-                    int curStatusQuark = ss.getQuarkRelativeAndAdd(getNodeVirtualMachines(), vm.getHostId(),
-                            Long.toString(virtualCpu.getCpuId()), VmAttributes.STATUS);
+                    int curStatusQuark = getVcpuStatusQuark(ss, virtualCpu.getVm(), virtualCpu.getCpuId());
                     value = ss.queryOngoingState(curStatusQuark);
                     int newVal = Math.max(VcpuStateValues.VCPU_UNKNOWN, value.unboxInt());
                     value = TmfStateValue.newValueInt(newVal & ~VcpuStateValues.VCPU_VMM);
@@ -339,31 +398,47 @@ public class VirtualMachineStateProvider extends AbstractTmfStateProvider {
     // Convenience methods for commonly-used attribute tree locations
     // ------------------------------------------------------------------------
 
-    private int getNodeVirtualMachines() {
-        return checkNotNull(getStateSystemBuilder()).getQuarkAbsoluteAndAdd(VmAttributes.VIRTUAL_MACHINES);
+    private int getNodeVirtualMachines(ITmfStateSystemBuilder ss) {
+        int quark = fVirtualMachinesQuark;
+        if (quark == -1) {
+            quark = ss.getQuarkAbsoluteAndAdd(VmAttributes.VIRTUAL_MACHINES);
+            fVirtualMachinesQuark = quark;
+        }
+        return quark;
     }
 
-    private @Nullable HostThread getCurrentHostThread(ITmfEvent event, long ts) {
+    private int getVcpuStatusQuark(ITmfStateSystemBuilder ss, VirtualMachine vm, long cpu) {
+        GuestQuarks guest = fGuestQuarks.get(vm);
+        if (guest == null) {
+            guest = new GuestQuarks(ss.getQuarkRelativeAndAdd(getNodeVirtualMachines(ss), vm.getHostId()));
+            fGuestQuarks.put(vm, guest);
+        }
+        return guest.getStatusQuark(ss, cpu);
+    }
+
+    private @Nullable HostThread getCurrentHostThread(ITmfEvent event, TraceInfo traceInfo, long ts) {
         /* Get the LTTng kernel analysis for the host */
-        String hostId = event.getTrace().getHostId();
-        KernelAnalysis module = TmfExperimentUtils.getAnalysisModuleOfClassForHost(getTrace(), hostId, KernelAnalysis.class);
+        if (!traceInfo.fKernelModuleResolved) {
+            traceInfo.fKernelModule = TmfExperimentUtils.getAnalysisModuleOfClassForHost(getTrace(), traceInfo.fHostId, KernelAnalysis.class);
+            traceInfo.fKernelModuleResolved = true;
+        }
+        KernelAnalysis module = traceInfo.fKernelModule;
         if (module == null) {
             return null;
         }
 
         /* Get the CPU the event is running on */
-        Object cpuObj = TmfTraceUtils.resolveEventAspectOfClassForEvent(event.getTrace(), TmfCpuAspect.class, event);
-        if (cpuObj == null) {
+        int cpu = TmfTraceUtils.resolveCpuOfEvent(event.getTrace(), event);
+        if (cpu == TmfCpuAspect.UNKNOWN_CPU) {
             /* We couldn't find any CPU information, ignore this event */
             return null;
         }
-        Integer cpu = (Integer) cpuObj;
 
         Integer currentTid = KernelThreadInformationProvider.getThreadOnCpu(module, cpu, ts);
         if (currentTid == null) {
             return null;
         }
-        return new HostThread(hostId, currentTid);
+        return new HostThread(traceInfo.fHostId, currentTid);
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,85 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.lttng2.ust.core.tests.analysis.memory;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.eclipse.tracecompass.internal.lttng2.ust.core.memoryusage.LongToLongHashMap;
+import org.junit.Test;
+
+/**
+ * Tests for the {@link LongToLongHashMap}, which tracks the memory zones of
+ * the memory usage analysis
+ */
+@SuppressWarnings("javadoc")
+public class LongToLongHashMapTest {
+
+    private static final long NO_VALUE = LongToLongHashMap.NO_VALUE;
+
+    @Test
+    public void testPutGetRemove() {
+        LongToLongHashMap map = new LongToLongHashMap();
+        assertEquals(0, map.size());
+        assertEquals(NO_VALUE, map.get(0x1000));
+
+        assertEquals(NO_VALUE, map.put(0x1000, 32));
+        assertEquals(NO_VALUE, map.put(0, 8));
+        assertEquals(NO_VALUE, map.put(-1, 16));
+        assertEquals(3, map.size());
+        assertEquals(32, map.get(0x1000));
+        assertEquals(8, map.get(0));
+        assertEquals(16, map.get(-1));
+
+        assertEquals(32, map.put(0x1000, 64));
+        assertEquals(3, map.size());
+
+        assertEquals(64, map.remove(0x1000));
+        assertEquals(8, map.remove(0));
+        assertEquals(NO_VALUE, map.remove(0x1000));
+        assertEquals(NO_VALUE, map.get(0));
+        assertEquals(1, map.size());
+
+        map.clear();
+        assertEquals(0, map.size());
+        assertEquals(NO_VALUE, map.get(-1));
+    }
+
+    /**
+     * Allocate and free aligned pointers, with many collisions and removals
+     * in the middle of the probe sequences, and compare with a HashMap
+     */
+    @Test
+    public void testRandomOperations() {
+        LongToLongHashMap map = new LongToLongHashMap();
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 200000; i++) {
+            long ptr = 0x7f0000000000L + (random.nextInt(5000) << 4);
+            if (random.nextInt(3) == 0) {
+                Long value = expected.remove(ptr);
+                assertEquals(value == null ? NO_VALUE : value.longValue(), map.remove(ptr));
+            } else {
+                long size = random.nextInt(4096) + 1;
+                Long value = expected.put(ptr, size);
+                assertEquals(value == null ? NO_VALUE : value.longValue(), map.put(ptr, size));
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        for (long i = 0; i < 5000; i++) {
+            long ptr = 0x7f0000000000L + (i << 4);
+            Long value = expected.get(ptr);
+            assertEquals(value == null ? NO_VALUE : value.longValue(), map.get(ptr));
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.lttng2.ust.core.tests.analysis.memory;
+
+import static org.junit.Assert.assertEquals;
+
+import org.eclipse.tracecompass.internal.lttng2.ust.core.memoryusage.MemoryUsageStateProvider;
+import org.eclipse.tracecompass.internal.lttng2.ust.core.memoryusage.MemoryUsageStateProvider.LostFreePolicy;
+import org.eclipse.tracecompass.internal.lttng2.ust.core.memoryusage.UstMemoryStrings;
+import org.eclipse.tracecompass.lttng2.ust.core.trace.LttngUstTrace;
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
+import org.eclipse.tracecompass.statesystem.core.StateSystemFactory;
+import org.eclipse.tracecompass.statesystem.core.backend.StateHistoryBackendFactory;
+import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
+import org.eclipse.tracecompass.tmf.core.event.TmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.TmfEventField;
+import org.eclipse.tracecompass.tmf.core.event.TmfEventType;
+import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the {@link MemoryUsageStateProvider}, with synthetic events of a
+ * single thread
+ */
+@SuppressWarnings("javadoc")
+public class MemoryUsageStateProviderTest {
+
+    private static final long TID = 1;
+
+    private LttngUstTrace fTrace;
+    private MemoryUsageStateProvider fProvider;
+    private ITmfStateSystemBuilder fSs;
+    private long fTime;
+
+    @Before
+    public void setUp() {
+        fTrace = new LttngUstTrace();
+        fTime = 0;
+    }
+
+    @After
+    public void tearDown() {
+        if (fProvider != null) {
+            fProvider.dispose();
+        }
+        fTrace.dispose();
+    }
+
+    private void createProvider(LostFreePolicy policy, int maxPointers) {
+        fProvider = new MemoryUsageStateProvider(fTrace, policy, maxPointers);
+        fSs = StateSystemFactory.newStateSystem(StateHistoryBackendFactory.createInMemoryBackend("test", 0));
+        fProvider.assignTargetStateSystem(fSs);
+    }
+
+    private void malloc(long ptr, long size) {
+        processEvent(UstMemoryStrings.MALLOC, ptr, size);
+    }
+
+    private void free(long ptr) {
+        processEvent(UstMemoryStrings.FREE, ptr, 0);
+    }
+
+    private void processEvent(String name, long ptr, long size) {
+        ITmfEventField[] fields = new ITmfEventField[] {
+                new TmfEventField(UstMemoryStrings.FIELD_PTR, ptr, null),
+                new TmfEventField(UstMemoryStrings.FIELD_SIZE, size, null),
+                new TmfEventField(UstMemoryStrings.CONTEXT_VTID, TID, null)
+        };
+        ITmfEventField content = new TmfEventField(ITmfEventField.ROOT_FIELD_ID, null, fields);
+        fTime += 10;
+        fProvider.processEvent(new TmfEvent(fTrace, fTime, new TmfTimestamp(fTime, ITmfTimestamp.NANOSECOND_SCALE),
+                new TmfEventType(name, null), content));
+    }
+
+    private long getMemory() throws AttributeNotFoundException {
+        fProvider.waitForEmptyQueue();
+        int quark = fSs.getQuarkAbsolute(String.valueOf(TID), UstMemoryStrings.UST_MEMORY_MEMORY_ATTRIBUTE);
+        return fSs.queryOngoingState(quark).unboxLong();
+    }
+
+    @Test
+    public void testMallocFree() throws AttributeNotFoundException {
+        createProvider(LostFreePolicy.KEEP, MemoryUsageStateProvider.DEFAULT_MAX_POINTERS);
+        malloc(0x1000, 100);
+        malloc(0x2000, 20);
+        assertEquals(120, getMemory());
+        free(0x1000);
+        assertEquals(20, getMemory());
+        /* A pointer that is not tracked is ignored */
+        free(0x3000);
+        assertEquals(20, getMemory());
+        assertEquals(0, fProvider.getLostFrees());
+        assertEquals(0, fProvider.getUntrackedAllocations());
+    }
+
+    @Test
+    public void testLostFreeKeep() throws AttributeNotFoundException {
+        createProvider(LostFreePolicy.KEEP, MemoryUsageStateProvider.DEFAULT_MAX_POINTERS);
+        malloc(0x1000, 100);
+        /* The free of the first zone was lost, it is counted as leaked */
+        malloc(0x1000, 30);
+        assertEquals(130, getMemory());
+        assertEquals(1, fProvider.getLostFrees());
+        free(0x1000);
+        assertEquals(100, getMemory());
+    }
+
+    @Test
+    public void testLostFreeFree() throws AttributeNotFoundException {
+        createProvider(LostFreePolicy.FREE, MemoryUsageStateProvider.DEFAULT_MAX_POINTERS);
+        malloc(0x1000, 100);
+        /* The free of the first zone was lost, it is counted as freed */
+        malloc(0x1000, 30);
+        assertEquals(30, getMemory());
+        assertEquals(1, fProvider.getLostFrees());
+        free(0x1000);
+        assertEquals(0, getMemory());
+    }
+
+    @Test
+    public void testMaxPointers() throws AttributeNotFoundException {
+        createProvider(LostFreePolicy.KEEP, 2);
+        malloc(0x1000, 10);
+        malloc(0x2000, 10);
+        /* Counted, but not tracked */
+        malloc(0x3000, 10);
+        assertEquals(30, getMemory());
+        assertEquals(1, fProvider.getUntrackedAllocations());
+        free(0x3000);
+        assertEquals(30, getMemory());
+
+        /* A freed pointer makes room for the next one */
+        free(0x1000);
+        malloc(0x4000, 5);
+        assertEquals(25, getMemory());
+        free(0x4000);
+        assertEquals(20, getMemory());
+        assertEquals(1, fProvider.getUntrackedAllocations());
+    }
+}
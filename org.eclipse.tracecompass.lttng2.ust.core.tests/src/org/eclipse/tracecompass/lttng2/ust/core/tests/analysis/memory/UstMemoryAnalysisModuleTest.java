@@ -13,6 +13,7 @@
 package org.eclipse.tracecompass.lttng2.ust.core.tests.analysis.memory;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
@@ -35,14 +36,26 @@ import com.google.common.collect.ImmutableSet;
 public class UstMemoryAnalysisModuleTest {
 
     /** The analysis module */
-    private UstMemoryAnalysisModule fUstAnalysisModule;
+    private TestUstMemoryAnalysisModule fUstAnalysisModule;
+
+    /**
+     * Memory analysis module that gives access to its history file name
+     */
+    private static class TestUstMemoryAnalysisModule extends UstMemoryAnalysisModule {
+        public String getFileName() {
+            return getSsFileName();
+        }
+    }
 
     /**
      * Set-up the test
      */
     @Before
     public void setup() {
-        fUstAnalysisModule = new UstMemoryAnalysisModule();
+        fUstAnalysisModule = new TestUstMemoryAnalysisModule();
+        fUstAnalysisModule.setId(UstMemoryAnalysisModule.ID);
+        fUstAnalysisModule.addParameter(UstMemoryAnalysisModule.PARAM_LOST_FREE_POLICY);
+        fUstAnalysisModule.addParameter(UstMemoryAnalysisModule.PARAM_MAX_POINTERS);
     }
 
     /**
@@ -98,4 +111,31 @@ public class UstMemoryAnalysisModuleTest {
         assertEquals(2, infos.size());
     }
 
+    /**
+     * Test that the history file depends on the parameters, so that a history
+     * built with other parameters is not reused
+     */
+    @Test
+    public void testHistoryFileName() {
+        String defaultName = fUstAnalysisModule.getFileName();
+        assertEquals(UstMemoryAnalysisModule.ID + ".ht", defaultName);
+
+        fUstAnalysisModule.setParameter(UstMemoryAnalysisModule.PARAM_LOST_FREE_POLICY, "free");
+        String freeName = fUstAnalysisModule.getFileName();
+        assertFalse(defaultName.equals(freeName));
+
+        fUstAnalysisModule.setParameter(UstMemoryAnalysisModule.PARAM_MAX_POINTERS, "1000");
+        String maxName = fUstAnalysisModule.getFileName();
+        assertFalse(freeName.equals(maxName));
+
+        fUstAnalysisModule.setParameter(UstMemoryAnalysisModule.PARAM_LOST_FREE_POLICY, "keep");
+        fUstAnalysisModule.setParameter(UstMemoryAnalysisModule.PARAM_MAX_POINTERS, 8 * 1024 * 1024);
+        assertEquals(defaultName, fUstAnalysisModule.getFileName());
+
+        /* An invalid maximum number of pointers is replaced by the default */
+        fUstAnalysisModule.setParameter(UstMemoryAnalysisModule.PARAM_MAX_POINTERS, 0);
+        assertEquals(defaultName, fUstAnalysisModule.getFileName());
+        fUstAnalysisModule.setParameter(UstMemoryAnalysisModule.PARAM_MAX_POINTERS, "-1");
+        assertEquals(defaultName, fUstAnalysisModule.getFileName());
+    }
 }
@@ -0,0 +1,203 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.lttng2.ust.core.memoryusage;
+
+import java.util.Arrays;
+
+/**
+ * A hash map of primitive longs to primitive longs.
+ * <p>
+ * The keys and values are stored in two arrays, with open addressing and
+ * linear probing, so an entry costs two longs instead of a map entry and two
+ * boxed longs. Removals shift the following entries back instead of leaving
+ * tombstones, so a map with many allocations and frees does not degrade. The
+ * map is not thread-safe.
+ */
+public class LongToLongHashMap {
+
+    /** The value returned for keys that are not in the map */
+    public static final long NO_VALUE = Long.MIN_VALUE;
+
+    /* Marks the free slots, the key 0 is kept apart */
+    private static final long EMPTY = 0;
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] fKeys;
+    private long[] fValues;
+    private int fSize = 0;
+
+    private boolean fHasZeroKey = false;
+    private long fZeroValue = NO_VALUE;
+
+    /**
+     * Constructor
+     */
+    public LongToLongHashMap() {
+        this(MIN_CAPACITY / 2);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param expectedSize
+     *            The number of entries the map should hold without growing
+     */
+    public LongToLongHashMap(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity / 2 < expectedSize) {
+            capacity <<= 1;
+        }
+        fKeys = new long[capacity];
+        fValues = new long[capacity];
+    }
+
+    /**
+     * @return The number of entries in the map
+     */
+    public int size() {
+        return fHasZeroKey ? fSize + 1 : fSize;
+    }
+
+    /**
+     * Get the value of a key
+     *
+     * @param key
+     *            The key
+     * @return The value of the key, or {@link #NO_VALUE} if it is not in the
+     *         map
+     */
+    public long get(long key) {
+        if (key == EMPTY) {
+            return fZeroValue;
+        }
+        int slot = findSlot(fKeys, key);
+        return (fKeys[slot] == EMPTY) ? NO_VALUE : fValues[slot];
+    }
+
+    /**
+     * Set the value of a key
+     *
+     * @param key
+     *            The key
+     * @param value
+     *            The value, which should not be {@link #NO_VALUE}
+     * @return The previous value of the key, or {@link #NO_VALUE} if it was
+     *         not in the map
+     */
+    public long put(long key, long value) {
+        if (key == EMPTY) {
+            long previous = fZeroValue;
+            fHasZeroKey = true;
+            fZeroValue = value;
+            return previous;
+        }
+        int slot = findSlot(fKeys, key);
+        if (fKeys[slot] != EMPTY) {
+            long previous = fValues[slot];
+            fValues[slot] = value;
+            return previous;
+        }
+        fKeys[slot] = key;
+        fValues[slot] = value;
+        fSize++;
+        /* Keep the load factor at most 1/2, so the probe sequences stay short */
+        if (fSize * 2 > fKeys.length) {
+            grow();
+        }
+        return NO_VALUE;
+    }
+
+    /**
+     * Remove a key from the map
+     *
+     * @param key
+     *            The key
+     * @return The value of the key, or {@link #NO_VALUE} if it was not in the
+     *         map
+     */
+    public long remove(long key) {
+        if (key == EMPTY) {
+            long previous = fZeroValue;
+            fHasZeroKey = false;
+            fZeroValue = NO_VALUE;
+            return previous;
+        }
+        long[] keys = fKeys;
+        int mask = keys.length - 1;
+        int slot = findSlot(keys, key);
+        if (keys[slot] == EMPTY) {
+            return NO_VALUE;
+        }
+        long previous = fValues[slot];
+        fSize--;
+
+        /*
+         * Move back the following entries of the run that would no longer be
+         * reachable from their home slot once this slot is free
+         */
+        int hole = slot;
+        int next = (slot + 1) & mask;
+        while (keys[next] != EMPTY) {
+            int home = hash(keys[next]) & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                fValues[hole] = fValues[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[hole] = EMPTY;
+        return previous;
+    }
+
+    /**
+     * Remove all the entries of the map, keeping its capacity
+     */
+    public void clear() {
+        Arrays.fill(fKeys, EMPTY);
+        fSize = 0;
+        fHasZeroKey = false;
+        fZeroValue = NO_VALUE;
+    }
+
+    private void grow() {
+        long[] oldKeys = fKeys;
+        long[] oldValues = fValues;
+        long[] keys = new long[oldKeys.length * 2];
+        long[] values = new long[oldKeys.length * 2];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = findSlot(keys, oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+        fKeys = keys;
+        fValues = values;
+    }
+
+    private static int findSlot(long[] keys, long key) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static int hash(long key) {
+        /*
+         * Pointers are aligned, so the low bits are mostly zeros: mix all the
+         * bits before masking
+         */
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -15,16 +15,15 @@ package org.eclipse.tracecompass.internal.lttng2.ust.core.memoryusage;
 
 import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
 import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.tracecompass.internal.lttng2.ust.core.Activator;
 import org.eclipse.tracecompass.lttng2.ust.core.trace.LttngUstTrace;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
 import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
 import org.eclipse.tracecompass.statesystem.core.exceptions.StateValueTypeException;
 import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
-import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
 import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
@@ -34,21 +33,54 @@ import org.eclipse.tracecompass.tmf.core.statesystem.ITmfStateProvider;
 /**
  * State provider to track the memory of the threads using the UST libc wrapper
  * memory events.
+ * <p>
+ * The live memory zones are kept in a primitive map of pointers to sizes, and
+ * the memory of each thread in a primitive array, so long traces of
+ * allocation-heavy applications do not fill the heap with boxed entries. At
+ * most a maximum number of pointers are tracked, see
+ * {@link #MemoryUsageStateProvider(LttngUstTrace, LostFreePolicy, int)}.
  *
  * @author Matthew Khouzam
  * @author Geneviève Bastien
  */
 public class MemoryUsageStateProvider extends AbstractTmfStateProvider {
 
+    /**
+     * What to do with the size of a memory zone that is allocated again while
+     * it is still tracked, meaning that the event of its free was lost
+     */
+    public enum LostFreePolicy {
+        /** Keep the previous size in the memory, as if it was leaked */
+        KEEP,
+        /**
+         * Remove the previous size from the memory of the thread, as if it was
+         * freed just before
+         */
+        FREE
+    }
+
+    /** The default maximum number of tracked pointers */
+    public static final int DEFAULT_MAX_POINTERS = 8 * 1024 * 1024;
+
     /* Version of this state provider */
-    private static final int VERSION = 1;
+    private static final int VERSION = 2;
+
+    private static final long MINUS_ONE = -1;
+    private static final String EMPTY_STRING = ""; //$NON-NLS-1$
+
+    private final LostFreePolicy fLostFreePolicy;
+    private final int fMaxPointers;
 
     /* Maps a pointer to a memory zone to the size of the memory */
-    private final Map<Long, Long> fMemory = new HashMap<>();
+    private final LongToLongHashMap fMemory = new LongToLongHashMap();
 
-    private static final Long MINUS_ONE = Long.valueOf(-1);
-    private static final Long ZERO = Long.valueOf(0);
-    private static final String EMPTY_STRING = ""; //$NON-NLS-1$
+    /* Maps a TID to its index in the arrays of the threads */
+    private final LongToLongHashMap fThreads = new LongToLongHashMap();
+    private int[] fThreadMemoryQuarks = new int[16];
+    private long[] fThreadMemory = new long[16];
+
+    private long fLostFrees = 0;
+    private long fUntrackedAllocations = 0;
 
     /**
      * Constructor
@@ -57,7 +89,28 @@ public class MemoryUsageStateProvider extends AbstractTmfStateProvider {
      *            trace
      */
     public MemoryUsageStateProvider(@NonNull LttngUstTrace trace) {
+        this(trace, LostFreePolicy.KEEP, DEFAULT_MAX_POINTERS);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param trace
+     *            trace
+     * @param lostFreePolicy
+     *            What to do with the memory zones whose free was lost
+     * @param maxPointers
+     *            The maximum number of pointers to track. When it is reached,
+     *            the memory zones allocated after are counted in the memory of
+     *            the threads, but their free is not. It must be positive.
+     */
+    public MemoryUsageStateProvider(@NonNull LttngUstTrace trace, LostFreePolicy lostFreePolicy, int maxPointers) {
         super(trace, "Ust:Memory"); //$NON-NLS-1$
+        if (maxPointers <= 0) {
+            throw new IllegalArgumentException("Invalid maximum number of pointers: " + maxPointers); //$NON-NLS-1$
+        }
+        fLostFreePolicy = lostFreePolicy;
+        fMaxPointers = maxPointers;
     }
 
     @Override
@@ -65,58 +118,58 @@ public class MemoryUsageStateProvider extends AbstractTmfStateProvider {
         String name = event.getType().getName();
         switch (name) {
         case UstMemoryStrings.MALLOC: {
-            Long ptr = (Long) event.getContent().getField(UstMemoryStrings.FIELD_PTR).getValue();
-            if (ZERO.equals(ptr)) {
+            long ptr = getLongField(event, UstMemoryStrings.FIELD_PTR);
+            if (ptr == 0) {
                 return;
             }
-            Long size = (Long) event.getContent().getField(UstMemoryStrings.FIELD_SIZE).getValue();
+            long size = getLongField(event, UstMemoryStrings.FIELD_SIZE);
             setMem(event, ptr, size);
         }
             break;
         case UstMemoryStrings.FREE: {
-            Long ptr = (Long) event.getContent().getField(UstMemoryStrings.FIELD_PTR).getValue();
-            if (ZERO.equals(ptr)) {
+            long ptr = getLongField(event, UstMemoryStrings.FIELD_PTR);
+            if (ptr == 0) {
                 return;
             }
-            setMem(event, ptr, ZERO);
+            setMem(event, ptr, 0);
         }
             break;
         case UstMemoryStrings.CALLOC: {
-            Long ptr = (Long) event.getContent().getField(UstMemoryStrings.FIELD_PTR).getValue();
-            if (ZERO.equals(ptr)) {
+            long ptr = getLongField(event, UstMemoryStrings.FIELD_PTR);
+            if (ptr == 0) {
                 return;
             }
-            Long nmemb = (Long) event.getContent().getField(UstMemoryStrings.FIELD_NMEMB).getValue();
-            Long size = (Long) event.getContent().getField(UstMemoryStrings.FIELD_SIZE).getValue();
+            long nmemb = getLongField(event, UstMemoryStrings.FIELD_NMEMB);
+            long size = getLongField(event, UstMemoryStrings.FIELD_SIZE);
             setMem(event, ptr, size * nmemb);
         }
             break;
         case UstMemoryStrings.REALLOC: {
-            Long ptr = (Long) event.getContent().getField(UstMemoryStrings.FIELD_PTR).getValue();
-            if (ZERO.equals(ptr)) {
+            long ptr = getLongField(event, UstMemoryStrings.FIELD_PTR);
+            if (ptr == 0) {
                 return;
             }
-            Long newPtr = (Long) event.getContent().getField(UstMemoryStrings.FIELD_INPTR).getValue();
-            Long size = (Long) event.getContent().getField(UstMemoryStrings.FIELD_SIZE).getValue();
-            setMem(event, ptr, ZERO);
+            long newPtr = getLongField(event, UstMemoryStrings.FIELD_INPTR);
+            long size = getLongField(event, UstMemoryStrings.FIELD_SIZE);
+            setMem(event, ptr, 0);
             setMem(event, newPtr, size);
         }
             break;
         case UstMemoryStrings.MEMALIGN: {
-            Long ptr = (Long) event.getContent().getField(UstMemoryStrings.FIELD_PTR).getValue();
-            if (ZERO.equals(ptr)) {
+            long ptr = getLongField(event, UstMemoryStrings.FIELD_PTR);
+            if (ptr == 0) {
                 return;
             }
-            Long size = (Long) event.getContent().getField(UstMemoryStrings.FIELD_SIZE).getValue();
+            long size = getLongField(event, UstMemoryStrings.FIELD_SIZE);
             setMem(event, ptr, size);
         }
             break;
         case UstMemoryStrings.POSIX_MEMALIGN: {
-            Long ptr = (Long) event.getContent().getField(UstMemoryStrings.FIELD_OUTPTR).getValue();
-            if (ZERO.equals(ptr)) {
+            long ptr = getLongField(event, UstMemoryStrings.FIELD_OUTPTR);
+            if (ptr == 0) {
                 return;
             }
-            Long size = (Long) event.getContent().getField(UstMemoryStrings.FIELD_SIZE).getValue();
+            long size = getLongField(event, UstMemoryStrings.FIELD_SIZE);
             setMem(event, ptr, size);
         }
             break;
@@ -128,7 +181,7 @@ public class MemoryUsageStateProvider extends AbstractTmfStateProvider {
 
     @Override
     public ITmfStateProvider getNewInstance() {
-        return new MemoryUsageStateProvider(getTrace());
+        return new MemoryUsageStateProvider(getTrace(), fLostFreePolicy, fMaxPointers);
     }
 
     @Override
@@ -141,12 +194,50 @@ public class MemoryUsageStateProvider extends AbstractTmfStateProvider {
         return VERSION;
     }
 
-    private static Long getVtid(ITmfEvent event) {
+    @Override
+    public void dispose() {
+        /* This waits for the events to be handled, so the counts are final */
+        super.dispose();
+        if (fLostFrees > 0 || fUntrackedAllocations > 0) {
+            Activator.getDefault().logWarning("Memory usage of trace " + getTrace().getName() + //$NON-NLS-1$
+                    ": " + fLostFrees + " memory zones were allocated again before being freed, " + //$NON-NLS-1$ //$NON-NLS-2$
+                    fUntrackedAllocations + " were not tracked because " + fMaxPointers + //$NON-NLS-1$
+                    " pointers were already tracked"); //$NON-NLS-1$
+        }
+    }
+
+    /**
+     * Get the number of memory zones that were allocated again while they were
+     * still tracked, meaning that the event of their free was lost. They were
+     * handled according to the {@link LostFreePolicy}.
+     *
+     * @return The number of lost frees
+     */
+    public long getLostFrees() {
+        return fLostFrees;
+    }
+
+    /**
+     * Get the number of memory zones that were not tracked because the maximum
+     * number of pointers was reached. Their size is counted in the memory of
+     * the threads, but their free is not.
+     *
+     * @return The number of untracked allocations
+     */
+    public long getUntrackedAllocations() {
+        return fUntrackedAllocations;
+    }
+
+    private static long getLongField(ITmfEvent event, String name) {
+        return ((Long) event.getContent().getField(name).getValue()).longValue();
+    }
+
+    private static long getVtid(ITmfEvent event) {
         ITmfEventField field = event.getContent().getField(UstMemoryStrings.CONTEXT_VTID);
         if (field == null) {
             return MINUS_ONE;
         }
-        return (Long) field.getValue();
+        return ((Long) field.getValue()).longValue();
     }
 
     private static String getProcname(ITmfEvent event) {
@@ -157,48 +248,74 @@ public class MemoryUsageStateProvider extends AbstractTmfStateProvider {
         return (String) field.getValue();
     }
 
-    private void setMem(ITmfEvent event, Long ptr, Long size) {
-        ITmfStateSystemBuilder ss = checkNotNull(getStateSystemBuilder());
-        long ts = event.getTimestamp().getValue();
-        Long tid = getVtid(event);
-
-        Long memoryDiff = size;
+    private void setMem(ITmfEvent event, long ptr, long size) {
+        long memoryDiff = size;
         /* Size is 0, it means it was deleted */
-        if (ZERO.equals(size)) {
-            Long memSize = fMemory.remove(ptr);
-            if (memSize == null) {
+        if (size == 0) {
+            long memSize = fMemory.remove(ptr);
+            if (memSize == LongToLongHashMap.NO_VALUE) {
                 return;
             }
             memoryDiff = -memSize;
+        } else if (fMemory.size() < fMaxPointers) {
+            long prevSize = fMemory.put(ptr, size);
+            if (prevSize != LongToLongHashMap.NO_VALUE) {
+                fLostFrees++;
+                if (fLostFreePolicy == LostFreePolicy.FREE) {
+                    memoryDiff -= prevSize;
+                }
+            }
         } else {
-            fMemory.put(ptr, size);
+            fUntrackedAllocations++;
+        }
+
+        long ts = event.getTimestamp().getValue();
+        int thread = getThreadIndex(event, ts);
+        fThreadMemory[thread] += memoryDiff;
+        try {
+            checkNotNull(getStateSystemBuilder()).modifyAttribute(ts,
+                    TmfStateValue.newValueLong(fThreadMemory[thread]), fThreadMemoryQuarks[thread]);
+        } catch (AttributeNotFoundException | TimeRangeException | StateValueTypeException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Get the index of the thread of an event in the arrays of the threads,
+     * adding its attributes the first time it is seen
+     */
+    private int getThreadIndex(ITmfEvent event, long ts) {
+        long tid = getVtid(event);
+        long index = fThreads.get(tid);
+        if (index != LongToLongHashMap.NO_VALUE) {
+            return (int) index;
+        }
+
+        ITmfStateSystemBuilder ss = checkNotNull(getStateSystemBuilder());
+        int thread = fThreads.size();
+        if (thread == fThreadMemory.length) {
+            fThreadMemoryQuarks = Arrays.copyOf(fThreadMemoryQuarks, thread * 2);
+            fThreadMemory = Arrays.copyOf(fThreadMemory, thread * 2);
         }
         try {
-            int tidQuark = ss.getQuarkAbsoluteAndAdd(tid.toString());
-            int tidMemQuark = ss.getQuarkRelativeAndAdd(tidQuark, UstMemoryStrings.UST_MEMORY_MEMORY_ATTRIBUTE);
-
-            ITmfStateValue prevMem = ss.queryOngoingState(tidMemQuark);
-            /* First time we set this value */
-            if (prevMem.isNull()) {
-                int procNameQuark = ss.getQuarkRelativeAndAdd(tidQuark, UstMemoryStrings.UST_MEMORY_PROCNAME_ATTRIBUTE);
-                String procName = getProcname(event);
-                /*
-                 * No tid/procname for the event for the event, added to a
-                 * 'others' thread
-                 */
-                if (tid.equals(MINUS_ONE)) {
-                    procName = UstMemoryStrings.OTHERS;
-                }
-                ss.modifyAttribute(ts, TmfStateValue.newValueString(procName), procNameQuark);
-                prevMem = TmfStateValue.newValueLong(0);
+            int tidQuark = ss.getQuarkAbsoluteAndAdd(String.valueOf(tid));
+            int procNameQuark = ss.getQuarkRelativeAndAdd(tidQuark, UstMemoryStrings.UST_MEMORY_PROCNAME_ATTRIBUTE);
+            String procName = getProcname(event);
+            /*
+             * No tid/procname for the event for the event, added to a 'others'
+             * thread
+             */
+            if (tid == MINUS_ONE) {
+                procName = UstMemoryStrings.OTHERS;
             }
-
-            long prevMemValue = prevMem.unboxLong();
-            prevMemValue += memoryDiff.longValue();
-            ss.modifyAttribute(ts, TmfStateValue.newValueLong(prevMemValue), tidMemQuark);
+            ss.modifyAttribute(ts, TmfStateValue.newValueString(procName), procNameQuark);
+            fThreadMemoryQuarks[thread] = ss.getQuarkRelativeAndAdd(tidQuark, UstMemoryStrings.UST_MEMORY_MEMORY_ATTRIBUTE);
         } catch (AttributeNotFoundException | TimeRangeException | StateValueTypeException e) {
             throw new IllegalStateException(e);
         }
+        fThreadMemory[thread] = 0;
+        fThreads.put(tid, thread);
+        return thread;
     }
 
 }
@@ -18,7 +18,9 @@ import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 import java.util.Set;
 
 import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.tracecompass.internal.lttng2.ust.core.Activator;
 import org.eclipse.tracecompass.internal.lttng2.ust.core.memoryusage.MemoryUsageStateProvider;
+import org.eclipse.tracecompass.internal.lttng2.ust.core.memoryusage.MemoryUsageStateProvider.LostFreePolicy;
 import org.eclipse.tracecompass.internal.lttng2.ust.core.memoryusage.UstMemoryStrings;
 import org.eclipse.tracecompass.lttng2.control.core.session.SessionConfigStrings;
 import org.eclipse.tracecompass.lttng2.ust.core.trace.LttngUstTrace;
@@ -44,6 +46,27 @@ public class UstMemoryAnalysisModule extends TmfStateSystemAnalysisModule {
      */
     public static final @NonNull String ID = "org.eclipse.linuxtools.lttng2.ust.analysis.memory"; //$NON-NLS-1$
 
+    /**
+     * Parameter for what to do with the memory zones that are allocated again
+     * before being freed, because the event of their free was lost: "keep" to
+     * count them as leaked, "free" to count them as freed. The default is
+     * "keep".
+     *
+     * @since 1.0
+     */
+    public static final @NonNull String PARAM_LOST_FREE_POLICY = "lost_free_policy"; //$NON-NLS-1$
+
+    /**
+     * Parameter for the maximum number of pointers to memory zones to track,
+     * which bounds the memory used by the analysis. The memory zones allocated
+     * after it is reached are never counted as freed.
+     *
+     * @since 1.0
+     */
+    public static final @NonNull String PARAM_MAX_POINTERS = "max_pointers"; //$NON-NLS-1$
+
+    private static final String HT_EXTENSION = ".ht"; //$NON-NLS-1$
+
     private static final ImmutableSet<String> REQUIRED_EVENTS = ImmutableSet.of(
             UstMemoryStrings.MALLOC,
             UstMemoryStrings.FREE,
@@ -75,7 +98,54 @@ public class UstMemoryAnalysisModule extends TmfStateSystemAnalysisModule {
 
     @Override
     protected ITmfStateProvider createStateProvider() {
-        return new MemoryUsageStateProvider(checkNotNull(getTrace()));
+        return new MemoryUsageStateProvider(checkNotNull(getTrace()), getLostFreePolicy(), getMaxPointers());
+    }
+
+    /**
+     * The state system depends on the parameters, so each combination of
+     * parameters other than the default one has its own history file.
+     *
+     * @since 1.0
+     */
+    @Override
+    protected String getSsFileName() {
+        LostFreePolicy policy = getLostFreePolicy();
+        int maxPointers = getMaxPointers();
+        if (policy == LostFreePolicy.KEEP && maxPointers == MemoryUsageStateProvider.DEFAULT_MAX_POINTERS) {
+            return super.getSsFileName();
+        }
+        return getId() + '-' + policy.name().toLowerCase() + '-' + maxPointers + HT_EXTENSION;
+    }
+
+    private LostFreePolicy getLostFreePolicy() {
+        Object policyParam = getParameter(PARAM_LOST_FREE_POLICY);
+        if (policyParam != null && LostFreePolicy.FREE.name().equalsIgnoreCase(policyParam.toString())) {
+            return LostFreePolicy.FREE;
+        }
+        return LostFreePolicy.KEEP;
+    }
+
+    private int getMaxPointers() {
+        Object maxParam = getParameter(PARAM_MAX_POINTERS);
+        if (maxParam == null) {
+            return MemoryUsageStateProvider.DEFAULT_MAX_POINTERS;
+        }
+        int maxPointers = 0;
+        if (maxParam instanceof Number) {
+            maxPointers = ((Number) maxParam).intValue();
+        } else {
+            try {
+                maxPointers = Integer.parseInt(maxParam.toString());
+            } catch (NumberFormatException e) {
+                /* Invalid, handled below */
+            }
+        }
+        if (maxPointers <= 0) {
+            Activator.getDefault().logWarning("Invalid value of parameter " + PARAM_MAX_POINTERS + //$NON-NLS-1$
+                    " of the memory analysis: " + maxParam + ", using the default"); //$NON-NLS-1$ //$NON-NLS-2$
+            return MemoryUsageStateProvider.DEFAULT_MAX_POINTERS;
+        }
+        return maxPointers;
     }
 
     /**
@@ -22,6 +22,7 @@ import org.junit.runners.Suite;
 @RunWith(Suite.class)
 @Suite.SuiteClasses({
         StateSystemPushPopTest.class,
+        StateSystemQuarkTest.class,
         StateSystemUtilsTest.class,
         org.eclipse.tracecompass.statesystem.core.tests.backend.AllTests.class,
         org.eclipse.tracecompass.statesystem.core.tests.statevalue.AllTests.class
@@ -0,0 +1,129 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.statesystem.core.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.eclipse.tracecompass.internal.statesystem.core.StateSystem;
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
+import org.eclipse.tracecompass.statesystem.core.backend.StateHistoryBackendFactory;
+import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the quark lookups of the state system, with string and
+ * numeric attribute names.
+ */
+@SuppressWarnings("javadoc")
+public class StateSystemQuarkTest {
+
+    private ITmfStateSystemBuilder fSs;
+
+    @Before
+    public void setUp() {
+        fSs = new StateSystem(StateHistoryBackendFactory.createInMemoryBackend("quark-test", 0));
+    }
+
+    @After
+    public void tearDown() {
+        fSs.dispose();
+    }
+
+    @Test
+    public void testNumericAttributes() throws AttributeNotFoundException {
+        int parent = fSs.getQuarkAbsoluteAndAdd("Threads");
+        int byString = fSs.getQuarkRelativeAndAdd(parent, "1234");
+        int byNumber = fSs.getQuarkRelativeAndAdd(parent, 1234);
+        assertEquals(byString, byNumber);
+
+        int negative = fSs.getQuarkRelativeAndAdd(parent, -1);
+        assertEquals(negative, fSs.getQuarkRelative(parent, "-1"));
+        assertEquals(negative, fSs.getQuarkAbsolute("Threads", "-1"));
+        assertEquals(byString, fSs.getQuarkRelative(parent, 1234));
+
+        /* Names that are not the canonical form of a number stay apart */
+        int padded = fSs.getQuarkRelativeAndAdd(parent, "01234");
+        assertNotEquals(byString, padded);
+        assertEquals(byString, fSs.getQuarkRelative(parent, 1234));
+
+        List<Integer> subAttributes = fSs.getSubAttributes(parent, false);
+        assertEquals(3, subAttributes.size());
+        assertEquals(Integer.valueOf(byString), subAttributes.get(0));
+        assertEquals(Integer.valueOf(padded), subAttributes.get(2));
+    }
+
+    @Test
+    public void testManyNumericAttributes() throws AttributeNotFoundException {
+        int parent = fSs.getQuarkAbsoluteAndAdd("CPUs");
+        for (int i = 0; i < 1000; i++) {
+            fSs.getQuarkRelativeAndAdd(parent, i * 7);
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(fSs.getQuarkRelative(parent, String.valueOf(i * 7)),
+                    fSs.getQuarkRelative(parent, i * 7));
+        }
+        assertEquals(1000, fSs.getNbAttributes() - 1);
+    }
+
+    @Test(expected = AttributeNotFoundException.class)
+    public void testNumericAttributeNotFound() throws AttributeNotFoundException {
+        int parent = fSs.getQuarkAbsoluteAndAdd("CPUs");
+        fSs.getQuarkRelativeAndAdd(parent, 1);
+        fSs.getQuarkRelative(parent, 2);
+    }
+
+    @Test
+    public void testConcurrentAdd() throws Exception {
+        final int parent = fSs.getQuarkAbsoluteAndAdd("Threads");
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<int[]>> results = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                results.add(executor.submit(new Callable<int[]>() {
+                    @Override
+                    public int[] call() {
+                        int[] quarks = new int[500];
+                        for (int i = 0; i < quarks.length; i++) {
+                            quarks[i] = fSs.getQuarkRelativeAndAdd(parent, i);
+                        }
+                        return quarks;
+                    }
+                }));
+            }
+            int[] expected = results.get(0).get();
+            for (Future<int[]> result : results) {
+                int[] quarks = result.get();
+                for (int i = 0; i < quarks.length; i++) {
+                    assertEquals(expected[i], quarks[i]);
+                }
+            }
+            Set<Integer> distinct = new HashSet<>();
+            for (int quark : expected) {
+                distinct.add(quark);
+            }
+            assertEquals(500, distinct.size());
+            assertEquals(501, fSs.getNbAttributes());
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -17,12 +17,15 @@ package org.eclipse.tracecompass.internal.statesystem.core;
 import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 
 import java.io.PrintWriter;
-import java.util.Collections;
-import java.util.LinkedHashMap;
+import java.util.ArrayList;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
 
 import com.google.common.collect.ImmutableList;
 
@@ -38,13 +41,34 @@ import com.google.common.collect.ImmutableList;
  */
 public final class Attribute {
 
+    private static final int INITIAL_NUMERIC_TABLE_SIZE = 8;
+
     private final Attribute parent;
     private final @NonNull String name;
     private final int quark;
 
-    /** The sub-attributes (<basename, attribute>) of this attribute */
+    /** The value of the name, if it is the string representation of a long */
+    private final boolean hasNumericName;
+    private final long numericName;
+
+    /**
+     * The sub-attributes (<basename, attribute>) of this attribute. Lookups do
+     * not lock, sub-attributes are only added by the attribute tree, which
+     * serializes the additions.
+     */
     private final Map<String, Attribute> subAttributes;
 
+    /** The sub-attributes in the order they were added, guarded by itself */
+    private final List<Attribute> subAttributeList;
+
+    /**
+     * Open-addressing hash table of the sub-attributes with a numeric name,
+     * by the value of their name. It is replaced by a larger table when it is
+     * half full, so lookups do not lock either.
+     */
+    private volatile @Nullable AtomicReferenceArray<Attribute> numericSubAttributes = null;
+    private int nbNumericSubAttributes = 0;
+
     /**
      * Constructor
      *
@@ -60,7 +84,44 @@ public final class Attribute {
         this.parent = parent;
         this.quark = quark;
         this.name = name;
-        this.subAttributes = Collections.synchronizedMap(new LinkedHashMap<String, Attribute>());
+        this.subAttributes = new ConcurrentHashMap<>(4);
+        this.subAttributeList = new ArrayList<>(1);
+
+        long value = 0;
+        boolean numeric = false;
+        if (isNumericName(name)) {
+            try {
+                value = Long.parseLong(name);
+                numeric = true;
+            } catch (NumberFormatException e) {
+                /* Too large for a long, only a string name */
+            }
+        }
+        this.hasNumericName = numeric;
+        this.numericName = value;
+    }
+
+    /**
+     * Check if a name is the string representation of a number, as returned
+     * by {@link String#valueOf(long)}, ignoring overflows.
+     */
+    private static boolean isNumericName(String name) {
+        int length = name.length();
+        int start = (length > 1 && name.charAt(0) == '-') ? 1 : 0;
+        if (length == start || length - start > 19) {
+            return false;
+        }
+        /* No leading zero */
+        if (name.charAt(start) == '0' && length > 1) {
+            return false;
+        }
+        for (int i = start; i < length; i++) {
+            char c = name.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
     }
 
     // ------------------------------------------------------------------------
@@ -91,7 +152,9 @@ public final class Attribute {
      * @return The child attributes.
      */
     public Iterable<Attribute> getSubAttributes() {
-        return ImmutableList.copyOf(subAttributes.values());
+        synchronized (subAttributeList) {
+            return ImmutableList.copyOf(subAttributeList);
+        }
     }
 
     /**
@@ -120,6 +183,36 @@ public final class Attribute {
         return this.getSubAttributeNode(path, 0);
     }
 
+    /**
+     * Get the sub-attribute whose name is the string representation of a
+     * number, without formatting the number.
+     *
+     * @param numericPath
+     *            The number that is the name of the sub-attribute
+     * @return The sub-attribute, or null if it does not exist
+     */
+    public @Nullable Attribute getSubAttributeNode(long numericPath) {
+        AtomicReferenceArray<Attribute> table = numericSubAttributes;
+        if (table == null) {
+            return null;
+        }
+        int mask = table.length() - 1;
+        for (int i = hash(numericPath) & mask;; i = (i + 1) & mask) {
+            Attribute attribute = table.get(i);
+            if (attribute == null) {
+                return null;
+            }
+            if (attribute.numericName == numericPath) {
+                return attribute;
+            }
+        }
+    }
+
+    private static int hash(long value) {
+        int h = (int) (value ^ (value >>> 32)) * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
     /**
      * "Inner" part of the previous public method, which is used recursively. To
      * avoid having to copy sub-arrays to pass down, we just track where we are
@@ -163,9 +256,46 @@ public final class Attribute {
         if (newSubAttribute == null) {
             throw new IllegalArgumentException();
         }
+        synchronized (subAttributeList) {
+            subAttributeList.add(newSubAttribute);
+        }
+        if (newSubAttribute.hasNumericName) {
+            addNumericSubAttribute(newSubAttribute);
+        }
         subAttributes.put(newSubAttribute.getName(), newSubAttribute);
     }
 
+    private synchronized void addNumericSubAttribute(Attribute attribute) {
+        AtomicReferenceArray<Attribute> table = numericSubAttributes;
+        if (table == null || (nbNumericSubAttributes + 1) * 2 > table.length()) {
+            /* Fill a larger table before publishing it */
+            int length = (table == null) ? INITIAL_NUMERIC_TABLE_SIZE : table.length() * 2;
+            AtomicReferenceArray<Attribute> newTable = new AtomicReferenceArray<>(length);
+            if (table != null) {
+                for (int i = 0; i < table.length(); i++) {
+                    Attribute child = table.get(i);
+                    if (child != null) {
+                        insertNumeric(newTable, child);
+                    }
+                }
+            }
+            insertNumeric(newTable, attribute);
+            numericSubAttributes = newTable;
+        } else {
+            insertNumeric(table, attribute);
+        }
+        nbNumericSubAttributes++;
+    }
+
+    private static void insertNumeric(AtomicReferenceArray<Attribute> table, Attribute attribute) {
+        int mask = table.length() - 1;
+        int i = hash(attribute.numericName) & mask;
+        while (table.get(i) != null) {
+            i = (i + 1) & mask;
+        }
+        table.set(i, attribute);
+    }
+
     /**
      * Get a sub-attribute from this node's sub-attributes
      *
@@ -177,6 +307,9 @@ public final class Attribute {
      * @return The requested attribute
      */
     private Attribute getSubAttributeNode(String[] path, int index) {
+        if (path[index] == null) {
+            return null;
+        }
         final Attribute nextNode = subAttributes.get(path[index]);
 
         if (nextNode == null) {
@@ -26,7 +26,6 @@ import java.io.PrintWriter;
 import java.io.RandomAccessFile;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
 
 import org.eclipse.jdt.annotation.NonNull;
@@ -37,6 +36,11 @@ import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundExc
  * Each node of this tree is both like a file and a directory in the
  * "file system".
  *
+ * Looking up existing attributes does not lock, only the addition of new
+ * attributes is serialized. New attributes are published in the quark array
+ * before being linked to their parent, so an attribute found by a lookup
+ * always has a valid quark.
+ *
  * @author alexmont
  *
  */
@@ -45,10 +49,18 @@ public final class AttributeTree {
     /* "Magic number" for attribute tree files or file sections */
     private static final int ATTRIB_TREE_MAGIC_NUMBER = 0x06EC3671;
 
+    private static final int INITIAL_CAPACITY = 64;
+
     private final StateSystem ss;
-    private final List<Attribute> attributeList;
     private final Attribute attributeTreeRoot;
 
+    /*
+     * The attributes by quark. The array is only written while holding the
+     * lock of the tree, and replaced by a larger copy when it is full.
+     */
+    private volatile Attribute[] attributeArray = new Attribute[INITIAL_CAPACITY];
+    private volatile int nbAttributes = 0;
+
     /**
      * Standard constructor, create a new empty Attribute Tree
      *
@@ -57,7 +69,6 @@ public final class AttributeTree {
      */
     public AttributeTree(StateSystem ss) {
         this.ss = ss;
-        this.attributeList = Collections.synchronizedList(new ArrayList<Attribute>());
         this.attributeTreeRoot = new Attribute(null, "root", -1); //$NON-NLS-1$
     }
 
@@ -166,11 +177,14 @@ public final class AttributeTree {
             raf.writeInt(-8000);
 
             /* Write the number of entries */
-            raf.writeInt(this.attributeList.size());
+            int nb = nbAttributes;
+            Attribute[] attributes = attributeArray;
+            raf.writeInt(nb);
             total += 12;
 
             /* Write the attributes themselves */
-            for (Attribute entry : this.attributeList) {
+            for (int i = 0; i < nb; i++) {
+                Attribute entry = attributes[i];
                 curByteArray = entry.getFullAttributeName().getBytes();
                 if (curByteArray.length > Byte.MAX_VALUE) {
                     throw new IOException("Attribute with name \"" //$NON-NLS-1$
@@ -206,7 +220,32 @@ public final class AttributeTree {
      * @return The current number of attributes in the tree
      */
     public int getNbAttributes() {
-        return attributeList.size();
+        return nbAttributes;
+    }
+
+    /**
+     * Get the attribute of a quark
+     *
+     * @param quark
+     *            The quark
+     * @return The attribute
+     * @throws IndexOutOfBoundsException
+     *             If there is no attribute with that quark
+     */
+    private Attribute getAttribute(int quark) {
+        /* Read the size first, the array is at least as recent */
+        int nb = nbAttributes;
+        if (quark < 0 || quark >= nb) {
+            throw new IndexOutOfBoundsException("Quark: " + quark + ", Size: " + nb); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        return attributeArray[quark];
+    }
+
+    private Attribute getStartingNode(int startingNodeQuark) {
+        if (startingNodeQuark == -1) {
+            return attributeTreeRoot;
+        }
+        return getAttribute(startingNodeQuark);
     }
 
     /**
@@ -234,11 +273,7 @@ public final class AttributeTree {
         }
 
         /* Get the "starting node" */
-        if (startingNodeQuark == -1) {
-            prevNode = attributeTreeRoot;
-        } else {
-            prevNode = attributeList.get(startingNodeQuark);
-        }
+        prevNode = getStartingNode(startingNodeQuark);
 
         int knownQuark = prevNode.getSubAttributeQuark(subPath);
         if (knownQuark == -1) {
@@ -255,6 +290,30 @@ public final class AttributeTree {
         return knownQuark;
     }
 
+    /**
+     * Get the quark of a sub-attribute whose name is the string representation
+     * of a number. No new attribute will be created : if the sub-attribute
+     * does not exist, throw an error.
+     *
+     * @param startingNodeQuark
+     *            The quark of the parent attribute. Use '-1' to start at the
+     *            root node.
+     * @param numericPath
+     *            The number that is the name of the sub-attribute
+     * @return The quark of the sub-attribute
+     * @throws AttributeNotFoundException
+     *             If the sub-attribute was not found
+     */
+    public int getQuarkDontAdd(int startingNodeQuark, long numericPath)
+            throws AttributeNotFoundException {
+        assert (startingNodeQuark >= -1);
+        Attribute node = getStartingNode(startingNodeQuark).getSubAttributeNode(numericPath);
+        if (node == null) {
+            throw new AttributeNotFoundException(ss.getSSID() + " Quark:" + startingNodeQuark + ", SubPath:" + numericPath); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        return node.getQuark();
+    }
+
     /**
      * Get the quark of a given attribute path. If that specified path does not
      * exist, it will be created (and the quark that was just created will be
@@ -267,46 +326,88 @@ public final class AttributeTree {
      *            The path to the attribute, relative to the starting node.
      * @return The quark of the attribute represented by the path
      */
-    public synchronized int getQuarkAndAdd(int startingNodeQuark, String... subPath) {
-        // FIXME synchronized here is probably quite costly... maybe only locking
-        // the "for" would be enough?
+    public int getQuarkAndAdd(int startingNodeQuark, String... subPath) {
         assert (subPath != null && subPath.length > 0);
         assert (startingNodeQuark >= -1);
 
-        Attribute nextNode = null;
-        Attribute prevNode;
+        Attribute prevNode = getStartingNode(startingNodeQuark);
 
-        /* Get the "starting node" */
-        if (startingNodeQuark == -1) {
-            prevNode = attributeTreeRoot;
-        } else {
-            prevNode = attributeList.get(startingNodeQuark);
+        int knownQuark = prevNode.getSubAttributeQuark(subPath);
+        if (knownQuark != -1) {
+            /*
+             * The attribute was already existing, return the quark of that
+             * attribute
+             */
+            return knownQuark;
         }
 
-        int knownQuark = prevNode.getSubAttributeQuark(subPath);
-        if (knownQuark == -1) {
+        synchronized (this) {
             /*
              * The attribute was not in the table previously, and we want to add
-             * it
+             * it. Another thread may have added part of the path in the
+             * meantime.
              */
             for (String curDirectory : subPath) {
-                nextNode = prevNode.getSubAttributeNode(curDirectory);
+                Attribute nextNode = prevNode.getSubAttributeNode(curDirectory);
                 if (nextNode == null) {
                     /* This is where we need to start adding */
-                    nextNode = new Attribute(prevNode, checkNotNull(curDirectory), attributeList.size());
-                    prevNode.addSubAttribute(nextNode);
-                    attributeList.add(nextNode);
-                    ss.addEmptyAttribute();
+                    nextNode = addAttribute(prevNode, checkNotNull(curDirectory));
                 }
                 prevNode = nextNode;
             }
-            return attributeList.size() - 1;
+            return prevNode.getQuark();
         }
-        /*
-         * The attribute was already existing, return the quark of that
-         * attribute
-         */
-        return knownQuark;
+    }
+
+    /**
+     * Get the quark of a sub-attribute whose name is the string representation
+     * of a number. If the sub-attribute does not exist, it will be created.
+     * This avoids formatting the number to look up an existing attribute.
+     *
+     * @param startingNodeQuark
+     *            The quark of the parent attribute. Use '-1' to start at the
+     *            root node.
+     * @param numericPath
+     *            The number that is the name of the sub-attribute
+     * @return The quark of the sub-attribute
+     */
+    public int getQuarkAndAdd(int startingNodeQuark, long numericPath) {
+        assert (startingNodeQuark >= -1);
+
+        Attribute parent = getStartingNode(startingNodeQuark);
+        Attribute node = parent.getSubAttributeNode(numericPath);
+        if (node != null) {
+            return node.getQuark();
+        }
+
+        synchronized (this) {
+            node = parent.getSubAttributeNode(numericPath);
+            if (node == null) {
+                node = addAttribute(parent, checkNotNull(String.valueOf(numericPath)));
+            }
+            return node.getQuark();
+        }
+    }
+
+    /**
+     * Create a new attribute. Must be called while holding the lock of the
+     * tree.
+     */
+    private Attribute addAttribute(Attribute parent, @NonNull String name) {
+        int quark = nbAttributes;
+        Attribute attribute = new Attribute(parent, name, quark);
+        Attribute[] attributes = attributeArray;
+        if (quark == attributes.length) {
+            attributes = Arrays.copyOf(attributes, quark * 2);
+        }
+        attributes[quark] = attribute;
+        attributeArray = attributes;
+        ss.addEmptyAttribute();
+        nbAttributes = quark + 1;
+
+        /* Make the attribute reachable only once its quark is valid */
+        parent.addSubAttribute(attribute);
+        return attribute;
     }
 
     /**
@@ -329,16 +430,12 @@ public final class AttributeTree {
         Attribute startingAttribute;
 
         /* Check if the quark is valid */
-        if (attributeQuark < -1 || attributeQuark >= attributeList.size()) {
+        if (attributeQuark < -1 || attributeQuark >= nbAttributes) {
             throw new AttributeNotFoundException(ss.getSSID() + " Quark:" + attributeQuark); //$NON-NLS-1$
         }
 
         /* Set up the node from which we'll start the search */
-        if (attributeQuark == -1) {
-            startingAttribute = attributeTreeRoot;
-        } else {
-            startingAttribute = attributeList.get(attributeQuark);
-        }
+        startingAttribute = getStartingNode(attributeQuark);
 
         /* Iterate through the sub-attributes and add them to the list */
         addSubAttributes(listOfChildren, startingAttribute, recursive);
@@ -359,7 +456,7 @@ public final class AttributeTree {
         if (quark == -1) {
             return quark;
         }
-        return attributeList.get(quark).getParentAttributeQuark();
+        return getAttribute(quark).getParentAttributeQuark();
     }
 
     private void addSubAttributes(List<Integer> list, Attribute curAttribute,
@@ -380,7 +477,7 @@ public final class AttributeTree {
      * @return The (base) name of the attribute
      */
     public @NonNull String getAttributeName(int quark) {
-        return attributeList.get(quark).getName();
+        return getAttribute(quark).getName();
     }
 
     /**
@@ -391,7 +488,7 @@ public final class AttributeTree {
      * @return The full path name of the attribute
      */
     public @NonNull String getFullAttributeName(int quark) {
-        return attributeList.get(quark).getFullAttributeName();
+        return getAttribute(quark).getFullAttributeName();
     }
 
     /**
@@ -403,7 +500,7 @@ public final class AttributeTree {
      * @return The path elements of the full path
      */
     public @NonNull String[] getFullAttributePathArray(int quark) {
-        return attributeList.get(quark).getFullAttribute();
+        return getAttribute(quark).getFullAttribute();
     }
 
     /**
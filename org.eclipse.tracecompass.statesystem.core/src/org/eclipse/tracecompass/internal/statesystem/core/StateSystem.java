@@ -253,6 +253,17 @@ public class StateSystem implements ITmfStateSystemBuilder {
         return getAttributeTree().getQuarkAndAdd(startingNodeQuark, subPath);
     }
 
+    @Override
+    public int getQuarkRelative(int startingNodeQuark, long subAttribute)
+            throws AttributeNotFoundException {
+        return getAttributeTree().getQuarkDontAdd(startingNodeQuark, subAttribute);
+    }
+
+    @Override
+    public int getQuarkRelativeAndAdd(int startingNodeQuark, long subAttribute) {
+        return getAttributeTree().getQuarkAndAdd(startingNodeQuark, subAttribute);
+    }
+
     @Override
     public List<Integer> getSubAttributes(int quark, boolean recursive)
             throws AttributeNotFoundException {
@@ -426,7 +437,7 @@ public class StateSystem implements ITmfStateSystemBuilder {
         }
 
         stackDepth++;
-        subAttributeQuark = getQuarkRelativeAndAdd(attributeQuark, String.valueOf(stackDepth));
+        subAttributeQuark = getQuarkRelativeAndAdd(attributeQuark, stackDepth);
 
         modifyAttribute(t, TmfStateValue.newValueInt(stackDepth), attributeQuark);
         modifyAttribute(t, value, subAttributeQuark);
@@ -464,7 +475,7 @@ public class StateSystem implements ITmfStateSystemBuilder {
         }
 
         /* The attribute should already exist at this point */
-        int subAttributeQuark = getQuarkRelative(attributeQuark, String.valueOf(stackDepth));
+        int subAttributeQuark = getQuarkRelative(attributeQuark, stackDepth);
         ITmfStateValue poppedValue = queryOngoingState(subAttributeQuark);
 
         /* Update the state value of the stack-attribute */
@@ -159,6 +159,28 @@ public interface ITmfStateSystem {
     int getQuarkRelative(int startingNodeQuark, String... subPath)
             throws AttributeNotFoundException;
 
+    /**
+     * "Relative path" quark-getting method for a sub-attribute whose name is
+     * a number, like a CPU or thread ID. It is equivalent to
+     * <code>getQuarkRelative(startingNodeQuark, String.valueOf(subAttribute))</code>
+     * but does not need to format the number.
+     *
+     * This version will NOT create any new attributes.
+     *
+     * @param startingNodeQuark
+     *            The quark of the parent attribute
+     * @param subAttribute
+     *            The number that is the name of the sub-attribute
+     * @return The matching quark, if it existed
+     * @throws IndexOutOfBoundsException
+     *             If the starting node quark is out of range
+     * @throws AttributeNotFoundException
+     *             If the sub-attribute does not exist
+     * @since 1.0
+     */
+    int getQuarkRelative(int startingNodeQuark, long subAttribute)
+            throws AttributeNotFoundException;
+
     /**
      * Return the sub-attributes of the target attribute, as a List of quarks.
      *
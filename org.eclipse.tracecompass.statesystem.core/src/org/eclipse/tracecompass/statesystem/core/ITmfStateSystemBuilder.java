@@ -82,6 +82,24 @@ public interface ITmfStateSystemBuilder extends ITmfStateSystem {
      */
     int getQuarkRelativeAndAdd(int startingNodeQuark, String... subPath);
 
+    /**
+     * "Relative path" quark-getting method for a sub-attribute whose name is
+     * a number, like a CPU or thread ID. It is equivalent to
+     * <code>getQuarkRelativeAndAdd(startingNodeQuark, String.valueOf(subAttribute))</code>
+     * but does not need to format the number when the attribute exists.
+     *
+     * This version WILL create the sub-attribute if it does not exist.
+     *
+     * @param startingNodeQuark
+     *            The quark of the parent attribute
+     * @param subAttribute
+     *            The number that is the name of the sub-attribute
+     * @return The quark of the sub-attribute (which either existed or just
+     *         got created)
+     * @since 1.0
+     */
+    int getQuarkRelativeAndAdd(int startingNodeQuark, long subAttribute);
+
     /**
      * @name State-changing methods
      */
@@ -78,9 +78,14 @@ public class TmfXmlEventHandler {
         }
     }
 
-    private boolean appliesToEvent(ITmfEvent event) {
-        String eventName = event.getType().getName();
-
+    /**
+     * Check if this event handler handles the events of a type
+     *
+     * @param eventName
+     *            The name of the event type
+     * @return True if the events of this type are handled
+     */
+    public boolean appliesToEventType(String eventName) {
         /* test for full name */
         if (eventName.equals(fName)) {
             return true;
@@ -101,10 +106,21 @@ public class TmfXmlEventHandler {
      *            The trace event to handle
      */
     public void handleEvent(ITmfEvent event) {
-        if (!appliesToEvent(event)) {
+        if (!appliesToEventType(event.getType().getName())) {
             return;
         }
+        applyStateChanges(event);
+    }
 
+    /**
+     * Apply all state changes to modify the state system for an event, without
+     * checking its type. The caller must have checked that the handler
+     * applies to the event with {@link #appliesToEventType(String)}.
+     *
+     * @param event
+     *            The trace event to handle
+     */
+    public void applyStateChanges(ITmfEvent event) {
         /* Process all state changes */
         for (TmfXmlStateChange stateChange : fStateChangeList) {
             try {
@@ -12,6 +12,7 @@
 
 package org.eclipse.tracecompass.tmf.analysis.xml.core.stateprovider;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -54,6 +55,13 @@ public class XmlStateProvider extends AbstractTmfStateProvider implements IXmlSt
     /** Map for defined values */
     private final Map<String, String> fDefinedValues = new HashMap<>();
 
+    /*
+     * The event handlers that apply to each event type, by event type index,
+     * and the event type index of each event type name.
+     */
+    private final List<TmfXmlEventHandler[]> fEventTypeHandlers = new ArrayList<>();
+    private final Map<String, Integer> fEventTypeIndexes = new HashMap<>();
+
     // ------------------------------------------------------------------------
     // Constructor
     // ------------------------------------------------------------------------
@@ -144,9 +152,34 @@ public class XmlStateProvider extends AbstractTmfStateProvider implements IXmlSt
 
     @Override
     protected void eventHandle(ITmfEvent event) {
-        for (TmfXmlEventHandler eventHandler : fEventHandlers) {
-            eventHandler.handleEvent(event);
+        int index = getEventTypeIndex(event);
+        if (index == NO_EVENT_TYPE_INDEX) {
+            return;
+        }
+        for (TmfXmlEventHandler eventHandler : fEventTypeHandlers.get(index)) {
+            eventHandler.applyStateChanges(event);
+        }
+    }
+
+    @Override
+    protected int resolveEventTypeIndex(String eventTypeName) {
+        Integer index = fEventTypeIndexes.get(eventTypeName);
+        if (index == null) {
+            List<TmfXmlEventHandler> handlers = new ArrayList<>();
+            for (TmfXmlEventHandler eventHandler : fEventHandlers) {
+                if (eventHandler.appliesToEventType(eventTypeName)) {
+                    handlers.add(eventHandler);
+                }
+            }
+            if (handlers.isEmpty()) {
+                index = NO_EVENT_TYPE_INDEX;
+            } else {
+                index = fEventTypeHandlers.size();
+                fEventTypeHandlers.add(handlers.toArray(new TmfXmlEventHandler[handlers.size()]));
+            }
+            fEventTypeIndexes.put(eventTypeName, index);
         }
+        return index;
     }
 
     @Override
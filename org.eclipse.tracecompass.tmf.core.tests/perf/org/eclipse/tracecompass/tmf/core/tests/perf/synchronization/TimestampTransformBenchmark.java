@@ -35,6 +35,9 @@ public class TimestampTransformBenchmark {
     /** Number of transformations done for each transform: 50 millions */
     private static final long NB_TRANSFORMATIONS = 50000000L;
 
+    /** Number of timestamps transformed at once by the batch transform */
+    private static final int BATCH_SIZE = 1000;
+
     /**
      * Test the timestamp transform performances
      */
@@ -53,6 +56,24 @@ public class TimestampTransformBenchmark {
         doTimestampTransformRun("Linear transform with larger slope and negative offset", transform, 5);
     }
 
+    /**
+     * Test the performance of the batch transform of timestamps
+     */
+    @Test
+    public void testBatchTimestampTransformPerformance() {
+        ITmfTimestampTransform transform = TimestampTransformFactory.getDefaultTransform();
+        doBatchTransformRun("Identity transform (batch)", transform, 10);
+
+        transform = TimestampTransformFactory.createWithOffset(123456789);
+        doBatchTransformRun("Transform with offset (batch)", transform, 10);
+
+        transform = TimestampTransformFactory.createLinear(Math.PI, 1234);
+        doBatchTransformRun("Linear transform (batch)", transform, 5);
+
+        transform = TimestampTransformFactory.createLinear(10000.1234545565635, -4312278758437L);
+        doBatchTransformRun("Linear transform with larger slope and negative offset (batch)", transform, 5);
+    }
+
     /**
      * Benchmark to compare the classic and fast timestamp transform.
      *
@@ -96,4 +117,26 @@ public class TimestampTransformBenchmark {
         pm.commit();
     }
 
+    private static void doBatchTransformRun(String testName, ITmfTimestampTransform xform, long loopCount) {
+        Performance perf = Performance.getDefault();
+        PerformanceMeter pm = perf.createPerformanceMeter(TEST_ID + testName);
+        perf.tagAsSummary(pm, TEST_SUMMARY + testName, Dimension.CPU_TIME);
+
+        long[] timestamps = new long[BATCH_SIZE];
+        for (int x = 0; x < loopCount; x++) {
+            /* Same timestamps as the transform of each timestamp */
+            long time = (long) Math.pow(10, 18);
+            pm.start();
+            for (long i = 0; i < NB_TRANSFORMATIONS; i += BATCH_SIZE) {
+                for (int j = 0; j < BATCH_SIZE; j++) {
+                    timestamps[j] = time;
+                    time += 200;
+                }
+                xform.transform(timestamps, 0, BATCH_SIZE);
+            }
+            pm.stop();
+        }
+        pm.commit();
+    }
+
 }
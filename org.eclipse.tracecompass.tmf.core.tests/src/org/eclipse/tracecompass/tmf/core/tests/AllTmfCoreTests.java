@@ -27,12 +27,16 @@ import org.junit.runner.RunWith;
     org.eclipse.tracecompass.tmf.core.tests.component.AllTests.class,
     org.eclipse.tracecompass.tmf.core.tests.event.AllTests.class,
     org.eclipse.tracecompass.tmf.core.tests.event.lookup.AllTests.class,
+    org.eclipse.tracecompass.tmf.core.tests.event.matching.AllTests.class,
     org.eclipse.tracecompass.tmf.core.tests.filter.AllTests.class,
+    org.eclipse.tracecompass.tmf.core.tests.io.AllTests.class,
     org.eclipse.tracecompass.tmf.core.tests.model.AllTests.class,
+    org.eclipse.tracecompass.tmf.core.tests.parsers.custom.AllTests.class,
     org.eclipse.tracecompass.tmf.core.tests.request.AllTests.class,
     org.eclipse.tracecompass.tmf.core.tests.signal.AllTests.class,
     org.eclipse.tracecompass.tmf.core.tests.statesystem.AllTests.class,
     org.eclipse.tracecompass.tmf.core.tests.statesystem.mipmap.AllTests.class,
+    org.eclipse.tracecompass.tmf.core.tests.statistics.AllTests.class,
     org.eclipse.tracecompass.tmf.core.tests.synchronization.AllTests.class,
     org.eclipse.tracecompass.tmf.core.tests.trace.AllTests.class,
     org.eclipse.tracecompass.tmf.core.tests.trace.indexer.AllTests.class,
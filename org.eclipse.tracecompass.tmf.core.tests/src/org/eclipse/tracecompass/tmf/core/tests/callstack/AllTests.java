@@ -20,7 +20,9 @@ import org.junit.runners.Suite;
  */
 @RunWith(Suite.class)
 @Suite.SuiteClasses({
-        FunctionNameMapperTest.class
+        FlatCallStackTest.class,
+        FunctionNameMapperTest.class,
+        SymbolTableTest.class
 })
 public class AllTests {
 
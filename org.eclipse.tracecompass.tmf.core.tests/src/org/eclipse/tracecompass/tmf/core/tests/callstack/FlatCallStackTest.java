@@ -0,0 +1,292 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.callstack;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
+import org.eclipse.tracecompass.statesystem.core.StateSystemFactory;
+import org.eclipse.tracecompass.statesystem.core.backend.IStateHistoryBackend;
+import org.eclipse.tracecompass.statesystem.core.backend.StateHistoryBackendFactory;
+import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateValueTypeException;
+import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
+import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
+import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
+import org.eclipse.tracecompass.tmf.core.callstack.CallStackStateProvider;
+import org.eclipse.tracecompass.tmf.core.callstack.FlatCallStack;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link FlatCallStack} class
+ */
+public class FlatCallStackTest {
+
+    private static final String[] THREADS_PATTERN = { CallStackStateProvider.THREADS, "*" };
+    private static final String[] CALL_STACK_PATH = { CallStackStateProvider.CALL_STACK };
+
+    private ITmfStateSystemBuilder fStateSystem;
+    private FlatCallStack fCalls;
+
+    /**
+     * Build a call stack state system with two threads, and its calls
+     */
+    @Before
+    public void setUp() {
+        try {
+            IStateHistoryBackend backend = StateHistoryBackendFactory.createInMemoryBackend("flat-call-stack-test", 0);
+            fStateSystem = StateSystemFactory.newStateSystem(backend);
+
+            int thread = fStateSystem.getQuarkAbsoluteAndAdd(CallStackStateProvider.THREADS, "1000");
+            fStateSystem.modifyAttribute(0, TmfStateValue.newValueLong(1000), thread);
+            int stack = fStateSystem.getQuarkRelativeAndAdd(thread, CallStackStateProvider.CALL_STACK);
+            fStateSystem.pushAttribute(10, TmfStateValue.newValueString("main"), stack);
+            fStateSystem.pushAttribute(20, TmfStateValue.newValueString("a"), stack);
+            fStateSystem.popAttribute(40, stack);
+            fStateSystem.pushAttribute(50, TmfStateValue.newValueString("b"), stack);
+            fStateSystem.pushAttribute(55, TmfStateValue.newValueString("a"), stack);
+            fStateSystem.popAttribute(60, stack);
+            fStateSystem.popAttribute(70, stack);
+            fStateSystem.popAttribute(100, stack);
+            fStateSystem.pushAttribute(110, TmfStateValue.newValueString("main"), stack);
+            fStateSystem.popAttribute(150, stack);
+
+            thread = fStateSystem.getQuarkAbsoluteAndAdd(CallStackStateProvider.THREADS, "2000");
+            fStateSystem.modifyAttribute(0, TmfStateValue.newValueLong(2000), thread);
+            stack = fStateSystem.getQuarkRelativeAndAdd(thread, CallStackStateProvider.CALL_STACK);
+            fStateSystem.pushAttribute(30, TmfStateValue.newValueString("c"), stack);
+            fStateSystem.popAttribute(80, stack);
+
+            fStateSystem.closeHistory(200);
+            FlatCallStack calls = FlatCallStack.build(fStateSystem, THREADS_PATTERN, CALL_STACK_PATH, null);
+            assertNotNull(calls);
+            fCalls = calls;
+        } catch (StateValueTypeException | AttributeNotFoundException | TimeRangeException | StateSystemDisposedException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    /**
+     * Clean-up
+     */
+    @After
+    public void tearDown() {
+        fStateSystem.dispose();
+    }
+
+    private int getSymbolId(String name) {
+        for (int i = 0; i < fCalls.getNbSymbols(); i++) {
+            if (fCalls.getSymbol(i).unboxStr().equals(name)) {
+                return i;
+            }
+        }
+        fail(name);
+        return -1;
+    }
+
+    /**
+     * Test the threads and calls read from the state system
+     */
+    @Test
+    public void testBuild() {
+        assertEquals(0, fCalls.getStartTime());
+        assertEquals(200, fCalls.getEndTime());
+        assertEquals(4, fCalls.getNbSymbols());
+        assertEquals(2, fCalls.getNbThreads());
+
+        assertEquals("1000", fCalls.getThreadName(0));
+        assertEquals(1000, fCalls.getThreadId(0));
+        assertEquals(0, fCalls.getThreadIndex(fCalls.getCallStackQuark(0)));
+        assertEquals(3, fCalls.getMaxDepth(0));
+        assertEquals(5, fCalls.getNbCalls(0));
+
+        long[][] expected = { { 10, 99, 1 }, { 110, 149, 1 }, { 20, 39, 2 }, { 50, 69, 2 }, { 55, 59, 3 } };
+        String[] symbols = { "main", "main", "a", "b", "a" };
+        for (int call = 0; call < expected.length; call++) {
+            assertEquals(expected[call][0], fCalls.getEntryTime(0, call));
+            assertEquals(expected[call][1], fCalls.getExitTime(0, call));
+            assertEquals(expected[call][2], fCalls.getDepth(0, call));
+            assertEquals(getSymbolId(symbols[call]), fCalls.getSymbolId(0, call));
+        }
+
+        assertEquals("2000", fCalls.getThreadName(1));
+        assertEquals(1, fCalls.getMaxDepth(1));
+        assertEquals(1, fCalls.getNbCalls(1));
+        assertEquals(30, fCalls.getEntryTime(1, 0));
+        assertEquals(79, fCalls.getExitTime(1, 0));
+    }
+
+    /**
+     * Test the range and zoom queries of {@link FlatCallStack#getCalls}
+     */
+    @Test
+    public void testGetCalls() {
+        assertArrayEquals(new int[] { 0, 1 }, fCalls.getCalls(0, 1, 0, 200, 1));
+        assertArrayEquals(new int[] { 2, 3 }, fCalls.getCalls(0, 2, 0, 200, 1));
+        assertArrayEquals(new int[] { 3 }, fCalls.getCalls(0, 2, 45, 52, 1));
+        assertArrayEquals(new int[] { 2, 3 }, fCalls.getCalls(0, 2, 39, 50, 1));
+        assertArrayEquals(new int[] {}, fCalls.getCalls(0, 2, 40, 49, 1));
+        assertArrayEquals(new int[] { 4 }, fCalls.getCalls(0, 3, 0, 200, 1));
+        assertArrayEquals(new int[] {}, fCalls.getCalls(0, 4, 0, 200, 1));
+
+        /* The second call of the depth starts before the resolution */
+        assertArrayEquals(new int[] { 2 }, fCalls.getCalls(0, 2, 0, 200, 100));
+        assertArrayEquals(new int[] { 2, 3 }, fCalls.getCalls(0, 2, 0, 200, 30));
+    }
+
+    /**
+     * Test the statistics of the whole trace and of a time range
+     */
+    @Test
+    public void testStatistics() {
+        int main = getSymbolId("main");
+        int a = getSymbolId("a");
+        int b = getSymbolId("b");
+        int c = getSymbolId("c");
+
+        FlatCallStack.Statistics stats = fCalls.getStatistics(0, 199);
+        assertEquals(2, stats.getNbCalls(main));
+        assertEquals(130, stats.getTotalTime(main));
+        assertEquals(90, stats.getSelfTime(main));
+        assertEquals(2, stats.getNbCalls(a));
+        assertEquals(25, stats.getTotalTime(a));
+        assertEquals(25, stats.getSelfTime(a));
+        assertEquals(1, stats.getNbCalls(b));
+        assertEquals(20, stats.getTotalTime(b));
+        assertEquals(15, stats.getSelfTime(b));
+        assertEquals(1, stats.getNbCalls(c));
+        assertEquals(50, stats.getTotalTime(c));
+        assertEquals(50, stats.getSelfTime(c));
+
+        stats = fCalls.getStatistics(30, 57);
+        assertEquals(1, stats.getNbCalls(main));
+        assertEquals(28, stats.getTotalTime(main));
+        assertEquals(10, stats.getSelfTime(main));
+        assertEquals(2, stats.getNbCalls(a));
+        assertEquals(13, stats.getTotalTime(a));
+        assertEquals(13, stats.getSelfTime(a));
+        assertEquals(8, stats.getTotalTime(b));
+        assertEquals(5, stats.getSelfTime(b));
+        assertEquals(28, stats.getTotalTime(c));
+    }
+
+    /**
+     * Test writing the calls to a file and reading them back, only if they
+     * were built from the same source
+     *
+     * @throws IOException
+     *             If the file cannot be written or read
+     */
+    @Test
+    public void testWriteRead() throws IOException {
+        File file = File.createTempFile("flat-call-stack-test", ".calls");
+        try {
+            fCalls.write(file, "provider 1");
+            assertNull(FlatCallStack.read(file, "provider 2"));
+            FlatCallStack calls = FlatCallStack.read(file, "provider 1");
+            assertNotNull(calls);
+            assertEquals(fCalls.getStartTime(), calls.getStartTime());
+            assertEquals(fCalls.getEndTime(), calls.getEndTime());
+            assertEquals(fCalls.getNbSymbols(), calls.getNbSymbols());
+            for (int i = 0; i < fCalls.getNbSymbols(); i++) {
+                assertEquals(fCalls.getSymbol(i), calls.getSymbol(i));
+            }
+            assertEquals(fCalls.getNbThreads(), calls.getNbThreads());
+            for (int thread = 0; thread < fCalls.getNbThreads(); thread++) {
+                assertEquals(fCalls.getThreadName(thread), calls.getThreadName(thread));
+                assertEquals(fCalls.getThreadId(thread), calls.getThreadId(thread));
+                assertEquals(fCalls.getCallStackQuark(thread), calls.getCallStackQuark(thread));
+                assertEquals(fCalls.getMaxDepth(thread), calls.getMaxDepth(thread));
+                assertEquals(fCalls.getNbCalls(thread), calls.getNbCalls(thread));
+                for (int call = 0; call < fCalls.getNbCalls(thread); call++) {
+                    assertEquals(fCalls.getEntryTime(thread, call), calls.getEntryTime(thread, call));
+                    assertEquals(fCalls.getExitTime(thread, call), calls.getExitTime(thread, call));
+                    assertEquals(fCalls.getSymbolId(thread, call), calls.getSymbolId(thread, call));
+                }
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Test that the calls recorded while pushing and popping are the same as
+     * the calls read back from the state system, on random calls
+     *
+     * @throws Exception
+     *             If the state system cannot be built
+     */
+    @Test
+    public void testRecorder() throws Exception {
+        Random random = new Random(42);
+        IStateHistoryBackend backend = StateHistoryBackendFactory.createInMemoryBackend("flat-call-stack-recorder-test", 0);
+        ITmfStateSystemBuilder ss = StateSystemFactory.newStateSystem(backend);
+        try {
+            FlatCallStack.Recorder recorder = new FlatCallStack.Recorder();
+            long time = 0;
+            for (int i = 0; i < 5000; i++) {
+                /* Some calls are entered and exited at the same time */
+                time += random.nextInt(3);
+                String thread = Integer.toString(random.nextInt(4));
+                if (random.nextInt(3) > 0) {
+                    int threadQuark = ss.getQuarkAbsoluteAndAdd(CallStackStateProvider.THREADS, thread);
+                    ss.updateOngoingState(TmfStateValue.newValueLong(Integer.parseInt(thread)), threadQuark);
+                    int stack = ss.getQuarkRelativeAndAdd(threadQuark, CallStackStateProvider.CALL_STACK);
+                    ITmfStateValue value = TmfStateValue.newValueString("f" + random.nextInt(10));
+                    ss.pushAttribute(time, value, stack);
+                    recorder.setThreadId(thread, stack, Integer.parseInt(thread));
+                    recorder.enter(thread, stack, ss.queryOngoingState(stack).unboxInt(), time, value);
+                } else {
+                    /* Some stacks are popped when they are empty */
+                    int stack = ss.getQuarkAbsoluteAndAdd(CallStackStateProvider.THREADS, thread, CallStackStateProvider.CALL_STACK);
+                    ITmfStateValue depth = ss.queryOngoingState(stack);
+                    recorder.addThread(thread, stack);
+                    if (ss.popAttribute(time, stack) != null) {
+                        recorder.exit(thread, stack, depth.unboxInt(), time);
+                    }
+                }
+            }
+            ss.closeHistory(time + 10);
+
+            FlatCallStack expected = FlatCallStack.build(ss, THREADS_PATTERN, CALL_STACK_PATH, null);
+            assertNotNull(expected);
+            FlatCallStack calls = recorder.build(ss.getStartTime(), ss.getCurrentEndTime());
+            assertEquals(expected.getStartTime(), calls.getStartTime());
+            assertEquals(expected.getEndTime(), calls.getEndTime());
+            assertEquals(expected.getNbThreads(), calls.getNbThreads());
+            for (int thread = 0; thread < expected.getNbThreads(); thread++) {
+                assertEquals(expected.getThreadName(thread), calls.getThreadName(thread));
+                assertEquals(expected.getThreadId(thread), calls.getThreadId(thread));
+                assertEquals(expected.getCallStackQuark(thread), calls.getCallStackQuark(thread));
+                assertEquals(expected.getMaxDepth(thread), calls.getMaxDepth(thread));
+                assertEquals(expected.getNbCalls(thread), calls.getNbCalls(thread));
+                for (int call = 0; call < expected.getNbCalls(thread); call++) {
+                    assertEquals(expected.getEntryTime(thread, call), calls.getEntryTime(thread, call));
+                    assertEquals(expected.getExitTime(thread, call), calls.getExitTime(thread, call));
+                    assertEquals(expected.getDepth(thread, call), calls.getDepth(thread, call));
+                    assertEquals(expected.getSymbol(expected.getSymbolId(thread, call)), calls.getSymbol(calls.getSymbolId(thread, call)));
+                }
+            }
+        } finally {
+            ss.dispose();
+        }
+    }
+}
@@ -14,15 +14,20 @@ package org.eclipse.tracecompass.tmf.core.tests.callstack;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Map;
 
 import org.eclipse.tracecompass.internal.tmf.core.callstack.FunctionNameMapper;
+import org.eclipse.tracecompass.internal.tmf.core.callstack.SymbolTable;
 import org.junit.Test;
 
 /**
@@ -40,39 +45,86 @@ public class FunctionNameMapperTest {
         Path nmOutput = Paths.get("..", "org.eclipse.tracecompass.tmf.core.tests",
                 "testfiles", "callstack" , "nm-output-example");
         assertTrue(Files.exists(nmOutput));
-        Map<String, String> results = FunctionNameMapper.mapFromNmTextFile(nmOutput.toFile());
+        SymbolTable results = FunctionNameMapper.mapFromNmTextFile(nmOutput.toFile());
 
         assertNotNull(results);
         assertEquals(28, results.size());
-        assertNull(results.get(""));
+        assertNull(results.getName(0));
 
-        assertEquals("completed.7259", results.get("601190"));
-        assertEquals("data_start", results.get("601048"));
-        assertEquals("deregister_tm_clones", results.get("400690"));
-        assertEquals("__do_global_dtors_aux", results.get("400710"));
-        assertEquals("__dso_handle", results.get("601050"));
-        assertEquals("_DYNAMIC", results.get("600e18"));
-        assertEquals("_end", results.get("601198"));
-        assertEquals("_fini", results.get("400874"));
-        assertEquals("frame_dummy", results.get("400730"));
-        assertEquals("__FRAME_END__", results.get("400a28"));
-        assertEquals("_GLOBAL_OFFSET_TABLE_", results.get("601000"));
-        assertEquals("_GLOBAL__sub_I_main", results.get("4007ad"));
-        assertEquals("_init", results.get("4005d0"));
-        assertEquals("__init_array_end", results.get("600e08"));
-        assertEquals("__init_array_start", results.get("600df8"));
-        assertEquals("_IO_stdin_used", results.get("400880"));
-        assertEquals("__JCR_LIST__", results.get("600e10"));
-        assertEquals("__libc_csu_fini", results.get("400870"));
-        assertEquals("__libc_csu_init", results.get("400800"));
-        assertEquals("main", results.get("400756"));
-        assertEquals("register_tm_clones", results.get("4006d0"));
-        assertEquals("_start", results.get("400660"));
-        assertEquals("__TMC_END__", results.get("601058"));
-        assertEquals("Bar<int, int>* foo<int, int>(int, int)", results.get("4007c2"));
-        assertEquals("__static_initialization_and_destruction_0(int, int)", results.get("400770"));
-        assertEquals("std::cout@@GLIBCXX_3.4", results.get("601080"));
-        assertEquals("std::piecewise_construct", results.get("400884"));
-        assertEquals("std::__ioinit", results.get("601191"));
+        assertEquals("completed.7259", results.getName(0x601190L));
+        assertEquals("data_start", results.getName(0x601048L));
+        assertEquals("deregister_tm_clones", results.getName(0x400690L));
+        assertEquals("__do_global_dtors_aux", results.getName(0x400710L));
+        assertEquals("__dso_handle", results.getName(0x601050L));
+        assertEquals("_DYNAMIC", results.getName(0x600e18L));
+        assertEquals("_end", results.getName(0x601198L));
+        assertEquals("_fini", results.getName(0x400874L));
+        assertEquals("frame_dummy", results.getName(0x400730L));
+        assertEquals("__FRAME_END__", results.getName(0x400a28L));
+        assertEquals("_GLOBAL_OFFSET_TABLE_", results.getName(0x601000L));
+        assertEquals("_GLOBAL__sub_I_main", results.getName(0x4007adL));
+        assertEquals("_init", results.getName(0x4005d0L));
+        assertEquals("__init_array_end", results.getName(0x600e08L));
+        assertEquals("__init_array_start", results.getName(0x600df8L));
+        assertEquals("_IO_stdin_used", results.getName(0x400880L));
+        assertEquals("__JCR_LIST__", results.getName(0x600e10L));
+        assertEquals("__libc_csu_fini", results.getName(0x400870L));
+        assertEquals("__libc_csu_init", results.getName(0x400800L));
+        assertEquals("main", results.getName(0x400756L));
+        assertEquals("register_tm_clones", results.getName(0x4006d0L));
+        assertEquals("_start", results.getName(0x400660L));
+        assertEquals("__TMC_END__", results.getName(0x601058L));
+        assertEquals("Bar<int, int>* foo<int, int>(int, int)", results.getName(0x4007c2L));
+        assertEquals("__static_initialization_and_destruction_0(int, int)", results.getName(0x400770L));
+        assertEquals("std::cout@@GLIBCXX_3.4", results.getName(0x601080L));
+        assertEquals("std::piecewise_construct", results.getName(0x400884L));
+        assertEquals("std::__ioinit", results.getName(0x601191L));
+    }
+
+    /**
+     * Test that the addresses inside a function resolve to it, and that the
+     * table of a file is shared.
+     */
+    @Test
+    public void testNmFileContainingFunction() {
+        File nmOutput = Paths.get("..", "org.eclipse.tracecompass.tmf.core.tests",
+                "testfiles", "callstack" , "nm-output-example").toFile();
+        SymbolTable results = FunctionNameMapper.mapFromNmTextFile(nmOutput);
+        assertNotNull(results);
+        assertSame(results, FunctionNameMapper.mapFromNmTextFile(nmOutput));
+
+        assertEquals("main", results.getContainingName(0x400756L));
+        assertEquals("main", results.getContainingName(0x400760L));
+        assertNull(results.getName(0x400760L));
+        assertEquals("__static_initialization_and_destruction_0(int, int)", results.getContainingName(0x4007acL));
+        assertEquals("_GLOBAL__sub_I_main", results.getContainingName(0x4007adL));
+        assertNull(results.getContainingName(0x400000L));
+    }
+
+    /**
+     * Test that the table of a file is loaded again when the file is modified
+     *
+     * @throws IOException
+     *             If the file cannot be written
+     */
+    @Test
+    public void testNmFileModified() throws IOException {
+        Path nmOutput = Files.createTempFile("nm-output", ".txt");
+        try {
+            Files.write(nmOutput, "0000000000400756 000000000000001a T main\n".getBytes(StandardCharsets.UTF_8));
+            SymbolTable results = FunctionNameMapper.mapFromNmTextFile(nmOutput.toFile());
+            assertNotNull(results);
+            assertEquals("main", results.getName(0x400756L));
+
+            Files.write(nmOutput, "0000000000400770 0000000000000010 T foo\n0000000000400756 000000000000001a T main\n".getBytes(StandardCharsets.UTF_8));
+            SymbolTable modified = FunctionNameMapper.mapFromNmTextFile(nmOutput.toFile());
+            assertNotNull(modified);
+            assertNotSame(results, modified);
+            assertEquals(2, modified.size());
+            assertEquals("foo", modified.getName(0x400770L));
+            assertSame(modified, FunctionNameMapper.mapFromNmTextFile(nmOutput.toFile()));
+        } finally {
+            Files.delete(nmOutput);
+        }
     }
 }
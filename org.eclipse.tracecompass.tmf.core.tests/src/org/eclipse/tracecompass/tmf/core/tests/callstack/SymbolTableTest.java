@@ -0,0 +1,121 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.callstack;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.eclipse.tracecompass.internal.tmf.core.callstack.SymbolTable;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link SymbolTable} class.
+ */
+public class SymbolTableTest {
+
+    /**
+     * Test exact and containing lookups on symbols added out of order
+     */
+    @Test
+    public void testLookups() {
+        SymbolTable table = new SymbolTable.Builder()
+                .add(0x3000, SymbolTable.UNKNOWN_SIZE, "c")
+                .add(0x1000, 0x100, "a")
+                .add(0x2000, 0x800, "b")
+                .add(0x1000, 0x200, "a2")
+                .build();
+
+        assertEquals(3, table.size());
+        assertEquals("a2", table.getName(0x1000));
+        assertEquals("b", table.getName(0x2000));
+        assertNull(table.getName(0x2004));
+
+        assertNull(table.getContainingName(0xfff));
+        assertEquals("a2", table.getContainingName(0x11ff));
+        assertNull(table.getContainingName(0x1200));
+        assertEquals("b", table.getContainingName(0x27ff));
+        assertNull(table.getContainingName(0x2800));
+        /* The size of the last symbol is not known */
+        assertEquals("c", table.getContainingName(0x3000));
+        assertNull(table.getContainingName(0x3001));
+        assertNull(table.getContainingName(0x123456));
+    }
+
+    /**
+     * Test that a symbol of unknown size contains the addresses up to the next
+     * symbol
+     */
+    @Test
+    public void testUnknownSizes() {
+        SymbolTable table = new SymbolTable.Builder()
+                .add(0x1000, SymbolTable.UNKNOWN_SIZE, "a")
+                .add(0x2000, SymbolTable.UNKNOWN_SIZE, "b")
+                .add(0x3000, 0x10, "c")
+                .add(0x4000, SymbolTable.UNKNOWN_SIZE, "d")
+                .build();
+
+        assertNull(table.getContainingName(0xfff));
+        assertEquals("a", table.getContainingName(0x1000));
+        assertEquals("a", table.getContainingName(0x1fff));
+        assertEquals("b", table.getContainingName(0x2000));
+        assertEquals("b", table.getContainingName(0x2fff));
+        assertEquals("c", table.getContainingName(0x300f));
+        assertNull(table.getContainingName(0x3010));
+        assertEquals("d", table.getContainingName(0x4000));
+        assertNull(table.getContainingName(0x4001));
+        assertNull(table.getContainingName(Long.MAX_VALUE));
+    }
+
+    /**
+     * Test parsing addresses, including 64-bit ones with the high bit set
+     */
+    @Test
+    public void testParseAddress() {
+        assertEquals(0, SymbolTable.parseAddress("0"));
+        assertEquals(0x400756L, SymbolTable.parseAddress("0000000000400756"));
+        assertEquals(0x7fffabcd12345678L, SymbolTable.parseAddress("7fffabcd12345678"));
+        assertEquals(0xffffffff81000000L, SymbolTable.parseAddress("ffffffff81000000"));
+
+        SymbolTable table = new SymbolTable.Builder()
+                .add(SymbolTable.parseAddress("ffffffff81000000"), 0x10, "kernel")
+                .add(SymbolTable.parseAddress("400756"), 0x10, "main")
+                .build();
+        assertEquals("kernel", table.getContainingName(0xffffffff81000008L));
+        assertEquals("main", table.getContainingName(0x400758L));
+    }
+
+    /**
+     * Test that the addresses are ordered as unsigned, so a low address is not
+     * resolved to a kernel symbol of unknown size
+     */
+    @Test
+    public void testUnsignedOrder() {
+        SymbolTable table = new SymbolTable.Builder()
+                .add(0xffffffff81000000L, SymbolTable.UNKNOWN_SIZE, "kernel")
+                .add(0x400000, SymbolTable.UNKNOWN_SIZE, "user")
+                .add(0xffffffff81001000L, SymbolTable.UNKNOWN_SIZE, "kernel2")
+                .build();
+        assertNull(table.getContainingName(0x10));
+        assertEquals("user", table.getContainingName(0x500000));
+        assertEquals("user", table.getContainingName(0x7fffffffffffffffL));
+        assertEquals("user", table.getContainingName(0x8000000000000000L));
+        assertEquals("kernel", table.getContainingName(0xffffffff81000fffL));
+        assertNull(table.getContainingName(0xffffffff81001001L));
+        assertEquals("kernel2", table.getName(0xffffffff81001000L));
+    }
+
+    /**
+     * Test that addresses of more than 64 bits are rejected
+     */
+    @Test(expected = NumberFormatException.class)
+    public void testParseAddressTooLong() {
+        SymbolTable.parseAddress("10000000000000000");
+    }
+}
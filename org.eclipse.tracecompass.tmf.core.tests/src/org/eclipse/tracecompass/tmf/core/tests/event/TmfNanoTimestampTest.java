@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2013, 2014 Ericsson
+ * Copyright (c) 2013, 2015 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -244,6 +244,27 @@ public class TmfNanoTimestampTest {
         assertTrue("CompareTo", ts2.compareTo(ts2a) == 0);
     }
 
+    @Test
+    public void testCompareToLimits() {
+        final ITmfTimestamp min = new TmfNanoTimestamp(Long.MIN_VALUE);
+        final ITmfTimestamp max = new TmfNanoTimestamp(Long.MAX_VALUE);
+        final ITmfTimestamp other = new TmfTimestamp(Long.MAX_VALUE, ITmfTimestamp.NANOSECOND_SCALE);
+
+        /* The difference of the values overflows */
+        assertTrue("CompareTo", min.compareTo(max) < 0);
+        assertTrue("CompareTo", max.compareTo(min) > 0);
+        assertTrue("CompareTo", max.compareTo(other) == 0);
+        assertTrue("CompareTo", min.compareTo(TmfTimestamp.BIG_CRUNCH) < 0);
+        assertTrue("CompareTo", max.compareTo(TmfTimestamp.BIG_BANG) > 0);
+    }
+
+    @Test
+    public void testToNanos() {
+        assertEquals(12345, ts1.toNanos());
+        assertEquals(-1234, ts2.toNanos());
+        assertEquals(12345, new TmfNanoTimestamp(new TmfTimestamp(12345, -9)).getValue());
+    }
+
     // ------------------------------------------------------------------------
     // getDelta
     // ------------------------------------------------------------------------
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2009, 2014 Ericsson
+ * Copyright (c) 2009, 2015 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -384,6 +384,30 @@ public class TmfTimestampTest {
         assertEquals("getscale", SCALE, ts.getScale());
     }
 
+    // ------------------------------------------------------------------------
+    // toNanos
+    // ------------------------------------------------------------------------
+
+    @Test
+    public void testToNanos() {
+        assertEquals(12345000000000L, ts1.toNanos());
+        assertEquals(1234500000000L, ts2.toNanos());
+        assertEquals(12345000000L, ts4.toNanos());
+        assertEquals(12345, ts6.toNanos());
+        assertEquals(-12345000, ts8.toNanos());
+        assertEquals(1234, new TmfTimestamp(12345, -10).toNanos());
+        assertEquals(0, new TmfTimestamp(12345, -30).toNanos());
+    }
+
+    @Test
+    public void testToNanosLimits() {
+        assertEquals(Long.MIN_VALUE, TmfTimestamp.BIG_BANG.toNanos());
+        assertEquals(Long.MAX_VALUE, TmfTimestamp.BIG_CRUNCH.toNanos());
+        assertEquals(Long.MAX_VALUE, new TmfTimestamp(Long.MAX_VALUE / 10, 0).toNanos());
+        assertEquals(Long.MIN_VALUE, new TmfTimestamp(-1, 10).toNanos());
+        assertEquals(0, new TmfTimestamp(0, 30).toNanos());
+    }
+
     // ------------------------------------------------------------------------
     // compareTo
     // ------------------------------------------------------------------------
@@ -0,0 +1,326 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.event.matching;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.TmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.TmfEventType;
+import org.eclipse.tracecompass.tmf.core.event.matching.IEventMatchingKey;
+import org.eclipse.tracecompass.tmf.core.event.matching.IMatchProcessingUnit;
+import org.eclipse.tracecompass.tmf.core.event.matching.ITmfMatchEventDefinition;
+import org.eclipse.tracecompass.tmf.core.event.matching.TmfEventDependency;
+import org.eclipse.tracecompass.tmf.core.event.matching.TmfEventMatching;
+import org.eclipse.tracecompass.tmf.core.event.matching.TmfEventMatching.Direction;
+import org.eclipse.tracecompass.tmf.core.exceptions.TmfTraceException;
+import org.eclipse.tracecompass.tmf.core.tests.shared.TmfTestTrace;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfNanoTimestamp;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.tests.stubs.trace.TmfTraceStub;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Test suite for the {@link TmfEventMatching} class, with synthetic events
+ * where the rank of an event is the identifier of its packet.
+ */
+@SuppressWarnings("javadoc")
+public class TmfEventMatchingTest {
+
+    private static final @NonNull ITmfTrace TRACE = new TmfTraceStub();
+    private static final @NonNull ITmfTrace TRACE2 = new TmfTraceStub();
+    private static final String SEND = "send";
+    private static final String RECEIVE = "receive";
+
+    /* Traces read by matchEvents(), see TimeDefinition */
+    private static ITmfTrace fCauseTrace;
+    private static ITmfTrace fEffectTrace;
+
+    private static final ITmfMatchEventDefinition PACKET_DEFINITION = new PacketDefinition();
+    private static final ITmfMatchEventDefinition TIME_DEFINITION = new TimeDefinition();
+
+    private MatchList fMatches;
+    private TmfEventMatching fMatching;
+
+    private static class PacketKey implements IEventMatchingKey {
+        private final long fId;
+
+        public PacketKey(long id) {
+            fId = id;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (fId ^ (fId >>> 32));
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return (obj instanceof PacketKey) && ((PacketKey) obj).fId == fId;
+        }
+    }
+
+    /* Keeps the matches, which TmfEventMatches only counts */
+    private static class MatchList implements IMatchProcessingUnit {
+        private final List<TmfEventDependency> fList = new ArrayList<>();
+
+        @Override
+        public void init(Collection<ITmfTrace> traces) {
+            fList.clear();
+        }
+
+        @Override
+        public void addMatch(TmfEventDependency match) {
+            fList.add(match);
+        }
+
+        @Override
+        public void matchingEnded() {
+        }
+
+        @Override
+        public int countMatches() {
+            return fList.size();
+        }
+
+        public TmfEventDependency getMatch(int index) {
+            return fList.get(index);
+        }
+    }
+
+    private static class PacketDefinition implements ITmfMatchEventDefinition {
+        @Override
+        public IEventMatchingKey getEventKey(ITmfEvent event) {
+            return new PacketKey(event.getRank());
+        }
+
+        @Override
+        public boolean canMatchTrace(ITmfTrace trace) {
+            return trace == TRACE || trace == TRACE2;
+        }
+
+        @Override
+        public Direction getDirection(ITmfEvent event) {
+            String type = event.getType().getName();
+            if (SEND.equals(type)) {
+                return Direction.CAUSE;
+            }
+            if (RECEIVE.equals(type)) {
+                return Direction.EFFECT;
+            }
+            return null;
+        }
+    }
+
+    /* Matches the events of two traces that have the same timestamp */
+    private static class TimeDefinition implements ITmfMatchEventDefinition {
+        @Override
+        public IEventMatchingKey getEventKey(ITmfEvent event) {
+            return new PacketKey(event.getTimestamp().toNanos());
+        }
+
+        @Override
+        public boolean canMatchTrace(ITmfTrace trace) {
+            return trace == fCauseTrace || trace == fEffectTrace;
+        }
+
+        @Override
+        public Direction getDirection(ITmfEvent event) {
+            return (event.getTrace() == fCauseTrace) ? Direction.CAUSE : Direction.EFFECT;
+        }
+    }
+
+    /* Fails to read the events after a rank */
+    private static class FailingTrace extends TmfTraceStub {
+        private final long fFailureRank;
+
+        public FailingTrace(String path, long failureRank) throws TmfTraceException {
+            super(path, ITmfTrace.DEFAULT_TRACE_CACHE_SIZE, false, null);
+            fFailureRank = failureRank;
+        }
+
+        @Override
+        public ITmfEvent parseEvent(ITmfContext context) {
+            if (context.getRank() >= fFailureRank) {
+                throw new IllegalStateException("Corrupted event");
+            }
+            return super.parseEvent(context);
+        }
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        TRACE.dispose();
+        TRACE2.dispose();
+    }
+
+    @Before
+    public void setUp() {
+        TmfEventMatching.registerMatchObject(PACKET_DEFINITION);
+        TmfEventMatching.registerMatchObject(TIME_DEFINITION);
+        fMatches = new MatchList();
+        fMatching = new TmfEventMatching(Collections.singleton(TRACE), fMatches);
+        fMatching.initMatching();
+    }
+
+    @After
+    public void tearDown() {
+        /* The definitions are static, don't leak them to the other tests */
+        TmfEventMatching.deregisterMatchObject(PACKET_DEFINITION);
+        TmfEventMatching.deregisterMatchObject(TIME_DEFINITION);
+    }
+
+    private ITmfEvent match(String type, long id, long time) {
+        return match(TRACE, type, id, time);
+    }
+
+    private ITmfEvent match(@NonNull ITmfTrace trace, String type, long id, long time) {
+        ITmfEvent event = new TmfEvent(trace, id, new TmfNanoTimestamp(time), new TmfEventType(type, null), null);
+        fMatching.matchEvent(event, trace, new NullProgressMonitor());
+        return event;
+    }
+
+    @Test
+    public void testMatching() {
+        ITmfEvent send = match(SEND, 1, 10);
+        match(SEND, 2, 20);
+        /* A second send of the same packet is ignored */
+        match(SEND, 1, 25);
+        ITmfEvent receive = match(RECEIVE, 1, 30);
+
+        assertEquals(1, fMatching.getNbMatchedEvents());
+        assertEquals(1, fMatching.getNbUnmatchedEvents());
+        assertEquals(0, fMatching.getNbEvictedEvents());
+        /* The event completing the match comes first in the dependency */
+        TmfEventDependency dependency = fMatches.getMatch(0);
+        assertSame(receive, dependency.getSourceEvent());
+        assertSame(send, dependency.getDestinationEvent());
+    }
+
+    @Test
+    public void testMatchingPerTrace() {
+        fMatching = new TmfEventMatching(ImmutableList.of(TRACE, TRACE2), fMatches);
+        fMatching.initMatching();
+
+        /* Each trace waits for its own match of the same packet */
+        ITmfEvent send = match(TRACE, SEND, 1, 10);
+        ITmfEvent send2 = match(TRACE2, SEND, 1, 15);
+        match(TRACE, SEND, 1, 20);
+        assertEquals(2, fMatching.getNbUnmatchedEvents());
+
+        match(TRACE2, RECEIVE, 1, 30);
+        match(TRACE, RECEIVE, 1, 40);
+        assertEquals(2, fMatching.getNbMatchedEvents());
+        assertEquals(0, fMatching.getNbUnmatchedEvents());
+        List<ITmfEvent> companions = ImmutableList.of(fMatches.getMatch(0).getDestinationEvent(),
+                fMatches.getMatch(1).getDestinationEvent());
+        assertTrue(companions.contains(send));
+        assertTrue(companions.contains(send2));
+    }
+
+    @Test
+    public void testTimeHorizon() {
+        fMatching.setTimeHorizon(100);
+        match(SEND, 1, 0);
+        ITmfEvent send = match(SEND, 2, 50);
+        match(RECEIVE, 3, 120);
+        assertEquals(1, fMatching.getNbEvictedEvents());
+        assertEquals(2, fMatching.getNbUnmatchedEvents());
+
+        /* The match of an evicted event is not found */
+        match(RECEIVE, 1, 130);
+        assertEquals(0, fMatching.getNbMatchedEvents());
+
+        match(RECEIVE, 2, 140);
+        assertEquals(1, fMatching.getNbMatchedEvents());
+        assertEquals(2, fMatching.getNbUnmatchedEvents());
+
+        /* Only the trace and timestamp of the unmatched event are kept */
+        ITmfEvent companion = fMatches.getMatch(0).getDestinationEvent();
+        assertNotSame(send, companion);
+        assertSame(TRACE, companion.getTrace());
+        assertEquals(send.getTimestamp(), companion.getTimestamp());
+    }
+
+    @Test
+    public void testLargeTimeHorizon() {
+        /* The start of the horizon is before the minimum time */
+        fMatching.setTimeHorizon(Long.MAX_VALUE - 1);
+        ITmfEvent send = match(SEND, 1, -10);
+        match(SEND, 2, -5);
+        assertEquals(0, fMatching.getNbEvictedEvents());
+        assertEquals(2, fMatching.getNbUnmatchedEvents());
+
+        match(RECEIVE, 1, 100);
+        assertEquals(1, fMatching.getNbMatchedEvents());
+        assertEquals(send.getTimestamp(), fMatches.getMatch(0).getDestinationEvent().getTimestamp());
+    }
+
+    @Test
+    public void testMatchEvents() {
+        /* Two instances of the same trace, each event has one match */
+        fCauseTrace = TmfTestTrace.A_TEST_10K.getTrace();
+        fEffectTrace = TmfTestTrace.A_TEST_10K.getTraceAsStub2();
+        try {
+            MatchList matches = new MatchList();
+            TmfEventMatching matching = new TmfEventMatching(ImmutableList.of(fCauseTrace, fEffectTrace), matches);
+            assertTrue(matching.matchEvents());
+            assertEquals(10000, matches.countMatches());
+            assertEquals(10000, matching.getNbMatchedEvents());
+            assertEquals(0, matching.getNbUnmatchedEvents());
+
+            /* The events of the traces are matched in time order */
+            long previous = Long.MIN_VALUE;
+            for (int i = 0; i < matches.countMatches(); i++) {
+                TmfEventDependency dependency = matches.getMatch(i);
+                long time = dependency.getSourceEvent().getTimestamp().toNanos();
+                assertEquals(time, dependency.getDestinationEvent().getTimestamp().toNanos());
+                assertTrue(time >= previous);
+                previous = time;
+            }
+        } finally {
+            fCauseTrace.dispose();
+            fEffectTrace.dispose();
+        }
+    }
+
+    @Test
+    public void testMatchEventsFailure() throws TmfTraceException {
+        fCauseTrace = TmfTestTrace.A_TEST_10K.getTrace();
+        fEffectTrace = new FailingTrace(fCauseTrace.getPath(), 5000);
+        try {
+            MatchList matches = new MatchList();
+            TmfEventMatching matching = new TmfEventMatching(ImmutableList.of(fCauseTrace, fEffectTrace), matches);
+            /* The matching fails instead of ending with half of the matches */
+            assertFalse(matching.matchEvents());
+            assertTrue(matches.countMatches() <= 5000);
+        } finally {
+            fCauseTrace.dispose();
+            fEffectTrace.dispose();
+        }
+    }
+}
@@ -22,12 +22,16 @@ import org.junit.runners.Suite;
 @RunWith(Suite.class)
 @Suite.SuiteClasses({
     TmfFilterAndNodeTest.class,
+    TmfFilterCompilerTest.class,
     TmfFilterCompareNodeTest.class,
     TmfFilterContainsNodeTest.class,
     TmfFilterEqualsNodeTest.class,
+    TmfFilterIndexStoreTest.class,
+    TmfFilterIndexTest.class,
     TmfFilterMatchesNodeTest.class,
     TmfFilterNodeTest.class,
     TmfFilterOrNodeTest.class,
+    TmfFilterPushdownTest.class,
     TmfFilterRootNodeTest.class,
     TmfFilterTraceTypeNodeTest.class,
     TmfCollapseFilterTest.class,
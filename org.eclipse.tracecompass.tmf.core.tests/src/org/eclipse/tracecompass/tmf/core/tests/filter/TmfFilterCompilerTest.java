@@ -0,0 +1,202 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.tracecompass.internal.tmf.core.filter.TmfCollapseFilter;
+import org.eclipse.tracecompass.internal.tmf.core.filter.TmfFilterCompiler;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
+import org.eclipse.tracecompass.tmf.core.event.TmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEventType;
+import org.eclipse.tracecompass.tmf.core.event.TmfEventField;
+import org.eclipse.tracecompass.tmf.core.event.TmfEventType;
+import org.eclipse.tracecompass.tmf.core.event.aspect.ITmfEventAspect;
+import org.eclipse.tracecompass.tmf.core.event.aspect.TmfContentFieldAspect;
+import org.eclipse.tracecompass.tmf.core.filter.ITmfFilter;
+import org.eclipse.tracecompass.tmf.core.filter.model.ITmfFilterTreeNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterAndNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterCompareNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterCompareNode.Type;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterContainsNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterEqualsNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterMatchesNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterOrNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterRootNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterTraceTypeNode;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfNanoTimestamp;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.tests.stubs.trace.TmfTraceStub;
+import org.junit.AfterClass;
+import org.junit.Test;
+
+/**
+ * Test suite for the {@link TmfFilterCompiler} class.
+ */
+@SuppressWarnings("javadoc")
+public class TmfFilterCompilerTest {
+
+    private static final @NonNull ITmfTrace TRACE = new TmfTraceStub();
+    private static final String FIELD = "field";
+    private static final String TEXT = "text";
+    private static final ITmfEventType EVENT_TYPE = new TmfEventType("Type", TmfEventField.makeRoot(new String[] { FIELD, TEXT }));
+    private static final ITmfFilterTreeNode FALSE_NODE = new TmfFilterNode(null) {
+        @Override
+        public boolean matches(ITmfEvent event) {
+            return false;
+        }
+    };
+    private static final ITmfEventAspect FIELD_ASPECT = new TmfContentFieldAspect(FIELD, FIELD);
+    private static final ITmfEventAspect TEXT_ASPECT = new TmfContentFieldAspect(TEXT, TEXT);
+
+    private final ITmfEvent[] fEvents = new ITmfEvent[] {
+            createEvent(0, 1L, "abc"),
+            createEvent(1, 5L, "ABC def"),
+            createEvent(2, 11L, "xyz"),
+            createEvent(3, "7", "def"),
+            createEvent(4, "0x10", ""),
+            createEvent(5, 2.5, "abc"),
+            createEvent(6, "nan", "Abc")
+    };
+
+    @AfterClass
+    public static void disposeTrace() {
+        TRACE.dispose();
+    }
+
+    private static ITmfEvent createEvent(long rank, Object value, String text) {
+        ITmfEventField[] fields = new ITmfEventField[] {
+                new TmfEventField(FIELD, value, null),
+                new TmfEventField(TEXT, text, null)
+        };
+        ITmfEventField content = new TmfEventField(ITmfEventField.ROOT_FIELD_ID, null, fields);
+        return new TmfEvent(TRACE, rank, new TmfNanoTimestamp(rank), EVENT_TYPE, content);
+    }
+
+    private static TmfFilterCompareNode createCompare(ITmfFilterTreeNode parent, ITmfEventAspect aspect, Type type, String value, int result) {
+        TmfFilterCompareNode node = new TmfFilterCompareNode(parent);
+        node.setEventAspect(aspect);
+        node.setType(type);
+        node.setValue(value);
+        node.setResult(result);
+        return node;
+    }
+
+    private void assertEquivalent(ITmfFilterTreeNode node) {
+        ITmfFilter compiled = TmfFilterCompiler.compile(node);
+        for (ITmfEvent event : fEvents) {
+            assertEquals(node.toString() + " rank " + event.getRank(), node.matches(event), compiled.matches(event));
+        }
+    }
+
+    @Test
+    public void testLeaves() {
+        for (boolean not : new boolean[] { false, true }) {
+            for (int result = -1; result <= 1; result++) {
+                TmfFilterCompareNode num = createCompare(null, FIELD_ASPECT, Type.NUM, "5", result);
+                num.setNot(not);
+                assertEquivalent(num);
+                num.setValue("2.6");
+                assertEquivalent(num);
+                num.setValue("0x10");
+                assertEquivalent(num);
+                TmfFilterCompareNode alpha = createCompare(null, TEXT_ASPECT, Type.ALPHA, "abc", result);
+                alpha.setNot(not);
+                assertEquivalent(alpha);
+                TmfFilterCompareNode timestamp = createCompare(null, ITmfEventAspect.BaseAspects.TIMESTAMP, Type.TIMESTAMP, "0.000000003", result);
+                timestamp.setNot(not);
+                assertEquivalent(timestamp);
+            }
+            for (boolean ignoreCase : new boolean[] { false, true }) {
+                TmfFilterEqualsNode equals = new TmfFilterEqualsNode(null);
+                equals.setEventAspect(TEXT_ASPECT);
+                equals.setValue("abc");
+                equals.setIgnoreCase(ignoreCase);
+                equals.setNot(not);
+                assertEquivalent(equals);
+                TmfFilterContainsNode contains = new TmfFilterContainsNode(null);
+                contains.setEventAspect(TEXT_ASPECT);
+                contains.setValue("bc");
+                contains.setIgnoreCase(ignoreCase);
+                contains.setNot(not);
+                assertEquivalent(contains);
+            }
+            TmfFilterMatchesNode matches = new TmfFilterMatchesNode(null);
+            matches.setEventAspect(TEXT_ASPECT);
+            matches.setRegex("^[a-c]+");
+            matches.setNot(not);
+            assertEquivalent(matches);
+            matches.setEventAspect(null);
+            assertEquivalent(matches);
+        }
+    }
+
+    @Test
+    public void testTree() {
+        TmfFilterRootNode root = new TmfFilterRootNode();
+        TmfFilterNode filter = new TmfFilterNode(root, "filter");
+        TmfFilterOrNode or = new TmfFilterOrNode(filter);
+        TmfFilterAndNode and = new TmfFilterAndNode(or);
+        TmfFilterMatchesNode matches = new TmfFilterMatchesNode(and);
+        matches.setEventAspect(TEXT_ASPECT);
+        matches.setRegex("abc|def");
+        createCompare(and, FIELD_ASPECT, Type.NUM, "6", -1);
+        TmfFilterTraceTypeNode traceType = new TmfFilterTraceTypeNode(or);
+        traceType.setTraceClass(TmfTraceStub.class);
+        createCompare(traceType, ITmfEventAspect.BaseAspects.TIMESTAMP, Type.TIMESTAMP, "0.000000005", 1);
+
+        for (int i = 0; i < 4; i++) {
+            and.setNot((i & 1) != 0);
+            or.setNot((i & 2) != 0);
+            assertEquivalent(root);
+        }
+    }
+
+    @Test
+    public void testCheapOperandsFirst() {
+        final int[] resolved = new int[1];
+        ITmfEventAspect countingAspect = new TmfContentFieldAspect(TEXT, TEXT) {
+            @Override
+            public Object resolve(ITmfEvent event) {
+                resolved[0]++;
+                return super.resolve(event);
+            }
+        };
+        TmfFilterAndNode and = new TmfFilterAndNode(null);
+        TmfFilterMatchesNode matches = new TmfFilterMatchesNode(and);
+        matches.setEventAspect(countingAspect);
+        matches.setRegex(".*");
+        createCompare(and, FIELD_ASPECT, Type.NUM, "0", -1);
+
+        ITmfFilter compiled = TmfFilterCompiler.compile(and);
+        for (ITmfEvent event : fEvents) {
+            assertFalse(compiled.matches(event));
+        }
+        assertEquals(0, resolved[0]);
+    }
+
+    @Test
+    public void testUnknownNodes() {
+        TmfCollapseFilter collapse = new TmfCollapseFilter();
+        assertSame(collapse, TmfFilterCompiler.compile(collapse));
+
+        TmfFilterAndNode and = new TmfFilterAndNode(null);
+        and.addChild(FALSE_NODE);
+        createCompare(and, FIELD_ASPECT, Type.NUM, "5", 0);
+        assertNotSame(and, TmfFilterCompiler.compile(and));
+        assertEquivalent(and);
+    }
+}
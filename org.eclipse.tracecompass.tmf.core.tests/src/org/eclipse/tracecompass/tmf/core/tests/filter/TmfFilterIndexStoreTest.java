@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import org.eclipse.tracecompass.internal.tmf.core.filter.TmfCollapseFilter;
+import org.eclipse.tracecompass.internal.tmf.core.filter.TmfFilterIndex;
+import org.eclipse.tracecompass.internal.tmf.core.filter.TmfFilterIndexStore;
+import org.eclipse.tracecompass.tmf.core.event.aspect.ITmfEventAspect;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterEqualsNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterRootNode;
+import org.eclipse.tracecompass.tmf.core.tests.shared.TmfTestTrace;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test suite for the {@link TmfFilterIndexStore} class.
+ */
+@SuppressWarnings("javadoc")
+public class TmfFilterIndexStoreTest {
+
+    private ITmfTrace fTrace;
+
+    @Before
+    public void setUp() {
+        fTrace = TmfTestTrace.A_TEST_10K.getTrace();
+        deleteIndexFiles();
+    }
+
+    @After
+    public void tearDown() {
+        deleteIndexFiles();
+        fTrace.dispose();
+    }
+
+    private void deleteIndexFiles() {
+        for (File file : getIndexFiles()) {
+            file.delete();
+        }
+    }
+
+    private List<File> getIndexFiles() {
+        List<File> indexFiles = new ArrayList<>();
+        File[] files = new File(TmfTraceManager.getSupplementaryFileDir(fTrace)).listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().startsWith("filter-index-")) {
+                    indexFiles.add(file);
+                }
+            }
+        }
+        return indexFiles;
+    }
+
+    private static TmfFilterRootNode createFilter(String type) {
+        TmfFilterRootNode root = new TmfFilterRootNode();
+        TmfFilterEqualsNode equals = new TmfFilterEqualsNode(root);
+        equals.setEventAspect(ITmfEventAspect.BaseAspects.EVENT_TYPE);
+        equals.setValue(type);
+        return root;
+    }
+
+    private static TmfFilterIndex createIndex() {
+        TmfFilterIndex index = new TmfFilterIndex();
+        BitSet matches = new BitSet();
+        matches.set(3);
+        matches.set(500);
+        index.append(0, 1000, matches);
+        index.append(1000, 1000, new BitSet());
+        return index;
+    }
+
+    @Test
+    public void testKey() {
+        String key = TmfFilterIndexStore.getKey(fTrace, createFilter("Type-1"));
+        assertNotNull(key);
+        assertEquals(key, TmfFilterIndexStore.getKey(fTrace, createFilter("Type-1")));
+        assertNotEquals(key, TmfFilterIndexStore.getKey(fTrace, createFilter("Type-2")));
+        assertNull(TmfFilterIndexStore.getKey(fTrace, new TmfCollapseFilter()));
+    }
+
+    @Test
+    public void testSaveLoad() {
+        TmfFilterRootNode filter = createFilter("Type-1");
+        TmfFilterIndex loaded = new TmfFilterIndex();
+        assertFalse(TmfFilterIndexStore.load(fTrace, filter, loaded));
+
+        TmfFilterIndexStore.save(fTrace, filter, createIndex());
+        assertTrue(TmfFilterIndexStore.load(fTrace, filter, loaded));
+        assertEquals(2000, loaded.getNbRanks());
+        assertEquals(2, loaded.getNbMatches());
+        assertEquals(500, loaded.getRank(1));
+
+        /* Another filter doesn't get this index */
+        assertFalse(TmfFilterIndexStore.load(fTrace, createFilter("Type-2"), new TmfFilterIndex()));
+    }
+
+    @Test
+    public void testFileName() {
+        TmfFilterIndexStore.save(fTrace, createFilter("Type-1"), createIndex());
+        List<File> files = getIndexFiles();
+        assertEquals(1, files.size());
+        /* Named after a SHA-256 digest of the filter */
+        assertTrue(files.get(0).getName().matches("filter-index-[0-9a-f]{64}\\.idx"));
+    }
+
+    @Test
+    public void testDeleteOldFiles() {
+        final int nbFilters = TmfFilterIndexStore.MAX_FILES + 4;
+        for (int i = 0; i < nbFilters; i++) {
+            TmfFilterIndexStore.save(fTrace, createFilter("Type-" + i), createIndex());
+            /* Older files were used longer ago */
+            for (File file : getIndexFiles()) {
+                file.setLastModified(file.lastModified() - 1000);
+            }
+        }
+        assertEquals(TmfFilterIndexStore.MAX_FILES, getIndexFiles().size());
+        for (int i = 0; i < nbFilters; i++) {
+            boolean kept = (i >= nbFilters - TmfFilterIndexStore.MAX_FILES);
+            assertEquals("filter " + i, kept, TmfFilterIndexStore.load(fTrace, createFilter("Type-" + i), new TmfFilterIndex()));
+        }
+
+        /* Use the kept indexes in order, the first one is the least recently used */
+        int oldest = nbFilters - TmfFilterIndexStore.MAX_FILES;
+        for (int i = oldest; i < nbFilters; i++) {
+            assertTrue(TmfFilterIndexStore.load(fTrace, createFilter("Type-" + i), new TmfFilterIndex()));
+            for (File file : getIndexFiles()) {
+                file.setLastModified(file.lastModified() - 1000);
+            }
+        }
+
+        /* A loaded index is recently used, the next save deletes another one */
+        assertTrue(TmfFilterIndexStore.load(fTrace, createFilter("Type-" + oldest), new TmfFilterIndex()));
+        TmfFilterIndexStore.save(fTrace, createFilter("Type-new"), createIndex());
+        assertEquals(TmfFilterIndexStore.MAX_FILES, getIndexFiles().size());
+        assertTrue(TmfFilterIndexStore.load(fTrace, createFilter("Type-" + oldest), new TmfFilterIndex()));
+        assertFalse(TmfFilterIndexStore.load(fTrace, createFilter("Type-" + (oldest + 1)), new TmfFilterIndex()));
+    }
+}
@@ -0,0 +1,274 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.eclipse.tracecompass.internal.tmf.core.filter.TmfCollapseFilter;
+import org.eclipse.tracecompass.internal.tmf.core.filter.TmfFilterIndex;
+import org.eclipse.tracecompass.internal.tmf.core.filter.TmfFilterIndexBuilder;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.aspect.ITmfEventAspect;
+import org.eclipse.tracecompass.tmf.core.exceptions.TmfTraceException;
+import org.eclipse.tracecompass.tmf.core.filter.ITmfFilter;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterCompareNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterEqualsNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterOrNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterRootNode;
+import org.eclipse.tracecompass.tmf.core.tests.shared.TmfTestTrace;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestampFormat;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceUtils;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.ITmfTraceIndexer;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.checkpoint.TmfCheckpointIndexer;
+import org.eclipse.tracecompass.tmf.tests.stubs.trace.TmfTraceStub;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Test suite for the {@link TmfFilterIndex} and {@link TmfFilterIndexBuilder}
+ * classes.
+ */
+@SuppressWarnings("javadoc")
+public class TmfFilterIndexTest {
+
+    private static ITmfTrace fTrace;
+
+    @BeforeClass
+    public static void setUp() {
+        fTrace = TmfTestTrace.A_TEST_10K.getTrace();
+        fTrace.indexTrace(true);
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        fTrace.dispose();
+    }
+
+    private static BitSet bits(int... indexes) {
+        BitSet bits = new BitSet();
+        for (int index : indexes) {
+            bits.set(index);
+        }
+        return bits;
+    }
+
+    private static List<Long> readMatches(ITmfFilter filter, long endRank) {
+        List<Long> matches = new ArrayList<>();
+        ITmfContext context = fTrace.seekEvent(0);
+        ITmfEvent event = fTrace.getNext(context);
+        long rank = 0;
+        while (event != null && rank < endRank) {
+            if (filter.matches(event)) {
+                matches.add(rank);
+            }
+            event = fTrace.getNext(context);
+            rank++;
+        }
+        context.dispose();
+        return matches;
+    }
+
+    private static void assertIndex(List<Long> expected, TmfFilterIndex index, long nbRanks) {
+        assertEquals(nbRanks, index.getNbRanks());
+        assertEquals(expected.size(), index.getNbMatches());
+        for (int i = 0; i < expected.size(); i++) {
+            long rank = expected.get(i);
+            assertEquals(rank, index.getRank(i));
+            assertEquals(i, index.getMatchIndex(rank));
+            assertTrue(index.isMatch(rank));
+        }
+        assertEquals(-1, index.getRank(expected.size()));
+        assertEquals(expected.size(), index.getMatchIndex(nbRanks));
+    }
+
+    @Test
+    public void testAppend() {
+        TmfFilterIndex index = new TmfFilterIndex();
+        index.append(0, 10, bits(1, 9));
+        index.append(10, 5, bits());
+        index.append(15, 10, bits(0, 3));
+        assertEquals(25, index.getNbRanks());
+        assertEquals(4, index.getNbMatches());
+
+        assertEquals(1, index.getRank(0));
+        assertEquals(9, index.getRank(1));
+        assertEquals(15, index.getRank(2));
+        assertEquals(18, index.getRank(3));
+        assertEquals(-1, index.getRank(4));
+
+        assertEquals(0, index.getMatchIndex(0));
+        assertEquals(1, index.getMatchIndex(2));
+        assertEquals(2, index.getMatchIndex(12));
+        assertEquals(2, index.getMatchIndex(15));
+        assertEquals(3, index.getMatchIndex(16));
+        assertEquals(4, index.getMatchIndex(25));
+        assertEquals(-1, index.getMatchIndex(26));
+
+        assertTrue(index.isMatch(9));
+        assertFalse(index.isMatch(10));
+        assertFalse(index.isMatch(25));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAppendGap() {
+        TmfFilterIndex index = new TmfFilterIndex();
+        index.append(0, 10, bits(1));
+        index.append(11, 10, bits(1));
+    }
+
+    @Test
+    public void testWriteRead() throws IOException {
+        TmfFilterIndex index = new TmfFilterIndex();
+        index.append(0, 10, bits(1, 9));
+        index.append(10, 5, bits());
+        index.append(15, 100, bits(0, 64, 99));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            index.write(output);
+        }
+
+        TmfFilterIndex copy = new TmfFilterIndex();
+        try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            copy.read(input);
+        }
+        List<Long> expected = new ArrayList<>();
+        for (long rank : new long[] { 1, 9, 15, 79, 114 }) {
+            expected.add(rank);
+        }
+        assertIndex(expected, copy, 115);
+    }
+
+    @Test
+    public void testBuild() {
+        TmfFilterRootNode root = new TmfFilterRootNode();
+        TmfFilterOrNode or = new TmfFilterOrNode(root);
+        TmfFilterEqualsNode type = new TmfFilterEqualsNode(or);
+        type.setEventAspect(ITmfEventAspect.BaseAspects.EVENT_TYPE);
+        type.setValue("Type-1");
+        TmfFilterEqualsNode content = new TmfFilterEqualsNode(or);
+        content.setEventAspect(ITmfEventAspect.BaseAspects.CONTENTS);
+        content.setValue("[]");
+
+        final List<Long> expected = readMatches(root, fTrace.getNbEvents());
+        final List<Long> updates = new ArrayList<>();
+        TmfFilterIndex index = new TmfFilterIndex();
+        TmfFilterIndexBuilder builder = new TmfFilterIndexBuilder(fTrace, root, 4, 1000) {
+            @Override
+            protected void indexUpdated(TmfFilterIndex filterIndex) {
+                updates.add(filterIndex.getNbRanks());
+            }
+        };
+
+        /* Build in two steps, the second one starting between checkpoints */
+        builder.build(index, 2500);
+        assertIndex(readMatches(root, 2500), index, 2500);
+        builder.build(index, fTrace.getNbEvents());
+        assertIndex(expected, index, fTrace.getNbEvents());
+        assertEquals(Long.valueOf(1000), updates.get(0));
+        assertEquals(Long.valueOf(3000), updates.get(3));
+        assertEquals(Long.valueOf(fTrace.getNbEvents()), updates.get(updates.size() - 1));
+    }
+
+    @Test
+    public void testBuildReadsOnlyItsPartitions() throws TmfTraceException {
+        final int nbEvents = (int) fTrace.getNbEvents();
+        final AtomicIntegerArray reads = new AtomicIntegerArray(nbEvents);
+        TmfTraceStub trace = new TmfTraceStub(fTrace.getPath(), ITmfTrace.DEFAULT_TRACE_CACHE_SIZE, true, null) {
+            @Override
+            public ITmfEvent parseEvent(ITmfContext context) {
+                long rank = context.getRank();
+                if (rank >= 0 && rank < nbEvents) {
+                    reads.incrementAndGet((int) rank);
+                }
+                return super.parseEvent(context);
+            }
+        };
+        try {
+            /* Only the last event matches, the pushdown rejects all the others */
+            TmfFilterRootNode root = new TmfFilterRootNode();
+            TmfFilterCompareNode compare = new TmfFilterCompareNode(root);
+            compare.setEventAspect(ITmfEventAspect.BaseAspects.TIMESTAMP);
+            compare.setType(TmfFilterCompareNode.Type.TIMESTAMP);
+            compare.setResult(0);
+            compare.setValue(new TmfTimestampFormat("T.SSSSSSSSS").format(trace.getEndTime().toNanos()));
+            for (int rank = 0; rank < nbEvents; rank++) {
+                reads.set(rank, 0);
+            }
+
+            TmfFilterIndex index = new TmfFilterIndex();
+            new TmfFilterIndexBuilder(trace, root, 4, 1000).build(index, nbEvents);
+            List<Long> expected = new ArrayList<>();
+            expected.add((long) nbEvents - 1);
+            assertIndex(expected, index, nbEvents);
+
+            /* Each event is read once, by the partition that contains it */
+            for (int rank = 0; rank < nbEvents; rank++) {
+                assertEquals("rank " + rank, 1, reads.get(rank));
+            }
+        } finally {
+            trace.dispose();
+        }
+    }
+
+    @Test
+    public void testBuildOnIndexerInterval() throws TmfTraceException {
+        /* The indexer uses another interval than the cache size */
+        TmfTraceStub trace = new TmfTraceStub(fTrace.getPath(), ITmfTrace.DEFAULT_TRACE_CACHE_SIZE, true, null) {
+            @Override
+            protected ITmfTraceIndexer createIndexer(int interval) {
+                return new TmfCheckpointIndexer(this, 300);
+            }
+        };
+        try {
+            assertEquals(300, TmfTraceUtils.getCheckpointInterval(trace));
+
+            TmfFilterRootNode root = new TmfFilterRootNode();
+            TmfFilterEqualsNode type = new TmfFilterEqualsNode(root);
+            type.setEventAspect(ITmfEventAspect.BaseAspects.EVENT_TYPE);
+            type.setValue("Type-1");
+            final List<Long> updates = new ArrayList<>();
+            TmfFilterIndex index = new TmfFilterIndex();
+            new TmfFilterIndexBuilder(trace, root, 4, 1000) {
+                @Override
+                protected void indexUpdated(TmfFilterIndex filterIndex) {
+                    updates.add(filterIndex.getNbRanks());
+                }
+            }.build(index, trace.getNbEvents());
+            assertIndex(readMatches(root, trace.getNbEvents()), index, trace.getNbEvents());
+
+            /* The partitions are aligned on the checkpoints of the indexer */
+            assertEquals(Long.valueOf(900), updates.get(0));
+            assertEquals(Long.valueOf(1800), updates.get(1));
+        } finally {
+            trace.dispose();
+        }
+    }
+
+    @Test
+    public void testCanPartition() {
+        assertTrue(TmfFilterIndexBuilder.canPartition(new TmfFilterRootNode()));
+        assertFalse(TmfFilterIndexBuilder.canPartition(new TmfCollapseFilter()));
+    }
+}
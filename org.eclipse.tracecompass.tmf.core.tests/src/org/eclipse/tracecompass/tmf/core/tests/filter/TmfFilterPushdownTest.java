@@ -0,0 +1,159 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.tracecompass.internal.tmf.core.filter.TmfFilterCompiler;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.TmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.TmfEventField;
+import org.eclipse.tracecompass.tmf.core.event.TmfEventType;
+import org.eclipse.tracecompass.tmf.core.event.aspect.ITmfEventAspect;
+import org.eclipse.tracecompass.tmf.core.filter.TmfFilterPushdown;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterAndNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterCompareNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterCompareNode.Type;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterEqualsNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterOrNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterRootNode;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfNanoTimestamp;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.tests.stubs.trace.TmfTraceStub;
+import org.junit.AfterClass;
+import org.junit.Test;
+
+/**
+ * Test suite for the {@link TmfFilterPushdown} class.
+ */
+@SuppressWarnings("javadoc")
+public class TmfFilterPushdownTest {
+
+    private static final @NonNull ITmfTrace TRACE = new TmfTraceStub();
+    private static final String TYPE_A = "A";
+    private static final String TYPE_B = "B";
+
+    @AfterClass
+    public static void disposeTrace() {
+        TRACE.dispose();
+    }
+
+    private static ITmfEvent createEvent(String type, long time) {
+        return new TmfEvent(TRACE, 0, new TmfNanoTimestamp(time), new TmfEventType(type, null), TmfEventField.makeRoot(new String[0]));
+    }
+
+    private static TmfFilterEqualsNode createTypeEquals(TmfFilterAndNode parent, String type) {
+        TmfFilterEqualsNode node = new TmfFilterEqualsNode(parent);
+        node.setEventAspect(ITmfEventAspect.BaseAspects.EVENT_TYPE);
+        node.setValue(type);
+        return node;
+    }
+
+    private static TmfFilterCompareNode createTimeCompare(TmfFilterAndNode parent, String value, int result) {
+        TmfFilterCompareNode node = new TmfFilterCompareNode(parent);
+        node.setEventAspect(ITmfEventAspect.BaseAspects.TIMESTAMP);
+        node.setType(Type.TIMESTAMP);
+        node.setValue(value);
+        node.setResult(result);
+        return node;
+    }
+
+    @Test
+    public void testUnconstrained() {
+        assertTrue(TmfFilterPushdown.UNCONSTRAINED.isUnconstrained());
+        assertFalse(TmfFilterPushdown.UNCONSTRAINED.isEmpty());
+        assertTrue(TmfFilterPushdown.UNCONSTRAINED.matches(createEvent(TYPE_A, 0)));
+    }
+
+    @Test
+    public void testMatches() {
+        TmfFilterPushdown pushdown = new TmfFilterPushdown(Collections.singleton(TYPE_A), 10, 20);
+        assertFalse(pushdown.isUnconstrained());
+        assertTrue(pushdown.matches(createEvent(TYPE_A, 10)));
+        assertTrue(pushdown.matches(createEvent(TYPE_A, 20)));
+        assertFalse(pushdown.matches(createEvent(TYPE_A, 9)));
+        assertFalse(pushdown.matches(createEvent(TYPE_A, 21)));
+        assertFalse(pushdown.matches(createEvent(TYPE_B, 15)));
+
+        /* The timestamp is normalized to nanoseconds */
+        ITmfEvent event = new TmfEvent(TRACE, 0, new TmfTimestamp(15, -9), new TmfEventType(TYPE_A, null), null);
+        assertTrue(pushdown.matches(event));
+    }
+
+    @Test
+    public void testIntersect() {
+        TmfFilterPushdown first = new TmfFilterPushdown(Arrays.asList(TYPE_A, TYPE_B), 0, 20);
+        TmfFilterPushdown second = new TmfFilterPushdown(Collections.singleton(TYPE_B), 10, 30);
+        TmfFilterPushdown intersection = first.intersect(second);
+        assertEquals(Collections.singleton(TYPE_B), intersection.getEventTypes());
+        assertEquals(10, intersection.getStartTime());
+        assertEquals(20, intersection.getEndTime());
+
+        intersection = first.intersect(new TmfFilterPushdown(null, 30, 40));
+        assertTrue(intersection.isEmpty());
+        assertEquals(first.getEventTypes(), intersection.getEventTypes());
+    }
+
+    @Test
+    public void testUnion() {
+        TmfFilterPushdown first = new TmfFilterPushdown(Collections.singleton(TYPE_A), 0, 10);
+        TmfFilterPushdown second = new TmfFilterPushdown(Collections.singleton(TYPE_B), 20, 30);
+        TmfFilterPushdown union = first.union(second);
+        assertEquals(2, union.getEventTypes().size());
+        assertEquals(0, union.getStartTime());
+        assertEquals(30, union.getEndTime());
+
+        union = first.union(TmfFilterPushdown.UNCONSTRAINED);
+        assertTrue(union.isUnconstrained());
+
+        TmfFilterPushdown empty = new TmfFilterPushdown(Collections.<String> emptySet(), 0, 10);
+        assertEquals(second, empty.union(second));
+    }
+
+    @Test
+    public void testGetPushdown() {
+        TmfFilterRootNode root = new TmfFilterRootNode();
+        TmfFilterAndNode and = new TmfFilterAndNode(root);
+        createTypeEquals(and, TYPE_A);
+        createTimeCompare(and, "0.000000010", 1);
+        createTimeCompare(and, "0.000000020", -1);
+        TmfFilterPushdown pushdown = TmfFilterCompiler.getPushdown(root);
+        assertEquals(Collections.singleton(TYPE_A), pushdown.getEventTypes());
+        assertEquals(10, pushdown.getStartTime());
+        assertEquals(20, pushdown.getEndTime());
+
+        /* A negated node can't be pushed down */
+        and.setNot(true);
+        assertTrue(TmfFilterCompiler.getPushdown(root).isUnconstrained());
+    }
+
+    @Test
+    public void testGetPushdownOr() {
+        TmfFilterOrNode or = new TmfFilterOrNode(null);
+        TmfFilterAndNode first = new TmfFilterAndNode(or);
+        createTypeEquals(first, TYPE_A);
+        TmfFilterAndNode second = new TmfFilterAndNode(or);
+        createTypeEquals(second, TYPE_B);
+        TmfFilterPushdown pushdown = TmfFilterCompiler.getPushdown(or);
+        assertEquals(2, pushdown.getEventTypes().size());
+
+        /* One unconstrained operand makes the whole union unconstrained */
+        new TmfFilterAndNode(or);
+        assertNull(TmfFilterCompiler.getPushdown(or).getEventTypes());
+    }
+}
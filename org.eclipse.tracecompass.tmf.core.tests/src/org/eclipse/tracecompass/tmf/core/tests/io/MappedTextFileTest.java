@@ -0,0 +1,148 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.eclipse.tracecompass.tmf.core.io.MappedTextFile;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test suite for the {@link MappedTextFile} class.
+ */
+@SuppressWarnings("javadoc")
+public class MappedTextFileTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final String CONTENT = "first line\r\nsecond line\n\ndéjà vu\nlast line";
+
+    private File fFile;
+
+    @Before
+    public void setUp() throws IOException {
+        fFile = File.createTempFile("mapped", ".txt");
+        try (FileOutputStream out = new FileOutputStream(fFile)) {
+            out.write(CONTENT.getBytes(UTF8));
+        }
+    }
+
+    @After
+    public void tearDown() {
+        fFile.delete();
+    }
+
+    @Test
+    public void testGetNextLine() throws IOException {
+        try (MappedTextFile file = new MappedTextFile(fFile)) {
+            assertEquals("first line", file.getNextLine().toString());
+            assertEquals(12, file.getFilePointer());
+            assertEquals("second line", file.getNextLine().toString());
+            assertEquals("", file.getNextLine().toString());
+            assertEquals("déjà vu", file.getNextLine().toString());
+            assertEquals("last line", file.getNextLine().toString());
+            assertEquals(fFile.length(), file.getFilePointer());
+            assertNull(file.getNextLine());
+        }
+    }
+
+    @Test
+    public void testSmallWindow() throws IOException {
+        /* Lines cross the window boundaries, and are longer than a window */
+        try (MappedTextFile file = new MappedTextFile(fFile, UTF8, 4)) {
+            assertEquals("first line", file.getNextLine().toString());
+            assertEquals("second line", file.getNextLine().toString());
+            assertEquals("", file.getNextLine().toString());
+            assertEquals("déjà vu", file.getNextLine().toString());
+            assertEquals("last line", file.getNextLine().toString());
+            assertNull(file.getNextLine());
+        }
+    }
+
+    @Test
+    public void testSeek() throws IOException {
+        try (MappedTextFile file = new MappedTextFile(fFile)) {
+            file.seek(12);
+            assertEquals("second line", file.getNextLine().toString());
+            file.seek(0);
+            assertEquals('f', file.read());
+            assertEquals("irst line", file.getNextLine().toString());
+            file.seek(fFile.length());
+            assertEquals(-1, file.read());
+            assertNull(file.getNextLine());
+        }
+    }
+
+    @Test
+    public void testLineView() throws IOException {
+        try (MappedTextFile file = new MappedTextFile(fFile, UTF8, 16)) {
+            CharSequence line = file.getNextLine();
+            Matcher matcher = Pattern.compile("(\\w+) (\\w+)").matcher(line);
+            assertTrue(matcher.matches());
+            assertEquals("first", matcher.group(1));
+            assertEquals("line", matcher.group(2));
+            assertEquals(10, line.length());
+            assertEquals("line", line.subSequence(6, 10).toString());
+            String copy = line.toString();
+
+            /* The window of the view is released when the reader moves to another one */
+            file.seek(35);
+            assertEquals("last line", file.getNextLine().toString());
+            assertReleased(line, copy);
+            assertEquals("first line", copy);
+        }
+    }
+
+    @Test
+    public void testLineViewAfterClose() throws IOException {
+        CharSequence line;
+        try (MappedTextFile file = new MappedTextFile(fFile)) {
+            line = file.getNextLine();
+        }
+        assertReleased(line, "first line");
+    }
+
+    /*
+     * The window of a view is unmapped only if the JVM gives access to the
+     * cleaner of its buffer. Otherwise, it is left to the garbage collector and
+     * the view must still read the same content.
+     */
+    private static void assertReleased(CharSequence line, String expected) {
+        try {
+            assertEquals(expected, line.toString());
+        } catch (IllegalStateException e) {
+            /* Unmapped */
+            return;
+        }
+        assertEquals(expected.charAt(0), line.charAt(0));
+    }
+
+    @Test(expected = IOException.class)
+    public void testTruncated() throws IOException {
+        try (MappedTextFile file = new MappedTextFile(fFile)) {
+            assertEquals("first line", file.getNextLine().toString());
+            try (RandomAccessFile raf = new RandomAccessFile(fFile, "rw")) {
+                raf.setLength(14);
+            }
+            file.getNextLine();
+        }
+    }
+}
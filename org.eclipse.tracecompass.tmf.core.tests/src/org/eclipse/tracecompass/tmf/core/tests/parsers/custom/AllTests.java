@@ -0,0 +1,26 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.parsers.custom;
+
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+
+/**
+ * Test suite for org.eclipse.tracecompass.tmf.core.parsers.custom
+ */
+@RunWith(Suite.class)
+@Suite.SuiteClasses({
+    CustomTxtInputMatchingTest.class,
+    CustomXmlRecordParserTest.class,
+    CustomXmlRecordReaderTest.class
+})
+public class AllTests {
+
+}
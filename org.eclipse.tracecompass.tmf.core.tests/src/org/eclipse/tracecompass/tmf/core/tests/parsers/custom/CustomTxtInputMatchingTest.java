@@ -0,0 +1,72 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.parsers.custom;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.regex.Matcher;
+
+import org.eclipse.tracecompass.tmf.core.parsers.custom.CustomTxtTraceContext;
+import org.eclipse.tracecompass.tmf.core.parsers.custom.CustomTxtTraceDefinition.Cardinality;
+import org.eclipse.tracecompass.tmf.core.parsers.custom.CustomTxtTraceDefinition.InputLine;
+import org.eclipse.tracecompass.tmf.core.trace.location.TmfLongLocation;
+import org.junit.Test;
+
+/**
+ * Test the pre-filtered matching of custom text trace input lines
+ */
+@SuppressWarnings("javadoc")
+public class CustomTxtInputMatchingTest {
+
+    private static InputLine createInputLine(String regex) {
+        return new InputLine(Cardinality.ONE, regex, null);
+    }
+
+    @Test
+    public void testLiteralPrefix() {
+        assertEquals("ERROR ", createInputLine("ERROR (.*)").getLiteralPrefix());
+        assertEquals("[INFO] ", createInputLine("^\\[INFO\\] (\\d+)").getLiteralPrefix());
+        assertEquals("ab", createInputLine("abc*d").getLiteralPrefix());
+        assertEquals("ab", createInputLine("ab\\d+").getLiteralPrefix());
+        assertEquals("", createInputLine("(\\S+) .*").getLiteralPrefix());
+        assertEquals("", createInputLine("ERROR|WARN .*").getLiteralPrefix());
+        assertEquals("", createInputLine("(?i)error .*").getLiteralPrefix());
+    }
+
+    @Test
+    public void testSetRegex() {
+        InputLine input = createInputLine("ERROR (.*)");
+        assertEquals("ERROR ", input.getLiteralPrefix());
+        input.setRegex("WARN (.*)");
+        assertEquals("WARN ", input.getLiteralPrefix());
+    }
+
+    @Test
+    public void testMatch() {
+        CustomTxtTraceContext context = new CustomTxtTraceContext(new TmfLongLocation(0L), 0);
+        InputLine input = createInputLine("ERROR (\\d+) (.*)");
+
+        Matcher matcher = context.match(input, "ERROR 42 something bad");
+        assertNotNull(matcher);
+        assertEquals("42", matcher.group(1));
+        assertEquals("something bad", matcher.group(2));
+
+        assertNull(context.match(input, "WARN 42 something"));
+        assertNull(context.match(input, "ERROR xx something"));
+        assertNull(context.match(input, "ERR"));
+
+        /* The matcher is reused by the context */
+        assertSame(matcher, context.match(input, "ERROR 43 again"));
+        assertEquals("43", matcher.group(1));
+    }
+}
@@ -0,0 +1,127 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.parsers.custom;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.eclipse.tracecompass.internal.tmf.core.parsers.custom.CustomXmlRecordParser;
+import org.eclipse.tracecompass.internal.tmf.core.parsers.custom.CustomXmlRecordParser.InputValue;
+import org.eclipse.tracecompass.tmf.core.parsers.custom.CustomTraceDefinition;
+import org.eclipse.tracecompass.tmf.core.parsers.custom.CustomXmlInputAttribute;
+import org.eclipse.tracecompass.tmf.core.parsers.custom.CustomXmlInputElement;
+import org.eclipse.tracecompass.tmf.core.parsers.custom.CustomXmlTrace;
+import org.junit.Test;
+import org.w3c.dom.Element;
+
+/**
+ * Test the streaming parser of custom XML trace records
+ */
+@SuppressWarnings("javadoc")
+public class CustomXmlRecordParserTest {
+
+    private static final String RECORD =
+            "<event id=\"7\" ns:type='t'>\n" +
+            "  <time>2015-01-01 <!-- c --> 10:00</time>\n" +
+            "  <message>  hello &amp; bye </message>\n" +
+            "  <data><a>1</a>\n<b/><c x=\"y\">  </c><d><e>2</e>text</d></data>\n" +
+            "  <message>again</message>\n" +
+            "</event>";
+
+    private static CustomXmlInputElement createRecordInput() {
+        CustomXmlInputElement record = new CustomXmlInputElement("event", true, null, 0, null, null);
+        record.addAttribute(new CustomXmlInputAttribute("id", "Id", CustomTraceDefinition.ACTION_SET, ""));
+        record.addAttribute(new CustomXmlInputAttribute("ns:type", "Type", CustomTraceDefinition.ACTION_SET, ""));
+        record.addAttribute(new CustomXmlInputAttribute("missing", "Missing", CustomTraceDefinition.ACTION_SET, ""));
+        record.addChild(new CustomXmlInputElement("time", false, "Time", CustomTraceDefinition.ACTION_SET, "", null));
+        record.addChild(new CustomXmlInputElement("message", false, "Message", CustomTraceDefinition.ACTION_APPEND, "", null));
+        record.addChild(new CustomXmlInputElement("data", false, "Data", CustomTraceDefinition.ACTION_SET, "", null));
+        return record;
+    }
+
+    private static Element parseDom(String record) throws Exception {
+        return DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                .parse(new ByteArrayInputStream(record.getBytes("UTF-8"))).getDocumentElement();
+    }
+
+    private static String describe(Element element) {
+        return CustomXmlTrace.parseElement(element, new StringBuffer()).toString();
+    }
+
+    @Test
+    public void testValues() throws Exception {
+        List<InputValue> values = new CustomXmlRecordParser(createRecordInput()).parse(RECORD);
+        assertNotNull(values);
+        assertEquals(7, values.size());
+
+        assertEquals("Id", values.get(0).getInputName());
+        assertEquals("7", values.get(0).getValue());
+        assertEquals("t", values.get(1).getValue());
+        assertEquals("", values.get(2).getValue());
+        assertEquals("Time", values.get(3).getInputName());
+        assertEquals("2015-01-0110:00", values.get(3).getValue());
+        assertEquals("Message", values.get(4).getInputName());
+        assertEquals(CustomTraceDefinition.ACTION_APPEND, values.get(4).getInputAction());
+        assertEquals("hello & bye", values.get(4).getValue());
+        assertEquals("Data", values.get(5).getInputName());
+        assertEquals("again", values.get(6).getValue());
+
+        /* Same content as the DOM-based description */
+        Element dom = parseDom(RECORD);
+        Element data = (Element) dom.getElementsByTagName("data").item(0);
+        Element time = (Element) dom.getElementsByTagName("time").item(0);
+        assertEquals(describe(data), values.get(5).getValue());
+        assertEquals(describe(time), values.get(3).getValue());
+    }
+
+    @Test
+    public void testRecordValue() throws Exception {
+        CustomXmlInputElement record = new CustomXmlInputElement("event", true, "Record", CustomTraceDefinition.ACTION_SET, "", null);
+        List<InputValue> values = new CustomXmlRecordParser(record).parse(RECORD);
+        assertNotNull(values);
+        assertEquals(1, values.size());
+        assertEquals(describe(parseDom(RECORD)), values.get(0).getValue());
+    }
+
+    @Test
+    public void testCdata() throws Exception {
+        String record = "<event><time>1<![CDATA[ cdata ]]>2</time>" +
+                "<message><![CDATA[only cdata]]></message>" +
+                "<data>a &lt; b<c><![CDATA[x]]></c></data></event>";
+        List<InputValue> values = new CustomXmlRecordParser(createRecordInput()).parse(record);
+        assertNotNull(values);
+        assertEquals(6, values.size());
+
+        /* The CDATA sections are ignored, like in the DOM-based description */
+        Element dom = parseDom(record);
+        assertEquals("12", values.get(3).getValue());
+        assertEquals(describe((Element) dom.getElementsByTagName("time").item(0)), values.get(3).getValue());
+        assertEquals("", values.get(4).getValue());
+        assertEquals(describe((Element) dom.getElementsByTagName("message").item(0)), values.get(4).getValue());
+        assertEquals(describe((Element) dom.getElementsByTagName("data").item(0)), values.get(5).getValue());
+        assertEquals(describe(dom), new CustomXmlRecordParser(
+                new CustomXmlInputElement("event", true, "Record", CustomTraceDefinition.ACTION_SET, "", null))
+                .parse(record).get(0).getValue());
+    }
+
+    @Test
+    public void testMalformed() {
+        CustomXmlRecordParser parser = new CustomXmlRecordParser(createRecordInput());
+        assertNull(parser.parse("<event><time>1</event>"));
+        assertNull(parser.parse("<event><time>1</time>"));
+        assertNull(parser.parse(""));
+    }
+}
@@ -0,0 +1,113 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.parsers.custom;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import org.eclipse.tracecompass.internal.tmf.core.parsers.custom.CustomXmlRecordParser;
+import org.eclipse.tracecompass.internal.tmf.core.parsers.custom.CustomXmlRecordParser.InputValue;
+import org.eclipse.tracecompass.internal.tmf.core.parsers.custom.CustomXmlRecordReader;
+import org.eclipse.tracecompass.tmf.core.io.BufferedRandomAccessFile;
+import org.eclipse.tracecompass.tmf.core.parsers.custom.CustomTraceDefinition;
+import org.eclipse.tracecompass.tmf.core.parsers.custom.CustomXmlInputElement;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the reader of custom XML trace records
+ */
+@SuppressWarnings("javadoc")
+public class CustomXmlRecordReaderTest {
+
+    private static final String RECORD1 =
+            "<event id=\"a>b\" type='/>'>\r\n" +
+            "  <!-- <event> --><msg>one</msg>\r\n" +
+            "  <data><a/><b x=\"/>\">2</b></data>\r\n" +
+            "</event>";
+    private static final String RECORD2 = "<event id=\"2\"/>";
+    private static final String RECORD3 = "<event><msg>three</msg></event>";
+    private static final String CONTENT = "<trace>\n" + RECORD1 + "\n" + RECORD2 + RECORD3 + "\n</trace>\n";
+
+    private File fFile;
+
+    @Before
+    public void setUp() throws IOException {
+        fFile = File.createTempFile("records", ".xml");
+        try (FileOutputStream out = new FileOutputStream(fFile)) {
+            out.write(CONTENT.getBytes("UTF-8"));
+        }
+    }
+
+    @After
+    public void tearDown() {
+        fFile.delete();
+    }
+
+    private static CustomXmlRecordParser createParser() {
+        CustomXmlInputElement record = new CustomXmlInputElement("event", true, null, 0, null, null);
+        record.addChild(new CustomXmlInputElement("msg", false, "Message", CustomTraceDefinition.ACTION_SET, "", null));
+        return new CustomXmlRecordParser(record);
+    }
+
+    @Test
+    public void testGetRecord() throws IOException {
+        try (BufferedRandomAccessFile file = new BufferedRandomAccessFile(fFile, "r")) {
+            long pos = CONTENT.indexOf(RECORD1);
+            for (String expected : new String[] { RECORD1, RECORD2, RECORD3 }) {
+                pos = CONTENT.indexOf(expected, (int) pos);
+                file.seek(pos);
+                /* The end of the record is found without parsing it */
+                assertEquals(expected, new CustomXmlRecordReader(file).getRecord());
+                pos += expected.length();
+            }
+        }
+    }
+
+    @Test
+    public void testParse() throws IOException {
+        CustomXmlRecordParser parser = createParser();
+        try (BufferedRandomAccessFile file = new BufferedRandomAccessFile(fFile, "r")) {
+            for (String expected : new String[] { RECORD1, RECORD3 }) {
+                file.seek(CONTENT.indexOf(expected));
+                CustomXmlRecordReader reader = new CustomXmlRecordReader(file);
+                List<InputValue> values = parser.parse(reader);
+                assertNotNull(values);
+                assertEquals(parser.parse(expected).get(0).getValue(), values.get(0).getValue());
+                assertEquals(expected, reader.getRecord());
+            }
+        }
+    }
+
+    @Test
+    public void testLongRecord() throws IOException {
+        StringBuilder builder = new StringBuilder("<event><msg>");
+        for (int i = 0; i < 10000; i++) {
+            builder.append("text ");
+        }
+        String record = builder.append("</msg></event>").toString();
+        try (FileOutputStream out = new FileOutputStream(fFile)) {
+            out.write((record + RECORD2).getBytes("UTF-8"));
+        }
+        try (BufferedRandomAccessFile file = new BufferedRandomAccessFile(fFile, "r")) {
+            CustomXmlRecordReader reader = new CustomXmlRecordReader(file);
+            List<InputValue> values = createParser().parse(reader);
+            assertNotNull(values);
+            assertEquals(record.length() - "<event><msg></msg></event>".length() - 1, values.get(0).getValue().length());
+            assertEquals(record, reader.getRecord());
+        }
+    }
+}
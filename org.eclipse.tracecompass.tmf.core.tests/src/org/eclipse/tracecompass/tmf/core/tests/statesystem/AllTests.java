@@ -21,6 +21,8 @@ import org.junit.runners.Suite;
 @RunWith(Suite.class)
 @Suite.SuiteClasses({
     ExperimentStateSystemModuleTest.class,
+    PartialStateSystemTest.class,
+    StateSystemAnalysisModuleAppendTest.class,
     StateSystemAnalysisModuleTest.class
 })
 public class AllTests {
@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.statesystem;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.eclipse.tracecompass.internal.statesystem.core.StateSystem;
+import org.eclipse.tracecompass.internal.tmf.core.statesystem.backends.partial.PartialStateSystem;
+import org.eclipse.tracecompass.statesystem.core.StateSystemFactory;
+import org.eclipse.tracecompass.statesystem.core.backend.StateHistoryBackendFactory;
+import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the pushes and pops on the {@link PartialStateSystem} used by partial
+ * histories, which must not add attributes to the upstream state system
+ */
+@SuppressWarnings("restriction")
+public class PartialStateSystemTest {
+
+    private StateSystem fUpstream;
+    private PartialStateSystem fPartial;
+    private int fStack;
+
+    /**
+     * Build an upstream state system with a stack of depth 2, and a partial
+     * state system seeked at its start
+     *
+     * @throws Exception
+     *             If the state systems cannot be built
+     */
+    @Before
+    public void setUp() throws Exception {
+        fUpstream = (StateSystem) StateSystemFactory.newStateSystem(StateHistoryBackendFactory.createInMemoryBackend("partial-upstream", 0));
+        fStack = fUpstream.getQuarkAbsoluteAndAdd("stack");
+        fUpstream.pushAttribute(10, TmfStateValue.newValueString("a"), fStack);
+        fUpstream.pushAttribute(20, TmfStateValue.newValueString("b"), fStack);
+        fUpstream.popAttribute(30, fStack);
+        fUpstream.popAttribute(40, fStack);
+        fUpstream.closeHistory(50);
+
+        fPartial = new PartialStateSystem();
+        fPartial.assignUpstream(fUpstream);
+        fPartial.replaceOngoingState(fUpstream.queryFullState(0));
+    }
+
+    /**
+     * Clean-up
+     */
+    @After
+    public void tearDown() {
+        fPartial.dispose();
+        fUpstream.dispose();
+    }
+
+    /**
+     * Test that pushes and pops use the attributes of the upstream state
+     * system
+     *
+     * @throws Exception
+     *             If a state change fails
+     */
+    @Test
+    public void testPushPop() throws Exception {
+        int nbAttributes = fUpstream.getNbAttributes();
+        fPartial.pushAttribute(10, TmfStateValue.newValueString("a"), fStack);
+        fPartial.pushAttribute(20, TmfStateValue.newValueString("b"), fStack);
+        assertEquals(2, fPartial.queryOngoingState(fStack).unboxInt());
+        assertEquals("b", fPartial.queryOngoingState(fUpstream.getQuarkRelative(fStack, 2)).unboxStr());
+        assertEquals("b", fPartial.popAttribute(30, fStack).unboxStr());
+        assertEquals("a", fPartial.popAttribute(40, fStack).unboxStr());
+        assertEquals(nbAttributes, fUpstream.getNbAttributes());
+    }
+
+    /**
+     * Test that a push deeper than the upstream stack is rejected, without
+     * adding the attribute to the upstream state system
+     *
+     * @throws Exception
+     *             If a state change fails
+     */
+    @Test
+    public void testPushNewDepth() throws Exception {
+        int nbAttributes = fUpstream.getNbAttributes();
+        fPartial.pushAttribute(10, TmfStateValue.newValueString("a"), fStack);
+        fPartial.pushAttribute(20, TmfStateValue.newValueString("b"), fStack);
+        try {
+            fPartial.pushAttribute(25, TmfStateValue.newValueString("c"), fStack);
+            fail();
+        } catch (RuntimeException e) {
+            /* Expected */
+        }
+        assertEquals(nbAttributes, fUpstream.getNbAttributes());
+    }
+}
@@ -0,0 +1,159 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.statesystem;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
+import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.exceptions.TmfAnalysisException;
+import org.eclipse.tracecompass.tmf.core.exceptions.TmfTraceException;
+import org.eclipse.tracecompass.tmf.core.signal.TmfTraceRangeUpdatedSignal;
+import org.eclipse.tracecompass.tmf.core.statesystem.TmfStateSystemAnalysisModule;
+import org.eclipse.tracecompass.tmf.core.tests.shared.TmfTestTrace;
+import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.tests.stubs.analysis.TestStateSystemModule;
+import org.eclipse.tracecompass.tmf.tests.stubs.trace.TmfGrowingTraceStub;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestRule;
+import org.junit.rules.Timeout;
+
+/**
+ * Test the {@link TmfStateSystemAnalysisModule} class on a trace to which
+ * events are appended while the state system is built
+ */
+public class StateSystemAnalysisModuleAppendTest {
+
+    /** Time-out tests after 20 seconds */
+    @Rule
+    public TestRule globalTimeout = new Timeout(20000);
+
+    private static final String MODULE_ID = "org.eclipse.linuxtools.tmf.core.tests.analysis.sstest";
+    private static final int BLOCK_SIZE = 100;
+    private static final int NB_INITIAL_EVENTS = 4321;
+
+    /* Content of the events counted by the test state provider */
+    private static final String COUNTED_CONTENT = "[]";
+
+    private String fPath;
+    private File fFile;
+    private TmfGrowingTraceStub fTrace;
+    private TestStateSystemModule fModule;
+
+    /**
+     * Create the trace with the first events of the test trace, and the
+     * module
+     *
+     * @throws IOException
+     *             If the trace file could not be created
+     * @throws TmfTraceException
+     *             If the trace could not be opened
+     * @throws TmfAnalysisException
+     *             If the module could not be set up
+     */
+    @Before
+    public void setUp() throws IOException, TmfTraceException, TmfAnalysisException {
+        fPath = TmfTestTrace.A_TEST_10K.getTrace().getPath();
+        TmfTestTrace.A_TEST_10K.dispose();
+        fFile = File.createTempFile("growing", ".trace");
+        fTrace = new TmfGrowingTraceStub(fPath, fFile, NB_INITIAL_EVENTS, BLOCK_SIZE);
+        fTrace.indexTrace(true);
+
+        fModule = new TestStateSystemModule();
+        fModule.setId(MODULE_ID);
+        fModule.setTrace(fTrace);
+    }
+
+    /**
+     * Dispose the module and the trace
+     */
+    @After
+    public void tearDown() {
+        fModule.dispose();
+        fTrace.dispose();
+        fFile.delete();
+    }
+
+    /**
+     * Test that the state system building resumes after the events it already
+     * processed when events are appended to the trace, and that the history
+     * is closed once the trace is complete
+     *
+     * @throws IOException
+     *             If the events could not be appended
+     * @throws AttributeNotFoundException
+     *             If the test attribute was not created
+     * @throws StateSystemDisposedException
+     *             If the state system was disposed
+     */
+    @Test
+    public void testResume() throws IOException, AttributeNotFoundException, StateSystemDisposedException {
+        fModule.schedule();
+        assertTrue(fModule.waitForCompletion());
+        ITmfStateSystem ss = fModule.getStateSystem();
+        assertNotNull(ss);
+        /* The history stays open while the trace is not complete */
+        assertFalse(ss.waitUntilBuilt(0));
+
+        fTrace.appendRemainingEvents();
+        fTrace.setComplete(true);
+        fTrace.resetNbParsedEvents();
+        TmfTimeRange range = new TmfTimeRange(fTrace.getStartTime(), getEndTime());
+        fModule.traceRangeUpdated(new TmfTraceRangeUpdatedSignal(this, fTrace, range));
+        ss.waitUntilBuilt();
+
+        /* Only the events after the last checkpoint were read again */
+        long nbEvents = countEvents(null);
+        long nbAppended = nbEvents - NB_INITIAL_EVENTS;
+        assertTrue(fTrace.getNbParsedEvents() >= nbAppended);
+        assertTrue(fTrace.getNbParsedEvents() <= nbAppended + 2 * (BLOCK_SIZE + 1));
+
+        /* Each counted event was processed once */
+        int quark = ss.getQuarkAbsolute("String", COUNTED_CONTENT);
+        int count = ss.querySingleState(ss.getCurrentEndTime(), quark).getStateValue().unboxInt();
+        assertEquals(countEvents(COUNTED_CONTENT) - 1, count);
+    }
+
+    private static ITmfTimestamp getEndTime() {
+        ITmfTimestamp endTime = TmfTestTrace.A_TEST_10K.getTrace().getEndTime();
+        TmfTestTrace.A_TEST_10K.dispose();
+        return endTime;
+    }
+
+    /* Count the events of the complete trace, with the given content or all */
+    private static long countEvents(String content) {
+        ITmfTrace trace = TmfTestTrace.A_TEST_10K.getTrace();
+        ITmfContext context = trace.seekEvent(0);
+        long count = 0;
+        ITmfEvent event = trace.getNext(context);
+        while (event != null) {
+            if (content == null || content.equals(event.getContent().getValue())) {
+                count++;
+            }
+            event = trace.getNext(context);
+        }
+        TmfTestTrace.A_TEST_10K.dispose();
+        return count;
+    }
+}
@@ -0,0 +1,253 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.statistics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.eclipse.tracecompass.tmf.core.statistics.TmfStatisticsStore;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test suite for the {@link TmfStatisticsStore} class, with synthetic events.
+ */
+@SuppressWarnings("javadoc")
+public class TmfStatisticsStoreTest {
+
+    /* Enough events for several snapshots of the counts per type */
+    private static final int NB_EVENTS = 20000;
+    private static final String TYPE_A = "A";
+    private static final String TYPE_B = "B";
+    private static final String TYPE_LOST = "Lost event";
+
+    private File fFile;
+    private EventReader fReader;
+
+    /**
+     * Reader of the events added to the store, by rank. The rank of an event
+     * is its index in the lists.
+     */
+    private static class EventReader implements TmfStatisticsStore.IEventReader {
+        private final List<Long> fTimes = new ArrayList<>();
+        private final List<String> fTypes = new ArrayList<>();
+        private int fNbReads = 0;
+
+        public long add(long time, String type) {
+            fTimes.add(time);
+            fTypes.add(type);
+            return fTimes.size() - 1;
+        }
+
+        @Override
+        public int read(long rank, long[] times, String[] types) {
+            fNbReads++;
+            int nb = (int) Math.min(times.length, fTimes.size() - rank);
+            for (int i = 0; i < nb; i++) {
+                times[i] = fTimes.get((int) rank + i);
+                types[i] = fTypes.get((int) rank + i);
+            }
+            return nb;
+        }
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        fFile = File.createTempFile("statistics", ".stats");
+        fReader = new EventReader();
+    }
+
+    private void addEvent(TmfStatisticsStore store, long time, String type) {
+        store.addEvent(fReader.add(time, type), time, type);
+    }
+
+    @After
+    public void tearDown() {
+        fFile.delete();
+    }
+
+    /*
+     * Event i is at time 10 * (i / 2): there are two events at each time, the
+     * one of even index is of type A, the other of type B.
+     */
+    private TmfStatisticsStore createStore() {
+        TmfStatisticsStore store = new TmfStatisticsStore(fFile, fReader);
+        for (int i = 0; i < NB_EVENTS; i++) {
+            addEvent(store, 10 * (i / 2), (i % 2 == 0) ? TYPE_A : TYPE_B);
+            if (i == 1000) {
+                store.addLostEvents(5000, TYPE_LOST, 50);
+            }
+        }
+        return store;
+    }
+
+    private static void assertCounts(TmfStatisticsStore store) {
+        assertEquals(NB_EVENTS, store.getEventsTotal());
+        Map<String, Long> totals = store.getEventTypesTotal();
+        assertEquals(Long.valueOf(NB_EVENTS / 2), totals.get(TYPE_A));
+        assertEquals(Long.valueOf(NB_EVENTS / 2), totals.get(TYPE_B));
+        assertEquals(Long.valueOf(50), totals.get(TYPE_LOST));
+
+        /* The range bounds are inclusive */
+        assertEquals(4, store.getEventsInRange(10, 20));
+        assertEquals(2, store.getEventsInRange(11, 20));
+        assertEquals(0, store.getEventsInRange(11, 19));
+        assertEquals(NB_EVENTS, store.getEventsInRange(Long.MIN_VALUE, Long.MAX_VALUE));
+
+        /* Short range, then ranges across snapshots */
+        Map<String, Long> types = store.getEventTypesInRange(4990, 5000);
+        assertEquals(Long.valueOf(2), types.get(TYPE_A));
+        assertEquals(Long.valueOf(50), types.get(TYPE_LOST));
+        types = store.getEventTypesInRange(10, 90000);
+        assertEquals(Long.valueOf(9000), types.get(TYPE_A));
+        assertEquals(Long.valueOf(9000), types.get(TYPE_B));
+        types = store.getEventTypesInRange(5010, 99990);
+        assertEquals(Long.valueOf(9499), types.get(TYPE_B));
+        assertEquals(Long.valueOf(0), types.get(TYPE_LOST));
+
+        List<Long> histogram = store.histogramQuery(0, 100000, 10);
+        assertEquals(10, histogram.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(NB_EVENTS / 10, histogram.get(i).longValue());
+        }
+    }
+
+    @Test
+    public void testBuild() throws IOException {
+        TmfStatisticsStore store = createStore();
+        try {
+            /* The events can be queried before the store is complete */
+            assertFalse(store.isBuilt());
+            assertFalse(store.waitUntilBuilt(1));
+            assertCounts(store);
+            store.finish();
+            assertTrue(store.isBuilt());
+            assertTrue(store.waitUntilBuilt(1));
+            assertCounts(store);
+        } finally {
+            store.dispose();
+        }
+    }
+
+    @Test
+    public void testReopen() throws IOException {
+        TmfStatisticsStore store = createStore();
+        store.finish();
+        store.dispose();
+
+        /* Nothing is stored per event */
+        assertTrue(fFile.length() < NB_EVENTS);
+
+        store = new TmfStatisticsStore(fFile, fReader);
+        try {
+            assertTrue(store.isBuilt());
+            assertCounts(store);
+            /* The blocks inside the queried ranges were read back */
+            assertTrue(fReader.fNbReads > 0);
+        } finally {
+            store.dispose();
+        }
+    }
+
+    @Test
+    public void testReopenIncomplete() {
+        TmfStatisticsStore store = createStore();
+        store.dispose();
+        assertFalse(fFile.exists());
+
+        store = new TmfStatisticsStore(fFile, fReader);
+        try {
+            assertFalse(store.isBuilt());
+            assertEquals(0, store.getEventsTotal());
+        } finally {
+            store.dispose();
+        }
+    }
+
+    @Test
+    public void testManyTypes() throws IOException {
+        /*
+         * Event i is at time i. The first types are frequent, the others
+         * appear in few snapshot intervals each, so that some snapshots are
+         * rebuilt from changes and others from full copies.
+         */
+        final int nbEvents = 50000;
+        final int nbTypes = 500;
+        Random random = new Random(42);
+        int[] types = new int[nbEvents];
+        TmfStatisticsStore store = new TmfStatisticsStore(fFile, fReader);
+        try {
+            for (int i = 0; i < nbEvents; i++) {
+                types[i] = random.nextBoolean() ? random.nextInt(4) : (i / 1000) * 10 + random.nextInt(10);
+                addEvent(store, i, "Type-" + (types[i] % nbTypes));
+            }
+            for (int query = 0; query < 400; query++) {
+                if (query == 200) {
+                    /* Same queries on the reopened store */
+                    store.finish();
+                    store.dispose();
+                    store = new TmfStatisticsStore(fFile, fReader);
+                }
+                int start = random.nextInt(nbEvents);
+                int end = start + random.nextInt(nbEvents - start);
+                Map<String, Long> expected = new HashMap<>();
+                for (int i = start; i <= end; i++) {
+                    String type = "Type-" + (types[i] % nbTypes);
+                    Long count = expected.get(type);
+                    expected.put(type, (count == null ? 1 : count + 1));
+                }
+                Map<String, Long> result = store.getEventTypesInRange(start, end);
+                for (Map.Entry<String, Long> entry : result.entrySet()) {
+                    Long count = expected.get(entry.getKey());
+                    assertEquals(entry.getKey(), (count == null ? 0 : count.longValue()), entry.getValue().longValue());
+                }
+                assertEquals(expected.keySet(), getNonZero(result));
+            }
+        } finally {
+            store.dispose();
+        }
+    }
+
+    private static Set<String> getNonZero(Map<String, Long> counts) {
+        Set<String> types = new HashSet<>();
+        for (Map.Entry<String, Long> entry : counts.entrySet()) {
+            if (entry.getValue().longValue() != 0) {
+                types.add(entry.getKey());
+            }
+        }
+        return types;
+    }
+
+    @Test
+    public void testUnorderedEvent() {
+        TmfStatisticsStore store = new TmfStatisticsStore(fFile, fReader);
+        try {
+            addEvent(store, 100, TYPE_A);
+            addEvent(store, 50, TYPE_B);
+            /* The second event is counted at the time of the first one */
+            assertEquals(0, store.getEventsInRange(0, 99));
+            assertEquals(2, store.getEventsInRange(100, 100));
+        } finally {
+            store.dispose();
+        }
+    }
+}
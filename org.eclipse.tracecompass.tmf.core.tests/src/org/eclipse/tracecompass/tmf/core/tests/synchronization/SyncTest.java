@@ -25,6 +25,7 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.util.Collection;
 import java.util.LinkedList;
+import java.util.Random;
 
 import org.eclipse.tracecompass.internal.tmf.core.synchronization.SyncAlgorithmFullyIncremental;
 import org.eclipse.tracecompass.tmf.core.event.matching.TmfEventDependency;
@@ -198,6 +199,54 @@ public class SyncTest {
                 ));
     }
 
+    /**
+     * Testing that the fully incremental algorithm, whose hull bounds are
+     * arrays, gives the same results as the list-based implementation on
+     * random matches
+     */
+    @Test
+    public void testFullyIncrementalRandom() {
+        Random random = new Random(1234);
+        for (int run = 0; run < 20; run++) {
+            SynchronizationAlgorithm syncAlgo = SynchronizationAlgorithmFactory.getFullyIncrementalAlgorithm();
+            SynchronizationAlgorithm reference = new ListSyncAlgorithmFullyIncremental();
+            syncAlgo.init(fTraces);
+            reference.init(fTraces);
+
+            /* t2 = t1 * drift + offset, with random latencies both ways */
+            double drift = 1 + (random.nextDouble() - 0.5) / 1000;
+            long offset = random.nextInt(1000000);
+            long time = 0;
+            int nbMatches = 50 + random.nextInt(1000);
+            for (int i = 0; i < nbMatches; i++) {
+                time += 1 + random.nextInt(10000);
+                long latency = 1 + random.nextInt(run < 15 ? 5000 : 100);
+                /* The last runs have a few inverted matches, which make the sync fail */
+                if (run >= 15 && random.nextInt(200) == 0) {
+                    latency = -latency * 100;
+                }
+                long remote = (long) (time * drift) + offset;
+                if (random.nextBoolean()) {
+                    addSyncMatch(syncAlgo, t1, time, t2, remote + latency);
+                    addSyncMatch(reference, t1, time, t2, remote + latency);
+                } else {
+                    addSyncMatch(syncAlgo, t2, remote, t1, time + latency);
+                    addSyncMatch(reference, t2, remote, t1, time + latency);
+                }
+                assertEquals(reference.getSynchronizationQuality(t1, t2), syncAlgo.getSynchronizationQuality(t1, t2));
+                assertEquals(getHulls(reference), getHulls(syncAlgo));
+            }
+            assertEquals(reference.getTimestampTransform(t2), syncAlgo.getTimestampTransform(t2));
+            assertEquals(reference.getStats(), syncAlgo.getStats());
+        }
+    }
+
+    /* The alpha and beta of each hull, without the name of the class */
+    private static String getHulls(SynchronizationAlgorithm algo) {
+        String string = algo.toString();
+        return string.substring(string.indexOf(' ') + 1);
+    }
+
     /**
      * Testing the serialization of the fully incremental synchronization
      * algorithm
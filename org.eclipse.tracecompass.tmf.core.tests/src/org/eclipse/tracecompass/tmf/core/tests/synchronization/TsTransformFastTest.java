@@ -143,6 +143,43 @@ public class TsTransformFastTest {
         }
     }
 
+    /**
+     * Test that the batch transform gives the same values as the transform of
+     * each timestamp, in one cache range and across ranges
+     */
+    @Test
+    public void testBatchTransform() {
+        TmfTimestampTransformLinearFast fast = new TmfTimestampTransformLinearFast(Math.PI, 1234);
+        TmfTimestampTransformLinearFast reference = new TmfTimestampTransformLinearFast(Math.PI, 1234);
+        long deltaMax = fast.getDeltaMax();
+        long rangeStart = ts - (ts % deltaMax);
+
+        /* All in the same range, not in order */
+        long[] values = new long[] { rangeStart + 100, rangeStart, rangeStart + deltaMax - 1, rangeStart + 50 };
+        checkBatch(fast, reference, values);
+        assertEquals(1, fast.getCacheMisses());
+        assertEquals(3, fast.getCacheHits());
+
+        /* Same range again, no rescale */
+        checkBatch(fast, reference, new long[] { rangeStart + 10, rangeStart + 20 });
+        assertEquals(1, fast.getCacheMisses());
+
+        /* Across two ranges */
+        checkBatch(fast, reference, new long[] { rangeStart + deltaMax - 1, rangeStart + deltaMax, rangeStart + 3 * deltaMax });
+    }
+
+    private static void checkBatch(ITmfTimestampTransform batch, ITmfTimestampTransform reference, long[] values) {
+        /* Transform the values in the middle of a larger array */
+        long[] timestamps = new long[values.length + 2];
+        System.arraycopy(values, 0, timestamps, 1, values.length);
+        batch.transform(timestamps, 1, values.length);
+        assertEquals(0, timestamps[0]);
+        assertEquals(0, timestamps[timestamps.length - 1]);
+        for (int i = 0; i < values.length; i++) {
+            assertEquals(reference.transform(values[i]), timestamps[i + 1]);
+        }
+    }
+
     private static void checkTime(ITmfTimestampTransform precise, ITmfTimestampTransform fast,
             int samples, long start, long step) {
         long prev = 0;
@@ -24,6 +24,7 @@ import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.tracecompass.internal.tmf.core.synchronization.TmfTimestampTransform;
 import org.eclipse.tracecompass.internal.tmf.core.synchronization.TmfTimestampTransformLinear;
 import org.eclipse.tracecompass.tmf.core.synchronization.ITmfTimestampTransform;
+import org.eclipse.tracecompass.tmf.core.synchronization.TimestampTransformFactory;
 import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
 import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
 import org.junit.Test;
@@ -70,6 +71,26 @@ public class TsTransformTest {
         assertEquals(680828946763187045L, ttl.transform(oTs).getValue());
     }
 
+    /**
+     * Test the batch transform of the linear, constant and identity transforms
+     */
+    @Test
+    public void testBatchTransform() {
+        ITmfTimestampTransform[] transforms = new ITmfTimestampTransform[] {
+                new TmfTimestampTransformLinear(BigDecimal.valueOf(2.0), BigDecimal.valueOf(3)),
+                TimestampTransformFactory.createWithOffset(-42),
+                TmfTimestampTransform.IDENTITY
+        };
+        for (ITmfTimestampTransform transform : transforms) {
+            long[] timestamps = new long[] { 0, ts, ts + 1, 0 };
+            transform.transform(timestamps, 1, 2);
+            assertEquals(0, timestamps[0]);
+            assertEquals(transform.transform(ts), timestamps[1]);
+            assertEquals(transform.transform(ts + 1), timestamps[2]);
+            assertEquals(0, timestamps[3]);
+        }
+    }
+
     /**
      * Test for the identity transform
      */
@@ -173,4 +173,23 @@ public class TmfTraceUtilsTest {
         assertEquals(1, cpuObj);
 
     }
+
+    /**
+     * Test the {@link TmfTraceUtils#resolveCpuOfEvent(ITmfTrace, ITmfEvent)}
+     * method.
+     */
+    @Test
+    public void testResolveCpuOfEvent() {
+        TmfTrace trace = fTrace;
+        assertNotNull(trace);
+
+        ITmfContext context = trace.seekEvent(0L);
+        ITmfEvent event = trace.getNext(context);
+        assertNotNull(event);
+
+        /* Resolve twice, the second time uses the aspects found the first time */
+        assertEquals(1, TmfTraceUtils.resolveCpuOfEvent(trace, event));
+        assertEquals(1, TmfTraceUtils.resolveCpuOfEvent(trace, event));
+        assertEquals(1, TmfTraceUtils.resolveEventAspectOfClassForEvent(trace, TmfCpuAspect.class, event));
+    }
 }
@@ -0,0 +1,55 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.trace.indexer;
+
+import static org.junit.Assert.assertEquals;
+
+import org.eclipse.tracecompass.internal.tmf.core.trace.indexer.CheckpointIntervalEstimator;
+import org.junit.Test;
+
+/**
+ * Test for the CheckpointIntervalEstimator class
+ */
+public class CheckpointIntervalEstimatorTest {
+
+    private static final int DEFAULT_INTERVAL = 100;
+
+    /**
+     * Test that an unusable sample falls back to the default interval
+     */
+    @Test
+    public void testEmptySample() {
+        assertEquals(DEFAULT_INTERVAL, CheckpointIntervalEstimator.computeInterval(0, 0, DEFAULT_INTERVAL));
+        assertEquals(DEFAULT_INTERVAL, CheckpointIntervalEstimator.computeInterval(1000, 0, DEFAULT_INTERVAL));
+    }
+
+    /**
+     * Test that the interval keeps the seek cost under the target
+     */
+    @Test
+    public void testInterval() {
+        /* 1000 events of 128 bytes */
+        int interval = CheckpointIntervalEstimator.computeInterval(128000, 1000, DEFAULT_INTERVAL);
+        assertEquals(CheckpointIntervalEstimator.MAX_SEEK_BYTES / 128, interval);
+    }
+
+    /**
+     * Test the bounds of the computed interval
+     */
+    @Test
+    public void testBounds() {
+        /* Very large events */
+        assertEquals(CheckpointIntervalEstimator.MIN_INTERVAL,
+                CheckpointIntervalEstimator.computeInterval(100 * 1024 * 1024, 10, DEFAULT_INTERVAL));
+        /* Very small events */
+        assertEquals(CheckpointIntervalEstimator.MAX_INTERVAL,
+                CheckpointIntervalEstimator.computeInterval(1000, 1000, DEFAULT_INTERVAL));
+    }
+}
@@ -21,6 +21,7 @@ import org.junit.runners.Suite;
 @RunWith(Suite.class)
 @Suite.SuiteClasses({
     TmfBTreeIndexTest.class,
+    TmfCheckpointIndexAppendTest.class,
     TmfCheckpointIndexTest.class,
     TmfCheckpointIndexTest2.class,
     TmfCheckpointTest.class,
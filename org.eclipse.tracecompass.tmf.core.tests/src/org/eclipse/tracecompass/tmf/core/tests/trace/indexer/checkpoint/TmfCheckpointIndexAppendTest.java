@@ -0,0 +1,146 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.tests.trace.indexer.checkpoint;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.exceptions.TmfTraceException;
+import org.eclipse.tracecompass.tmf.core.tests.shared.TmfTestTrace;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.ITmfTraceIndexer;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.checkpoint.ITmfCheckpointIndex;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.checkpoint.TmfCheckpointIndexer;
+import org.eclipse.tracecompass.tmf.tests.stubs.trace.TmfGrowingTraceStub;
+import org.eclipse.tracecompass.tmf.tests.stubs.trace.TmfTraceStub;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test suite for the TmfCheckpointIndexer class, with events appended to the
+ * trace after it was indexed.
+ */
+@SuppressWarnings("javadoc")
+public class TmfCheckpointIndexAppendTest {
+
+    private static final int BLOCK_SIZE = 100;
+    private static final int NB_EVENTS = 10000;
+    /* Not on a checkpoint, so that the next pass completes a block */
+    private static final int NB_INITIAL_EVENTS = 4321;
+
+    private File fFile;
+    private File fReferenceFile;
+    private TestTrace fTrace;
+    private TestTrace fReference;
+
+    // ------------------------------------------------------------------------
+    // Helper classes
+    // ------------------------------------------------------------------------
+
+    private static class TestIndexer extends TmfCheckpointIndexer {
+        public TestIndexer(TmfTraceStub trace) {
+            super(trace, BLOCK_SIZE);
+        }
+
+        public ITmfCheckpointIndex getCheckpoints() {
+            return getTraceIndex();
+        }
+    }
+
+    private static class TestTrace extends TmfGrowingTraceStub {
+        public TestTrace(String sourcePath, File file, long nbEvents) throws TmfTraceException {
+            super(sourcePath, file, nbEvents, BLOCK_SIZE);
+        }
+
+        @Override
+        protected ITmfTraceIndexer createIndexer(int interval) {
+            return new TestIndexer(this);
+        }
+
+        @Override
+        public TestIndexer getIndexer() {
+            return (TestIndexer) super.getIndexer();
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Housekeeping
+    // ------------------------------------------------------------------------
+
+    @Before
+    public void setUp() throws IOException, TmfTraceException {
+        String path = TmfTestTrace.A_TEST_10K.getTrace().getPath();
+        TmfTestTrace.A_TEST_10K.dispose();
+        fFile = File.createTempFile("growing", ".trace");
+        fTrace = new TestTrace(path, fFile, NB_INITIAL_EVENTS);
+        fTrace.indexTrace(true);
+
+        fReferenceFile = File.createTempFile("complete", ".trace");
+        fReference = new TestTrace(path, fReferenceFile, NB_EVENTS);
+        fReference.setComplete(true);
+        fReference.indexTrace(true);
+    }
+
+    @After
+    public void tearDown() {
+        fTrace.dispose();
+        fReference.dispose();
+        fFile.delete();
+        fReferenceFile.delete();
+    }
+
+    // ------------------------------------------------------------------------
+    // Tests
+    // ------------------------------------------------------------------------
+
+    @Test
+    public void testInitialIndex() {
+        assertEquals(NB_INITIAL_EVENTS, fTrace.getNbEvents());
+        assertEquals(NB_INITIAL_EVENTS / BLOCK_SIZE + 1, fTrace.getIndexer().getCheckpoints().size());
+    }
+
+    @Test
+    public void testIndexAppendedEvents() throws IOException {
+        fTrace.appendRemainingEvents();
+        fTrace.setComplete(true);
+        fTrace.resetNbParsedEvents();
+        fTrace.getIndexer().buildIndex(fTrace.getNbEvents(), TmfTimeRange.ETERNITY, true);
+
+        /* Only the events after the last checkpoint were read again */
+        long nbAppended = NB_EVENTS - NB_INITIAL_EVENTS;
+        assertTrue(fTrace.getNbParsedEvents() >= nbAppended);
+        assertTrue(fTrace.getNbParsedEvents() <= nbAppended + BLOCK_SIZE + 1);
+
+        assertEquals(NB_EVENTS, fTrace.getNbEvents());
+        assertEquals(fReference.getTimeRange(), fTrace.getTimeRange());
+
+        ITmfCheckpointIndex checkpoints = fTrace.getIndexer().getCheckpoints();
+        ITmfCheckpointIndex expected = fReference.getIndexer().getCheckpoints();
+        assertEquals(expected.size(), checkpoints.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i), checkpoints.get(i));
+        }
+
+        /* The appended events can be reached through the new checkpoints */
+        ITmfContext context = fTrace.seekEvent(NB_EVENTS - 1);
+        ITmfContext expectedContext = fReference.seekEvent(NB_EVENTS - 1);
+        assertEquals(expectedContext.getLocation(), context.getLocation());
+        ITmfEvent expectedEvent = fReference.getNext(expectedContext);
+        ITmfEvent event = fTrace.getNext(context);
+        assertEquals(expectedEvent.getTimestamp(), event.getTimestamp());
+        assertEquals(expectedEvent.getContent(), event.getContent());
+    }
+}
@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.tests.stubs.trace;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.exceptions.TmfTraceException;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTraceCompleteness;
+
+/**
+ * Stub of a trace that is still being written. It reads a copy of the
+ * beginning of a {@link TmfTraceStub} trace, to which the rest of the events
+ * can be appended later.
+ */
+public class TmfGrowingTraceStub extends TmfTraceStub implements ITmfTraceCompleteness {
+
+    private final String fSourcePath;
+    private final File fFile;
+    private volatile boolean fComplete = false;
+    private final AtomicLong fNbParsed = new AtomicLong();
+
+    /**
+     * Constructor. The trace is not indexed.
+     *
+     * @param sourcePath
+     *            The path of the complete trace
+     * @param file
+     *            The file to write the copy to, it is overwritten
+     * @param nbEvents
+     *            The number of events of the complete trace to copy
+     * @param cacheSize
+     *            The cache size, which is also the checkpoint interval
+     * @throws TmfTraceException
+     *             If an error occurred copying or opening the trace
+     */
+    public TmfGrowingTraceStub(String sourcePath, File file, long nbEvents, int cacheSize) throws TmfTraceException {
+        super(copyEvents(sourcePath, file, nbEvents), cacheSize, false, null);
+        fSourcePath = sourcePath;
+        fFile = file;
+    }
+
+    private static String copyEvents(String sourcePath, File file, long nbEvents) throws TmfTraceException {
+        TmfTraceStub source = new TmfTraceStub(sourcePath, 1000, false, null);
+        try {
+            long length = (Long) source.seekEvent(nbEvents).getLocation().getLocationInfo();
+            copyBytes(sourcePath, file, 0, length);
+            return file.getPath();
+        } catch (IOException e) {
+            throw new TmfTraceException(e.getMessage(), e);
+        } finally {
+            source.dispose();
+        }
+    }
+
+    private static void copyBytes(String sourcePath, File file, long start, long end) throws IOException {
+        try (RandomAccessFile in = new RandomAccessFile(sourcePath, "r");
+                FileOutputStream out = new FileOutputStream(file, start > 0)) {
+            byte[] bytes = new byte[(int) (end - start)];
+            in.seek(start);
+            in.readFully(bytes);
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Append the events of the complete trace that were not copied yet
+     *
+     * @throws IOException
+     *             If an error occurred copying the events
+     */
+    public void appendRemainingEvents() throws IOException {
+        copyBytes(fSourcePath, fFile, fFile.length(), new File(fSourcePath).length());
+    }
+
+    /**
+     * Get the number of events parsed since the last reset, to check which
+     * part of the trace was read
+     *
+     * @return The number of parsed events
+     */
+    public long getNbParsedEvents() {
+        return fNbParsed.get();
+    }
+
+    /**
+     * Reset the number of parsed events
+     */
+    public void resetNbParsedEvents() {
+        fNbParsed.set(0);
+    }
+
+    @Override
+    public ITmfEvent parseEvent(ITmfContext context) {
+        ITmfEvent event = super.parseEvent(context);
+        if (event != null) {
+            fNbParsed.incrementAndGet();
+        }
+        return event;
+    }
+
+    @Override
+    public boolean isComplete() {
+        return fComplete;
+    }
+
+    @Override
+    public void setComplete(boolean isComplete) {
+        fComplete = isComplete;
+    }
+}
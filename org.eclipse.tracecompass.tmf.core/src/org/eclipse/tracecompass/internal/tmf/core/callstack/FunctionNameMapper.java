@@ -20,10 +20,12 @@ import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.ref.SoftReference;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.eclipse.cdt.core.CCorePlugin;
@@ -39,10 +41,9 @@ import org.eclipse.core.runtime.SafeRunner;
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.internal.tmf.core.Activator;
 
-import com.google.common.collect.ImmutableMap;
-
 /**
- * Class containing the different methods to import an address->name mapping.
+ * Class containing the different methods to import an address->name mapping
+ * into a {@link SymbolTable}.
  *
  * @author Alexandre Montplaisir
  */
@@ -50,32 +51,76 @@ public final class FunctionNameMapper {
 
     private FunctionNameMapper() {}
 
-    private static final Pattern REMOVE_ZEROS_PATTERN = Pattern.compile("^0+(?!$)"); //$NON-NLS-1$
+    /*
+     * Address, optional padded size, type and name of the symbol. The name
+     * can contain spaces when it is demangled.
+     */
+    private static final Pattern NM_LINE_PATTERN = Pattern.compile("([0-9a-fA-F]+) (?:([0-9a-fA-F]{2,}) )?\\S (.+)"); //$NON-NLS-1$
+
+    private static final String NM_KEY_PREFIX = "nm:"; //$NON-NLS-1$
+    private static final String BINARY_KEY_PREFIX = "binary:"; //$NON-NLS-1$
+
+    /*
+     * The tables already loaded, by file, so that the traces of the same
+     * binary share them. They are released when memory is low, and replaced
+     * when their file is modified.
+     */
+    private static final Map<String, CachedTable> TABLE_CACHE = new HashMap<>();
+
+    /*
+     * A loaded table, with the modification time and length of its file when
+     * it was loaded
+     */
+    private static final class CachedTable {
+
+        private final long fLastModified;
+        private final long fLength;
+        private final SoftReference<SymbolTable> fTable;
+
+        public CachedTable(long lastModified, long length, SymbolTable table) {
+            fLastModified = lastModified;
+            fLength = length;
+            fTable = new SoftReference<>(table);
+        }
+    }
 
     /**
      * Get the function name mapping from a text file obtained by doing
      *
      * <pre>
-     * nm[--demangle][binary] &gt; file.txt
+     * nm[--demangle][--print-size][binary] &gt; file.txt
      * </pre>
      *
+     * The table is shared with the previous calls for the same file, as long
+     * as the file was not modified.
+     *
      * @param mappingFile
      *            The file to import
-     * @return A map&lt;address, function name&gt; of the results
+     * @return The symbol table, or null if the file has no symbols
      */
-    public static @Nullable Map<String, String> mapFromNmTextFile(File mappingFile) {
-        Map<String, String> map = new HashMap<>();
+    public static @Nullable SymbolTable mapFromNmTextFile(File mappingFile) {
+        String key = getCacheKey(NM_KEY_PREFIX, mappingFile);
+        long lastModified = mappingFile.lastModified();
+        long length = mappingFile.length();
+        SymbolTable table = getCachedTable(key, lastModified, length);
+        if (table != null) {
+            return table;
+        }
 
+        SymbolTable.Builder builder = new SymbolTable.Builder();
         try (FileReader fr = new FileReader(mappingFile);
                 BufferedReader reader = new BufferedReader(fr);) {
             for (String line = reader.readLine(); line != null; line = reader.readLine()) {
-                line = line.trim();
-                /* Only lines with 3 elements contain addresses */
-                String[] elems = line.split(" ", 3); //$NON-NLS-1$
-                if (elems.length == 3) {
-                    String address = stripLeadingZeros(elems[0]);
-                    String name = elems[elems.length - 1];
-                    map.put(address, name);
+                /* Only lines with an address are defined symbols */
+                Matcher matcher = NM_LINE_PATTERN.matcher(line.trim());
+                if (matcher.matches()) {
+                    try {
+                        long address = SymbolTable.parseAddress(matcher.group(1));
+                        String size = matcher.group(2);
+                        builder.add(address, size == null ? SymbolTable.UNKNOWN_SIZE : SymbolTable.parseAddress(size), matcher.group(3));
+                    } catch (NumberFormatException e) {
+                        /* Not an address, skip the line */
+                    }
                 }
             }
         } catch (FileNotFoundException e) {
@@ -84,43 +129,77 @@ public final class FunctionNameMapper {
             /* Stop reading the file at this point */
         }
 
-        if (map.isEmpty()) {
+        if (builder.size() == 0) {
             return null;
         }
-        return ImmutableMap.copyOf(map);
+        table = builder.build();
+        putCachedTable(key, new CachedTable(lastModified, length, table));
+        return table;
     }
 
     /**
-     * Get the function name mapping from an executable binary.
+     * Get the function name mapping from an executable binary. The table is
+     * shared with the previous calls for the same file, as long as the file
+     * was not modified.
      *
      * @param file
      *            The file to import
-     * @return A map&lt;address, function name&gt; of the results
+     * @return The symbol table
      */
-    public static @Nullable Map<String, String> mapFromBinaryFile(File file) {
-        Map<String, String> map = new HashMap<>();
+    public static SymbolTable mapFromBinaryFile(File file) {
+        String key = getCacheKey(BINARY_KEY_PREFIX, file);
+        long lastModified = file.lastModified();
+        long length = file.length();
+        SymbolTable table = getCachedTable(key, lastModified, length);
+        if (table != null) {
+            return table;
+        }
+
+        SymbolTable.Builder builder = new SymbolTable.Builder();
         IBinaryParser.IBinaryObject binaryObject = getBinaryObject(file);
         if (binaryObject != null) {
             ISymbol[] symbols = binaryObject.getSymbols();
             for (ISymbol symbol : symbols) {
-                String address = symbol.getAddress().toHexAddressString();
-                /* Remove "0x" */
-                address = address.substring(2);
-                /* Strip the leading zeroes from the address */
-                address = stripLeadingZeros(address);
-                map.put(address, symbol.getName());
+                long size = symbol.getSize();
+                builder.add(symbol.getAddress().getValue().longValue(), size > 0 ? size : SymbolTable.UNKNOWN_SIZE, symbol.getName());
             }
         }
 
-        return ImmutableMap.copyOf(map);
+        table = builder.build();
+        putCachedTable(key, new CachedTable(lastModified, length, table));
+        return table;
     }
 
+    private static String getCacheKey(String prefix, File file) {
+        String path;
+        try {
+            path = file.getCanonicalPath();
+        } catch (IOException e) {
+            path = file.getAbsolutePath();
+        }
+        return prefix + path;
+    }
 
-    /**
-     * Strip the leading zeroes from the address
-     * */
-    private static String stripLeadingZeros(String address) {
-        return REMOVE_ZEROS_PATTERN.matcher(address).replaceFirst(""); //$NON-NLS-1$
+    private static @Nullable SymbolTable getCachedTable(String key, long lastModified, long length) {
+        synchronized (TABLE_CACHE) {
+            CachedTable cached = TABLE_CACHE.get(key);
+            if (cached == null) {
+                return null;
+            }
+            SymbolTable table = cached.fTable.get();
+            if (table == null || cached.fLastModified != lastModified || cached.fLength != length) {
+                /* Released or stale, the table is loaded again */
+                TABLE_CACHE.remove(key);
+                return null;
+            }
+            return table;
+        }
+    }
+
+    private static void putCachedTable(String key, CachedTable table) {
+        synchronized (TABLE_CACHE) {
+            TABLE_CACHE.put(key, table);
+        }
     }
 
     private static @Nullable IBinaryParser.IBinaryObject getBinaryObject(File file) {
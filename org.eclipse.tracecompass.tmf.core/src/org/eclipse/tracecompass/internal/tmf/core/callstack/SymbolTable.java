@@ -0,0 +1,228 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.tmf.core.callstack;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * A table of the symbols of a binary, to resolve addresses to function names.
+ * <p>
+ * The start addresses of the symbols are kept sorted in a primitive array, so
+ * a lookup is a binary search and a symbol costs a long, a long for its size
+ * and a reference to its name. The names are shared between the symbols that
+ * have the same name. The table is immutable once built.
+ * <p>
+ * Addresses are unsigned, so they are stored with their high bit flipped: the
+ * signed order of the stored keys is then the unsigned order of the
+ * addresses, and the kernel addresses sort after the user space ones.
+ */
+public final class SymbolTable {
+
+    /** The size of the symbols whose size is not known */
+    public static final long UNKNOWN_SIZE = -1;
+
+    /* The start addresses, as keys from toKey() */
+    private final long[] fAddresses;
+    private final long[] fSizes;
+    private final String[] fNames;
+
+    private SymbolTable(long[] addresses, long[] sizes, String[] names) {
+        fAddresses = addresses;
+        fSizes = sizes;
+        fNames = names;
+    }
+
+    /**
+     * @return The number of symbols
+     */
+    public int size() {
+        return fAddresses.length;
+    }
+
+    /**
+     * Get the name of the symbol that starts at an address
+     *
+     * @param address
+     *            The address
+     * @return The name of the symbol, or null if no symbol starts there
+     */
+    public @Nullable String getName(long address) {
+        int index = Arrays.binarySearch(fAddresses, toKey(address));
+        return (index < 0 ? null : fNames[index]);
+    }
+
+    /**
+     * Get the name of the function that contains an address, which is the
+     * symbol with the highest start address at or before the address. If the
+     * size of that symbol is known, the address must also be before its end.
+     * If not, the symbol is assumed to end where the next one starts, so an
+     * address after the last symbol is only resolved if it is the start of
+     * that symbol.
+     *
+     * @param address
+     *            The address, for example a return address in a function
+     * @return The name of the symbol, or null if no symbol contains the
+     *         address
+     */
+    public @Nullable String getContainingName(long address) {
+        long key = toKey(address);
+        int index = Arrays.binarySearch(fAddresses, key);
+        if (index >= 0) {
+            return fNames[index];
+        }
+        index = -index - 2;
+        if (index < 0) {
+            return null;
+        }
+        long size = fSizes[index];
+        if (size == UNKNOWN_SIZE) {
+            /* The next symbol, if any, starts after the address */
+            return (index < fAddresses.length - 1 ? fNames[index] : null);
+        }
+        if (key - fAddresses[index] >= size) {
+            return null;
+        }
+        return fNames[index];
+    }
+
+    /**
+     * Parse a hexadecimal address of up to 64 bits, without a "0x" prefix.
+     * Addresses with the high bit set, like the kernel ones, become negative
+     * longs, which the table orders as unsigned.
+     *
+     * @param hex
+     *            The hexadecimal address
+     * @return The address
+     * @throws NumberFormatException
+     *             If the string is not an address
+     */
+    public static long parseAddress(String hex) {
+        int start = 0;
+        while (start < hex.length() - 1 && hex.charAt(start) == '0') {
+            start++;
+        }
+        int length = hex.length() - start;
+        if (length <= 8) {
+            return Long.parseLong(hex.substring(start), 16);
+        }
+        if (length > 16) {
+            throw new NumberFormatException(hex);
+        }
+        int split = hex.length() - 8;
+        return (Long.parseLong(hex.substring(start, split), 16) << 32) | Long.parseLong(hex.substring(split), 16);
+    }
+
+    /* Map an unsigned address to a key whose signed order is the unsigned one */
+    private static long toKey(long address) {
+        return address ^ Long.MIN_VALUE;
+    }
+
+    /**
+     * Builder of a {@link SymbolTable}. The symbols can be added in any order.
+     * When several symbols start at the same address, the last one added is
+     * kept.
+     */
+    public static final class Builder {
+
+        /* The start addresses, as keys from toKey() */
+        private long[] fBuilderAddresses = new long[64];
+        private long[] fBuilderSizes = new long[64];
+        private String[] fBuilderNames = new String[64];
+        private int fSize = 0;
+        private boolean fSorted = true;
+
+        /* Shares the equal names, demangled C++ names are often repeated */
+        private final Map<String, String> fNamePool = new HashMap<>();
+
+        /**
+         * Add a symbol
+         *
+         * @param address
+         *            The start address of the symbol
+         * @param size
+         *            The size of the symbol, or {@link #UNKNOWN_SIZE}
+         * @param name
+         *            The name of the symbol
+         * @return This builder
+         */
+        public Builder add(long address, long size, String name) {
+            if (fSize == fBuilderAddresses.length) {
+                fBuilderAddresses = Arrays.copyOf(fBuilderAddresses, fSize * 2);
+                fBuilderSizes = Arrays.copyOf(fBuilderSizes, fSize * 2);
+                fBuilderNames = Arrays.copyOf(fBuilderNames, fSize * 2);
+            }
+            String pooled = fNamePool.get(name);
+            if (pooled == null) {
+                pooled = name;
+                fNamePool.put(name, name);
+            }
+            long key = toKey(address);
+            if (fSize > 0 && key < fBuilderAddresses[fSize - 1]) {
+                fSorted = false;
+            }
+            fBuilderAddresses[fSize] = key;
+            fBuilderSizes[fSize] = size;
+            fBuilderNames[fSize] = pooled;
+            fSize++;
+            return this;
+        }
+
+        /**
+         * @return The number of symbols added so far
+         */
+        public int size() {
+            return fSize;
+        }
+
+        /**
+         * Build the table of the symbols added so far
+         *
+         * @return The symbol table
+         */
+        public SymbolTable build() {
+            int n = fSize;
+            Integer[] order = null;
+            if (!fSorted) {
+                /* Sort stably, so the last symbol added at an address wins */
+                order = new Integer[n];
+                for (int i = 0; i < n; i++) {
+                    order[i] = i;
+                }
+                final long[] keys = fBuilderAddresses;
+                Arrays.sort(order, new Comparator<Integer>() {
+                    @Override
+                    public int compare(Integer o1, Integer o2) {
+                        return Long.compare(keys[o1], keys[o2]);
+                    }
+                });
+            }
+            long[] addresses = new long[n];
+            long[] sizes = new long[n];
+            String[] names = new String[n];
+            int count = 0;
+            for (int i = 0; i < n; i++) {
+                int j = (order == null ? i : order[i].intValue());
+                if (count > 0 && addresses[count - 1] == fBuilderAddresses[j]) {
+                    count--;
+                }
+                addresses[count] = fBuilderAddresses[j];
+                sizes[count] = fBuilderSizes[j];
+                names[count] = fBuilderNames[j];
+                count++;
+            }
+            return new SymbolTable(Arrays.copyOf(addresses, count), Arrays.copyOf(sizes, count), Arrays.copyOf(names, count));
+        }
+    }
+}
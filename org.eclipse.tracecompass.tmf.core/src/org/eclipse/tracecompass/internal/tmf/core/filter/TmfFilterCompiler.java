@@ -0,0 +1,630 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.tmf.core.filter;
+
+import java.text.NumberFormat;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.aspect.ITmfEventAspect;
+import org.eclipse.tracecompass.tmf.core.filter.ITmfFilter;
+import org.eclipse.tracecompass.tmf.core.filter.TmfFilterPushdown;
+import org.eclipse.tracecompass.tmf.core.filter.model.ITmfFilterTreeNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterAndNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterCompareNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterContainsNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterEqualsNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterMatchesNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterOrNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterRootNode;
+import org.eclipse.tracecompass.tmf.core.filter.model.TmfFilterTraceTypeNode;
+import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfNanoTimestamp;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestampFormat;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+
+/**
+ * Compiles a filter tree into an equivalent filter that is cheaper to
+ * evaluate on a large number of events.
+ * <p>
+ * The filter tree nodes read their configuration on every call to
+ * {@link ITmfFilter#matches}. The compiled filter takes a snapshot of it
+ * instead: the aspects and the constant values are resolved once, numeric and
+ * timestamp constants are parsed in advance, and numeric event values are
+ * compared as primitives when possible. The operands of AND and OR nodes are
+ * reordered so that the cheapest conditions are evaluated first, and
+ * evaluation stops as soon as the result is known.
+ * <p>
+ * The compiled filter gives the same results as the tree, as long as the tree
+ * is not modified afterwards. Nodes of unknown types (including subclasses of
+ * the standard nodes) are not compiled, and are evaluated by calling them
+ * directly. In that case, the operands of the enclosing AND or OR node are
+ * not reordered, since these nodes may be stateful.
+ */
+public final class TmfFilterCompiler {
+
+    /* Estimated evaluation costs, used to order the operands */
+    private static final int COST_CONSTANT = 0;
+    private static final int COST_TRACE_TYPE = 1;
+    private static final int COST_NUMBER = 2;
+    private static final int COST_STRING = 3;
+    private static final int COST_REGEX = 4;
+    private static final int COST_UNKNOWN = 5;
+
+    private static final String TIMESTAMP_FORMAT = "T.SSSSSSSSS"; //$NON-NLS-1$
+
+    /*
+     * The formats are not thread-safe, and a compiled filter can be evaluated
+     * by several threads at once, by the partitions of the filter index for
+     * example
+     */
+    private static final ThreadLocal<TmfTimestampFormat> TIMESTAMP_FORMATS = new ThreadLocal<TmfTimestampFormat>() {
+        @Override
+        protected TmfTimestampFormat initialValue() {
+            return new TmfTimestampFormat(TIMESTAMP_FORMAT);
+        }
+    };
+
+    private static final Comparator<CompiledFilter> COST_COMPARATOR = new Comparator<CompiledFilter>() {
+        @Override
+        public int compare(CompiledFilter o1, CompiledFilter o2) {
+            return Integer.compare(o1.getCost(), o2.getCost());
+        }
+    };
+
+    private TmfFilterCompiler() {
+    }
+
+    /**
+     * Compile a filter.
+     *
+     * @param filter
+     *            The filter to compile
+     * @return The compiled filter, or the filter itself if it cannot be
+     *         compiled
+     */
+    public static ITmfFilter compile(ITmfFilter filter) {
+        if (!(filter instanceof ITmfFilterTreeNode)) {
+            return filter;
+        }
+        CompiledFilter compiled = compileNode((ITmfFilterTreeNode) filter);
+        if (compiled instanceof NodeFilter) {
+            /* Keep the original instance, callers may check its type */
+            return filter;
+        }
+        return compiled;
+    }
+
+    /**
+     * Extract the conditions of a filter that an event provider can evaluate
+     * before building the events. Only event type equality and timestamp
+     * comparisons that every matching event must satisfy are extracted.
+     *
+     * @param filter
+     *            The filter
+     * @return The pushdown, which is unconstrained if nothing could be
+     *         extracted
+     */
+    public static TmfFilterPushdown getPushdown(ITmfFilter filter) {
+        if (!(filter instanceof ITmfFilterTreeNode)) {
+            return TmfFilterPushdown.UNCONSTRAINED;
+        }
+        return getPushdown((ITmfFilterTreeNode) filter);
+    }
+
+    // ------------------------------------------------------------------------
+    // Compilation
+    // ------------------------------------------------------------------------
+
+    private static CompiledFilter compileNode(ITmfFilterTreeNode node) {
+        /* Only exact types are compiled, subclasses may override matches() */
+        Class<?> type = node.getClass();
+        if (type == TmfFilterRootNode.class) {
+            return new AndFilter(compileChildren(node), false);
+        } else if (type == TmfFilterNode.class) {
+            return new OrFilter(compileChildren(node), false);
+        } else if (type == TmfFilterAndNode.class) {
+            return new AndFilter(compileChildren(node), ((TmfFilterAndNode) node).isNot());
+        } else if (type == TmfFilterOrNode.class) {
+            return new OrFilter(compileChildren(node), ((TmfFilterOrNode) node).isNot());
+        } else if (type == TmfFilterTraceTypeNode.class) {
+            TmfFilterTraceTypeNode traceTypeNode = (TmfFilterTraceTypeNode) node;
+            return new TraceTypeFilter(traceTypeNode.getTraceClass(), traceTypeNode.getTraceTypeId(),
+                    new AndFilter(compileChildren(node), false));
+        } else if (type == TmfFilterEqualsNode.class) {
+            return compileEquals((TmfFilterEqualsNode) node);
+        } else if (type == TmfFilterContainsNode.class) {
+            return compileContains((TmfFilterContainsNode) node);
+        } else if (type == TmfFilterMatchesNode.class) {
+            return compileMatches((TmfFilterMatchesNode) node);
+        } else if (type == TmfFilterCompareNode.class) {
+            return compileCompare((TmfFilterCompareNode) node);
+        }
+        return new NodeFilter(node);
+    }
+
+    private static CompiledFilter[] compileChildren(ITmfFilterTreeNode node) {
+        List<CompiledFilter> children = new ArrayList<>();
+        boolean reorder = true;
+        for (ITmfFilterTreeNode child : node.getChildren()) {
+            CompiledFilter compiled = compileNode(child);
+            reorder &= !(compiled instanceof NodeFilter);
+            children.add(compiled);
+        }
+        if (reorder) {
+            /* Stable sort, operands of equal cost keep their order */
+            Collections.sort(children, COST_COMPARATOR);
+        }
+        return children.toArray(new CompiledFilter[children.size()]);
+    }
+
+    private static CompiledFilter compileEquals(TmfFilterEqualsNode node) {
+        ITmfEventAspect aspect = node.getEventAspect();
+        if (aspect == null) {
+            return new ConstantFilter(node.isNot());
+        }
+        return new EqualsFilter(aspect, node.getValue(), node.isIgnoreCase(), node.isNot());
+    }
+
+    private static CompiledFilter compileContains(TmfFilterContainsNode node) {
+        ITmfEventAspect aspect = node.getEventAspect();
+        if (aspect == null) {
+            return new ConstantFilter(node.isNot());
+        }
+        return new ContainsFilter(aspect, node.getValue(), node.isIgnoreCase(), node.isNot());
+    }
+
+    private static CompiledFilter compileMatches(TmfFilterMatchesNode node) {
+        ITmfEventAspect aspect = node.getEventAspect();
+        Pattern pattern = null;
+        if (node.getRegex() != null) {
+            try {
+                pattern = Pattern.compile(node.getRegex(), Pattern.DOTALL);
+            } catch (PatternSyntaxException e) {
+            }
+        }
+        if (aspect == null || pattern == null) {
+            return new ConstantFilter(node.isNot());
+        }
+        return new MatchesFilter(aspect, pattern, node.isNot());
+    }
+
+    private static CompiledFilter compileCompare(TmfFilterCompareNode node) {
+        ITmfEventAspect aspect = node.getEventAspect();
+        String value = node.getValue();
+        if (aspect == null || value == null) {
+            return new ConstantFilter(false);
+        }
+        switch (node.getType()) {
+        case NUM:
+            Number number = toNumber(value);
+            if (number == null) {
+                return new ConstantFilter(false);
+            }
+            return new NumberCompareFilter(aspect, number, node.getResult(), node.isNot());
+        case ALPHA:
+            return new StringCompareFilter(aspect, value, node.getResult(), node.isNot());
+        case TIMESTAMP:
+            ITmfTimestamp timestamp = toTimestamp(value, TIMESTAMP_FORMATS.get());
+            if (timestamp == null) {
+                return new ConstantFilter(false);
+            }
+            return new TimestampCompareFilter(aspect, timestamp, node.getResult(), node.isNot());
+        default:
+            return new NodeFilter(node);
+        }
+    }
+
+    /* Same conversion as TmfFilterCompareNode */
+    private static Number toNumber(Object value) {
+        if (value instanceof Number) {
+            return (Number) value;
+        }
+        try {
+            return Long.decode(value.toString());
+        } catch (NumberFormatException e) {
+        }
+        try {
+            return NumberFormat.getInstance().parse(value.toString());
+        } catch (ParseException e) {
+        }
+        return null;
+    }
+
+    /* Same conversion as TmfFilterCompareNode */
+    private static ITmfTimestamp toTimestamp(Object value, TmfTimestampFormat format) {
+        if (value instanceof ITmfTimestamp) {
+            return (ITmfTimestamp) value;
+        }
+        try {
+            return new TmfNanoTimestamp(format.parseValue(value.toString()));
+        } catch (ParseException e) {
+        }
+        return null;
+    }
+
+    // ------------------------------------------------------------------------
+    // Pushdown extraction
+    // ------------------------------------------------------------------------
+
+    private static TmfFilterPushdown getPushdown(ITmfFilterTreeNode node) {
+        Class<?> type = node.getClass();
+        if (type == TmfFilterRootNode.class || type == TmfFilterTraceTypeNode.class ||
+                (type == TmfFilterAndNode.class && !((TmfFilterAndNode) node).isNot())) {
+            /* All children must match */
+            TmfFilterPushdown pushdown = TmfFilterPushdown.UNCONSTRAINED;
+            for (ITmfFilterTreeNode child : node.getChildren()) {
+                pushdown = pushdown.intersect(getPushdown(child));
+            }
+            return pushdown;
+        } else if ((type == TmfFilterNode.class || (type == TmfFilterOrNode.class && !((TmfFilterOrNode) node).isNot()))
+                && node.hasChildren()) {
+            /* At least one child must match */
+            ITmfFilterTreeNode[] children = node.getChildren();
+            TmfFilterPushdown pushdown = getPushdown(children[0]);
+            for (int i = 1; i < children.length; i++) {
+                pushdown = pushdown.union(getPushdown(children[i]));
+            }
+            return pushdown;
+        } else if (type == TmfFilterEqualsNode.class) {
+            TmfFilterEqualsNode equalsNode = (TmfFilterEqualsNode) node;
+            String value = equalsNode.getValue();
+            if (equalsNode.getEventAspect() == ITmfEventAspect.BaseAspects.EVENT_TYPE &&
+                    !equalsNode.isNot() && !equalsNode.isIgnoreCase() && value != null) {
+                return new TmfFilterPushdown(Collections.singleton(value), Long.MIN_VALUE, Long.MAX_VALUE);
+            }
+        } else if (type == TmfFilterCompareNode.class) {
+            TmfFilterCompareNode compareNode = (TmfFilterCompareNode) node;
+            String value = compareNode.getValue();
+            if (compareNode.getEventAspect() == ITmfEventAspect.BaseAspects.TIMESTAMP &&
+                    compareNode.getType() == TmfFilterCompareNode.Type.TIMESTAMP &&
+                    !compareNode.isNot() && value != null) {
+                ITmfTimestamp timestamp = toTimestamp(value, TIMESTAMP_FORMATS.get());
+                if (timestamp != null) {
+                    /* Inclusive bounds, in case event timestamps are finer than nanoseconds */
+                    long time = timestamp.toNanos();
+                    long start = compareNode.getResult() < 0 ? Long.MIN_VALUE : time;
+                    long end = compareNode.getResult() > 0 ? Long.MAX_VALUE : time;
+                    return new TmfFilterPushdown(null, start, end);
+                }
+            }
+        }
+        return TmfFilterPushdown.UNCONSTRAINED;
+    }
+
+    // ------------------------------------------------------------------------
+    // Compiled filters
+    // ------------------------------------------------------------------------
+
+    private abstract static class CompiledFilter implements ITmfFilter {
+
+        private final int fCost;
+
+        protected CompiledFilter(int cost) {
+            fCost = cost;
+        }
+
+        public int getCost() {
+            return fCost;
+        }
+    }
+
+    private static int maxCost(CompiledFilter[] filters) {
+        int cost = COST_CONSTANT;
+        for (CompiledFilter filter : filters) {
+            cost = Math.max(cost, filter.getCost());
+        }
+        return cost;
+    }
+
+    /** A node that cannot be compiled, evaluated directly */
+    private static final class NodeFilter extends CompiledFilter {
+
+        private final ITmfFilterTreeNode fNode;
+
+        public NodeFilter(ITmfFilterTreeNode node) {
+            super(COST_UNKNOWN);
+            fNode = node;
+        }
+
+        @Override
+        public boolean matches(ITmfEvent event) {
+            return fNode.matches(event);
+        }
+    }
+
+    private static final class ConstantFilter extends CompiledFilter {
+
+        private final boolean fResult;
+
+        public ConstantFilter(boolean result) {
+            super(COST_CONSTANT);
+            fResult = result;
+        }
+
+        @Override
+        public boolean matches(ITmfEvent event) {
+            return fResult;
+        }
+    }
+
+    private static final class AndFilter extends CompiledFilter {
+
+        private final CompiledFilter[] fChildren;
+        private final boolean fNot;
+
+        public AndFilter(CompiledFilter[] children, boolean not) {
+            super(maxCost(children));
+            fChildren = children;
+            fNot = not;
+        }
+
+        @Override
+        public boolean matches(ITmfEvent event) {
+            for (CompiledFilter child : fChildren) {
+                if (!child.matches(event)) {
+                    return fNot;
+                }
+            }
+            return !fNot;
+        }
+    }
+
+    private static final class OrFilter extends CompiledFilter {
+
+        private final CompiledFilter[] fChildren;
+        private final boolean fNot;
+
+        public OrFilter(CompiledFilter[] children, boolean not) {
+            super(maxCost(children));
+            fChildren = children;
+            fNot = not;
+        }
+
+        @Override
+        public boolean matches(ITmfEvent event) {
+            for (CompiledFilter child : fChildren) {
+                if (child.matches(event)) {
+                    return !fNot;
+                }
+            }
+            /* Same result as TmfFilterOrNode when no operand matches */
+            return false;
+        }
+    }
+
+    private static final class TraceTypeFilter extends CompiledFilter {
+
+        private final Class<? extends ITmfTrace> fTraceClass;
+        private final String fTraceTypeId;
+        private final CompiledFilter fChild;
+
+        public TraceTypeFilter(Class<? extends ITmfTrace> traceClass, String traceTypeId, CompiledFilter child) {
+            super(Math.max(COST_TRACE_TYPE, child.getCost()));
+            fTraceClass = traceClass;
+            fTraceTypeId = traceTypeId;
+            fChild = child;
+        }
+
+        @Override
+        public boolean matches(ITmfEvent event) {
+            ITmfTrace trace = event.getTrace();
+            if (!trace.getClass().equals(fTraceClass)) {
+                return false;
+            }
+            if (fTraceTypeId != null && !fTraceTypeId.equals(trace.getTraceTypeId())) {
+                return false;
+            }
+            return fChild.matches(event);
+        }
+    }
+
+    private static final class EqualsFilter extends CompiledFilter {
+
+        private final ITmfEventAspect fAspect;
+        private final String fValue;
+        private final boolean fIgnoreCase;
+        private final boolean fNot;
+
+        public EqualsFilter(ITmfEventAspect aspect, String value, boolean ignoreCase, boolean not) {
+            super(COST_STRING);
+            fAspect = aspect;
+            fValue = value;
+            fIgnoreCase = ignoreCase;
+            fNot = not;
+        }
+
+        @Override
+        public boolean matches(ITmfEvent event) {
+            if (event == null) {
+                return fNot;
+            }
+            Object value = fAspect.resolve(event);
+            if (value == null) {
+                return fNot;
+            }
+            String valueString = value.toString();
+            if (fIgnoreCase) {
+                return valueString.equalsIgnoreCase(fValue) ^ fNot;
+            }
+            return valueString.equals(fValue) ^ fNot;
+        }
+    }
+
+    private static final class ContainsFilter extends CompiledFilter {
+
+        private final ITmfEventAspect fAspect;
+        private final String fValue;
+        private final boolean fIgnoreCase;
+        private final boolean fNot;
+
+        public ContainsFilter(ITmfEventAspect aspect, String value, boolean ignoreCase, boolean not) {
+            super(COST_STRING);
+            fAspect = aspect;
+            fIgnoreCase = ignoreCase;
+            fValue = (ignoreCase && value != null) ? value.toUpperCase() : value;
+            fNot = not;
+        }
+
+        @Override
+        public boolean matches(ITmfEvent event) {
+            if (event == null) {
+                return fNot;
+            }
+            Object value = fAspect.resolve(event);
+            if (value == null) {
+                return fNot;
+            }
+            String valueString = value.toString();
+            if (fIgnoreCase) {
+                return valueString.toUpperCase().contains(fValue) ^ fNot;
+            }
+            return valueString.contains(fValue) ^ fNot;
+        }
+    }
+
+    private static final class MatchesFilter extends CompiledFilter {
+
+        private final ITmfEventAspect fAspect;
+        private final Pattern fPattern;
+        private final boolean fNot;
+
+        public MatchesFilter(ITmfEventAspect aspect, Pattern pattern, boolean not) {
+            super(COST_REGEX);
+            fAspect = aspect;
+            fPattern = pattern;
+            fNot = not;
+        }
+
+        @Override
+        public boolean matches(ITmfEvent event) {
+            if (event == null) {
+                return fNot;
+            }
+            Object value = fAspect.resolve(event);
+            if (value == null) {
+                return fNot;
+            }
+            return fPattern.matcher(value.toString()).find() ^ fNot;
+        }
+    }
+
+    private static final class NumberCompareFilter extends CompiledFilter {
+
+        private final ITmfEventAspect fAspect;
+        private final boolean fIsDouble;
+        private final long fLongValue;
+        private final double fDoubleValue;
+        private final int fResult;
+        private final boolean fNot;
+
+        public NumberCompareFilter(ITmfEventAspect aspect, Number value, int result, boolean not) {
+            super(COST_NUMBER);
+            fAspect = aspect;
+            fIsDouble = (value instanceof Double);
+            fLongValue = value.longValue();
+            fDoubleValue = value.doubleValue();
+            fResult = result;
+            fNot = not;
+        }
+
+        @Override
+        public boolean matches(ITmfEvent event) {
+            if (event == null) {
+                return false;
+            }
+            Object value = fAspect.resolve(event);
+            if (value == null) {
+                return false;
+            }
+            if (!fIsDouble && (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte)) {
+                /* Primitive path, no conversion needed */
+                return (Long.compare(((Number) value).longValue(), fLongValue) == fResult) ^ fNot;
+            }
+            Number valueNumber = toNumber(value);
+            if (valueNumber == null) {
+                return false;
+            }
+            if (fIsDouble || valueNumber instanceof Double || valueNumber instanceof Float) {
+                return (Double.compare(valueNumber.doubleValue(), fDoubleValue) == fResult) ^ fNot;
+            }
+            return (Long.compare(valueNumber.longValue(), fLongValue) == fResult) ^ fNot;
+        }
+    }
+
+    private static final class StringCompareFilter extends CompiledFilter {
+
+        private final ITmfEventAspect fAspect;
+        private final String fValue;
+        private final int fResult;
+        private final boolean fNot;
+
+        public StringCompareFilter(ITmfEventAspect aspect, String value, int result, boolean not) {
+            super(COST_STRING);
+            fAspect = aspect;
+            fValue = value;
+            fResult = result;
+            fNot = not;
+        }
+
+        @Override
+        public boolean matches(ITmfEvent event) {
+            if (event == null) {
+                return false;
+            }
+            Object value = fAspect.resolve(event);
+            if (value == null) {
+                return false;
+            }
+            int comp = (int) Math.signum(value.toString().compareTo(fValue));
+            return (comp == fResult) ^ fNot;
+        }
+    }
+
+    private static final class TimestampCompareFilter extends CompiledFilter {
+
+        private final ITmfEventAspect fAspect;
+        private final ITmfTimestamp fValue;
+        private final int fResult;
+        private final boolean fNot;
+
+        public TimestampCompareFilter(ITmfEventAspect aspect, ITmfTimestamp value, int result, boolean not) {
+            super(COST_NUMBER);
+            fAspect = aspect;
+            fValue = value;
+            fResult = result;
+            fNot = not;
+        }
+
+        @Override
+        public boolean matches(ITmfEvent event) {
+            if (event == null) {
+                return false;
+            }
+            Object value = fAspect.resolve(event);
+            if (value == null) {
+                return false;
+            }
+            ITmfTimestamp valueTimestamp = toTimestamp(value, TIMESTAMP_FORMATS.get());
+            if (valueTimestamp == null) {
+                return false;
+            }
+            int comp = (int) Math.signum(valueTimestamp.compareTo(fValue));
+            return (comp == fResult) ^ fNot;
+        }
+    }
+}
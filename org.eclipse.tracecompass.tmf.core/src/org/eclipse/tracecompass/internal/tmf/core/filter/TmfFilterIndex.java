@@ -0,0 +1,231 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.tmf.core.filter;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Index of the ranks of the events that match a filter.
+ * <p>
+ * The index covers a contiguous range of ranks starting at 0, and grows by
+ * appending partitions at its end. Each partition stores its matches as a
+ * bitmap relative to its start rank, along with the number of matches in the
+ * preceding partitions, so that match indexes and ranks can be converted into
+ * each other with a binary search on the partitions.
+ * <p>
+ * This class is thread-safe: it can be read while it is being built.
+ */
+public class TmfFilterIndex {
+
+    private static final class Partition {
+
+        private final long fStartRank;
+        private final int fNbRanks;
+        private final BitSet fMatches;
+        private final long fMatchesBefore;
+        private final int fNbMatches;
+
+        public Partition(long startRank, int nbRanks, BitSet matches, long matchesBefore) {
+            fStartRank = startRank;
+            fNbRanks = nbRanks;
+            fMatches = matches;
+            fMatchesBefore = matchesBefore;
+            fNbMatches = matches.cardinality();
+        }
+    }
+
+    private final List<Partition> fPartitions = new ArrayList<>();
+    private long fNbRanks = 0;
+    private long fNbMatches = 0;
+
+    /**
+     * Append a partition at the end of the index.
+     *
+     * @param startRank
+     *            The rank of the first event of the partition. It must be the
+     *            current number of ranks covered by the index.
+     * @param nbRanks
+     *            The number of events in the partition
+     * @param matches
+     *            The bitmap of the matching events, where bit i is set if the
+     *            event at rank startRank + i matches. It must not be modified
+     *            afterwards.
+     */
+    public synchronized void append(long startRank, int nbRanks, BitSet matches) {
+        if (startRank != fNbRanks || nbRanks < 0 || matches.length() > nbRanks) {
+            throw new IllegalArgumentException();
+        }
+        if (nbRanks == 0) {
+            return;
+        }
+        Partition partition = new Partition(startRank, nbRanks, matches, fNbMatches);
+        fPartitions.add(partition);
+        fNbRanks += nbRanks;
+        fNbMatches += partition.fNbMatches;
+    }
+
+    /**
+     * @return The number of events covered by the index, which are the events
+     *         with a rank lower than this number
+     */
+    public synchronized long getNbRanks() {
+        return fNbRanks;
+    }
+
+    /**
+     * @return The number of matching events in the index
+     */
+    public synchronized long getNbMatches() {
+        return fNbMatches;
+    }
+
+    /**
+     * Check if an event matches
+     *
+     * @param rank
+     *            The rank of the event
+     * @return true if the event matches, false if it doesn't or if it is not
+     *         covered by the index
+     */
+    public synchronized boolean isMatch(long rank) {
+        Partition partition = findPartitionByRank(rank);
+        if (partition == null) {
+            return false;
+        }
+        return partition.fMatches.get((int) (rank - partition.fStartRank));
+    }
+
+    /**
+     * Get the index of an event among the matching events
+     *
+     * @param rank
+     *            The rank of the event, between 0 and the number of ranks
+     *            covered by the index (inclusive)
+     * @return The number of matching events with a lower rank, or -1 if the
+     *         rank is not covered by the index
+     */
+    public synchronized long getMatchIndex(long rank) {
+        if (rank == fNbRanks) {
+            return fNbMatches;
+        }
+        Partition partition = findPartitionByRank(rank);
+        if (partition == null) {
+            return -1;
+        }
+        int offset = (int) (rank - partition.fStartRank);
+        return partition.fMatchesBefore + partition.fMatches.get(0, offset).cardinality();
+    }
+
+    /**
+     * Get the rank of a matching event
+     *
+     * @param matchIndex
+     *            The index of the event among the matching events
+     * @return The rank of the event, or -1 if there are not that many matching
+     *         events in the index
+     */
+    public synchronized long getRank(long matchIndex) {
+        if (matchIndex < 0 || matchIndex >= fNbMatches) {
+            return -1;
+        }
+        /*
+         * The last partition with fMatchesBefore <= matchIndex is the one that
+         * contains the match, since the next one starts after it.
+         */
+        int low = 0;
+        int high = fPartitions.size() - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (fPartitions.get(mid).fMatchesBefore <= matchIndex) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        Partition partition = fPartitions.get(low);
+        long remaining = matchIndex - partition.fMatchesBefore;
+        int bit = partition.fMatches.nextSetBit(0);
+        while (remaining-- > 0) {
+            bit = partition.fMatches.nextSetBit(bit + 1);
+        }
+        return partition.fStartRank + bit;
+    }
+
+    /**
+     * Write the partitions of this index.
+     *
+     * @param output
+     *            The output to write to
+     * @throws IOException
+     *             If the output couldn't be written
+     */
+    public synchronized void write(DataOutput output) throws IOException {
+        output.writeInt(fPartitions.size());
+        for (Partition partition : fPartitions) {
+            output.writeInt(partition.fNbRanks);
+            long[] words = partition.fMatches.toLongArray();
+            output.writeInt(words.length);
+            for (long word : words) {
+                output.writeLong(word);
+            }
+        }
+    }
+
+    /**
+     * Read partitions written by {@link #write(DataOutput)}, and append them
+     * to this index.
+     *
+     * @param input
+     *            The input to read from
+     * @throws IOException
+     *             If the input couldn't be read or is not valid
+     */
+    public synchronized void read(DataInput input) throws IOException {
+        int nbPartitions = input.readInt();
+        for (int i = 0; i < nbPartitions; i++) {
+            int nbRanks = input.readInt();
+            int nbWords = input.readInt();
+            if (nbRanks < 0 || nbWords < 0 || nbWords > (nbRanks + Long.SIZE - 1) / Long.SIZE) {
+                throw new IOException("Invalid filter index partition"); //$NON-NLS-1$
+            }
+            long[] words = new long[nbWords];
+            for (int j = 0; j < nbWords; j++) {
+                words[j] = input.readLong();
+            }
+            BitSet matches = BitSet.valueOf(words);
+            if (matches.length() > nbRanks) {
+                throw new IOException("Invalid filter index partition"); //$NON-NLS-1$
+            }
+            append(fNbRanks, nbRanks, matches);
+        }
+    }
+
+    private Partition findPartitionByRank(long rank) {
+        if (rank < 0 || rank >= fNbRanks) {
+            return null;
+        }
+        int low = 0;
+        int high = fPartitions.size() - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (fPartitions.get(mid).fStartRank <= rank) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return fPartitions.get(low);
+    }
+}
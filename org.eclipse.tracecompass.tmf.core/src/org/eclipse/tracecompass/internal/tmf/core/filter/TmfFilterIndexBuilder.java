@@ -0,0 +1,204 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.tmf.core.filter;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.eclipse.tracecompass.internal.tmf.core.Activator;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.filter.ITmfFilter;
+import org.eclipse.tracecompass.tmf.core.filter.TmfFilterPushdown;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceUtils;
+
+/**
+ * Builds a {@link TmfFilterIndex} by evaluating a filter on partitions of a
+ * trace in parallel.
+ * <p>
+ * The partition boundaries are aligned on the trace checkpoints, so that each
+ * partition is read from its own context positioned with a single index seek.
+ * The events are read with the filter pushdown, and the compiled filter is
+ * evaluated on the reading threads. Partitions can complete in any order, but
+ * they are appended to the index in rank order, and
+ * {@link #indexUpdated(TmfFilterIndex)} is called each time the index grows.
+ * <p>
+ * The filter must be stateless: a filter whose result depends on the previous
+ * events, like {@link TmfCollapseFilter}, can't be evaluated out of order.
+ */
+public class TmfFilterIndexBuilder {
+
+    /** Target number of events in a partition */
+    private static final int PARTITION_SIZE = 64 * 1024;
+
+    private final ITmfTrace fTrace;
+    private final ITmfFilter fFilter;
+    private final TmfFilterPushdown fPushdown;
+    private final int fPartitionSize;
+    private final int fNbThreads;
+    private volatile boolean fCancelled = false;
+
+    /**
+     * Constructor
+     *
+     * @param trace
+     *            The trace to filter
+     * @param filter
+     *            The filter
+     */
+    public TmfFilterIndexBuilder(ITmfTrace trace, ITmfFilter filter) {
+        this(trace, filter, Runtime.getRuntime().availableProcessors(), PARTITION_SIZE);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param trace
+     *            The trace to filter
+     * @param filter
+     *            The filter
+     * @param nbThreads
+     *            The number of partitions evaluated in parallel
+     * @param partitionSize
+     *            The target number of events in a partition. It is rounded
+     *            down to a multiple of the trace's checkpoint interval.
+     */
+    public TmfFilterIndexBuilder(ITmfTrace trace, ITmfFilter filter, int nbThreads, int partitionSize) {
+        fTrace = trace;
+        fFilter = TmfFilterCompiler.compile(filter);
+        fPushdown = TmfFilterCompiler.getPushdown(filter);
+        int checkpointInterval = TmfTraceUtils.getCheckpointInterval(trace);
+        fPartitionSize = Math.max(1, partitionSize / checkpointInterval) * checkpointInterval;
+        fNbThreads = Math.max(1, nbThreads);
+    }
+
+    /**
+     * Check if a filter can be evaluated on partitions
+     *
+     * @param filter
+     *            The filter
+     * @return true if the filter is stateless
+     */
+    public static boolean canPartition(ITmfFilter filter) {
+        return !(filter instanceof TmfCollapseFilter);
+    }
+
+    /**
+     * Extend an index up to a given rank. This method blocks until the index
+     * covers all the events before that rank, or until the build is
+     * cancelled.
+     *
+     * @param index
+     *            The index to extend, from its current number of ranks
+     * @param endRank
+     *            The rank of the first event not to cover
+     */
+    public void build(TmfFilterIndex index, long endRank) {
+        long startRank = index.getNbRanks();
+        if (startRank >= endRank) {
+            return;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(fNbThreads);
+        try {
+            List<Future<BitSet>> partitions = new ArrayList<>();
+            List<Long> starts = new ArrayList<>();
+            long start = startRank;
+            while (start < endRank) {
+                /* Next boundary on a checkpoint */
+                final long partitionStart = start;
+                final long partitionEnd = Math.min(endRank, (start / fPartitionSize + 1) * fPartitionSize);
+                starts.add(partitionStart);
+                partitions.add(executor.submit(new Callable<BitSet>() {
+                    @Override
+                    public BitSet call() {
+                        return evaluate(partitionStart, partitionEnd);
+                    }
+                }));
+                start = partitionEnd;
+            }
+            executor.shutdown();
+
+            for (int i = 0; i < partitions.size() && !fCancelled; i++) {
+                BitSet matches = partitions.get(i).get();
+                long partitionStart = starts.get(i);
+                long partitionEnd = (i + 1 < starts.size()) ? starts.get(i + 1) : endRank;
+                if (fCancelled) {
+                    break;
+                }
+                index.append(partitionStart, (int) (partitionEnd - partitionStart), matches);
+                indexUpdated(index);
+            }
+        } catch (InterruptedException | CancellationException e) {
+            fCancelled = true;
+        } catch (ExecutionException e) {
+            fCancelled = true;
+            Activator.logError("Error while filtering trace " + fTrace.getName(), e.getCause()); //$NON-NLS-1$
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Cancel the build. The index keeps the partitions appended so far.
+     */
+    public void cancel() {
+        fCancelled = true;
+    }
+
+    /**
+     * @return true if the build was cancelled
+     */
+    public boolean isCancelled() {
+        return fCancelled;
+    }
+
+    /**
+     * Handle an update of the index. Called on the thread that runs
+     * {@link #build(TmfFilterIndex, long)}, after each partition is appended.
+     * The default implementation does nothing.
+     *
+     * @param index
+     *            The index being built
+     */
+    protected void indexUpdated(TmfFilterIndex index) {
+        // Do nothing by default
+    }
+
+    private BitSet evaluate(long startRank, long endRank) {
+        BitSet matches = new BitSet((int) (endRank - startRank));
+        if (fPushdown.isEmpty()) {
+            return matches;
+        }
+        ITmfContext context = fTrace.seekEvent(startRank);
+        try {
+            /* The read stops at the end of the partition, even if no event matches */
+            ITmfEvent event = TmfTraceUtils.getNext(fTrace, context, fPushdown, endRank);
+            while (event != null && !fCancelled) {
+                /* Events skipped by the pushdown still count in the rank */
+                long rank = context.getRank() - 1;
+                if (fFilter.matches(event)) {
+                    matches.set((int) (rank - startRank));
+                }
+                event = TmfTraceUtils.getNext(fTrace, context, fPushdown, endRank);
+            }
+        } finally {
+            context.dispose();
+        }
+        return matches;
+    }
+}
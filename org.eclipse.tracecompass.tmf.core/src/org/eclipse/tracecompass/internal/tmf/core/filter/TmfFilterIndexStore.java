@@ -0,0 +1,294 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.tmf.core.filter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.internal.tmf.core.Activator;
+import org.eclipse.tracecompass.tmf.core.filter.ITmfFilter;
+import org.eclipse.tracecompass.tmf.core.filter.model.ITmfFilterTreeNode;
+import org.eclipse.tracecompass.tmf.core.filter.xml.TmfFilterXMLWriter;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
+import org.eclipse.tracecompass.tmf.core.trace.experiment.TmfExperiment;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * Persistent storage of {@link TmfFilterIndex} in the supplementary files of
+ * a trace.
+ * <p>
+ * An index is stored in a compressed file named after a SHA-256 digest of the
+ * XML serialization of the filter. The file header contains a key made of
+ * the whole serialization and of a signature of the trace files (their size
+ * and modification time). An index is only loaded if both the filter and the
+ * trace files are the same as when it was saved, so a stored index is simply
+ * ignored, then overwritten, once the trace is modified.
+ * <p>
+ * At most {@link #MAX_FILES} indexes are kept per trace: when an index is
+ * saved, the least recently used ones beyond that number are deleted.
+ */
+public final class TmfFilterIndexStore {
+
+    private static final String FILE_PREFIX = "filter-index-"; //$NON-NLS-1$
+    private static final String FILE_SUFFIX = ".idx"; //$NON-NLS-1$
+    private static final String TEMP_SUFFIX = ".tmp"; //$NON-NLS-1$
+    private static final String ROOT_ELEMENT = "filterIndex"; //$NON-NLS-1$
+    private static final Charset CHARSET_UTF8 = Charset.forName("UTF-8"); //$NON-NLS-1$
+
+    private static final String DIGEST_ALGORITHM = "SHA-256"; //$NON-NLS-1$
+
+    private static final int MAGIC = 0x0F17E41D;
+    private static final int VERSION = 1;
+
+    /** Maximum number of stored indexes per trace */
+    public static final int MAX_FILES = 16;
+
+    private TmfFilterIndexStore() {
+    }
+
+    /**
+     * Get the key of the index of a filter on a trace
+     *
+     * @param trace
+     *            The trace
+     * @param filter
+     *            The filter
+     * @return The key, or null if the filter can't be serialized
+     */
+    public static @Nullable String getKey(ITmfTrace trace, ITmfFilter filter) {
+        String xml = getFilterXml(filter);
+        if (xml == null) {
+            return null;
+        }
+        return getKey(trace, xml);
+    }
+
+    private static String getKey(ITmfTrace trace, String filterXml) {
+        StringBuilder key = new StringBuilder(filterXml);
+        appendSignature(key, trace);
+        return key.toString();
+    }
+
+    private static @Nullable String getFilterXml(ITmfFilter filter) {
+        if (!(filter instanceof ITmfFilterTreeNode) || !TmfFilterIndexBuilder.canPartition(filter)) {
+            return null;
+        }
+        try {
+            Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+            Element rootElement = document.createElement(ROOT_ELEMENT);
+            document.appendChild(rootElement);
+            TmfFilterXMLWriter.buildXMLTree(document, (ITmfFilterTreeNode) filter, rootElement);
+            StringWriter writer = new StringWriter();
+            TransformerFactory.newInstance().newTransformer().transform(new DOMSource(document), new StreamResult(writer));
+            return writer.toString();
+        } catch (ParserConfigurationException e) {
+            return null;
+        } catch (TransformerException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Load the stored index of a filter on a trace
+     *
+     * @param trace
+     *            The trace
+     * @param filter
+     *            The filter
+     * @param index
+     *            The empty index to load into
+     * @return true if a valid stored index was found and loaded. If the
+     *         file is truncated, the index may have been partially loaded.
+     */
+    public static boolean load(ITmfTrace trace, ITmfFilter filter, TmfFilterIndex index) {
+        String xml = getFilterXml(filter);
+        if (xml == null || index.getNbRanks() != 0) {
+            return false;
+        }
+        File file = getFile(trace, xml);
+        if (!file.exists()) {
+            return false;
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                return false;
+            }
+            byte[] key = getKey(trace, xml).getBytes(CHARSET_UTF8);
+            if (input.readInt() != key.length) {
+                return false;
+            }
+            byte[] storedKey = new byte[key.length];
+            input.readFully(storedKey);
+            if (!Arrays.equals(key, storedKey)) {
+                /* The trace was modified, or another filter has the same hash */
+                return false;
+            }
+            /*
+             * The partitions are appended as they are read, a truncated file
+             * leaves a valid prefix that the index builder can extend.
+             */
+            index.read(input);
+            /* Mark the file as recently used */
+            file.setLastModified(System.currentTimeMillis());
+            return true;
+        } catch (IOException e) {
+            Activator.logWarning("Error reading filter index file " + file, e); //$NON-NLS-1$
+            return false;
+        }
+    }
+
+    /**
+     * Store the index of a filter on a trace, replacing any previously stored
+     * index for the same filter.
+     *
+     * @param trace
+     *            The trace
+     * @param filter
+     *            The filter
+     * @param index
+     *            The index to store
+     */
+    public static void save(ITmfTrace trace, ITmfFilter filter, TmfFilterIndex index) {
+        String xml = getFilterXml(filter);
+        if (xml == null) {
+            return;
+        }
+        String key = getKey(trace, xml);
+        File file = getFile(trace, xml);
+        File tempFile = new File(file.getPath() + TEMP_SUFFIX);
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(tempFile))))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            byte[] keyBytes = key.getBytes(CHARSET_UTF8);
+            output.writeInt(keyBytes.length);
+            output.write(keyBytes);
+            index.write(output);
+        } catch (IOException e) {
+            Activator.logWarning("Error writing filter index file " + file, e); //$NON-NLS-1$
+            tempFile.delete();
+            return;
+        }
+        /* Only replace the previous file once the new one is complete */
+        file.delete();
+        if (!tempFile.renameTo(file)) {
+            tempFile.delete();
+            return;
+        }
+        deleteOldFiles(file.getParentFile(), file);
+    }
+
+    private static File getFile(ITmfTrace trace, String filterXml) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            /* Every Java platform supports SHA-256 */
+            throw new IllegalStateException(e);
+        }
+        StringBuilder name = new StringBuilder(FILE_PREFIX);
+        for (byte b : digest.digest(filterXml.getBytes(CHARSET_UTF8))) {
+            name.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        name.append(FILE_SUFFIX);
+        return new File(TmfTraceManager.getSupplementaryFileDir(trace) + name);
+    }
+
+    /**
+     * Delete the least recently used index files of a directory beyond the
+     * maximum number, except the one just saved.
+     */
+    private static void deleteOldFiles(@Nullable File directory, File savedFile) {
+        if (directory == null) {
+            return;
+        }
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        File[] indexFiles = new File[files.length];
+        int nbIndexFiles = 0;
+        for (File file : files) {
+            String name = file.getName();
+            if (name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX) && !file.equals(savedFile)) {
+                indexFiles[nbIndexFiles++] = file;
+            }
+        }
+        if (nbIndexFiles < MAX_FILES) {
+            return;
+        }
+        /* Most recently used first */
+        Arrays.sort(indexFiles, 0, nbIndexFiles, new Comparator<File>() {
+            @Override
+            public int compare(File file1, File file2) {
+                return Long.compare(file2.lastModified(), file1.lastModified());
+            }
+        });
+        for (int i = MAX_FILES - 1; i < nbIndexFiles; i++) {
+            indexFiles[i].delete();
+        }
+    }
+
+    private static void appendSignature(StringBuilder key, ITmfTrace trace) {
+        if (trace instanceof TmfExperiment) {
+            for (ITmfTrace child : ((TmfExperiment) trace).getTraces()) {
+                appendSignature(key, child);
+            }
+            return;
+        }
+        String path = trace.getPath();
+        if (path == null) {
+            return;
+        }
+        File file = new File(path);
+        long[] sizeAndTime = new long[2];
+        addSizeAndTime(file, sizeAndTime);
+        key.append('\n').append(file.getAbsolutePath())
+                .append(':').append(sizeAndTime[0])
+                .append(':').append(sizeAndTime[1]);
+    }
+
+    private static void addSizeAndTime(File file, long[] sizeAndTime) {
+        if (file.isDirectory()) {
+            File[] children = file.listFiles();
+            if (children != null) {
+                for (File child : children) {
+                    addSizeAndTime(child, sizeAndTime);
+                }
+            }
+        } else {
+            sizeAndTime[0] += file.length();
+        }
+        sizeAndTime[1] = Math.max(sizeAndTime[1], file.lastModified());
+    }
+}
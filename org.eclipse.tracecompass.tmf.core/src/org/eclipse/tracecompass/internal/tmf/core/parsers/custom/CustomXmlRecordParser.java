@@ -0,0 +1,314 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.tmf.core.parsers.custom;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.tmf.core.parsers.custom.CustomXmlInputAttribute;
+import org.eclipse.tracecompass.tmf.core.parsers.custom.CustomXmlInputElement;
+import org.eclipse.tracecompass.tmf.core.parsers.custom.CustomXmlTraceDefinition;
+
+/**
+ * Streaming parser for the record elements of custom XML traces.
+ * <p>
+ * The record element is read with a StAX stream reader, and its sub-elements
+ * are matched against the configured {@link CustomXmlInputElement} tree as
+ * they are encountered. No document tree is built: text is only accumulated
+ * for the elements that are configured as inputs (and their descendants), and
+ * everything else is skipped.
+ * <p>
+ * The extracted values are returned in the same order, and with the same
+ * content, as a depth-first walk of the equivalent DOM element would produce
+ * with {@link org.eclipse.tracecompass.tmf.core.parsers.custom.CustomXmlTrace#parseElement}.
+ */
+public class CustomXmlRecordParser {
+
+    private static final String SEPARATOR = " | "; //$NON-NLS-1$
+
+    /* Makes the JDK reader report CDATA events instead of CHARACTERS */
+    private static final String REPORT_CDATA = "http://java.sun.com/xml/stream/properties/report-cdata-event"; //$NON-NLS-1$
+
+    /**
+     * A value extracted from a record for one of the configured inputs
+     */
+    public static final class InputValue {
+
+        private final String fValue;
+        private final String fInputName;
+        private final int fInputAction;
+        private final String fInputFormat;
+
+        private InputValue(String value, String inputName, int inputAction, String inputFormat) {
+            fValue = value;
+            fInputName = inputName;
+            fInputAction = inputAction;
+            fInputFormat = inputFormat;
+        }
+
+        /**
+         * @return The extracted value
+         */
+        public String getValue() {
+            return fValue;
+        }
+
+        /**
+         * @return The name of the input
+         */
+        public String getInputName() {
+            return fInputName;
+        }
+
+        /**
+         * @return The action of the input
+         */
+        public int getInputAction() {
+            return fInputAction;
+        }
+
+        /**
+         * @return The format of the input
+         */
+        public String getInputFormat() {
+            return fInputFormat;
+        }
+    }
+
+    private final CustomXmlInputElement fRecordInputElement;
+    private final XMLInputFactory fFactory;
+
+    /**
+     * Constructor
+     *
+     * @param recordInputElement
+     *            The input element of the records
+     */
+    public CustomXmlRecordParser(CustomXmlInputElement recordInputElement) {
+        fRecordInputElement = recordInputElement;
+        fFactory = XMLInputFactory.newInstance();
+        /* Qualified names are compared as-is, and DTDs are ignored */
+        fFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+        fFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        fFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        /*
+         * CDATA sections are kept apart from the text, the DOM walk this
+         * replaces did not read them either
+         */
+        fFactory.setProperty(XMLInputFactory.IS_COALESCING, false);
+        if (fFactory.isPropertySupported(REPORT_CDATA)) {
+            fFactory.setProperty(REPORT_CDATA, true);
+        }
+    }
+
+    /**
+     * Parse the text of one record element.
+     *
+     * @param record
+     *            The record element, from its start tag to its end tag
+     * @return The values of the configured inputs, or null if the record is
+     *         not well-formed
+     */
+    public @Nullable List<InputValue> parse(String record) {
+        return parse(new StringReader(record));
+    }
+
+    /**
+     * Parse one record element, streamed from a reader. The reader must reach
+     * its end of stream after the end tag of the record.
+     *
+     * @param record
+     *            The reader of the record element
+     * @return The values of the configured inputs, or null if the record is
+     *         not well-formed
+     * @see CustomXmlRecordReader
+     */
+    public @Nullable List<InputValue> parse(Reader record) {
+        XMLStreamReader reader = null;
+        try {
+            reader = fFactory.createXMLStreamReader(record);
+            while (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                if (!reader.hasNext()) {
+                    return null;
+                }
+            }
+            List<InputValue> values = new ArrayList<>();
+            parseElement(reader, fRecordInputElement, values, false);
+            /* Make sure that there is nothing malformed after the record */
+            while (reader.hasNext()) {
+                reader.next();
+            }
+            return values;
+        } catch (XMLStreamException e) {
+            return null;
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException e) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Stream one element, from its start tag to its end tag.
+     *
+     * @param reader
+     *            The reader, positioned on the start tag
+     * @param inputElement
+     *            The matching input element, or null if it isn't configured
+     * @param values
+     *            The list of extracted values to add to
+     * @param describe
+     *            true if the parent needs the description of this element
+     * @return The description of this element, or null if not requested
+     * @throws XMLStreamException
+     *             If the element is not well-formed
+     */
+    private static @Nullable String parseElement(XMLStreamReader reader, @Nullable CustomXmlInputElement inputElement,
+            List<InputValue> values, boolean describe) throws XMLStreamException {
+        final String name = getName(reader.getName());
+        final boolean hasInput = inputElement != null && inputElement.getInputName() != null &&
+                !inputElement.getInputName().equals(CustomXmlTraceDefinition.TAG_IGNORE);
+
+        /* The element's own value comes before its attributes and children */
+        int slot = -1;
+        if (hasInput) {
+            slot = values.size();
+            values.add(null);
+        }
+        if (inputElement != null && inputElement.getAttributes() != null) {
+            for (CustomXmlInputAttribute attribute : inputElement.getAttributes()) {
+                values.add(new InputValue(getAttribute(reader, attribute.getAttributeName()),
+                        attribute.getInputName(), attribute.getInputAction(), attribute.getInputFormat()));
+            }
+        }
+
+        final StringBuilder content = (hasInput || describe) ? new StringBuilder() : null;
+        int nodes = 0;
+        String firstText = null;
+        boolean separator = false;
+        /*
+         * The reader can split a text into several events, at entity
+         * references for example, but it is one text node in DOM
+         */
+        boolean inText = false;
+        final StringBuilder text = new StringBuilder();
+        int event = reader.next();
+        while (true) {
+            boolean isText = (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.SPACE);
+            if (inText && !isText) {
+                inText = false;
+                if (content != null) {
+                    String nodeText = text.toString();
+                    if (nodes == 1) {
+                        firstText = nodeText;
+                    }
+                    String trimmed = nodeText.trim();
+                    if (trimmed.length() != 0) {
+                        content.append(trimmed);
+                    }
+                }
+            }
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                break;
+            }
+            switch (event) {
+            case XMLStreamConstants.START_ELEMENT:
+                nodes++;
+                String entry = parseElement(reader, getChildInput(inputElement, getName(reader.getName())), values, content != null);
+                if (content != null) {
+                    if (separator) {
+                        content.append(SEPARATOR);
+                    }
+                    separator = true;
+                    content.append(entry);
+                }
+                break;
+            case XMLStreamConstants.CHARACTERS:
+            case XMLStreamConstants.SPACE:
+                if (!inText) {
+                    nodes++;
+                    inText = true;
+                    text.setLength(0);
+                }
+                if (content != null) {
+                    text.append(reader.getText());
+                }
+                break;
+            case XMLStreamConstants.CDATA:
+                /* A node of its own, whose text is not part of the value */
+                nodes++;
+                break;
+            case XMLStreamConstants.END_DOCUMENT:
+                throw new XMLStreamException("Unexpected end of record"); //$NON-NLS-1$
+            default:
+                /* Comments and processing instructions */
+                nodes++;
+                break;
+            }
+            event = reader.next();
+        }
+
+        if (hasInput && content != null && inputElement != null) {
+            values.set(slot, new InputValue(content.toString(), inputElement.getInputName(),
+                    inputElement.getInputAction(), inputElement.getInputFormat()));
+        }
+        if (!describe || content == null) {
+            return null;
+        }
+        if (nodes == 0) {
+            return name;
+        } else if (nodes == 1 && firstText != null) {
+            return name + ':' + firstText.trim();
+        }
+        return name + " [ " + content + " ]"; //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    private static @Nullable CustomXmlInputElement getChildInput(@Nullable CustomXmlInputElement inputElement, String name) {
+        if (inputElement == null || inputElement.getChildElements() == null) {
+            return null;
+        }
+        for (CustomXmlInputElement child : inputElement.getChildElements()) {
+            if (name.equals(child.getElementName())) {
+                return child;
+            }
+        }
+        return null;
+    }
+
+    private static String getAttribute(XMLStreamReader reader, String attributeName) {
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            if (getName(reader.getAttributeName(i)).equals(attributeName)) {
+                return reader.getAttributeValue(i);
+            }
+        }
+        /* Same as a missing attribute in DOM */
+        return ""; //$NON-NLS-1$
+    }
+
+    private static String getName(QName name) {
+        String prefix = name.getPrefix();
+        if (prefix == null || prefix.isEmpty()) {
+            return name.getLocalPart();
+        }
+        return prefix + ':' + name.getLocalPart();
+    }
+}
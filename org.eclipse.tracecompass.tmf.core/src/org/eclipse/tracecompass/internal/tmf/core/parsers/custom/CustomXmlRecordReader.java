@@ -0,0 +1,172 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.tmf.core.parsers.custom;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Reader of one record element of a custom XML trace, directly from the trace
+ * file.
+ * <p>
+ * The reader starts at the '<' of the record's start tag, and it reaches its
+ * end of stream right after the end of the record, so that the record can be
+ * streamed to the {@link CustomXmlRecordParser} while its end is found. The
+ * end of the record is found by counting the nested elements, skipping the
+ * quoted strings and the comments. Each byte of the file is read as one char.
+ * <p>
+ * The file is read in blocks, so its position is unspecified after reading.
+ * The caller has to seek to the record's offset plus the length of
+ * {@link #getRecord()} to continue after the record.
+ */
+public class CustomXmlRecordReader extends Reader {
+
+    private static final int BLOCK_SIZE = 8192;
+
+    private final RandomAccessFile fFile;
+    private final byte[] fBytes = new byte[BLOCK_SIZE];
+    private int fBytesPos = 0;
+    private int fBytesLimit = 0;
+
+    /* The text of the record read so far */
+    private final StringBuilder fRecord = new StringBuilder();
+    private boolean fEnd = false;
+
+    /* Number of chars read in each of the open elements, outside of quotes and comments */
+    private int[] fNumRead = new int[8];
+    /* Whether the start tag of each of the open elements is closed */
+    private boolean[] fTagClosed = new boolean[8];
+    private int fDepth = 0;
+
+    /* The quote char of the current quoted string, or 0 */
+    private char fQuote = 0;
+    /* Number of chars read in the current comment, or -1 */
+    private int fCommentRead = -1;
+
+    /**
+     * Constructor
+     *
+     * @param file
+     *            The trace file, positioned at the start of the record
+     */
+    public CustomXmlRecordReader(RandomAccessFile file) {
+        fFile = file;
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        int n = 0;
+        while (n < len && !fEnd) {
+            if (fBytesPos == fBytesLimit) {
+                /* RandomAccessFile.read(byte[]) doesn't call the overridden method */
+                int read = fFile.read(fBytes, 0, fBytes.length);
+                if (read <= 0) {
+                    fEnd = true;
+                    break;
+                }
+                fBytesPos = 0;
+                fBytesLimit = read;
+            }
+            char c = (char) (fBytes[fBytesPos++] & 0xff);
+            cbuf[off + n++] = c;
+            scan(c);
+        }
+        return (n == 0 ? -1 : n);
+    }
+
+    /**
+     * Get the text of the record, from its start tag to its end tag. The part
+     * of the record that was not read yet is read first.
+     *
+     * @return The text of the record
+     * @throws IOException
+     *             If the file could not be read
+     */
+    public String getRecord() throws IOException {
+        char[] cbuf = new char[BLOCK_SIZE];
+        while (read(cbuf, 0, cbuf.length) != -1) {
+            /* Read until the end of the record */
+        }
+        return fRecord.toString();
+    }
+
+    @Override
+    public void close() {
+        /* The file belongs to the trace */
+    }
+
+    private void scan(char c) {
+        fRecord.append(c);
+        if (fQuote != 0) {
+            if (c == fQuote) {
+                fQuote = 0; // found matching end-quote
+            }
+            return;
+        }
+        if (fCommentRead >= 0) {
+            fCommentRead++;
+            if (c == '>' && fCommentRead >= 2 && lastChars(3).equals("-->")) { //$NON-NLS-1$
+                fCommentRead = -1;
+                pop(); // found "-->"
+            }
+            return;
+        }
+        if (fDepth == 0) {
+            /* The '<' of the record's start tag */
+            push();
+            return;
+        }
+        int top = fDepth - 1;
+        int numRead = ++fNumRead[top];
+        if (c == '"' || c == '\'') {
+            fQuote = c;
+        } else if (c == '<') {
+            push();
+        } else if (c == '/' && numRead == 1) {
+            pop(); // found "</"
+        } else if (c == '-' && numRead == 3 && lastChars(3).equals("!--")) { //$NON-NLS-1$
+            fCommentRead = 0; // found "<!--"
+        } else if (c == '>') {
+            if (fRecord.charAt(fRecord.length() - 2) == '/') {
+                pop(); // found "/>"
+            } else if (fTagClosed[top]) {
+                pop(); // found "<...>...</...>"
+            } else {
+                fTagClosed[top] = true; // found "<...>"
+            }
+        }
+    }
+
+    private String lastChars(int count) {
+        return fRecord.substring(fRecord.length() - count);
+    }
+
+    private void push() {
+        if (fDepth == fNumRead.length) {
+            fNumRead = Arrays.copyOf(fNumRead, fDepth * 2);
+            fTagClosed = Arrays.copyOf(fTagClosed, fDepth * 2);
+        }
+        fNumRead[fDepth] = 0;
+        fTagClosed[fDepth] = false;
+        fDepth++;
+    }
+
+    private void pop() {
+        fDepth--;
+        if (fDepth == 0) {
+            fEnd = true;
+        }
+    }
+}
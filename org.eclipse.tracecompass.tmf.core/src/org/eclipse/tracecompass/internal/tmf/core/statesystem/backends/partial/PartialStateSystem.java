@@ -151,6 +151,16 @@ public class PartialStateSystem extends StateSystem {
         }
     }
 
+    @Override
+    public int getQuarkRelativeAndAdd(int startingNodeQuark, long subAttribute) {
+        waitUntilReady();
+        try {
+            return realStateSystem.getQuarkRelative(startingNodeQuark, subAttribute);
+        } catch (AttributeNotFoundException e) {
+            throw new RuntimeException(ERR_MSG);
+        }
+    }
+
     private void waitUntilReady() {
         try {
             ssAssignedLatch.await();
@@ -18,6 +18,7 @@ import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.math.BigDecimal;
 import java.math.MathContext;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
@@ -32,7 +33,6 @@ import org.eclipse.tracecompass.tmf.core.synchronization.ITmfTimestampTransform;
 import org.eclipse.tracecompass.tmf.core.synchronization.Messages;
 import org.eclipse.tracecompass.tmf.core.synchronization.SynchronizationAlgorithm;
 import org.eclipse.tracecompass.tmf.core.synchronization.TimestampTransformFactory;
-import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
 
 /**
@@ -224,20 +224,20 @@ public class SyncAlgorithmFullyIncremental extends SynchronizationAlgorithm {
         private SyncQuality fQuality;
 
         /**
-         * The list of meaningful points on the upper hull (received by the
-         * reference trace, below in a graph)
+         * The meaningful points on the upper hull (received by the reference
+         * trace, below in a graph)
          */
-        private transient LinkedList<SyncPoint> fUpperBoundList = new LinkedList<>();
+        private transient HullBound fUpperBound = new HullBound();
         /**
-         * The list of meaninful points on the lower hull (sent by the reference
+         * The meaningful points on the lower hull (sent by the reference
          * trace, above in a graph)
          */
-        private transient LinkedList<SyncPoint> fLowerBoundList = new LinkedList<>();
+        private transient HullBound fLowerBound = new HullBound();
 
         /** Points forming the line with maximum slope */
-        private transient SyncPoint[] fLmax = new SyncPoint[2];
+        private transient HullLine fLmax = new HullLine();
         /** Points forming the line with minimum slope */
-        private transient SyncPoint[] fLmin = new SyncPoint[2];
+        private transient HullLine fLmin = new HullLine();
 
         private transient Map<String, Object> fStats = new LinkedHashMap<>();
 
@@ -270,28 +270,36 @@ public class SyncAlgorithmFullyIncremental extends SynchronizationAlgorithm {
 
         protected void processMatch(TmfEventDependency match) {
 
-            LinkedList<SyncPoint> boundList, otherBoundList;
-
-            SyncPoint[] line, otherLine;
-            SyncPoint p;
+            HullBound bound, otherBound;
+            HullLine line, otherLine;
+            long x, y;
             int inversionFactor = 1;
             boolean qualify = false;
             fNbMatches++;
 
-            /* Initialize data depending on the which hull the match is part of */
-            if (match.getSourceEvent().getTrace().getHostId().compareTo(match.getDestinationEvent().getTrace().getHostId()) > 0) {
-                boundList = fUpperBoundList;
-                otherBoundList = fLowerBoundList;
+            /*
+             * Initialize data depending on the which hull the match is part
+             * of. The x axis is the timestamp of the event from the reference
+             * trace while the y axis is the timestamp of the event on the
+             * other trace.
+             */
+            ITmfEvent source = match.getSourceEvent();
+            ITmfEvent destination = match.getDestinationEvent();
+            if (source.getTrace().getHostId().compareTo(destination.getTrace().getHostId()) > 0) {
+                bound = fUpperBound;
+                otherBound = fLowerBound;
                 line = fLmin;
                 otherLine = fLmax;
-                p = new SyncPoint(match.getDestinationEvent(), match.getSourceEvent());
+                x = destination.getTimestamp().getValue();
+                y = source.getTimestamp().getValue();
                 inversionFactor = 1;
             } else {
-                boundList = fLowerBoundList;
-                otherBoundList = fUpperBoundList;
+                bound = fLowerBound;
+                otherBound = fUpperBound;
                 line = fLmax;
                 otherLine = fLmin;
-                p = new SyncPoint(match.getSourceEvent(), match.getDestinationEvent());
+                x = source.getTimestamp().getValue();
+                y = destination.getTimestamp().getValue();
                 inversionFactor = -1;
             }
 
@@ -299,7 +307,7 @@ public class SyncAlgorithmFullyIncremental extends SynchronizationAlgorithm {
              * Does the message qualify for the hull, or is in on the wrong side
              * of the reference line
              */
-            if ((line[0] == null) || (line[1] == null) || (p.crossProduct(line[0], line[1]) * inversionFactor > 0)) {
+            if (!line.fHasStart || !line.fHasEnd || (crossProduct(x, y, line.fStartX, line.fStartY, line.fEndX, line.fEndY) * inversionFactor > 0)) {
                 /*
                  * If message qualifies, verify if points need to be removed
                  * from the hull and add the new point as the maximum reference
@@ -308,8 +316,8 @@ public class SyncAlgorithmFullyIncremental extends SynchronizationAlgorithm {
                  */
                 fNbAccurateMatches++;
                 qualify = true;
-                removeUselessPoints(p, boundList, inversionFactor);
-                line[1] = p;
+                removeUselessPoints(x, y, bound, inversionFactor);
+                line.setEnd(x, y);
                 fStats.clear();
             }
 
@@ -318,9 +326,9 @@ public class SyncAlgorithmFullyIncremental extends SynchronizationAlgorithm {
              * reference point of the other line was removed from the hull, also
              * adjust the other line
              */
-            adjustBound(line, otherBoundList, inversionFactor);
-            if ((otherLine[1] != null) && !boundList.contains(otherLine[0])) {
-                adjustBound(otherLine, boundList, inversionFactor * -1);
+            adjustBound(line, otherBound, inversionFactor);
+            if (otherLine.fHasEnd && !(otherLine.fHasStart && bound.contains(otherLine.fStartId))) {
+                adjustBound(otherLine, bound, inversionFactor * -1);
             }
 
             if (qualify) {
@@ -342,17 +350,17 @@ public class SyncAlgorithmFullyIncremental extends SynchronizationAlgorithm {
              *
              * Lmin = alpha_min T + beta_max
              */
-            if ((fLmax[0] != null) || (fLmin[0] != null)) {
+            if (fLmax.fHasStart || fLmin.fHasStart) {
                 /**
                  * Do not recalculate synchronization after it is failed. We
                  * keep the last not failed result.
                  */
                 if (getQuality() != SyncQuality.FAIL) {
-                    BigDecimal alphamax = fLmax[1].getAlpha(fLmax[0]);
-                    BigDecimal alphamin = fLmin[1].getAlpha(fLmin[0]);
+                    BigDecimal alphamax = fLmax.getAlpha();
+                    BigDecimal alphamin = fLmin.getAlpha();
                     SyncQuality quality = null;
 
-                    if ((fLmax[0] == null) || (fLmin[0] == null)) {
+                    if (!fLmax.fHasStart || !fLmin.fHasStart) {
                         quality = SyncQuality.APPROXIMATE;
                     }
                     else if (alphamax.compareTo(alphamin) > 0) {
@@ -367,16 +375,16 @@ public class SyncAlgorithmFullyIncremental extends SynchronizationAlgorithm {
                      */
                     if (quality != SyncQuality.FAIL) {
                         fAlphamax = alphamax;
-                        fBetamin = fLmax[1].getBeta(fAlphamax);
+                        fBetamin = fLmax.getBeta(fAlphamax);
                         fAlphamin = alphamin;
-                        fBetamax = fLmin[1].getBeta(fAlphamin);
+                        fBetamax = fLmin.getBeta(fAlphamin);
                         fAlpha = fAlphamax.add(fAlphamin).divide(BigDecimal.valueOf(2), fMc);
                         fBeta = fBetamin.add(fBetamax).divide(BigDecimal.valueOf(2), fMc);
                     }
                     setQuality(quality);
                 }
-            } else if (((fLmax[0] == null) && (fLmin[1] == null))
-                    || ((fLmax[1] == null) && (fLmin[0] == null))) {
+            } else if ((!fLmax.fHasStart && !fLmin.fHasEnd)
+                    || (!fLmax.fHasEnd && !fLmin.fHasStart)) {
                 /* Either there is no upper hull point or no lower hull */
                 setQuality(SyncQuality.INCOMPLETE);
             }
@@ -386,19 +394,18 @@ public class SyncAlgorithmFullyIncremental extends SynchronizationAlgorithm {
          * Verify if the line should be adjusted to be more accurate give the
          * hull
          */
-        private void adjustBound(SyncPoint[] line, LinkedList<SyncPoint> otherBoundList, int inversionFactor) {
-            SyncPoint minPoint = null, nextPoint;
+        private void adjustBound(HullLine line, HullBound otherBound, int inversionFactor) {
+            int minIndex = -1;
             boolean finishedSearch = false;
 
             /*
              * Find in the other bound, the origin point of the line, start from
              * the beginning if the point was lost
              */
-            int i = Math.max(0, otherBoundList.indexOf(line[0]));
+            int i = line.fHasStart ? Math.max(0, otherBound.indexOf(line.fStartId)) : 0;
 
-            while ((i < otherBoundList.size() - 1) && !finishedSearch) {
-                minPoint = otherBoundList.get(i);
-                nextPoint = otherBoundList.get(i + 1);
+            while ((i < otherBound.size() - 1) && !finishedSearch) {
+                minIndex = i;
 
                 /*
                  * If the rotation (cross-product) is not optimal, move to next
@@ -406,26 +413,26 @@ public class SyncAlgorithmFullyIncremental extends SynchronizationAlgorithm {
                  *
                  * Otherwise, the current minPoint is the minPoint of the line
                  */
-                if (minPoint.crossProduct(nextPoint, line[1]) * inversionFactor > 0) {
-                    if (nextPoint.getTimeX() < line[1].getTimeX()) {
+                if (crossProduct(otherBound.getX(i), otherBound.getY(i), otherBound.getX(i + 1), otherBound.getY(i + 1), line.fEndX, line.fEndY) * inversionFactor > 0) {
+                    if (otherBound.getX(i + 1) < line.fEndX) {
                         i++;
                     } else {
-                        line[0] = null;
+                        line.fHasStart = false;
                         finishedSearch = true;
                     }
                 } else {
-                    line[0] = minPoint;
+                    line.setStart(otherBound, i);
                     finishedSearch = true;
                 }
             }
 
-            if (line[0] == null) {
-                line[0] = minPoint;
+            if (!line.fHasStart && minIndex >= 0) {
+                line.setStart(otherBound, minIndex);
             }
 
             /* Make sure point 0 is before point 1 */
-            if ((line[0] != null) && (line[0].getTimeX() > line[1].getTimeX())) {
-                line[0] = null;
+            if (line.fHasStart && (line.fStartX > line.fEndX)) {
+                line.fHasStart = false;
             }
         }
 
@@ -433,18 +440,19 @@ public class SyncAlgorithmFullyIncremental extends SynchronizationAlgorithm {
          * When a point qualifies to be in a hull, we verify if any of the
          * existing points need to be removed from the hull
          */
-        private void removeUselessPoints(final SyncPoint p, final LinkedList<SyncPoint> boundList, final int inversionFactor) {
+        private void removeUselessPoints(long x, long y, HullBound bound, final int inversionFactor) {
 
             boolean checkRemove = true;
 
-            while (checkRemove && boundList.size() >= 2) {
-                if (p.crossProduct(boundList.get(boundList.size() - 2), boundList.getLast()) * inversionFactor > 0) {
-                    boundList.removeLast();
+            while (checkRemove && bound.size() >= 2) {
+                int last = bound.size() - 1;
+                if (crossProduct(x, y, bound.getX(last - 1), bound.getY(last - 1), bound.getX(last), bound.getY(last)) * inversionFactor > 0) {
+                    bound.removeLast();
                 } else {
                     checkRemove = false;
                 }
             }
-            boundList.addLast(p);
+            bound.add(x, y);
         }
 
         public ITmfTimestampTransform getTimestampTransform(String hostId) {
@@ -490,8 +498,8 @@ public class SyncAlgorithmFullyIncremental extends SynchronizationAlgorithm {
                 fStats.put(Messages.SyncAlgorithmFullyIncremental_quality, syncQuality);
                 fStats.put(Messages.SyncAlgorithmFullyIncremental_alpha, fAlpha);
                 fStats.put(Messages.SyncAlgorithmFullyIncremental_beta, fBeta);
-                fStats.put(Messages.SyncAlgorithmFullyIncremental_ub, (fUpperBoundList.size() == 0) ? Messages.SyncAlgorithmFullyIncremental_NA : fUpperBoundList.size());
-                fStats.put(Messages.SyncAlgorithmFullyIncremental_lb, (fLowerBoundList.size() == 0) ? Messages.SyncAlgorithmFullyIncremental_NA : fLowerBoundList.size());
+                fStats.put(Messages.SyncAlgorithmFullyIncremental_ub, (fUpperBound.size() == 0) ? Messages.SyncAlgorithmFullyIncremental_NA : fUpperBound.size());
+                fStats.put(Messages.SyncAlgorithmFullyIncremental_lb, (fLowerBound.size() == 0) ? Messages.SyncAlgorithmFullyIncremental_NA : fLowerBound.size());
                 fStats.put(Messages.SyncAlgorithmFullyIncremental_accuracy, getAccuracy().doubleValue());
                 fStats.put(Messages.SyncAlgorithmFullyIncremental_nbmatch, (fNbMatches == 0) ? Messages.SyncAlgorithmFullyIncremental_NA : fNbMatches);
                 fStats.put(Messages.SyncAlgorithmFullyIncremental_nbacc, (fNbAccurateMatches == 0) ? Messages.SyncAlgorithmFullyIncremental_NA : fNbAccurateMatches);
@@ -519,10 +527,10 @@ public class SyncAlgorithmFullyIncremental extends SynchronizationAlgorithm {
             stream.defaultReadObject();
 
             /* Initialize transient fields */
-            fUpperBoundList = new LinkedList<>();
-            fLowerBoundList = new LinkedList<>();
-            fLmax = new SyncPoint[2];
-            fLmin = new SyncPoint[2];
+            fUpperBound = new HullBound();
+            fLowerBound = new HullBound();
+            fLmax = new HullLine();
+            fLmin = new HullLine();
             fStats = new LinkedHashMap<>();
         }
 
@@ -542,51 +550,111 @@ public class SyncAlgorithmFullyIncremental extends SynchronizationAlgorithm {
     }
 
     /**
-     * Private class representing a point to synchronize on a graph. The x axis
-     * is the timestamp of the event from the reference trace while the y axis
-     * is the timestamp of the event on the other trace
+     * Calculate a cross product of 3 points p, pa and pb:
+     *
+     * If the cross-product < 0, then p, pa, pb are clockwise
+     *
+     * If the cross-product > 0, then p, pa, pb are counter-clockwise
+     *
+     * If cross-product == 0, then they are in a line
+     */
+    private static long crossProduct(long x, long y, long xa, long ya, long xb, long yb) {
+        return (xa - x) * (yb - y) - (ya - y) * (xb - x);
+    }
+
+    /**
+     * The points of one bound of a hull, in primitive arrays. Points are only
+     * added and removed at the end, like a stack, so updating the bound does
+     * not allocate once the arrays are large enough. Each point gets an
+     * identifier when it is added, the identifiers are sorted in the bound so
+     * a point can be looked up with a binary search.
      */
-    private class SyncPoint {
-        private final ITmfTimestamp x, y;
+    private static final class HullBound {
 
-        public SyncPoint(ITmfEvent ex, ITmfEvent ey) {
-            x = ex.getTimestamp();
-            y = ey.getTimestamp();
+        private static final int INITIAL_CAPACITY = 16;
+
+        private long[] fX = new long[INITIAL_CAPACITY];
+        private long[] fY = new long[INITIAL_CAPACITY];
+        private long[] fId = new long[INITIAL_CAPACITY];
+        private int fSize = 0;
+        private long fNextId = 0;
+
+        public int size() {
+            return fSize;
         }
 
-        public long getTimeX() {
-            return x.getValue();
+        public long getX(int index) {
+            return fX[index];
         }
 
-        /**
-         * Calculate a cross product of 3 points:
-         *
-         * If the cross-product < 0, then p, pa, pb are clockwise
-         *
-         * If the cross-product > 0, then p, pa, pb are counter-clockwise
-         *
-         * If cross-product == 0, then they are in a line
-         *
-         * @param pa
-         *            First point
-         * @param pb
-         *            Second point
-         * @return The cross product
-         */
-        public long crossProduct(SyncPoint pa, SyncPoint pb) {
-            long cp = ((pa.x.getValue() - x.getValue()) * (pb.y.getValue() - y.getValue()) - (pa.y.getValue() - y.getValue()) * (pb.x.getValue() - x.getValue()));
-            return cp;
+        public long getY(int index) {
+            return fY[index];
+        }
+
+        public long getId(int index) {
+            return fId[index];
+        }
+
+        public void add(long x, long y) {
+            if (fSize == fX.length) {
+                int capacity = fSize * 2;
+                fX = Arrays.copyOf(fX, capacity);
+                fY = Arrays.copyOf(fY, capacity);
+                fId = Arrays.copyOf(fId, capacity);
+            }
+            fX[fSize] = x;
+            fY[fSize] = y;
+            fId[fSize] = fNextId++;
+            fSize++;
+        }
+
+        public void removeLast() {
+            fSize--;
+        }
+
+        public int indexOf(long id) {
+            int index = Arrays.binarySearch(fId, 0, fSize, id);
+            return (index >= 0) ? index : -1;
+        }
+
+        public boolean contains(long id) {
+            return indexOf(id) >= 0;
+        }
+    }
+
+    /**
+     * A line of the hull. The start point is a point of the other bound, the
+     * end point is the last point added to the bound of the line.
+     */
+    private static final class HullLine {
+
+        private boolean fHasStart = false;
+        private long fStartId, fStartX, fStartY;
+        private boolean fHasEnd = false;
+        private long fEndX, fEndY;
+
+        public void setStart(HullBound bound, int index) {
+            fHasStart = true;
+            fStartId = bound.getId(index);
+            fStartX = bound.getX(index);
+            fStartY = bound.getY(index);
+        }
+
+        public void setEnd(long x, long y) {
+            fHasEnd = true;
+            fEndX = x;
+            fEndY = y;
         }
 
         /*
-         * Gets the alpha (slope) between two points
+         * Gets the alpha (slope) of the line
          */
-        public BigDecimal getAlpha(SyncPoint p1) {
-            if (p1 == null) {
+        public BigDecimal getAlpha() {
+            if (!fHasStart) {
                 return BigDecimal.ONE;
             }
-            BigDecimal deltay = BigDecimal.valueOf(y.getValue() - p1.y.getValue());
-            BigDecimal deltax = BigDecimal.valueOf(x.getValue() - p1.x.getValue());
+            BigDecimal deltay = BigDecimal.valueOf(fEndY - fStartY);
+            BigDecimal deltax = BigDecimal.valueOf(fEndX - fStartX);
             if (deltax.equals(BigDecimal.ZERO)) {
                 return BigDecimal.ONE;
             }
@@ -597,12 +665,7 @@ public class SyncAlgorithmFullyIncremental extends SynchronizationAlgorithm {
          * Get the beta value (when x = 0) of the line given alpha
          */
         public BigDecimal getBeta(BigDecimal alpha) {
-            return BigDecimal.valueOf(y.getValue()).subtract(alpha.multiply(BigDecimal.valueOf(x.getValue()), fMc));
-        }
-
-        @Override
-        public String toString() {
-            return String.format("%s (%s,  %s)", this.getClass().getCanonicalName(), x, y); //$NON-NLS-1$
+            return BigDecimal.valueOf(fEndY).subtract(alpha.multiply(BigDecimal.valueOf(fEndX), fMc));
         }
     }
 
@@ -76,6 +76,14 @@ public class TmfConstantTransform implements ITmfTimestampTransformInvertible {
         return fOffset + timestamp;
     }
 
+    @Override
+    public void transform(long[] timestamps, int offset, int length) {
+        final long tsOffset = fOffset;
+        for (int i = offset; i < offset + length; i++) {
+            timestamps[i] += tsOffset;
+        }
+    }
+
     @Override
     public ITmfTimestampTransform composeWith(ITmfTimestampTransform composeWith) {
         if (composeWith.equals(TmfTimestampTransform.IDENTITY)) {
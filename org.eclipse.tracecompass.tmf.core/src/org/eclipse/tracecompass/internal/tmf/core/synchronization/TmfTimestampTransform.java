@@ -51,6 +51,11 @@ public final class TmfTimestampTransform implements ITmfTimestampTransformInvert
         return timestamp;
     }
 
+    @Override
+    public void transform(long[] timestamps, int offset, int length) {
+        /* Nothing to do */
+    }
+
     @Override
     public ITmfTimestampTransform composeWith(ITmfTimestampTransform composeWith) {
         /* Since this transform will not modify anything, return the other */
@@ -97,6 +97,13 @@ public class TmfTimestampTransformLinear implements ITmfTimestampTransformInvert
         return t.longValue();
     }
 
+    @Override
+    public void transform(long[] timestamps, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            timestamps[i] = transform(timestamps[i]);
+        }
+    }
+
     @Override
     public ITmfTimestampTransform composeWith(ITmfTimestampTransform composeWith) {
         if (composeWith.equals(TmfTimestampTransform.IDENTITY)) {
@@ -195,6 +195,52 @@ public class TmfTimestampTransformLinearFast implements ITmfTimestampTransformIn
         return ((fAlphaLong * delta) >> fDeltaBits) + fOffset;
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * If all the timestamps are in the same cache range, like the timestamps
+     * of consecutive events usually are, the range is rescaled at most once
+     * and the values are transformed by a loop with only integer arithmetic,
+     * that the JIT compiler can vectorize. Otherwise, each value is
+     * transformed individually.
+     */
+    @Override
+    public void transform(long[] timestamps, int offset, int length) {
+        if (length <= 0) {
+            return;
+        }
+        final int end = offset + length;
+        long min = timestamps[offset];
+        long max = min;
+        for (int i = offset + 1; i < end; i++) {
+            min = Math.min(min, timestamps[i]);
+            max = Math.max(max, timestamps[i]);
+        }
+        /* Same range start as the one transform(min) would align on */
+        long rangeStart = min - (min % fDeltaMax);
+        if (min < 0 || max - rangeStart >= fDeltaMax) {
+            for (int i = offset; i < end; i++) {
+                timestamps[i] = transform(timestamps[i]);
+            }
+            return;
+        }
+        if (rangeStart != fRangeStart) {
+            fRangeStart = rangeStart;
+            fOffset = BigDecimal.valueOf(fRangeStart).multiply(fAlpha, MC).add(fBeta, MC).longValue();
+            fScaleMiss++;
+            fScaleHit--;
+        }
+        fScaleHit += length;
+
+        final long alpha = fAlphaLong;
+        final int shift = fDeltaBits;
+        final long start = fRangeStart;
+        final long tsOffset = fOffset;
+        for (int i = offset; i < end; i++) {
+            timestamps[i] = ((alpha * (timestamps[i] - start)) >> shift) + tsOffset;
+        }
+    }
+
     //-------------------------------------------------------------------------
     // Transform composition
     //-------------------------------------------------------------------------
@@ -35,7 +35,7 @@ public class BTree extends AbstractFileCheckpointCollection {
      * Typical BTree file name
      */
     public static final String INDEX_FILE_NAME = "checkpoint_btree.idx"; //$NON-NLS-1$
-    private static final int SUB_VERSION = 4;
+    private static final int SUB_VERSION = 5;
     private static final boolean ALWAYS_CACHE_ROOT = true;
 
     private final int fMaxNumEntries;
@@ -0,0 +1,110 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.internal.tmf.core.trace.indexer;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.tmf.core.io.MappedTextFile;
+
+/**
+ * Computes the checkpoint interval of line-based text traces from a target
+ * maximum seek cost, expressed in bytes, instead of a fixed number of events.
+ * <p>
+ * Seeking to a rank or a timestamp restores the closest checkpoint and then
+ * parses the file forward. With a fixed event count, traces with large
+ * multi-line events end up parsing a lot of data on every seek, while traces
+ * with tiny events create more checkpoints than needed. Sampling the average
+ * event size at the beginning of the file lets the interval follow the data.
+ */
+public final class CheckpointIntervalEstimator {
+
+    /** Target maximum number of bytes to parse forward from a checkpoint */
+    public static final long MAX_SEEK_BYTES = 64 * 1024;
+
+    /** Number of lines to read from the beginning of a trace to sample it */
+    public static final int SAMPLE_LINES = 1000;
+
+    /** Lower bound of the computed interval */
+    public static final int MIN_INTERVAL = 10;
+
+    /** Upper bound of the computed interval */
+    public static final int MAX_INTERVAL = 10000;
+
+    /**
+     * Recognizes the lines that start an event in a text trace
+     */
+    public interface IEventLineMatcher {
+
+        /**
+         * @param line
+         *            A line of the trace, without its line terminator
+         * @return true if the line is the first line of an event
+         */
+        boolean isEventLine(CharSequence line);
+    }
+
+    private CheckpointIntervalEstimator() {
+    }
+
+    /**
+     * Compute the checkpoint interval of a text trace by sampling its first
+     * {@link #SAMPLE_LINES} lines.
+     *
+     * @param path
+     *            The path of the trace file
+     * @param matcher
+     *            Recognizes the first line of each event
+     * @param defaultInterval
+     *            The interval to use if the file can't be sampled
+     * @return The checkpoint interval, in number of events
+     */
+    public static int sampleInterval(@Nullable String path, IEventLineMatcher matcher, int defaultInterval) {
+        if (path == null || !new File(path).isFile()) {
+            return defaultInterval;
+        }
+        try (MappedTextFile rafile = new MappedTextFile(path)) {
+            long nbEvents = 0;
+            for (int i = 0; i < SAMPLE_LINES; i++) {
+                CharSequence line = rafile.getNextLine();
+                if (line == null) {
+                    break;
+                }
+                if (matcher.isEventLine(line)) {
+                    nbEvents++;
+                }
+            }
+            return computeInterval(rafile.getFilePointer(), nbEvents, defaultInterval);
+        } catch (IOException e) {
+            return defaultInterval;
+        }
+    }
+
+    /**
+     * Compute the checkpoint interval from the sampled beginning of a trace.
+     *
+     * @param sampledBytes
+     *            The number of bytes read during sampling
+     * @param sampledEvents
+     *            The number of events found in those bytes
+     * @param defaultInterval
+     *            The interval to use if the sample is not usable
+     * @return The checkpoint interval, in number of events
+     */
+    public static int computeInterval(long sampledBytes, long sampledEvents, int defaultInterval) {
+        if (sampledBytes <= 0 || sampledEvents <= 0) {
+            return defaultInterval;
+        }
+        long averageEventSize = Math.max(1, sampledBytes / sampledEvents);
+        long interval = MAX_SEEK_BYTES / averageEventSize;
+        return (int) Math.max(MIN_INTERVAL, Math.min(MAX_INTERVAL, interval));
+    }
+}
@@ -15,8 +15,11 @@ package org.eclipse.tracecompass.tmf.core.callstack;
 import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 
 import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.osgi.util.NLS;
 import org.eclipse.tracecompass.internal.tmf.core.Activator;
+import org.eclipse.tracecompass.internal.tmf.core.statesystem.backends.partial.PartialStateSystem;
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
 import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
 import org.eclipse.tracecompass.statesystem.core.exceptions.StateValueTypeException;
@@ -25,7 +28,6 @@ import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
 import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 import org.eclipse.tracecompass.tmf.core.statesystem.AbstractTmfStateProvider;
-import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
 
 /**
@@ -80,6 +82,13 @@ public abstract class CallStackStateProvider extends AbstractTmfStateProvider {
     /** Dummy function name for when no function is expected */
     private static final String NO_FUNCTION = "no function"; //$NON-NLS-1$
 
+    /*
+     * The calls pushed and popped while the state system is built. The
+     * providers that replay events for partial history queries do not record
+     * them.
+     */
+    private @Nullable FlatCallStack.Recorder fRecorder = null;
+
     /**
      * Default constructor
      *
@@ -90,6 +99,29 @@ public abstract class CallStackStateProvider extends AbstractTmfStateProvider {
         super(trace, ID);
     }
 
+    @Override
+    public void assignTargetStateSystem(ITmfStateSystemBuilder ssb) {
+        fRecorder = (ssb instanceof PartialStateSystem ? null : new FlatCallStack.Recorder());
+        super.assignTargetStateSystem(ssb);
+    }
+
+    /**
+     * Get the calls that this provider pushed and popped while it built the
+     * state system, which is faster than reading them back from the state
+     * system. The recorded calls are released, so they can only be taken once.
+     *
+     * @param ss
+     *            The state system built by this provider, which must be
+     *            completely built
+     * @return The calls, or null if they were not recorded or already taken
+     * @since 1.0
+     */
+    public synchronized @Nullable FlatCallStack takeRecordedCalls(ITmfStateSystem ss) {
+        FlatCallStack.Recorder recorder = fRecorder;
+        fRecorder = null;
+        return (recorder == null ? null : recorder.build(ss.getStartTime(), ss.getCurrentEndTime()));
+    }
+
     @Override
     protected void eventHandle(ITmfEvent event) {
         if (!considerEvent(event)) {
@@ -102,7 +134,7 @@ public abstract class CallStackStateProvider extends AbstractTmfStateProvider {
             /* Check if the event is a function entry */
             String functionEntryName = functionEntry(event);
             if (functionEntryName != null) {
-                long timestamp = event.getTimestamp().normalize(0, ITmfTimestamp.NANOSECOND_SCALE).getValue();
+                long timestamp = event.getTimestamp().toNanos();
                 String thread = getThreadName(event);
                 int threadQuark = ss.getQuarkAbsoluteAndAdd(THREADS, thread);
                 Long threadId = getThreadId(event);
@@ -112,16 +144,31 @@ public abstract class CallStackStateProvider extends AbstractTmfStateProvider {
                 int callStackQuark = ss.getQuarkRelativeAndAdd(threadQuark, CALL_STACK);
                 ITmfStateValue value = TmfStateValue.newValueString(functionEntryName);
                 ss.pushAttribute(timestamp, value, callStackQuark);
+                FlatCallStack.Recorder recorder = fRecorder;
+                if (recorder != null) {
+                    if (threadId != null) {
+                        recorder.setThreadId(thread, callStackQuark, threadId);
+                    }
+                    recorder.enter(thread, callStackQuark, ss.queryOngoingState(callStackQuark).unboxInt(), timestamp, value);
+                }
                 return;
             }
 
             /* Check if the event is a function exit */
             String functionExitName = functionExit(event);
             if (functionExitName != null) {
-                long timestamp = event.getTimestamp().normalize(0, ITmfTimestamp.NANOSECOND_SCALE).getValue();
+                long timestamp = event.getTimestamp().toNanos();
                 String thread = getThreadName(event);
                 int quark = ss.getQuarkAbsoluteAndAdd(THREADS, thread, CALL_STACK);
+                ITmfStateValue depth = ss.queryOngoingState(quark);
                 ITmfStateValue poppedValue = ss.popAttribute(timestamp, quark);
+                FlatCallStack.Recorder recorder = fRecorder;
+                if (recorder != null) {
+                    recorder.addThread(thread, quark);
+                    if (poppedValue != null) {
+                        recorder.exit(thread, quark, depth.unboxInt(), timestamp);
+                    }
+                }
                 String poppedName = (poppedValue == null ? NO_FUNCTION : poppedValue.unboxStr());
 
                 /*
@@ -0,0 +1,915 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.callstack;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
+import org.eclipse.tracecompass.statesystem.core.exceptions.AttributeNotFoundException;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
+import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
+import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
+import org.eclipse.tracecompass.statesystem.core.statevalue.TmfStateValue;
+
+/**
+ * The function calls of a call stack state system, as built by a
+ * {@link CallStackStateProvider}, flattened into arrays.
+ * <p>
+ * Each call is a record of its entry time, exit time, depth and symbol. The
+ * symbols are the values pushed on the call stack, kept once in a table. The
+ * calls of each thread are sorted by depth, then by entry time. Calls at the
+ * same depth do not overlap, so the calls of a depth in a time range are found
+ * by binary search, without querying the state system.
+ * <p>
+ * The calls are built once from the state system with
+ * {@link #build(ITmfStateSystem, String[], String[], IProgressMonitor)}, and
+ * can be saved to and loaded from a file, which is much faster than building
+ * them again.
+ *
+ * @since 1.0
+ */
+public final class FlatCallStack {
+
+    /* "TCCS" */
+    private static final int MAGIC = 0x54434353;
+    private static final int FORMAT_VERSION = 2;
+    private static final int IO_CHUNK_SIZE = 8192;
+
+    private final long fStartTime;
+    private final long fEndTime;
+    private final ITmfStateValue[] fSymbols;
+
+    /* Per thread */
+    private final String[] fThreadNames;
+    private final long[] fThreadIds;
+    private final int[] fCallStackQuarks;
+    /* The first call of each depth, from depth 1, and the number of calls */
+    private final int[][] fDepthOffsets;
+    private final long[][] fEntries;
+    private final long[][] fExits;
+    private final int[][] fSymbolIds;
+
+    private final Map<Integer, Integer> fThreadIndexes = new HashMap<>();
+
+    /**
+     * The number of calls and the time spent in each function of a time
+     * range, as returned by {@link FlatCallStack#getStatistics(long, long)}.
+     */
+    public static final class Statistics {
+
+        private final long[] fNbCalls;
+        private final long[] fTotalTimes;
+        private final long[] fSelfTimes;
+
+        private Statistics(int nbSymbols) {
+            fNbCalls = new long[nbSymbols];
+            fTotalTimes = new long[nbSymbols];
+            fSelfTimes = new long[nbSymbols];
+        }
+
+        /**
+         * Get the number of calls of a function
+         *
+         * @param symbol
+         *            The ID of the symbol of the function
+         * @return The number of calls in the time range
+         */
+        public long getNbCalls(int symbol) {
+            return fNbCalls[symbol];
+        }
+
+        /**
+         * Get the time spent in a function, including the functions it called.
+         * The time of recursive calls is counted once per call.
+         *
+         * @param symbol
+         *            The ID of the symbol of the function
+         * @return The total time in the time range
+         */
+        public long getTotalTime(int symbol) {
+            return fTotalTimes[symbol];
+        }
+
+        /**
+         * Get the time spent in a function, excluding the functions it called
+         *
+         * @param symbol
+         *            The ID of the symbol of the function
+         * @return The self time in the time range
+         */
+        public long getSelfTime(int symbol) {
+            return fSelfTimes[symbol];
+        }
+    }
+
+    private FlatCallStack(long startTime, long endTime, ITmfStateValue[] symbols,
+            String[] threadNames, long[] threadIds, int[] callStackQuarks,
+            int[][] depthOffsets, long[][] entries, long[][] exits, int[][] symbolIds) {
+        fStartTime = startTime;
+        fEndTime = endTime;
+        fSymbols = symbols;
+        fThreadNames = threadNames;
+        fThreadIds = threadIds;
+        fCallStackQuarks = callStackQuarks;
+        fDepthOffsets = depthOffsets;
+        fEntries = entries;
+        fExits = exits;
+        fSymbolIds = symbolIds;
+        for (int i = 0; i < callStackQuarks.length; i++) {
+            fThreadIndexes.put(callStackQuarks[i], i);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Accessors
+    // ------------------------------------------------------------------------
+
+    /**
+     * @return The start time of the state system the calls were built from
+     */
+    public long getStartTime() {
+        return fStartTime;
+    }
+
+    /**
+     * @return The end time of the state system the calls were built from
+     */
+    public long getEndTime() {
+        return fEndTime;
+    }
+
+    /**
+     * @return The number of distinct symbols
+     */
+    public int getNbSymbols() {
+        return fSymbols.length;
+    }
+
+    /**
+     * Get a symbol, which is the value that was pushed on the call stack
+     *
+     * @param symbol
+     *            The ID of the symbol, from 0 to {@link #getNbSymbols()} - 1
+     * @return The symbol value, a string, int or long
+     */
+    public ITmfStateValue getSymbol(int symbol) {
+        return fSymbols[symbol];
+    }
+
+    /**
+     * @return The number of threads
+     */
+    public int getNbThreads() {
+        return fThreadNames.length;
+    }
+
+    /**
+     * Get the index of a thread from the quark of its call stack attribute
+     *
+     * @param callStackQuark
+     *            The quark of the call stack attribute
+     * @return The index of the thread, or -1 if there is no such thread
+     */
+    public int getThreadIndex(int callStackQuark) {
+        Integer index = fThreadIndexes.get(callStackQuark);
+        return (index == null ? -1 : index.intValue());
+    }
+
+    /**
+     * @param thread
+     *            The index of the thread
+     * @return The name of the thread attribute
+     */
+    public String getThreadName(int thread) {
+        return fThreadNames[thread];
+    }
+
+    /**
+     * @param thread
+     *            The index of the thread
+     * @return The thread ID, or -1 if it is not known
+     */
+    public long getThreadId(int thread) {
+        return fThreadIds[thread];
+    }
+
+    /**
+     * @param thread
+     *            The index of the thread
+     * @return The quark of the call stack attribute of the thread
+     */
+    public int getCallStackQuark(int thread) {
+        return fCallStackQuarks[thread];
+    }
+
+    /**
+     * @param thread
+     *            The index of the thread
+     * @return The maximum depth of the call stack of the thread, 0 if it has
+     *         no calls
+     */
+    public int getMaxDepth(int thread) {
+        return fDepthOffsets[thread].length - 1;
+    }
+
+    /**
+     * @param thread
+     *            The index of the thread
+     * @return The number of calls of the thread
+     */
+    public int getNbCalls(int thread) {
+        return fEntries[thread].length;
+    }
+
+    /**
+     * @param thread
+     *            The index of the thread
+     * @param call
+     *            The index of the call in the thread
+     * @return The entry time of the call
+     */
+    public long getEntryTime(int thread, int call) {
+        return fEntries[thread][call];
+    }
+
+    /**
+     * @param thread
+     *            The index of the thread
+     * @param call
+     *            The index of the call in the thread
+     * @return The exit time of the call, which is the last time at which the
+     *         function is on the stack
+     */
+    public long getExitTime(int thread, int call) {
+        return fExits[thread][call];
+    }
+
+    /**
+     * @param thread
+     *            The index of the thread
+     * @param call
+     *            The index of the call in the thread
+     * @return The ID of the symbol of the call
+     */
+    public int getSymbolId(int thread, int call) {
+        return fSymbolIds[thread][call];
+    }
+
+    /**
+     * @param thread
+     *            The index of the thread
+     * @param call
+     *            The index of the call in the thread
+     * @return The depth of the call, from 1
+     */
+    public int getDepth(int thread, int call) {
+        int[] offsets = fDepthOffsets[thread];
+        int index = Arrays.binarySearch(offsets, call);
+        if (index >= 0) {
+            /* Skip the empty depths that start at the same call */
+            while (index + 1 < offsets.length && offsets[index + 1] == call) {
+                index++;
+            }
+            return index + 1;
+        }
+        return -index - 1;
+    }
+
+    // ------------------------------------------------------------------------
+    // Queries
+    // ------------------------------------------------------------------------
+
+    /**
+     * Get the calls of a thread at a depth that intersect a time range, with
+     * at most one call per resolution, like
+     * {@link org.eclipse.tracecompass.statesystem.core.StateSystemUtils#queryHistoryRange(ITmfStateSystem, int, long, long, long, IProgressMonitor)}.
+     *
+     * @param thread
+     *            The index of the thread
+     * @param depth
+     *            The depth of the calls, from 1
+     * @param start
+     *            The start of the time range
+     * @param end
+     *            The end of the time range, inclusive
+     * @param resolution
+     *            The minimum time between the entries of two returned calls,
+     *            1 to get all the calls
+     * @return The indexes of the calls, by entry time
+     */
+    public int[] getCalls(int thread, int depth, long start, long end, long resolution) {
+        int[] offsets = fDepthOffsets[thread];
+        if (depth < 1 || depth >= offsets.length || end < start) {
+            return new int[0];
+        }
+        long[] entries = fEntries[thread];
+        long[] exits = fExits[thread];
+        int last = offsets[depth];
+        int call = findFirstCall(exits, offsets[depth - 1], last, start);
+
+        int[] calls = new int[Math.min(last - call, 16)];
+        int nb = 0;
+        long time = start;
+        while (call < last && entries[call] <= end) {
+            if (nb == calls.length) {
+                calls = Arrays.copyOf(calls, nb * 2);
+            }
+            calls[nb++] = call;
+            time = Math.max(exits[call] + 1, Math.max(time, entries[call]) + resolution);
+            call = (resolution > 1) ? findFirstCall(exits, call + 1, last, time) : call + 1;
+        }
+        return Arrays.copyOf(calls, nb);
+    }
+
+    /**
+     * Find the first call of a depth that ends at or after a time
+     */
+    private static int findFirstCall(long[] exits, int first, int last, long time) {
+        int low = first;
+        int high = last;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (exits[mid] < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Get the number of calls and the time spent in each function during a
+     * time range, for all the threads. The calls that cross the bounds of the
+     * range only count for their time inside the range.
+     *
+     * @param start
+     *            The start of the time range
+     * @param end
+     *            The end of the time range, inclusive
+     * @return The statistics, indexed by symbol ID
+     */
+    public Statistics getStatistics(long start, long end) {
+        Statistics stats = new Statistics(fSymbols.length);
+        for (int thread = 0; thread < fThreadNames.length; thread++) {
+            int[] offsets = fDepthOffsets[thread];
+            long[] entries = fEntries[thread];
+            long[] exits = fExits[thread];
+            int[] symbols = fSymbolIds[thread];
+            for (int depth = 1; depth < offsets.length; depth++) {
+                int last = offsets[depth];
+                int parent = offsets[depth - 2 < 0 ? 0 : depth - 2];
+                int parentLast = offsets[depth - 1];
+                for (int call = findFirstCall(exits, offsets[depth - 1], last, start); call < last && entries[call] <= end; call++) {
+                    long time = Math.min(exits[call], end) - Math.max(entries[call], start) + 1;
+                    int symbol = symbols[call];
+                    stats.fNbCalls[symbol]++;
+                    stats.fTotalTimes[symbol] += time;
+                    stats.fSelfTimes[symbol] += time;
+                    if (depth > 1) {
+                        /* Remove the time of this call from its caller */
+                        while (parent < parentLast && exits[parent] < entries[call]) {
+                            parent++;
+                        }
+                        if (parent < parentLast && entries[parent] <= entries[call]) {
+                            stats.fSelfTimes[symbols[parent]] -= time;
+                        }
+                    }
+                }
+            }
+        }
+        return stats;
+    }
+
+    // ------------------------------------------------------------------------
+    // Building from the state system
+    // ------------------------------------------------------------------------
+
+    /**
+     * The calls of one depth of one thread, while they are read
+     */
+    private static final class CallList {
+        long[] fCallEntries = new long[16];
+        long[] fCallExits = new long[16];
+        int[] fCallSymbols = new int[16];
+        int fSize = 0;
+
+        void add(long entry, long exit, int symbol) {
+            if (fSize == fCallEntries.length) {
+                fCallEntries = Arrays.copyOf(fCallEntries, fSize * 2);
+                fCallExits = Arrays.copyOf(fCallExits, fSize * 2);
+                fCallSymbols = Arrays.copyOf(fCallSymbols, fSize * 2);
+            }
+            fCallEntries[fSize] = entry;
+            fCallExits[fSize] = exit;
+            fCallSymbols[fSize] = symbol;
+            fSize++;
+        }
+    }
+
+    /**
+     * Records the calls while a {@link CallStackStateProvider} pushes and pops
+     * them, so that they do not have to be read back from the state system
+     * once it is built. The depths and the threads are numbered like the
+     * attributes of the state system, so the calls are the same as the ones
+     * returned by {@link FlatCallStack#build}.
+     * <p>
+     * The methods are called by the thread of the state provider, and
+     * {@link #build(long, long)} once the state system is completely built.
+     */
+    public static final class Recorder {
+
+        private final List<ThreadRecord> fThreads = new ArrayList<>();
+        private final Map<Integer, ThreadRecord> fThreadsByQuark = new HashMap<>();
+        private final List<ITmfStateValue> fSymbols = new ArrayList<>();
+        private final Map<ITmfStateValue, Integer> fSymbolIds = new HashMap<>();
+
+        /* The calls of a thread, and the entry of its calls not exited yet */
+        private static final class ThreadRecord {
+            final String fName;
+            final int fCallStackQuark;
+            long fId = -1;
+            final List<CallList> fDepths = new ArrayList<>();
+            long[] fOpenEntries = new long[16];
+            int[] fOpenSymbols = new int[16];
+
+            ThreadRecord(String name, int callStackQuark) {
+                fName = name;
+                fCallStackQuark = callStackQuark;
+            }
+        }
+
+        /**
+         * Record that a thread was seen, in the order of its attribute
+         *
+         * @param threadName
+         *            The name of the thread attribute
+         * @param callStackQuark
+         *            The quark of its call stack attribute
+         */
+        public void addThread(String threadName, int callStackQuark) {
+            getThread(threadName, callStackQuark);
+        }
+
+        /**
+         * Record the ID of a thread
+         *
+         * @param threadName
+         *            The name of the thread attribute
+         * @param callStackQuark
+         *            The quark of its call stack attribute
+         * @param threadId
+         *            The thread ID, the value of the thread attribute
+         */
+        public void setThreadId(String threadName, int callStackQuark, long threadId) {
+            getThread(threadName, callStackQuark).fId = threadId;
+        }
+
+        /**
+         * Record a function entry, after the value was pushed
+         *
+         * @param threadName
+         *            The name of the thread attribute
+         * @param callStackQuark
+         *            The quark of its call stack attribute
+         * @param depth
+         *            The depth of the call, from 1
+         * @param time
+         *            The time of the push
+         * @param symbol
+         *            The pushed value
+         */
+        public void enter(String threadName, int callStackQuark, int depth, long time, ITmfStateValue symbol) {
+            ThreadRecord thread = getThread(threadName, callStackQuark);
+            while (thread.fDepths.size() < depth) {
+                thread.fDepths.add(new CallList());
+            }
+            if (depth > thread.fOpenEntries.length) {
+                int length = thread.fOpenEntries.length;
+                thread.fOpenEntries = Arrays.copyOf(thread.fOpenEntries, Math.max(depth, length * 2));
+                thread.fOpenSymbols = Arrays.copyOf(thread.fOpenSymbols, thread.fOpenEntries.length);
+                Arrays.fill(thread.fOpenEntries, length, thread.fOpenEntries.length, Long.MIN_VALUE);
+            }
+            Integer symbolId = fSymbolIds.get(symbol);
+            if (symbolId == null) {
+                symbolId = fSymbols.size();
+                fSymbols.add(symbol);
+                fSymbolIds.put(symbol, symbolId);
+            }
+            thread.fOpenEntries[depth - 1] = time;
+            thread.fOpenSymbols[depth - 1] = symbolId;
+        }
+
+        /**
+         * Record a function exit, when a value is popped
+         *
+         * @param threadName
+         *            The name of the thread attribute
+         * @param callStackQuark
+         *            The quark of its call stack attribute
+         * @param depth
+         *            The depth of the call before the pop, from 1
+         * @param time
+         *            The time of the pop
+         */
+        public void exit(String threadName, int callStackQuark, int depth, long time) {
+            ThreadRecord thread = getThread(threadName, callStackQuark);
+            if (depth < 1 || depth > thread.fDepths.size()) {
+                return;
+            }
+            long entry = thread.fOpenEntries[depth - 1];
+            /* The state system keeps no interval for a call exited when it is entered */
+            if (time > entry) {
+                thread.fDepths.get(depth - 1).add(entry, time - 1, thread.fOpenSymbols[depth - 1]);
+            }
+            thread.fOpenEntries[depth - 1] = Long.MIN_VALUE;
+        }
+
+        /**
+         * Build the recorded calls. The calls not exited yet end at the end
+         * time.
+         *
+         * @param startTime
+         *            The start time of the state system
+         * @param endTime
+         *            The end time of the state system
+         * @return The calls
+         */
+        public FlatCallStack build(long startTime, long endTime) {
+            int nbThreads = fThreads.size();
+            String[] threadNames = new String[nbThreads];
+            long[] threadIds = new long[nbThreads];
+            int[] callStackQuarks = new int[nbThreads];
+            int[][] depthOffsets = new int[nbThreads][];
+            long[][] entries = new long[nbThreads][];
+            long[][] exits = new long[nbThreads][];
+            int[][] symbolIds = new int[nbThreads][];
+            for (int i = 0; i < nbThreads; i++) {
+                ThreadRecord thread = fThreads.get(i);
+                int nbDepths = thread.fDepths.size();
+                int[] offsets = new int[nbDepths + 1];
+                int nbCalls = 0;
+                for (int depth = 0; depth < nbDepths; depth++) {
+                    offsets[depth] = nbCalls;
+                    nbCalls += thread.fDepths.get(depth).fSize;
+                    if (thread.fOpenEntries[depth] != Long.MIN_VALUE) {
+                        nbCalls++;
+                    }
+                }
+                offsets[nbDepths] = nbCalls;
+                long[] threadEntries = new long[nbCalls];
+                long[] threadExits = new long[nbCalls];
+                int[] threadSymbols = new int[nbCalls];
+                for (int depth = 0; depth < nbDepths; depth++) {
+                    CallList calls = thread.fDepths.get(depth);
+                    int offset = offsets[depth];
+                    System.arraycopy(calls.fCallEntries, 0, threadEntries, offset, calls.fSize);
+                    System.arraycopy(calls.fCallExits, 0, threadExits, offset, calls.fSize);
+                    System.arraycopy(calls.fCallSymbols, 0, threadSymbols, offset, calls.fSize);
+                    if (thread.fOpenEntries[depth] != Long.MIN_VALUE) {
+                        threadEntries[offset + calls.fSize] = thread.fOpenEntries[depth];
+                        threadExits[offset + calls.fSize] = endTime;
+                        threadSymbols[offset + calls.fSize] = thread.fOpenSymbols[depth];
+                    }
+                }
+                threadNames[i] = thread.fName;
+                threadIds[i] = thread.fId;
+                callStackQuarks[i] = thread.fCallStackQuark;
+                depthOffsets[i] = offsets;
+                entries[i] = threadEntries;
+                exits[i] = threadExits;
+                symbolIds[i] = threadSymbols;
+            }
+            return new FlatCallStack(startTime, endTime, fSymbols.toArray(new ITmfStateValue[fSymbols.size()]),
+                    threadNames, threadIds, callStackQuarks, depthOffsets, entries, exits, symbolIds);
+        }
+
+        private ThreadRecord getThread(String threadName, int callStackQuark) {
+            ThreadRecord thread = fThreadsByQuark.get(callStackQuark);
+            if (thread == null) {
+                thread = new ThreadRecord(threadName, callStackQuark);
+                Arrays.fill(thread.fOpenEntries, Long.MIN_VALUE);
+                fThreads.add(thread);
+                fThreadsByQuark.put(callStackQuark, thread);
+            }
+            return thread;
+        }
+    }
+
+    /**
+     * Build the calls from a call stack state system. Each attribute under the
+     * call stack attribute of a thread is a depth, and each non-null interval
+     * of such an attribute is a call. The state system should be completely
+     * built.
+     *
+     * @param ss
+     *            The state system
+     * @param threadsPattern
+     *            The absolute pattern of the thread attributes
+     * @param callStackPath
+     *            The path of the call stack attribute, relative to a thread
+     *            attribute
+     * @param monitor
+     *            The progress monitor, can be null
+     * @return The calls, or null if the monitor was cancelled
+     * @throws StateSystemDisposedException
+     *             If the state system is disposed while it is read
+     */
+    public static @Nullable FlatCallStack build(ITmfStateSystem ss, String[] threadsPattern,
+            String[] callStackPath, @Nullable IProgressMonitor monitor) throws StateSystemDisposedException {
+        long startTime = ss.getStartTime();
+        long endTime = ss.getCurrentEndTime();
+        List<ITmfStateValue> symbols = new ArrayList<>();
+        Map<ITmfStateValue, Integer> symbolIds = new HashMap<>();
+
+        List<Integer> threadQuarks = ss.getQuarks(threadsPattern);
+        List<String> threadNames = new ArrayList<>();
+        List<Long> threadIds = new ArrayList<>();
+        List<Integer> callStackQuarks = new ArrayList<>();
+        List<int[]> depthOffsets = new ArrayList<>();
+        List<long[]> entries = new ArrayList<>();
+        List<long[]> exits = new ArrayList<>();
+        List<int[]> callSymbols = new ArrayList<>();
+
+        for (int threadQuark : threadQuarks) {
+            int callStackQuark;
+            try {
+                callStackQuark = ss.getQuarkRelative(threadQuark, callStackPath);
+            } catch (AttributeNotFoundException e) {
+                /* Not a thread with a call stack */
+                continue;
+            }
+            int[] offsets;
+            List<CallList> depths = new ArrayList<>();
+            int nbCalls = 0;
+            try {
+                List<Integer> depthQuarks = ss.getSubAttributes(callStackQuark, false);
+                offsets = new int[depthQuarks.size() + 1];
+                for (int depth = 0; depth < depthQuarks.size(); depth++) {
+                    CallList calls = new CallList();
+                    long time = startTime;
+                    while (time <= endTime) {
+                        if (monitor != null && monitor.isCanceled()) {
+                            return null;
+                        }
+                        ITmfStateInterval interval = ss.querySingleState(time, depthQuarks.get(depth));
+                        ITmfStateValue value = interval.getStateValue();
+                        if (!value.isNull()) {
+                            Integer symbol = symbolIds.get(value);
+                            if (symbol == null) {
+                                symbol = symbols.size();
+                                symbols.add(value);
+                                symbolIds.put(value, symbol);
+                            }
+                            calls.add(interval.getStartTime(), interval.getEndTime(), symbol);
+                        }
+                        time = interval.getEndTime() + 1;
+                    }
+                    offsets[depth] = nbCalls;
+                    nbCalls += calls.fSize;
+                    depths.add(calls);
+                }
+                offsets[depthQuarks.size()] = nbCalls;
+
+                ITmfStateValue threadId = ss.querySingleState(endTime, threadQuark).getStateValue();
+                threadIds.add(threadId.getType() == ITmfStateValue.Type.LONG ? threadId.unboxLong() : -1L);
+            } catch (AttributeNotFoundException e) {
+                /* The attributes were just read from the state system */
+                throw new IllegalStateException(e);
+            }
+
+            long[] threadEntries = new long[nbCalls];
+            long[] threadExits = new long[nbCalls];
+            int[] threadSymbols = new int[nbCalls];
+            for (int depth = 0; depth < depths.size(); depth++) {
+                CallList calls = depths.get(depth);
+                System.arraycopy(calls.fCallEntries, 0, threadEntries, offsets[depth], calls.fSize);
+                System.arraycopy(calls.fCallExits, 0, threadExits, offsets[depth], calls.fSize);
+                System.arraycopy(calls.fCallSymbols, 0, threadSymbols, offsets[depth], calls.fSize);
+            }
+            threadNames.add(ss.getAttributeName(threadQuark));
+            callStackQuarks.add(callStackQuark);
+            depthOffsets.add(offsets);
+            entries.add(threadEntries);
+            exits.add(threadExits);
+            callSymbols.add(threadSymbols);
+        }
+
+        int nbThreads = threadNames.size();
+        long[] ids = new long[nbThreads];
+        int[] quarks = new int[nbThreads];
+        for (int i = 0; i < nbThreads; i++) {
+            ids[i] = threadIds.get(i);
+            quarks[i] = callStackQuarks.get(i);
+        }
+        return new FlatCallStack(startTime, endTime, symbols.toArray(new ITmfStateValue[symbols.size()]),
+                threadNames.toArray(new String[nbThreads]), ids, quarks,
+                depthOffsets.toArray(new int[nbThreads][]), entries.toArray(new long[nbThreads][]),
+                exits.toArray(new long[nbThreads][]), callSymbols.toArray(new int[nbThreads][]));
+    }
+
+    // ------------------------------------------------------------------------
+    // Persistence
+    // ------------------------------------------------------------------------
+
+    /**
+     * Write the calls to a file
+     *
+     * @param file
+     *            The file to write, which is replaced if it exists
+     * @param source
+     *            Identifies what the calls were built from, for example the
+     *            version of the state provider and the state history file. It
+     *            is written in the header of the file and must be given back
+     *            to {@link #read(File, String)}.
+     * @throws IOException
+     *             If the file cannot be written
+     */
+    public void write(File file, String source) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(source);
+            out.writeLong(fStartTime);
+            out.writeLong(fEndTime);
+
+            out.writeInt(fSymbols.length);
+            for (ITmfStateValue symbol : fSymbols) {
+                switch (symbol.getType()) {
+                case INTEGER:
+                    out.writeByte(0);
+                    out.writeInt(symbol.unboxInt());
+                    break;
+                case LONG:
+                    out.writeByte(1);
+                    out.writeLong(symbol.unboxLong());
+                    break;
+                case DOUBLE:
+                    out.writeByte(2);
+                    out.writeDouble(symbol.unboxDouble());
+                    break;
+                case STRING:
+                case NULL:
+                default:
+                    out.writeByte(3);
+                    out.writeUTF(symbol.unboxStr());
+                    break;
+                }
+            }
+
+            byte[] buffer = new byte[IO_CHUNK_SIZE];
+            out.writeInt(fThreadNames.length);
+            for (int thread = 0; thread < fThreadNames.length; thread++) {
+                out.writeUTF(fThreadNames[thread]);
+                out.writeLong(fThreadIds[thread]);
+                out.writeInt(fCallStackQuarks[thread]);
+                out.writeInt(fDepthOffsets[thread].length);
+                for (int offset : fDepthOffsets[thread]) {
+                    out.writeInt(offset);
+                }
+                writeLongs(out, fEntries[thread], buffer);
+                writeLongs(out, fExits[thread], buffer);
+                writeInts(out, fSymbolIds[thread], buffer);
+            }
+        }
+    }
+
+    /**
+     * Read calls written by {@link #write(File, String)}
+     *
+     * @param file
+     *            The file to read
+     * @param source
+     *            What the calls must have been built from, as given to
+     *            {@link #write(File, String)}
+     * @return The calls, or null if the file is not a call file of the current
+     *         format or was built from another source
+     * @throws IOException
+     *             If the file cannot be read
+     */
+    public static @Nullable FlatCallStack read(File file, String source) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || !source.equals(in.readUTF())) {
+                return null;
+            }
+            long startTime = in.readLong();
+            long endTime = in.readLong();
+
+            ITmfStateValue[] symbols = new ITmfStateValue[in.readInt()];
+            for (int i = 0; i < symbols.length; i++) {
+                switch (in.readByte()) {
+                case 0:
+                    symbols[i] = TmfStateValue.newValueInt(in.readInt());
+                    break;
+                case 1:
+                    symbols[i] = TmfStateValue.newValueLong(in.readLong());
+                    break;
+                case 2:
+                    symbols[i] = TmfStateValue.newValueDouble(in.readDouble());
+                    break;
+                default:
+                    symbols[i] = TmfStateValue.newValueString(in.readUTF());
+                    break;
+                }
+            }
+
+            byte[] buffer = new byte[IO_CHUNK_SIZE];
+            int nbThreads = in.readInt();
+            String[] threadNames = new String[nbThreads];
+            long[] threadIds = new long[nbThreads];
+            int[] callStackQuarks = new int[nbThreads];
+            int[][] depthOffsets = new int[nbThreads][];
+            long[][] entries = new long[nbThreads][];
+            long[][] exits = new long[nbThreads][];
+            int[][] symbolIds = new int[nbThreads][];
+            for (int thread = 0; thread < nbThreads; thread++) {
+                threadNames[thread] = in.readUTF();
+                threadIds[thread] = in.readLong();
+                callStackQuarks[thread] = in.readInt();
+                int[] offsets = new int[in.readInt()];
+                for (int i = 0; i < offsets.length; i++) {
+                    offsets[i] = in.readInt();
+                }
+                depthOffsets[thread] = offsets;
+                entries[thread] = readLongs(in, buffer);
+                exits[thread] = readLongs(in, buffer);
+                symbolIds[thread] = readInts(in, buffer);
+            }
+            return new FlatCallStack(startTime, endTime, symbols, threadNames, threadIds,
+                    callStackQuarks, depthOffsets, entries, exits, symbolIds);
+        }
+    }
+
+    /*
+     * The arrays are copied in chunks through a byte buffer, which is much
+     * faster than writing and reading each value with the data streams
+     */
+
+    private static void writeLongs(DataOutputStream out, long[] values, byte[] buffer) throws IOException {
+        out.writeInt(values.length);
+        ByteBuffer bytes = ByteBuffer.wrap(buffer);
+        int chunk = buffer.length / 8;
+        for (int i = 0; i < values.length; i += chunk) {
+            int length = Math.min(chunk, values.length - i);
+            bytes.asLongBuffer().put(values, i, length);
+            out.write(buffer, 0, length * 8);
+        }
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values, byte[] buffer) throws IOException {
+        out.writeInt(values.length);
+        ByteBuffer bytes = ByteBuffer.wrap(buffer);
+        int chunk = buffer.length / 4;
+        for (int i = 0; i < values.length; i += chunk) {
+            int length = Math.min(chunk, values.length - i);
+            bytes.asIntBuffer().put(values, i, length);
+            out.write(buffer, 0, length * 4);
+        }
+    }
+
+    private static long[] readLongs(DataInputStream in, byte[] buffer) throws IOException {
+        long[] values = new long[in.readInt()];
+        ByteBuffer bytes = ByteBuffer.wrap(buffer);
+        int chunk = buffer.length / 8;
+        for (int i = 0; i < values.length; i += chunk) {
+            int length = Math.min(chunk, values.length - i);
+            in.readFully(buffer, 0, length * 8);
+            bytes.asLongBuffer().get(values, i, length);
+        }
+        return values;
+    }
+
+    private static int[] readInts(DataInputStream in, byte[] buffer) throws IOException {
+        int[] values = new int[in.readInt()];
+        ByteBuffer bytes = ByteBuffer.wrap(buffer);
+        int chunk = buffer.length / 4;
+        for (int i = 0; i < values.length; i += chunk) {
+            int length = Math.min(chunk, values.length - i);
+            in.readFully(buffer, 0, length * 4);
+            bytes.asIntBuffer().get(values, i, length);
+        }
+        return values;
+    }
+}
@@ -441,7 +441,11 @@ public abstract class TmfEventProvider extends TmfComponent implements ITmfEvent
         boolean requestCompleted = isCompleted2(request, nbRead);
         if (!requestCompleted) {
             ITmfTimestamp endTime = request.getRange().getEndTime();
-            return event.getTimestamp().compareTo(endTime) > 0;
+            ITmfTimestamp ts = event.getTimestamp();
+            if (ts.getScale() == endTime.getScale()) {
+                return ts.getValue() > endTime.getValue();
+            }
+            return ts.compareTo(endTime) > 0;
         }
         return requestCompleted;
     }
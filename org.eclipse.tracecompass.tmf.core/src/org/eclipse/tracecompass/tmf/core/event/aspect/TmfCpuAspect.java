@@ -25,6 +25,14 @@ import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
  */
 public abstract class TmfCpuAspect implements ITmfEventAspect {
 
+    /**
+     * The value returned by {@link #resolveCpu(ITmfEvent)} when the CPU is not
+     * available for an event
+     *
+     * @since 1.0
+     */
+    public static final int UNKNOWN_CPU = -1;
+
     @Override
     public final String getName() {
         return Messages.getMessage(Messages.AspectName_CPU);
@@ -42,6 +50,22 @@ public abstract class TmfCpuAspect implements ITmfEventAspect {
     @Override
     public abstract @Nullable Integer resolve(ITmfEvent event);
 
+    /**
+     * Returns the CPU number of the CPU on which this event was executed,
+     * without boxing it. Sub-classes that can read the CPU directly from their
+     * events should override this method.
+     *
+     * @param event
+     *            The event
+     * @return The CPU number, or {@link #UNKNOWN_CPU} if the CPU is not
+     *         available for this event
+     * @since 1.0
+     */
+    public int resolveCpu(ITmfEvent event) {
+        Integer cpu = resolve(event);
+        return (cpu == null ? UNKNOWN_CPU : cpu.intValue());
+    }
+
     @Override
     public boolean equals(@Nullable Object other) {
         /*
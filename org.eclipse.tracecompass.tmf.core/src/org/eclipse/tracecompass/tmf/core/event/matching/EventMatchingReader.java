@@ -0,0 +1,185 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.event.matching;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.matching.TmfEventMatching.Direction;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+
+/**
+ * Reads the events of one trace on its own thread and hands the events that
+ * can be matched, with their direction and key, to the thread that does the
+ * matching.
+ * <p>
+ * The candidates are passed in batches through a bounded queue, so a reader
+ * can only get a few batches ahead of the matching. The {@link #peek()},
+ * {@link #getHeadTime()} and {@link #advance()} methods are called by the
+ * matching thread only, to merge the candidates of all the readers in time
+ * order.
+ * <p>
+ * If reading the trace fails, the reader stops and the failure is thrown to
+ * the matching thread once it has consumed the candidates read before it.
+ */
+class EventMatchingReader implements Runnable {
+
+    private static final int BATCH_SIZE = 256;
+    private static final int QUEUE_SIZE = 8;
+
+    /* Marks the end of the candidates of a reader */
+    private static final List<MatchCandidate> END = new ArrayList<>(0);
+
+    /**
+     * An event that can be matched, with what is needed to match it
+     */
+    static final class MatchCandidate {
+
+        final ITmfEvent fEvent;
+        final long fTime;
+        final Direction fDirection;
+        final IEventMatchingKey fKey;
+
+        MatchCandidate(ITmfEvent event, Direction direction, IEventMatchingKey key) {
+            fEvent = event;
+            fTime = event.getTimestamp().toNanos();
+            fDirection = direction;
+            fKey = key;
+        }
+    }
+
+    private final TmfEventMatching fMatching;
+    private final ITmfTrace fTrace;
+    private final int fIndex;
+    private final BlockingQueue<List<MatchCandidate>> fQueue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+    private volatile boolean fCancelled = false;
+    /* Written before END is queued, so it is visible once END is taken */
+    private @Nullable RuntimeException fError = null;
+
+    /* Matching thread side */
+    private List<MatchCandidate> fBatch = Collections.emptyList();
+    private int fPosition = 0;
+
+    /**
+     * Constructor
+     *
+     * @param matching
+     *            The matching object, which finds the candidates
+     * @param trace
+     *            The trace to read
+     * @param index
+     *            The index of the reader, to order candidates at the same
+     *            time
+     */
+    EventMatchingReader(TmfEventMatching matching, ITmfTrace trace, int index) {
+        fMatching = matching;
+        fTrace = trace;
+        fIndex = index;
+    }
+
+    @Override
+    public void run() {
+        try {
+            List<MatchCandidate> batch = new ArrayList<>(BATCH_SIZE);
+            ITmfContext context = fTrace.seekEvent(0);
+            try {
+                ITmfEvent event = fTrace.getNext(context);
+                while (event != null && !fCancelled) {
+                    MatchCandidate candidate = fMatching.getCandidate(event);
+                    if (candidate != null) {
+                        batch.add(candidate);
+                        if (batch.size() == BATCH_SIZE) {
+                            fQueue.put(batch);
+                            batch = new ArrayList<>(BATCH_SIZE);
+                        }
+                    }
+                    event = fTrace.getNext(context);
+                }
+            } catch (RuntimeException e) {
+                fError = e;
+            } finally {
+                context.dispose();
+            }
+            if (!batch.isEmpty()) {
+                fQueue.put(batch);
+            }
+            fQueue.put(END);
+        } catch (InterruptedException e) {
+            /* The matching was stopped */
+        }
+    }
+
+    /**
+     * Stop reading the trace
+     */
+    void cancel() {
+        fCancelled = true;
+    }
+
+    /**
+     * @return The trace read by this reader
+     */
+    ITmfTrace getTrace() {
+        return fTrace;
+    }
+
+    /**
+     * @return The index of this reader
+     */
+    int getIndex() {
+        return fIndex;
+    }
+
+    /**
+     * Get the next candidate of this reader, waiting for it to be read if
+     * necessary.
+     *
+     * @return The next candidate, or null if the trace was completely read
+     * @throws InterruptedException
+     *             If interrupted while waiting
+     * @throws IllegalStateException
+     *             If reading the trace failed
+     */
+    @Nullable MatchCandidate peek() throws InterruptedException {
+        while (fPosition >= fBatch.size()) {
+            if (fBatch == END) {
+                RuntimeException error = fError;
+                if (error != null) {
+                    throw new IllegalStateException("Error reading events to match from trace " + fTrace.getName(), error); //$NON-NLS-1$
+                }
+                return null;
+            }
+            fBatch = fQueue.take();
+            fPosition = 0;
+        }
+        return fBatch.get(fPosition);
+    }
+
+    /**
+     * @return The time of the candidate returned by the last call to
+     *         {@link #peek()}
+     */
+    long getHeadTime() {
+        return fBatch.get(fPosition).fTime;
+    }
+
+    /**
+     * Move to the next candidate
+     */
+    void advance() {
+        fPosition++;
+    }
+}
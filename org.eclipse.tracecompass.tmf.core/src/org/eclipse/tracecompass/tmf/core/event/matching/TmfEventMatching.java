@@ -12,31 +12,40 @@
 
 package org.eclipse.tracecompass.tmf.core.event.matching;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
-import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.osgi.util.NLS;
 import org.eclipse.tracecompass.internal.tmf.core.Activator;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
-import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest;
-import org.eclipse.tracecompass.tmf.core.request.TmfEventRequest;
-import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
+import org.eclipse.tracecompass.tmf.core.event.TmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.matching.EventMatchingReader.MatchCandidate;
+import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
 import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
 import org.eclipse.tracecompass.tmf.core.trace.experiment.TmfExperiment;
 
-import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Multimap;
-import com.google.common.collect.Table;
 
 /**
  * Abstract class to extend to match certain type of events in a trace
@@ -60,14 +69,34 @@ public class TmfEventMatching implements ITmfEventMatching {
     private final Multimap<ITmfTrace, ITmfMatchEventDefinition> fMatchMap = HashMultimap.create();
 
     /**
-     * Hashtables for unmatches incoming events
+     * Unmatched incoming events per trace and key, in the order they were
+     * added
      */
-    private final Table<ITmfTrace, IEventMatchingKey, ITmfEvent> fUnmatchedIn = HashBasedTable.create();
+    private final LinkedHashMap<UnmatchedKey, UnmatchedEvent> fUnmatchedIn = new LinkedHashMap<>();
 
     /**
-     * Hashtables for unmatches outgoing events
+     * Unmatched outgoing events per trace and key, in the order they were
+     * added
      */
-    private final Table<ITmfTrace, IEventMatchingKey, ITmfEvent> fUnmatchedOut = HashBasedTable.create();
+    private final LinkedHashMap<UnmatchedKey, UnmatchedEvent> fUnmatchedOut = new LinkedHashMap<>();
+
+    /**
+     * The individual traces, in the order their unmatched events are searched
+     */
+    private List<ITmfTrace> fIndividualTraces = new ArrayList<>();
+
+    /**
+     * Value of the time horizon for unbounded matching
+     *
+     * @since 1.0
+     */
+    public static final long NO_TIME_HORIZON = Long.MAX_VALUE;
+
+    private long fTimeHorizon = NO_TIME_HORIZON;
+
+    private volatile long fNbMatched = 0;
+    private volatile long fNbEvicted = 0;
+    private volatile int fNbUnmatched = 0;
 
     /**
      * Enum for cause and effect types of event
@@ -84,6 +113,62 @@ public class TmfEventMatching implements ITmfEventMatching {
         EFFECT,
     }
 
+    /**
+     * The key of an unmatched event, with its trace. Each trace has its own
+     * unmatched events, so that two traces can wait for the same key.
+     */
+    private static final class UnmatchedKey {
+
+        private final ITmfTrace fTrace;
+        private final IEventMatchingKey fKey;
+
+        public UnmatchedKey(ITmfTrace trace, IEventMatchingKey key) {
+            fTrace = trace;
+            fKey = key;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * fTrace.hashCode() + fKey.hashCode();
+        }
+
+        @Override
+        public boolean equals(@Nullable Object obj) {
+            if (!(obj instanceof UnmatchedKey)) {
+                return false;
+            }
+            UnmatchedKey other = (UnmatchedKey) obj;
+            return fTrace.equals(other.fTrace) && fKey.equals(other.fKey);
+        }
+    }
+
+    /**
+     * An event waiting for its match. With a time horizon, only the trace and
+     * the timestamp of the event are kept, not the event itself.
+     */
+    private static final class UnmatchedEvent {
+
+        private final ITmfTrace fTrace;
+        private final ITmfTimestamp fTimestamp;
+        private final long fTime;
+        private final @Nullable ITmfEvent fEvent;
+
+        public UnmatchedEvent(ITmfEvent event, boolean keepEvent) {
+            fTrace = event.getTrace();
+            fTimestamp = event.getTimestamp();
+            fTime = fTimestamp.toNanos();
+            fEvent = keepEvent ? event : null;
+        }
+
+        public ITmfEvent getEvent() {
+            ITmfEvent event = fEvent;
+            if (event != null) {
+                return event;
+            }
+            return new TmfEvent(fTrace, ITmfContext.UNKNOWN_RANK, fTimestamp, null, null);
+        }
+    }
+
     /**
      * Constructor with multiple traces
      *
@@ -158,6 +243,61 @@ public class TmfEventMatching implements ITmfEventMatching {
         return ImmutableList.copyOf(fMatchMap.get(trace));
     }
 
+    /**
+     * Set the time horizon of the matching. An unmatched event is forgotten
+     * once an event later than its timestamp plus the horizon is matched, so
+     * that the memory used by the unmatched events stays bounded. Only the
+     * trace and timestamp of the unmatched events are kept when a horizon is
+     * set.
+     * <p>
+     * The horizon assumes that the events are matched in time order, like
+     * {@link #matchEvents()} does.
+     *
+     * @param horizon
+     *            The time horizon, in nanoseconds, or {@link #NO_TIME_HORIZON}
+     *            to keep the unmatched events until the end of the matching
+     * @since 1.0
+     */
+    public void setTimeHorizon(long horizon) {
+        if (horizon < 0) {
+            throw new IllegalArgumentException();
+        }
+        fTimeHorizon = horizon;
+    }
+
+    /**
+     * @return The time horizon, in nanoseconds, or {@link #NO_TIME_HORIZON}
+     * @since 1.0
+     */
+    public long getTimeHorizon() {
+        return fTimeHorizon;
+    }
+
+    /**
+     * @return The number of matches found so far
+     * @since 1.0
+     */
+    public long getNbMatchedEvents() {
+        return fNbMatched;
+    }
+
+    /**
+     * @return The number of events currently waiting for their match
+     * @since 1.0
+     */
+    public int getNbUnmatchedEvents() {
+        return fNbUnmatched;
+    }
+
+    /**
+     * @return The number of unmatched events forgotten because they were
+     *         older than the time horizon
+     * @since 1.0
+     */
+    public long getNbEvictedEvents() {
+        return fNbEvicted;
+    }
+
     /**
      * Method that initializes any data structure for the event matching. It
      * also assigns to each trace an event matching definition instance that
@@ -169,9 +309,13 @@ public class TmfEventMatching implements ITmfEventMatching {
         // Initialize the matching infrastructure (unmatched event lists)
         fUnmatchedIn.clear();
         fUnmatchedOut.clear();
+        fNbMatched = 0;
+        fNbEvicted = 0;
+        fNbUnmatched = 0;
 
         fMatches.init(fTraces);
-        for (ITmfTrace trace : getIndividualTraces()) {
+        fIndividualTraces = new ArrayList<>(getIndividualTraces());
+        for (ITmfTrace trace : fIndividualTraces) {
             for (ITmfMatchEventDefinition def : MATCH_DEFINITIONS) {
                 if (def.canMatchTrace(trace)) {
                     fMatchMap.put(trace, def);
@@ -197,16 +341,31 @@ public class TmfEventMatching implements ITmfEventMatching {
         final String cr = System.getProperty("line.separator"); //$NON-NLS-1$
         StringBuilder b = new StringBuilder();
         b.append(getProcessingUnit());
+        Map<ITmfTrace, Integer> unmatchedIn = countPerTrace(fUnmatchedIn);
+        Map<ITmfTrace, Integer> unmatchedOut = countPerTrace(fUnmatchedOut);
         int i = 0;
         for (ITmfTrace trace : getIndividualTraces()) {
             b.append("Trace " + i++ + ":" + cr + //$NON-NLS-1$ //$NON-NLS-2$
-                    "  " + fUnmatchedIn.row(trace).size() + " unmatched incoming events" + cr + //$NON-NLS-1$ //$NON-NLS-2$
-                    "  " + fUnmatchedOut.row(trace).size() + " unmatched outgoing events" + cr); //$NON-NLS-1$ //$NON-NLS-2$
+                    "  " + getCount(unmatchedIn, trace) + " unmatched incoming events" + cr + //$NON-NLS-1$ //$NON-NLS-2$
+                    "  " + getCount(unmatchedOut, trace) + " unmatched outgoing events" + cr); //$NON-NLS-1$ //$NON-NLS-2$
         }
 
         return b.toString();
     }
 
+    private static Map<ITmfTrace, Integer> countPerTrace(Map<UnmatchedKey, UnmatchedEvent> unmatched) {
+        Map<ITmfTrace, Integer> counts = new HashMap<>();
+        for (UnmatchedEvent event : unmatched.values()) {
+            counts.put(event.fTrace, getCount(counts, event.fTrace) + 1);
+        }
+        return counts;
+    }
+
+    private static int getCount(Map<ITmfTrace, Integer> counts, ITmfTrace trace) {
+        Integer count = counts.get(trace);
+        return (count == null) ? 0 : count;
+    }
+
     /**
      * Matches one event
      *
@@ -219,9 +378,25 @@ public class TmfEventMatching implements ITmfEventMatching {
      * @since 1.0
      */
     public void matchEvent(ITmfEvent event, ITmfTrace trace, @NonNull IProgressMonitor monitor) {
+        MatchCandidate candidate = getCandidate(event);
+        if (candidate != null) {
+            matchCandidate(candidate, monitor);
+        }
+    }
+
+    /**
+     * Get the direction and key of an event. Called by the reader threads, it
+     * only reads the event definitions.
+     *
+     * @param event
+     *            The event
+     * @return The event with its direction and key, or null if the event can't
+     *         be matched
+     */
+    @Nullable MatchCandidate getCandidate(ITmfEvent event) {
         ITmfMatchEventDefinition def = null;
         Direction evType = null;
-        for (ITmfMatchEventDefinition oneDef : getEventDefinitions(event.getTrace())) {
+        for (ITmfMatchEventDefinition oneDef : fMatchMap.get(event.getTrace())) {
             def = oneDef;
             evType = def.getDirection(event);
             if (evType != null) {
@@ -231,16 +406,23 @@ public class TmfEventMatching implements ITmfEventMatching {
         }
 
         if (def == null || evType == null) {
-            return;
+            return null;
         }
 
         /* Get the event's unique fields */
         IEventMatchingKey eventKey = def.getEventKey(event);
 
         if (eventKey == null) {
-            return;
+            return null;
         }
-        Table<ITmfTrace, IEventMatchingKey, ITmfEvent> unmatchedTbl, companionTbl;
+        return new MatchCandidate(event, evType, eventKey);
+    }
+
+    private void matchCandidate(MatchCandidate candidate, IProgressMonitor monitor) {
+        ITmfEvent event = candidate.fEvent;
+        Direction evType = candidate.fDirection;
+        IEventMatchingKey eventKey = candidate.fKey;
+        Map<UnmatchedKey, UnmatchedEvent> unmatchedTbl, companionTbl;
 
         /* Point to the appropriate table */
         switch (evType) {
@@ -256,29 +438,19 @@ public class TmfEventMatching implements ITmfEventMatching {
             return;
         }
 
-        boolean found = false;
-        TmfEventDependency dep = null;
-        /* Search for the event in the companion table */
-        for (ITmfTrace mTrace : getIndividualTraces()) {
-            if (companionTbl.contains(mTrace, eventKey)) {
-                found = true;
-                ITmfEvent companionEvent = companionTbl.get(mTrace, eventKey);
-
-                /* Remove the element from the companion table */
-                companionTbl.remove(mTrace, eventKey);
-
-                /* Create the dependency object */
-                switch (evType) {
-                case CAUSE:
-                    dep = new TmfEventDependency(companionEvent, event);
-                    break;
-                case EFFECT:
-                    dep = new TmfEventDependency(event, companionEvent);
-                    break;
-                default:
-                    break;
+        boolean windowed = (fTimeHorizon != NO_TIME_HORIZON);
+        if (windowed) {
+            /* The horizon is positive, only the subtraction can overflow */
+            long time = candidate.fTime;
+            evict(time < Long.MIN_VALUE + fTimeHorizon ? Long.MIN_VALUE : time - fTimeHorizon);
+        }
 
-                }
+        /* Search for the event in the companion table of each trace, and remove it */
+        UnmatchedEvent companion = null;
+        for (ITmfTrace trace : fIndividualTraces) {
+            companion = companionTbl.remove(new UnmatchedKey(trace, eventKey));
+            if (companion != null) {
+                break;
             }
         }
 
@@ -286,8 +458,16 @@ public class TmfEventMatching implements ITmfEventMatching {
          * If no companion was found, add the event to the appropriate unMatched
          * lists
          */
-        if (found) {
+        if (companion != null) {
+            fNbUnmatched--;
+            TmfEventDependency dep;
+            if (evType == Direction.CAUSE) {
+                dep = new TmfEventDependency(companion.getEvent(), event);
+            } else {
+                dep = new TmfEventDependency(event, companion.getEvent());
+            }
             getProcessingUnit().addMatch(dep);
+            fNbMatched++;
             monitor.subTask(NLS.bind(Messages.TmfEventMatching_MatchesFound, getProcessingUnit().countMatches()));
         } else {
             /*
@@ -301,12 +481,32 @@ public class TmfEventMatching implements ITmfEventMatching {
              * events as value for the unmatched table. Not necessary right now
              * though
              */
-            if (!unmatchedTbl.contains(event.getTrace(), eventKey)) {
-                unmatchedTbl.put(event.getTrace(), eventKey, event);
+            UnmatchedKey key = new UnmatchedKey(event.getTrace(), eventKey);
+            if (!unmatchedTbl.containsKey(key)) {
+                unmatchedTbl.put(key, new UnmatchedEvent(event, !windowed));
+                fNbUnmatched++;
             }
         }
     }
 
+    /**
+     * Forget the unmatched events older than a time. The events are stored in
+     * the order they were added, so only the oldest ones are visited.
+     */
+    private void evict(long time) {
+        evict(fUnmatchedIn, time);
+        evict(fUnmatchedOut, time);
+    }
+
+    private void evict(Map<UnmatchedKey, UnmatchedEvent> unmatched, long time) {
+        Iterator<UnmatchedEvent> it = unmatched.values().iterator();
+        while (it.hasNext() && it.next().fTime < time) {
+            it.remove();
+            fNbUnmatched--;
+            fNbEvicted++;
+        }
+    }
+
     /**
      * Method that start the process of matching events
      *
@@ -328,38 +528,12 @@ public class TmfEventMatching implements ITmfEventMatching {
         Job job = new Job(Messages.TmfEventMatching_MatchingEvents) {
             @Override
             protected IStatus run(final IProgressMonitor monitor) {
-                /**
-                 * FIXME For now, we use the experiment strategy: the trace that
-                 * is asked to be matched is actually an experiment and the
-                 * experiment does the request. But depending on how divergent
-                 * the traces' times are and how long it takes to get the first
-                 * match, it can use a lot of memory.
-                 *
-                 * Some strategies can help limit the memory usage of this
-                 * algorithm:
-                 *
-                 * <pre>
-                 * Other possible matching strategy:
-                 * * start with the shortest trace
-                 * * take a few events at the beginning and at the end and try
-                 *   to match them
-                 * </pre>
-                 */
-                for (ITmfTrace trace : fTraces) {
-                    monitor.beginTask(NLS.bind(Messages.TmfEventMatching_LookingEventsFrom, trace.getName()), IProgressMonitor.UNKNOWN);
-                    setName(NLS.bind(Messages.TmfEventMatching_RequestingEventsFrom, trace.getName()));
-
-                    /* Send the request to the trace */
-                    EventMatchingBuildRequest request = new EventMatchingBuildRequest(TmfEventMatching.this, trace, monitor);
-                    trace.sendRequest(request);
-                    try {
-                        request.waitForCompletion();
-                    } catch (InterruptedException e) {
-                        Activator.logInfo(e.getMessage());
-                    }
-                    if (monitor.isCanceled()) {
+                try {
+                    if (!matchParallel(monitor)) {
                         return Status.CANCEL_STATUS;
                     }
+                } catch (RuntimeException e) {
+                    return new Status(IStatus.ERROR, Activator.PLUGIN_ID, e.getMessage(), e);
                 }
                 return Status.OK_STATUS;
             }
@@ -373,7 +547,78 @@ public class TmfEventMatching implements ITmfEventMatching {
 
         finalizeMatching();
 
-        return true;
+        /* The matches found before a failure are not all the matches */
+        IStatus result = job.getResult();
+        return (result == null || result.getSeverity() != IStatus.ERROR);
+    }
+
+    /**
+     * Read each individual trace on its own thread, and match the candidate
+     * events of all the traces in time order on the current thread. The
+     * readers only find the events that can be matched and their key, the
+     * matching itself is not thread-safe. Merging the candidates in time
+     * order, instead of reading the experiment, keeps the matches in the same
+     * order for the processing unit, and lets the time horizon evict events.
+     */
+    private boolean matchParallel(final IProgressMonitor monitor) {
+        final List<EventMatchingReader> readers = new ArrayList<>();
+        StringBuilder names = new StringBuilder();
+        for (ITmfTrace trace : getIndividualTraces()) {
+            readers.add(new EventMatchingReader(this, trace, readers.size()));
+            if (names.length() > 0) {
+                names.append(", "); //$NON-NLS-1$
+            }
+            names.append(trace.getName());
+        }
+        if (readers.isEmpty()) {
+            return true;
+        }
+        monitor.beginTask(NLS.bind(Messages.TmfEventMatching_LookingEventsFrom, names), IProgressMonitor.UNKNOWN);
+
+        /* Each reader needs its own thread, they block on their full queue */
+        ExecutorService executor = Executors.newFixedThreadPool(readers.size());
+        try {
+            for (EventMatchingReader reader : readers) {
+                executor.execute(reader);
+            }
+            executor.shutdown();
+
+            PriorityQueue<EventMatchingReader> heads = new PriorityQueue<>(readers.size(), new Comparator<EventMatchingReader>() {
+                @Override
+                public int compare(EventMatchingReader o1, EventMatchingReader o2) {
+                    int cmp = Long.compare(o1.getHeadTime(), o2.getHeadTime());
+                    return (cmp != 0) ? cmp : Integer.compare(o1.getIndex(), o2.getIndex());
+                }
+            });
+            for (EventMatchingReader reader : readers) {
+                if (reader.peek() != null) {
+                    heads.add(reader);
+                }
+            }
+            while (!heads.isEmpty()) {
+                if (monitor.isCanceled()) {
+                    return false;
+                }
+                EventMatchingReader reader = heads.poll();
+                MatchCandidate candidate = reader.peek();
+                reader.advance();
+                if (candidate != null) {
+                    matchCandidate(candidate, monitor);
+                }
+                if (reader.peek() != null) {
+                    heads.add(reader);
+                }
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Activator.logInfo(e.getMessage());
+            return false;
+        } finally {
+            for (EventMatchingReader reader : readers) {
+                reader.cancel();
+            }
+            executor.shutdownNow();
+        }
     }
 
     /**
@@ -386,50 +631,15 @@ public class TmfEventMatching implements ITmfEventMatching {
         MATCH_DEFINITIONS.add(match);
     }
 
-}
-
-class EventMatchingBuildRequest extends TmfEventRequest {
-
-    private final TmfEventMatching matching;
-    private final ITmfTrace trace;
-    private final @NonNull IProgressMonitor fMonitor;
-
-    EventMatchingBuildRequest(TmfEventMatching matching, ITmfTrace trace, IProgressMonitor monitor) {
-        super(ITmfEvent.class,
-                TmfTimeRange.ETERNITY,
-                0,
-                ITmfEventRequest.ALL_DATA,
-                ITmfEventRequest.ExecutionType.FOREGROUND);
-        this.matching = matching;
-        this.trace = trace;
-        if (monitor == null) {
-            fMonitor = new NullProgressMonitor();
-        } else {
-            fMonitor = monitor;
-        }
-    }
-
-    @Override
-    public void handleData(final ITmfEvent event) {
-        super.handleData(event);
-        if (fMonitor.isCanceled()) {
-            this.cancel();
-        }
-        matching.matchEvent(event, trace, fMonitor);
-    }
-
-    @Override
-    public void handleSuccess() {
-        super.handleSuccess();
-    }
-
-    @Override
-    public void handleCancel() {
-        super.handleCancel();
+    /**
+     * Deregisters an event match definition
+     *
+     * @param match
+     *            The event matching definition
+     * @since 1.0
+     */
+    public static void deregisterMatchObject(ITmfMatchEventDefinition match) {
+        MATCH_DEFINITIONS.remove(match);
     }
 
-    @Override
-    public void handleFailure() {
-        super.handleFailure();
-    }
 }
@@ -0,0 +1,183 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.filter;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEventType;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTraceWithFilterPushdown;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * The part of a filter that an event provider can evaluate before it builds
+ * the events: a set of accepted event type names and a time range.
+ * <p>
+ * These are necessary conditions: an event that satisfies them may still be
+ * rejected by the full filter, but an event that doesn't satisfy them is
+ * guaranteed to be rejected. Providers can therefore skip those events as
+ * soon as their type and timestamp are known.
+ *
+ * @see ITmfTraceWithFilterPushdown
+ * @since 1.0
+ */
+public final class TmfFilterPushdown implements ITmfFilter {
+
+    /** The pushdown that accepts all events */
+    public static final TmfFilterPushdown UNCONSTRAINED = new TmfFilterPushdown(null, Long.MIN_VALUE, Long.MAX_VALUE);
+
+    private final @Nullable Set<String> fEventTypes;
+    private final long fStartTime;
+    private final long fEndTime;
+
+    /**
+     * Constructor
+     *
+     * @param eventTypes
+     *            The names of the accepted event types, or null to accept all
+     *            event types
+     * @param startTime
+     *            The start of the accepted time range, in nanoseconds,
+     *            inclusive
+     * @param endTime
+     *            The end of the accepted time range, in nanoseconds, inclusive
+     */
+    public TmfFilterPushdown(@Nullable Collection<String> eventTypes, long startTime, long endTime) {
+        fEventTypes = (eventTypes == null ? null : ImmutableSet.copyOf(eventTypes));
+        fStartTime = startTime;
+        fEndTime = endTime;
+    }
+
+    /**
+     * @return The names of the accepted event types, or null if all event
+     *         types are accepted
+     */
+    public @Nullable Set<String> getEventTypes() {
+        return fEventTypes;
+    }
+
+    /**
+     * @return The start of the accepted time range, in nanoseconds, inclusive
+     */
+    public long getStartTime() {
+        return fStartTime;
+    }
+
+    /**
+     * @return The end of the accepted time range, in nanoseconds, inclusive
+     */
+    public long getEndTime() {
+        return fEndTime;
+    }
+
+    /**
+     * @return true if this pushdown accepts all events
+     */
+    public boolean isUnconstrained() {
+        return fEventTypes == null && fStartTime == Long.MIN_VALUE && fEndTime == Long.MAX_VALUE;
+    }
+
+    /**
+     * @return true if this pushdown rejects all events
+     */
+    public boolean isEmpty() {
+        Set<String> eventTypes = fEventTypes;
+        return (eventTypes != null && eventTypes.isEmpty()) || fStartTime > fEndTime;
+    }
+
+    /**
+     * Check an event type
+     *
+     * @param eventTypeName
+     *            The name of the event type
+     * @return true if events of this type are accepted
+     */
+    public boolean acceptsEventType(String eventTypeName) {
+        Set<String> eventTypes = fEventTypes;
+        return eventTypes == null || eventTypes.contains(eventTypeName);
+    }
+
+    /**
+     * Check a timestamp
+     *
+     * @param time
+     *            The timestamp, in nanoseconds
+     * @return true if events at this time are accepted
+     */
+    public boolean acceptsTime(long time) {
+        return time >= fStartTime && time <= fEndTime;
+    }
+
+    /**
+     * Get the pushdown that accepts the events accepted by both this pushdown
+     * and another one.
+     *
+     * @param other
+     *            The other pushdown
+     * @return The intersection
+     */
+    public TmfFilterPushdown intersect(TmfFilterPushdown other) {
+        Set<String> eventTypes = fEventTypes;
+        Set<String> otherEventTypes = other.fEventTypes;
+        if (eventTypes == null) {
+            eventTypes = otherEventTypes;
+        } else if (otherEventTypes != null) {
+            Set<String> intersection = new HashSet<>(eventTypes);
+            intersection.retainAll(otherEventTypes);
+            eventTypes = intersection;
+        }
+        return new TmfFilterPushdown(eventTypes, Math.max(fStartTime, other.fStartTime), Math.min(fEndTime, other.fEndTime));
+    }
+
+    /**
+     * Get a pushdown that accepts the events accepted by either this pushdown
+     * or another one. It may accept more events than both of them.
+     *
+     * @param other
+     *            The other pushdown
+     * @return The union
+     */
+    public TmfFilterPushdown union(TmfFilterPushdown other) {
+        if (isEmpty()) {
+            return other;
+        } else if (other.isEmpty()) {
+            return this;
+        }
+        Set<String> eventTypes = null;
+        if (fEventTypes != null && other.fEventTypes != null) {
+            eventTypes = new HashSet<>(fEventTypes);
+            eventTypes.addAll(other.fEventTypes);
+        }
+        return new TmfFilterPushdown(eventTypes, Math.min(fStartTime, other.fStartTime), Math.max(fEndTime, other.fEndTime));
+    }
+
+    @Override
+    public boolean matches(ITmfEvent event) {
+        if (fEventTypes != null) {
+            ITmfEventType type = event.getType();
+            if (type == null || !acceptsEventType(type.getName())) {
+                return false;
+            }
+        }
+        if (fStartTime != Long.MIN_VALUE || fEndTime != Long.MAX_VALUE) {
+            return acceptsTime(event.getTimestamp().toNanos());
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "TmfFilterPushdown [fEventTypes=" + fEventTypes + ", fStartTime=" + fStartTime + ", fEndTime=" + fEndTime + "]"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+    }
+}
@@ -0,0 +1,433 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.io;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Line-oriented, read-only access to a text file through memory-mapped
+ * windows.
+ * <p>
+ * Lines are returned as {@link CharSequence} views over the mapped bytes, so
+ * that regular expressions can be applied to them without copying. Lines that
+ * only contain ASCII characters are never decoded: each char is read directly
+ * from the mapped window. Other lines are decoded with the file's charset the
+ * first time their content is accessed. A view is only valid until the reader
+ * moves to another window or is closed: the window is then unmapped if the
+ * JVM allows it, so that the file is not locked and the address space is not
+ * held until the window is garbage collected, and the views of an unmapped
+ * window throw {@link IllegalStateException}. Lines that are kept must be
+ * copied with {@link CharSequence#toString()} before the next read or seek.
+ * <p>
+ * If the file is truncated under a mapped window, the reads that would access
+ * the missing part of the window throw an {@link IOException} instead of
+ * crashing.
+ * <p>
+ * Seeking is a simple position change as long as the target is inside the
+ * current window, and the window is only remapped when reading past its end.
+ * Line terminators are '\n' and "\r\n", and they are not included in the
+ * returned lines.
+ *
+ * @since 1.0
+ */
+public class MappedTextFile implements Closeable {
+
+    private static final Charset CHARSET_UTF8 = Charset.forName("UTF-8"); //$NON-NLS-1$
+
+    /** Default size of the mapped windows, in bytes */
+    private static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+
+    /*
+     * Reads closer than this to the end of the file mapped at the time of
+     * mapping check that the file was not truncated since
+     */
+    private static final int TAIL_CHECK_SIZE = 64 * 1024;
+
+    private static final Window EMPTY_WINDOW = new Window(ByteBuffer.allocate(0));
+
+    private final RandomAccessFile fFile;
+    private final FileChannel fChannel;
+    private final Charset fCharset;
+    private final int fWindowSize;
+
+    /* The current mapped window, covering [fWindowStart, fWindowStart + fWindow.limit()) */
+    private ByteBuffer fWindow;
+    private Window fWindowHolder;
+    private long fWindowStart;
+    /* The window ends at the end of the file, as it was when it was mapped */
+    private boolean fTailWindow;
+
+    /* The current position, relative to fWindowStart */
+    private long fPosition;
+
+    /**
+     * Constructor using UTF-8 and the default window size
+     *
+     * @param path
+     *            The path of the file to read
+     * @throws IOException
+     *             If the file was not found or couldn't be opened
+     */
+    public MappedTextFile(String path) throws IOException {
+        this(new File(path), CHARSET_UTF8, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Constructor using UTF-8 and the default window size
+     *
+     * @param file
+     *            The file to read
+     * @throws IOException
+     *             If the file was not found or couldn't be opened
+     */
+    public MappedTextFile(File file) throws IOException {
+        this(file, CHARSET_UTF8, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Full constructor
+     *
+     * @param file
+     *            The file to read
+     * @param charset
+     *            The charset used to decode non-ASCII lines
+     * @param windowSize
+     *            The size of the mapped windows, in bytes. Lines longer than
+     *            this get a window of their own.
+     * @throws IOException
+     *             If the file was not found or couldn't be opened
+     */
+    public MappedTextFile(File file, Charset charset, int windowSize) throws IOException {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException();
+        }
+        fFile = new RandomAccessFile(file, "r"); //$NON-NLS-1$
+        fChannel = fFile.getChannel();
+        fCharset = charset;
+        fWindowSize = windowSize;
+        fWindowHolder = EMPTY_WINDOW;
+        fWindow = EMPTY_WINDOW.fBuffer;
+        fWindowStart = 0;
+        fPosition = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        Window window = fWindowHolder;
+        fWindowHolder = EMPTY_WINDOW;
+        fWindow = EMPTY_WINDOW.fBuffer;
+        window.release();
+        fFile.close();
+    }
+
+    /**
+     * Get the current length of the file. It is queried each time, so that
+     * files being appended to can be followed.
+     *
+     * @return The length of the file, in bytes
+     * @throws IOException
+     *             If the file couldn't be accessed
+     */
+    public long length() throws IOException {
+        return fChannel.size();
+    }
+
+    /**
+     * Get the current offset in the file
+     *
+     * @return The offset, in bytes, of the next byte to read
+     */
+    public long getFilePointer() {
+        return fWindowStart + fPosition;
+    }
+
+    /**
+     * Set the offset of the next byte to read. The current window is kept if
+     * it contains the new position.
+     *
+     * @param pos
+     *            The new offset, in bytes
+     */
+    public void seek(long pos) {
+        if (pos < 0) {
+            throw new IllegalArgumentException();
+        }
+        fPosition = pos - fWindowStart;
+        if (fPosition < 0 || fPosition > fWindow.limit()) {
+            /* Remapped lazily at the next read */
+            fWindowHolder.release();
+            fWindowHolder = EMPTY_WINDOW;
+            fWindow = EMPTY_WINDOW.fBuffer;
+            fWindowStart = pos;
+            fPosition = 0;
+        }
+    }
+
+    /**
+     * Read a single byte
+     *
+     * @return The byte read, between 0 and 255, or -1 at the end of the file
+     * @throws IOException
+     *             If the file couldn't be read
+     */
+    public int read() throws IOException {
+        if (fPosition >= fWindow.limit() && !map(getFilePointer(), fWindowSize)) {
+            return -1;
+        }
+        checkTruncated((int) fPosition + 1);
+        try {
+            return fWindow.get((int) fPosition++) & 0xff;
+        } catch (InternalError e) {
+            throw truncatedException(e);
+        }
+    }
+
+    /**
+     * Read the next line. The returned view does not change when the reader
+     * advances, but it is released when the reader moves to another window.
+     *
+     * @return The line, without its terminator, or null at the end of the file
+     * @throws IOException
+     *             If the file couldn't be read
+     */
+    public CharSequence getNextLine() throws IOException {
+        if (fPosition >= fWindow.limit() && !map(getFilePointer(), fWindowSize)) {
+            return null;
+        }
+        try {
+            return readLine();
+        } catch (InternalError e) {
+            /* The JVM reports a fault accessing a truncated mapping this way */
+            throw truncatedException(e);
+        }
+    }
+
+    private CharSequence readLine() throws IOException {
+        checkTruncated(fWindow.limit());
+        int start = (int) fPosition;
+        boolean ascii = true;
+        int i = start;
+        while (true) {
+            int limit = fWindow.limit();
+            while (i < limit) {
+                byte b = fWindow.get(i);
+                if (b == '\n') {
+                    fPosition = i + 1L;
+                    int end = (i > start && fWindow.get(i - 1) == '\r') ? i - 1 : i;
+                    return new LineSequence(fWindowHolder, start, end, ascii, fCharset);
+                }
+                if (b < 0) {
+                    ascii = false;
+                }
+                i++;
+            }
+            /*
+             * The line continues past the end of the window: remap starting at
+             * the line, with a larger window if the line doesn't fit.
+             */
+            long lineStart = fWindowStart + start;
+            int lineLength = i - start;
+            int size = (lineLength < fWindowSize / 2) ? fWindowSize : (int) Math.min(Integer.MAX_VALUE, 2L * lineLength);
+            if (!map(lineStart, size)) {
+                return null;
+            }
+            checkTruncated(fWindow.limit());
+            if (fWindow.limit() <= lineLength) {
+                /* Last line of the file, without terminator */
+                int end = fWindow.limit();
+                fPosition = end;
+                if (end > 0 && fWindow.get(end - 1) == '\r') {
+                    end--;
+                }
+                return new LineSequence(fWindowHolder, 0, end, ascii, fCharset);
+            }
+            i = lineLength;
+            start = 0;
+        }
+    }
+
+    /**
+     * Map a window of the file
+     *
+     * @param pos
+     *            The offset of the window
+     * @param size
+     *            The requested size, truncated at the end of the file
+     * @return false if the offset is at or past the end of the file
+     * @throws IOException
+     *             If the file couldn't be mapped
+     */
+    private boolean map(long pos, int size) throws IOException {
+        long length = fChannel.size();
+        if (pos >= length || size <= 0) {
+            return false;
+        }
+        long mappedSize = Math.min(size, length - pos);
+        MappedByteBuffer window = fChannel.map(FileChannel.MapMode.READ_ONLY, pos, mappedSize);
+        fWindowHolder.release();
+        fWindowHolder = new Window(window);
+        fWindow = window;
+        fWindowStart = pos;
+        fTailWindow = (pos + mappedSize == length);
+        fPosition = 0;
+        return true;
+    }
+
+    /**
+     * Check that the file still contains the bytes of the current window up to
+     * an offset, when they are near the end of the file as it was mapped. The
+     * channel size is only queried for the tail of the file, so that reading
+     * the middle of a large file does not cost a system call per line.
+     */
+    private void checkTruncated(int windowOffset) throws IOException {
+        if (fTailWindow && fWindow.limit() - fPosition <= TAIL_CHECK_SIZE
+                && fChannel.size() < fWindowStart + windowOffset) {
+            throw new IOException("File truncated while it is read"); //$NON-NLS-1$
+        }
+    }
+
+    private static IOException truncatedException(InternalError e) {
+        return new IOException("Error reading the mapped file, it may have been truncated", e); //$NON-NLS-1$
+    }
+
+    /**
+     * A mapped window, shared by the reader and the lines viewed in it, which
+     * can be unmapped explicitly
+     */
+    private static final class Window {
+
+        private final ByteBuffer fBuffer;
+        private volatile boolean fReleased = false;
+
+        public Window(ByteBuffer buffer) {
+            fBuffer = buffer;
+        }
+
+        public ByteBuffer getBuffer() {
+            if (fReleased) {
+                throw new IllegalStateException("The window was unmapped"); //$NON-NLS-1$
+            }
+            return fBuffer;
+        }
+
+        /**
+         * Unmap the window now, instead of when it is garbage collected. This
+         * uses the cleaner of the direct buffer, which is not public API, so
+         * the window is left to the garbage collector if it is not available.
+         * The window is only marked as released once it is unmapped, so the
+         * views of a window that could not be unmapped remain readable.
+         */
+        public void release() {
+            if (fReleased || !fBuffer.isDirect()) {
+                return;
+            }
+            try {
+                Method cleanerMethod = fBuffer.getClass().getMethod("cleaner"); //$NON-NLS-1$
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(fBuffer);
+                if (cleaner == null) {
+                    return;
+                }
+                Method cleanMethod = cleaner.getClass().getMethod("clean"); //$NON-NLS-1$
+                cleanMethod.setAccessible(true);
+                cleanMethod.invoke(cleaner);
+                fReleased = true;
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                /* Unmapped by the garbage collector */
+            }
+        }
+    }
+
+    /**
+     * A line viewed in place in a mapped window
+     */
+    private static final class LineSequence implements CharSequence {
+
+        private final Window fWindow;
+        private final int fStart;
+        private final int fEnd;
+        private final boolean fAscii;
+        private final Charset fCharset;
+        private String fDecoded = null;
+
+        public LineSequence(Window window, int start, int end, boolean ascii, Charset charset) {
+            fWindow = window;
+            fStart = start;
+            fEnd = end;
+            fAscii = ascii;
+            fCharset = charset;
+        }
+
+        @Override
+        public int length() {
+            if (fAscii) {
+                return fEnd - fStart;
+            }
+            return decoded().length();
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (fAscii) {
+                if (index < 0 || index >= fEnd - fStart) {
+                    throw new IndexOutOfBoundsException();
+                }
+                return (char) fWindow.getBuffer().get(fStart + index);
+            }
+            return decoded().charAt(index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            if (fAscii) {
+                if (start < 0 || end > fEnd - fStart || start > end) {
+                    throw new IndexOutOfBoundsException();
+                }
+                return new LineSequence(fWindow, fStart + start, fStart + end, true, fCharset);
+            }
+            return decoded().subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            if (fAscii) {
+                ByteBuffer buffer = fWindow.getBuffer();
+                char[] chars = new char[fEnd - fStart];
+                for (int i = 0; i < chars.length; i++) {
+                    chars[i] = (char) buffer.get(fStart + i);
+                }
+                return new String(chars);
+            }
+            return decoded();
+        }
+
+        private String decoded() {
+            String decoded = fDecoded;
+            if (decoded == null) {
+                ByteBuffer buffer = fWindow.getBuffer();
+                byte[] bytes = new byte[fEnd - fStart];
+                for (int i = 0; i < bytes.length; i++) {
+                    bytes[i] = buffer.get(fStart + i);
+                }
+                decoded = new String(bytes, fCharset);
+                fDecoded = decoded;
+            }
+            return decoded;
+        }
+    }
+}
@@ -89,8 +89,12 @@ public class CustomTxtEvent extends CustomEvent {
         }
         for (int i = 0; i < input.columns.size(); i++) {
             InputData column = input.columns.get(i);
-            if (i < matcher.groupCount() && matcher.group(i + 1) != null) {
-                String value = matcher.group(i + 1).trim();
+            if (i >= matcher.groupCount()) {
+                break;
+            }
+            String group = matcher.group(i + 1);
+            if (group != null) {
+                String value = group.trim();
                 if (value.length() == 0) {
                     continue;
                 }
@@ -28,15 +28,20 @@ import org.eclipse.core.resources.IResource;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.jdt.annotation.NonNull;
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.internal.tmf.core.Activator;
 import org.eclipse.tracecompass.internal.tmf.core.parsers.custom.CustomEventAspects;
+import org.eclipse.tracecompass.internal.tmf.core.trace.indexer.CheckpointIntervalEstimator;
+import org.eclipse.tracecompass.internal.tmf.core.trace.indexer.CheckpointIntervalEstimator.IEventLineMatcher;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 import org.eclipse.tracecompass.tmf.core.event.aspect.ITmfEventAspect;
 import org.eclipse.tracecompass.tmf.core.exceptions.TmfTraceException;
-import org.eclipse.tracecompass.tmf.core.io.BufferedRandomAccessFile;
+import org.eclipse.tracecompass.tmf.core.filter.TmfFilterPushdown;
+import org.eclipse.tracecompass.tmf.core.io.MappedTextFile;
 import org.eclipse.tracecompass.tmf.core.parsers.custom.CustomTxtTraceDefinition.InputLine;
 import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTraceWithFilterPushdown;
 import org.eclipse.tracecompass.tmf.core.trace.TmfContext;
 import org.eclipse.tracecompass.tmf.core.trace.TmfTrace;
 import org.eclipse.tracecompass.tmf.core.trace.TraceValidationStatus;
@@ -53,7 +58,7 @@ import org.eclipse.tracecompass.tmf.core.trace.location.TmfLongLocation;
  *
  * @author Patrick Tassé
  */
-public class CustomTxtTrace extends TmfTrace implements ITmfPersistentlyIndexable {
+public class CustomTxtTrace extends TmfTrace implements ITmfPersistentlyIndexable, ITmfTraceWithFilterPushdown {
 
     private static final TmfLongLocation NULL_LOCATION = new TmfLongLocation(-1L);
     private static final int DEFAULT_CACHE_SIZE = 100;
@@ -62,7 +67,7 @@ public class CustomTxtTrace extends TmfTrace implements ITmfPersistentlyIndexabl
 
     private final CustomTxtTraceDefinition fDefinition;
     private final CustomTxtEventType fEventType;
-    private BufferedRandomAccessFile fFile;
+    private MappedTextFile fFile;
     private final String fTraceTypeId;
 
     private static final char SEPARATOR = ':';
@@ -109,7 +114,7 @@ public class CustomTxtTrace extends TmfTrace implements ITmfPersistentlyIndexabl
     public void initTrace(final IResource resource, final String path, final Class<? extends ITmfEvent> eventType) throws TmfTraceException {
         super.initTrace(resource, path, eventType);
         try {
-            fFile = new BufferedRandomAccessFile(getPath(), "r"); //$NON-NLS-1$
+            fFile = new MappedTextFile(getPath());
         } catch (IOException e) {
             throw new TmfTraceException(e.getMessage(), e);
         }
@@ -151,16 +156,12 @@ public class CustomTxtTrace extends TmfTrace implements ITmfPersistentlyIndexabl
                 fFile.seek((Long) location.getLocationInfo());
             }
             long rawPos = fFile.getFilePointer();
-            String line = fFile.getNextLine();
+            CharSequence line = fFile.getNextLine();
             while (line != null) {
                 for (final InputLine input : getFirstLines()) {
-                    final Matcher matcher = input.getPattern().matcher(line);
-                    if (matcher.matches()) {
-                        context.setLocation(new TmfLongLocation(rawPos));
-                        context.firstLineMatcher = matcher;
-                        context.firstLine = line;
-                        context.nextLineLocation = fFile.getFilePointer();
-                        context.inputLine = input;
+                    final Matcher matcher = context.match(input, line);
+                    if (matcher != null) {
+                        setupContext(context, rawPos, line, matcher, input);
                         return context;
                     }
                 }
@@ -178,6 +179,22 @@ public class CustomTxtTrace extends TmfTrace implements ITmfPersistentlyIndexabl
 
     }
 
+    /*
+     * The line is a view of the mapped file, which is released when the file
+     * moves to another window. The first line is kept in the context until
+     * its event is parsed, so its matcher is reset on a copy of the line.
+     */
+    private void setupContext(CustomTxtTraceContext context, long rawPos, CharSequence line, Matcher matcher, InputLine input) {
+        String firstLine = line.toString();
+        matcher.reset(firstLine);
+        matcher.matches();
+        context.setLocation(new TmfLongLocation(rawPos));
+        context.firstLineMatcher = matcher;
+        context.firstLine = firstLine;
+        context.nextLineLocation = fFile.getFilePointer();
+        context.inputLine = input;
+    }
+
     @Override
     public synchronized TmfContext seekEvent(final double ratio) {
         if (fFile == null) {
@@ -240,6 +257,29 @@ public class CustomTxtTrace extends TmfTrace implements ITmfPersistentlyIndexabl
         return event;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * All the events of a custom text trace have the same type, so the whole
+     * trace is skipped if that type is rejected. Otherwise, the events have to
+     * be parsed to know their timestamp.
+     *
+     * @since 1.0
+     */
+    @Override
+    public synchronized @Nullable CustomTxtEvent getNext(ITmfContext context, TmfFilterPushdown pushdown, long endRank) {
+        if (!pushdown.acceptsEventType(fEventType.getName())) {
+            return null;
+        }
+        while (context.getRank() < endRank) {
+            CustomTxtEvent event = getNext(context);
+            if (event == null || pushdown.matches(event)) {
+                return event;
+            }
+        }
+        return null;
+    }
+
     private synchronized CustomTxtEvent parse(final ITmfContext tmfContext) {
         if (fFile == null) {
             return null;
@@ -267,18 +307,14 @@ public class CustomTxtTrace extends TmfTrace implements ITmfPersistentlyIndexabl
                 fFile.seek(context.nextLineLocation);
             }
             long rawPos = fFile.getFilePointer();
-            String line = fFile.getNextLine();
+            CharSequence line = fFile.getNextLine();
             while (line != null) {
                 boolean processed = false;
                 if (currentInput == null) {
                     for (final InputLine input : getFirstLines()) {
-                        final Matcher matcher = input.getPattern().matcher(line);
-                        if (matcher.matches()) {
-                            context.setLocation(new TmfLongLocation(rawPos));
-                            context.firstLineMatcher = matcher;
-                            context.firstLine = line;
-                            context.nextLineLocation = fFile.getFilePointer();
-                            context.inputLine = input;
+                        final Matcher matcher = context.match(input, line);
+                        if (matcher != null) {
+                            setupContext(context, rawPos, line, matcher, input);
                             return event;
                         }
                     }
@@ -287,20 +323,16 @@ public class CustomTxtTrace extends TmfTrace implements ITmfPersistentlyIndexabl
                         final List<InputLine> nextInputs = currentInput.getNextInputs(countMap);
                         if (nextInputs.size() == 0 || nextInputs.get(nextInputs.size() - 1).getMinCount() == 0) {
                             for (final InputLine input : getFirstLines()) {
-                                final Matcher matcher = input.getPattern().matcher(line);
-                                if (matcher.matches()) {
-                                    context.setLocation(new TmfLongLocation(rawPos));
-                                    context.firstLineMatcher = matcher;
-                                    context.firstLine = line;
-                                    context.nextLineLocation = fFile.getFilePointer();
-                                    context.inputLine = input;
+                                final Matcher matcher = context.match(input, line);
+                                if (matcher != null) {
+                                    setupContext(context, rawPos, line, matcher, input);
                                     return event;
                                 }
                             }
                         }
                         for (final InputLine input : nextInputs) {
-                            final Matcher matcher = input.getPattern().matcher(line);
-                            if (matcher.matches()) {
+                            final Matcher matcher = context.match(input, line);
+                            if (matcher != null) {
                                 event.processGroups(input, matcher);
                                 currentInput = input;
                                 if (countMap.get(currentInput) == null) {
@@ -319,8 +351,9 @@ public class CustomTxtTrace extends TmfTrace implements ITmfPersistentlyIndexabl
                                     currentInput = currentInput.childrenInputs.get(0);
                                     countMap.put(currentInput, 0);
                                 } else if (countMap.get(currentInput) >= currentInput.getMaxCount()) {
-                                    if (currentInput.getNextInputs(countMap).size() > 0) {
-                                        currentInput = currentInput.getNextInputs(countMap).get(0);
+                                    final List<InputLine> followingInputs = currentInput.getNextInputs(countMap);
+                                    if (followingInputs.size() > 0) {
+                                        currentInput = followingInputs.get(0);
                                         if (countMap.get(currentInput) == null) {
                                             countMap.put(currentInput, 0);
                                         }
@@ -341,16 +374,17 @@ public class CustomTxtTrace extends TmfTrace implements ITmfPersistentlyIndexabl
                         }
                     }
                     if (!processed && currentInput != null) {
-                        final Matcher matcher = currentInput.getPattern().matcher(line);
-                        if (matcher.matches()) {
+                        final Matcher matcher = context.match(currentInput, line);
+                        if (matcher != null) {
                             event.processGroups(currentInput, matcher);
                             countMap.put(currentInput, countMap.get(currentInput) + 1);
                             if (currentInput.childrenInputs != null && currentInput.childrenInputs.size() > 0) {
                                 currentInput = currentInput.childrenInputs.get(0);
                                 countMap.put(currentInput, 0);
                             } else if (countMap.get(currentInput) >= currentInput.getMaxCount()) {
-                                if (currentInput.getNextInputs(countMap).size() > 0) {
-                                    currentInput = currentInput.getNextInputs(countMap).get(0);
+                                final List<InputLine> followingInputs = currentInput.getNextInputs(countMap);
+                                if (followingInputs.size() > 0) {
+                                    currentInput = followingInputs.get(0);
                                     if (countMap.get(currentInput) == null) {
                                         countMap.put(currentInput, 0);
                                     }
@@ -428,10 +462,10 @@ public class CustomTxtTrace extends TmfTrace implements ITmfPersistentlyIndexabl
             return new Status(IStatus.ERROR, Activator.PLUGIN_ID, Messages.CustomTrace_FileNotFound + ": " + path); //$NON-NLS-1$
         }
         int confidence = 0;
-        try (BufferedRandomAccessFile rafile = new BufferedRandomAccessFile(path, "r")) { //$NON-NLS-1$
+        try (MappedTextFile rafile = new MappedTextFile(path)) {
             int lineCount = 0;
             double matches = 0.0;
-            String line = rafile.getNextLine();
+            CharSequence line = rafile.getNextLine();
             while ((line != null) && (lineCount++ < MAX_LINES)) {
                 for (InputLine inputLine : fDefinition.inputs) {
                     Matcher matcher = inputLine.getPattern().matcher(line);
@@ -472,7 +506,34 @@ public class CustomTxtTrace extends TmfTrace implements ITmfPersistentlyIndexabl
 
     @Override
     protected ITmfTraceIndexer createIndexer(int interval) {
-        return new TmfBTreeTraceIndexer(this, interval);
+        return new TmfBTreeTraceIndexer(this, getCheckpointInterval(interval));
+    }
+
+    /**
+     * Compute the checkpoint interval from the average event size at the
+     * beginning of the file, so that a seek parses a bounded number of bytes
+     * whatever the size of the events.
+     *
+     * @param defaultInterval
+     *            the interval to use if the file can't be sampled
+     * @return the checkpoint interval
+     */
+    private int getCheckpointInterval(int defaultInterval) {
+        final CustomTxtTraceDefinition definition = fDefinition;
+        if (definition == null) {
+            return defaultInterval;
+        }
+        return CheckpointIntervalEstimator.sampleInterval(getPath(), new IEventLineMatcher() {
+            @Override
+            public boolean isEventLine(CharSequence line) {
+                for (InputLine inputLine : definition.inputs) {
+                    if (inputLine.getPattern().matcher(line).matches()) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+        }, defaultInterval);
     }
 
     @Override
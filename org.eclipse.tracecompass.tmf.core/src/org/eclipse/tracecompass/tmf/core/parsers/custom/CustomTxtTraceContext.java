@@ -14,8 +14,11 @@ package org.eclipse.tracecompass.tmf.core.parsers.custom;
 
 import static org.eclipse.tracecompass.common.core.NonNullUtils.equalsNullable;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.regex.Matcher;
 
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.tmf.core.parsers.custom.CustomTxtTraceDefinition.InputLine;
 import org.eclipse.tracecompass.tmf.core.trace.TmfContext;
 import org.eclipse.tracecompass.tmf.core.trace.location.ITmfLocation;
@@ -39,6 +42,9 @@ public class CustomTxtTraceContext extends TmfContext {
     /** InputLine object for the currently read line */
     public InputLine inputLine;
 
+    /** Matchers reused for all the lines read with this context */
+    private final Map<InputLine, Matcher> fMatchers = new HashMap<>();
+
     /**
      * Constructor.
      *
@@ -51,6 +57,40 @@ public class CustomTxtTraceContext extends TmfContext {
         super(location, rank);
     }
 
+    /**
+     * Match a line against an input line. Lines that don't start with the
+     * literal prefix of the input line's regex are rejected without running
+     * the regex. The matcher of each input line is reused for all the lines
+     * read with this context, so the returned matcher is only valid until the
+     * next call for the same input line.
+     *
+     * @param input
+     *            The input line
+     * @param line
+     *            The line to match
+     * @return The matcher, or null if the line doesn't match
+     * @since 1.0
+     */
+    public @Nullable Matcher match(InputLine input, CharSequence line) {
+        String prefix = input.getLiteralPrefix();
+        if (line.length() < prefix.length()) {
+            return null;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (line.charAt(i) != prefix.charAt(i)) {
+                return null;
+            }
+        }
+        Matcher matcher = fMatchers.get(input);
+        if (matcher == null) {
+            matcher = input.getPattern().matcher(line);
+            fMatchers.put(input, matcher);
+        } else {
+            matcher.reset(line);
+        }
+        return matcher.matches() ? matcher : null;
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
@@ -166,6 +166,7 @@ public class CustomTxtTraceDefinition extends CustomTraceDefinition {
 
         private String regex;
         private Pattern pattern;
+        private String literalPrefix;
 
         /**
          * Default (empty) constructor.
@@ -198,6 +199,7 @@ public class CustomTxtTraceDefinition extends CustomTraceDefinition {
         public void setRegex(String regex) {
             this.regex = regex;
             this.pattern = null;
+            this.literalPrefix = null;
         }
 
         /**
@@ -223,6 +225,58 @@ public class CustomTxtTraceDefinition extends CustomTraceDefinition {
             return pattern;
         }
 
+        /**
+         * Get the literal text that starts every line matching this line's
+         * regex. It is used to reject lines before running the regex.
+         *
+         * @return The literal prefix, or an empty string if there is none
+         * @since 1.0
+         */
+        public String getLiteralPrefix() {
+            if (literalPrefix == null) {
+                literalPrefix = computeLiteralPrefix(regex);
+            }
+            return literalPrefix;
+        }
+
+        /**
+         * Get the literal characters at the start of a regex, stopping at the
+         * first construct that can match something else than itself. A regex
+         * with alternations has no prefix.
+         */
+        private static String computeLiteralPrefix(String regex) {
+            if (regex == null || regex.indexOf('|') >= 0) {
+                return ""; //$NON-NLS-1$
+            }
+            StringBuilder prefix = new StringBuilder();
+            int i = regex.startsWith("^") ? 1 : 0; //$NON-NLS-1$
+            while (i < regex.length()) {
+                char c = regex.charAt(i);
+                char literal;
+                int next;
+                if (c == '\\') {
+                    /* Escaped letters and digits are classes or special sequences */
+                    if (i + 1 >= regex.length() || Character.isLetterOrDigit(regex.charAt(i + 1))) {
+                        break;
+                    }
+                    literal = regex.charAt(i + 1);
+                    next = i + 2;
+                } else if (".[]{}()*+?^$".indexOf(c) >= 0) { //$NON-NLS-1$
+                    break;
+                } else {
+                    literal = c;
+                    next = i + 1;
+                }
+                /* A quantifier applies to the last literal, which is then not part of the prefix */
+                if (next < regex.length() && "*+?{".indexOf(regex.charAt(next)) >= 0) { //$NON-NLS-1$
+                    break;
+                }
+                prefix.append(literal);
+                i = next;
+            }
+            return prefix.toString();
+        }
+
         /**
          * Add a child line to this line.
          *
@@ -13,15 +13,10 @@
 
 package org.eclipse.tracecompass.tmf.core.parsers.custom;
 
-import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
-import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
-
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
+import java.util.List;
 
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
@@ -30,6 +25,9 @@ import org.eclipse.core.runtime.Status;
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.tracecompass.internal.tmf.core.Activator;
 import org.eclipse.tracecompass.internal.tmf.core.parsers.custom.CustomEventAspects;
+import org.eclipse.tracecompass.internal.tmf.core.parsers.custom.CustomXmlRecordParser;
+import org.eclipse.tracecompass.internal.tmf.core.parsers.custom.CustomXmlRecordParser.InputValue;
+import org.eclipse.tracecompass.internal.tmf.core.parsers.custom.CustomXmlRecordReader;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 import org.eclipse.tracecompass.tmf.core.event.aspect.ITmfEventAspect;
 import org.eclipse.tracecompass.tmf.core.exceptions.TmfTraceException;
@@ -46,15 +44,9 @@ import org.eclipse.tracecompass.tmf.core.trace.indexer.checkpoint.ITmfCheckpoint
 import org.eclipse.tracecompass.tmf.core.trace.indexer.checkpoint.TmfCheckpoint;
 import org.eclipse.tracecompass.tmf.core.trace.location.ITmfLocation;
 import org.eclipse.tracecompass.tmf.core.trace.location.TmfLongLocation;
-import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
-import org.xml.sax.EntityResolver;
-import org.xml.sax.ErrorHandler;
-import org.xml.sax.InputSource;
-import org.xml.sax.SAXException;
-import org.xml.sax.SAXParseException;
 
 /**
  * Trace object for custom XML trace parsers.
@@ -71,6 +63,7 @@ public class CustomXmlTrace extends TmfTrace implements ITmfPersistentlyIndexabl
     private final CustomXmlTraceDefinition fDefinition;
     private final CustomXmlEventType fEventType;
     private final CustomXmlInputElement fRecordInputElement;
+    private final CustomXmlRecordParser fRecordParser;
     private BufferedRandomAccessFile fFile;
     private final String fTraceTypeId;
 
@@ -89,6 +82,7 @@ public class CustomXmlTrace extends TmfTrace implements ITmfPersistentlyIndexabl
         fDefinition = definition;
         fEventType = new CustomXmlEventType(fDefinition);
         fRecordInputElement = getRecordInputElement(fDefinition.rootInputElement);
+        fRecordParser = new CustomXmlRecordParser(fRecordInputElement);
         fTraceTypeId = buildTraceTypeId(definition.categoryName, definition.definitionName);
         setCacheSize(DEFAULT_CACHE_SIZE);
     }
@@ -256,16 +250,17 @@ public class CustomXmlTrace extends TmfTrace implements ITmfPersistentlyIndexabl
 
         CustomXmlEvent event = null;
         try {
-            // Below +1 for the <
-            if (fFile.getFilePointer() != (Long) context.getLocation().getLocationInfo() + 1) {
-                fFile.seek((Long) context.getLocation().getLocationInfo() + 1);
+            final long recordPos = (Long) context.getLocation().getLocationInfo();
+            if (fFile.getFilePointer() != recordPos) {
+                fFile.seek(recordPos);
             }
-            final StringBuffer elementBuffer = new StringBuffer("<"); //$NON-NLS-1$
-            readElement(elementBuffer, fFile);
-            final Element element = parseElementBuffer(elementBuffer);
+            /* The record is parsed while it is read from the file */
+            final CustomXmlRecordReader recordReader = new CustomXmlRecordReader(fFile);
+            final List<InputValue> values = fRecordParser.parse(recordReader);
+            final String record = recordReader.getRecord();
+            fFile.seek(recordPos + record.length());
 
-            event = extractEvent(element, fRecordInputElement);
-            ((StringBuffer) event.getContent().getValue()).append(elementBuffer);
+            event = extractEvent(values, record);
 
             long rawPos = fFile.getFilePointer();
             String line = fFile.getNextLine();
@@ -286,48 +281,19 @@ public class CustomXmlTrace extends TmfTrace implements ITmfPersistentlyIndexabl
         return event;
     }
 
-    private Element parseElementBuffer(final StringBuffer elementBuffer) {
-        try {
-            final DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-            final DocumentBuilder db = dbf.newDocumentBuilder();
-
-            // The following allows xml parsing without access to the dtd
-            final EntityResolver resolver = new EntityResolver() {
-                @Override
-                public InputSource resolveEntity(final String publicId, final String systemId) {
-                    final String empty = ""; //$NON-NLS-1$
-                    final ByteArrayInputStream bais = new ByteArrayInputStream(empty.getBytes());
-                    return new InputSource(bais);
-                }
-            };
-            db.setEntityResolver(resolver);
-
-            // The following catches xml parsing exceptions
-            db.setErrorHandler(new ErrorHandler() {
-                @Override
-                public void error(final SAXParseException saxparseexception) throws SAXException {
-                }
-
-                @Override
-                public void warning(final SAXParseException saxparseexception) throws SAXException {
-                }
-
-                @Override
-                public void fatalError(final SAXParseException saxparseexception) throws SAXException {
-                    throw saxparseexception;
-                }
-            });
-
-            final Document doc = db.parse(new ByteArrayInputStream(elementBuffer.toString().getBytes()));
-            return doc.getDocumentElement();
-        } catch (final ParserConfigurationException e) {
-            Activator.logError("Error parsing element buffer. File:" + getPath(), e); //$NON-NLS-1$
-        } catch (final SAXException e) {
-            Activator.logError("Error parsing element buffer. File:" + getPath(), e); //$NON-NLS-1$
-        } catch (final IOException e) {
-            Activator.logError("Error parsing element buffer. File: " + getPath(), e); //$NON-NLS-1$
+    private CustomXmlEvent extractEvent(final List<InputValue> values, final String record) {
+        final CustomXmlEvent event = new CustomXmlEvent(fDefinition, this, TmfTimestamp.ZERO, fEventType);
+        final StringBuffer content = new StringBuffer();
+        event.setContent(new CustomEventContent(event, content));
+        if (values != null) {
+            for (InputValue value : values) {
+                event.parseInput(value.getValue(), value.getInputName(), value.getInputAction(), value.getInputFormat());
+            }
+        } else {
+            Activator.logError("Error parsing element buffer. File: " + getPath()); //$NON-NLS-1$
         }
-        return null;
+        content.append(record);
+        return event;
     }
 
     private static int indexOfElement(String elementName, String line, int fromIndex) {
@@ -347,80 +313,6 @@ public class CustomXmlTrace extends TmfTrace implements ITmfPersistentlyIndexabl
         return index;
     }
 
-    private void readElement(final StringBuffer buffer, final RandomAccessFile raFile) {
-        try {
-            int numRead = 0;
-            boolean startTagClosed = false;
-            int i;
-            while ((i = raFile.read()) != -1) {
-                numRead++;
-                final char c = (char) i;
-                buffer.append(c);
-                if (c == '"') {
-                    readQuote(buffer, raFile, '"');
-                } else if (c == '\'') {
-                    readQuote(buffer, raFile, '\'');
-                } else if (c == '<') {
-                    readElement(buffer, raFile);
-                } else if (c == '/' && numRead == 1) {
-                    break; // found "</"
-                } else if (c == '-' && numRead == 3 && buffer.substring(buffer.length() - 3, buffer.length() - 1).equals("!-")) { //$NON-NLS-1$
-                    readComment(buffer, raFile); // found "<!--"
-                } else if (i == '>') {
-                    if (buffer.charAt(buffer.length() - 2) == '/') {
-                        break; // found "/>"
-                    } else if (startTagClosed) {
-                        break; // found "<...>...</...>"
-                    }
-                    else {
-                        startTagClosed = true; // found "<...>"
-                    }
-                }
-            }
-            return;
-        } catch (final IOException e) {
-            return;
-        }
-    }
-
-    private static void readQuote(final StringBuffer buffer,
-            final RandomAccessFile raFile, final char eq) {
-        try {
-            int i;
-            while ((i = raFile.read()) != -1) {
-                final char c = (char) i;
-                buffer.append(c);
-                if (c == eq)
-                {
-                    break; // found matching end-quote
-                }
-            }
-            return;
-        } catch (final IOException e) {
-            return;
-        }
-    }
-
-    private static void readComment(final StringBuffer buffer,
-            final RandomAccessFile raFile) {
-        try {
-            int numRead = 0;
-            int i;
-            while ((i = raFile.read()) != -1) {
-                numRead++;
-                final char c = (char) i;
-                buffer.append(c);
-                if (c == '>' && numRead >= 2 && buffer.substring(buffer.length() - 3, buffer.length() - 1).equals("--")) //$NON-NLS-1$
-                {
-                    break; // found "-->"
-                }
-            }
-            return;
-        } catch (final IOException e) {
-            return;
-        }
-    }
-
     /**
      * Parse an XML element.
      *
@@ -554,14 +446,13 @@ public class CustomXmlTrace extends TmfTrace implements ITmfPersistentlyIndexabl
             while ((line != null) && (lineCount++ < MAX_LINES)) {
                 final int idx = indexOfElement(fRecordInputElement.getElementName(), line, 0);
                 if (idx != -1) {
-                    rafile.seek(rawPos + idx + 1); // +1 is for the <
-                    final StringBuffer elementBuffer = new StringBuffer("<"); //$NON-NLS-1$
-                    readElement(elementBuffer, rafile);
-                    final Element element = parseElementBuffer(elementBuffer);
-                    if (element != null) {
+                    rafile.seek(rawPos + idx);
+                    final CustomXmlRecordReader recordReader = new CustomXmlRecordReader(rafile);
+                    if (fRecordParser.parse(recordReader) != null) {
                         rafile.close();
                         return new TraceValidationStatus(CONFIDENCE, Activator.PLUGIN_ID);
                     }
+                    rafile.seek(rawPos + idx + recordReader.getRecord().length());
                 }
                 rawPos = rafile.getFilePointer();
                 line = rafile.getNextLine();
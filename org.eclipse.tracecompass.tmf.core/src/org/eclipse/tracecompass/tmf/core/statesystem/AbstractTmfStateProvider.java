@@ -14,6 +14,9 @@ package org.eclipse.tracecompass.tmf.core.statesystem;
 
 import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 
@@ -23,9 +26,9 @@ import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystemBuilder;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 import org.eclipse.tracecompass.tmf.core.event.TmfEvent;
-import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTraceWithEventTypeIds;
 
 /**
  * Instead of using IStateChangeInput directly, one can extend this class, which
@@ -37,12 +40,27 @@ import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
  * processEvent() is replaced with eventHandle(), so that all the multi-thread
  * logic is abstracted away.
  *
+ * Providers that handle events according to their type can use
+ * {@link #getEventTypeIndex(ITmfEvent)} to get an index of their choice for
+ * each event type, instead of comparing event type names for every event.
+ *
  * @author Alexandre Montplaisir
  */
 public abstract class AbstractTmfStateProvider implements ITmfStateProvider {
 
     private static final int DEFAULT_EVENTS_QUEUE_SIZE = 10000;
 
+    /**
+     * The event type index of the event types that the provider does not
+     * handle
+     *
+     * @since 1.0
+     */
+    protected static final int NO_EVENT_TYPE_INDEX = -1;
+
+    /* Event type index of the IDs that were not resolved yet */
+    private static final int UNRESOLVED_EVENT_TYPE_INDEX = -2;
+
     private final ITmfTrace fTrace;
     private final BlockingQueue<ITmfEvent> fEventsQueue;
     private final Thread fEventHandlerThread;
@@ -52,6 +70,15 @@ public abstract class AbstractTmfStateProvider implements ITmfStateProvider {
     /** State system in which to insert the state changes */
     private @Nullable ITmfStateSystemBuilder fSS = null;
 
+    /*
+     * The event type indexes of each trace, by event type ID. They are only
+     * used by the event handler thread. The table of the last trace is kept
+     * aside, since the events of a trace usually follow each other.
+     */
+    private final Map<ITmfTrace, int[]> fEventTypeIndexes = new IdentityHashMap<>();
+    private @Nullable ITmfTrace fLastTrace = null;
+    private int[] fLastEventTypeIndexes = new int[0];
+
     /**
      * Instantiate a new state provider plugin.
      *
@@ -84,7 +111,7 @@ public abstract class AbstractTmfStateProvider implements ITmfStateProvider {
 
     @Override
     public long getStartTime() {
-        return fTrace.getStartTime().normalize(0, ITmfTimestamp.NANOSECOND_SCALE).getValue();
+        return fTrace.getStartTime().toNanos();
     }
 
     @Override
@@ -148,6 +175,84 @@ public abstract class AbstractTmfStateProvider implements ITmfStateProvider {
         }
     }
 
+    // ------------------------------------------------------------------------
+    // Event type dispatch
+    // ------------------------------------------------------------------------
+
+    /**
+     * Get the index that the provider gave to the type of an event, with
+     * {@link #resolveEventTypeIndex(String)}.
+     * <p>
+     * If the trace of the event assigns IDs to its event types, the index of
+     * each type is resolved only once per trace and then found in an array,
+     * so the name of the event type is not needed. For other traces, the
+     * index is resolved for each event.
+     * <p>
+     * This method must only be called from {@link #eventHandle(ITmfEvent)}.
+     *
+     * @param event
+     *            The event
+     * @return The index of the type of the event, or
+     *         {@link #NO_EVENT_TYPE_INDEX} if the provider does not handle it
+     * @since 1.0
+     */
+    protected final int getEventTypeIndex(ITmfEvent event) {
+        ITmfTrace trace = event.getTrace();
+        if (!(trace instanceof ITmfTraceWithEventTypeIds)) {
+            return resolveEventTypeIndex(event.getType().getName());
+        }
+        int id = ((ITmfTraceWithEventTypeIds) trace).getEventTypeId(event);
+        if (id < 0) {
+            return resolveEventTypeIndex(event.getType().getName());
+        }
+        int[] indexes = fLastEventTypeIndexes;
+        if (trace != fLastTrace) {
+            indexes = fEventTypeIndexes.get(trace);
+            if (indexes == null) {
+                indexes = new int[0];
+            }
+            fLastTrace = trace;
+            fLastEventTypeIndexes = indexes;
+        }
+        if (id < indexes.length && indexes[id] != UNRESOLVED_EVENT_TYPE_INDEX) {
+            return indexes[id];
+        }
+        return resolveEventTypeId((ITmfTraceWithEventTypeIds) trace, id, event);
+    }
+
+    private int resolveEventTypeId(ITmfTraceWithEventTypeIds trace, int id, ITmfEvent event) {
+        int[] indexes = fLastEventTypeIndexes;
+        if (id >= indexes.length) {
+            int oldLength = indexes.length;
+            indexes = Arrays.copyOf(indexes, Math.max(id + 1, oldLength * 2));
+            Arrays.fill(indexes, oldLength, indexes.length, UNRESOLVED_EVENT_TYPE_INDEX);
+            fEventTypeIndexes.put(trace, indexes);
+            fLastEventTypeIndexes = indexes;
+        }
+        String name = trace.getEventTypeName(id);
+        int index = resolveEventTypeIndex(name == null ? event.getType().getName() : name);
+        indexes[id] = index;
+        return index;
+    }
+
+    /**
+     * Give an index to an event type, for
+     * {@link #getEventTypeIndex(ITmfEvent)}. Providers that use event type
+     * indexes should override this method, which is called at least once per
+     * event type and trace. It should always return the same index for the
+     * same name.
+     *
+     * @param eventTypeName
+     *            The name of the event type
+     * @return The index of this event type, which must not be negative, or
+     *         {@link #NO_EVENT_TYPE_INDEX} if the provider does not handle it.
+     *         The default implementation returns {@link #NO_EVENT_TYPE_INDEX}.
+     * @since 1.0
+     */
+    protected int resolveEventTypeIndex(String eventTypeName) {
+        return NO_EVENT_TYPE_INDEX;
+    }
+
     // ------------------------------------------------------------------------
     // Special event types
     // ------------------------------------------------------------------------
@@ -219,7 +324,7 @@ public abstract class AbstractTmfStateProvider implements ITmfStateProvider {
         private void closeStateSystem() {
             ITmfEvent event = currentEvent;
             final long endTime = (event == null) ? 0 :
-                    event.getTimestamp().normalize(0, ITmfTimestamp.NANOSECOND_SCALE).getValue();
+                    event.getTimestamp().toNanos();
 
             if (fSS != null) {
                 fSS.closeHistory(endTime);
@@ -66,11 +66,17 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
 
     @Nullable private ITmfStateSystemBuilder fStateSystem;
     @Nullable private ITmfStateProvider fStateProvider;
+    private volatile int fStateProviderVersion = -1;
     @Nullable private IStateHistoryBackend fHtBackend;
     @Nullable private ITmfEventRequest fRequest;
     @Nullable private TmfTimeRange fTimeRange = null;
 
-    private int fNbRead = 0;
+    /**
+     * Rank of the next event to process. For traces that are still being
+     * written, each new request resumes at this rank instead of reading the
+     * whole trace again, and the history stays open for the appended events.
+     */
+    private long fNbRead = 0;
 
     /**
      * State system backend types
@@ -145,6 +151,30 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
         return getId() + EXTENSION;
     }
 
+    /**
+     * Get the state provider that builds or built the state system of this
+     * analysis. It is null if the analysis was not executed yet, or if the
+     * state system was loaded from an existing history file.
+     *
+     * @return The state provider, or null
+     * @since 1.0
+     */
+    protected @Nullable ITmfStateProvider getStateProvider() {
+        return fStateProvider;
+    }
+
+    /**
+     * Get the version of the state provider of this analysis, without creating
+     * a new state provider.
+     *
+     * @return The version of the state provider, or -1 if the analysis was
+     *         not executed yet
+     * @since 1.0
+     */
+    protected int getStateProviderVersion() {
+        return fStateProviderVersion;
+    }
+
     /**
      * Get the state system generated by this analysis, or null if it is not yet
      * created.
@@ -175,6 +205,7 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
     protected boolean executeAnalysis(@Nullable final  IProgressMonitor monitor) {
         IProgressMonitor mon = (monitor == null ? new NullProgressMonitor() : monitor);
         final ITmfStateProvider provider = createStateProvider();
+        fStateProviderVersion = provider.getVersion();
 
         String id = getId();
 
@@ -443,7 +474,7 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
         private final ITmfStateProvider sci;
         private final ITmfTrace trace;
 
-        public StateSystemEventRequest(ITmfStateProvider sp, TmfTimeRange timeRange, int index) {
+        public StateSystemEventRequest(ITmfStateProvider sp, TmfTimeRange timeRange, long index) {
             super(ITmfEvent.class,
                     timeRange,
                     index,
@@ -478,7 +509,19 @@ public abstract class TmfStateSystemAnalysisModule extends TmfAbstractAnalysisMo
         public void handleSuccess() {
             super.handleSuccess();
             if (isCompleteTrace(trace)) {
-                disposeProvider(false);
+                if (getRange().equals(TmfTimeRange.ETERNITY)) {
+                    disposeProvider(false);
+                } else {
+                    /*
+                     * The trace stopped growing while this request was
+                     * running: consume what is left, then close the history.
+                     */
+                    fNbRead += getNbRead();
+                    synchronized (fRequestSyncObj) {
+                        fTimeRange = TmfTimeRange.ETERNITY;
+                        startRequest();
+                    }
+                }
             } else {
                 fNbRead += getNbRead();
                 synchronized (fRequestSyncObj) {
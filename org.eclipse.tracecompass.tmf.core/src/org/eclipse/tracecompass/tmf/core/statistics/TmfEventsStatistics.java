@@ -33,7 +33,7 @@ import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
  * retrieve its information.
  *
  * There is almost no setup time, but queries themselves are longer than with a
- * TmfStateStatistics. Queries are O(n * m), where n is the size of the trace,
+ * TmfStatisticsStore. Queries are O(n * m), where n is the size of the trace,
  * and m is the portion of the trace covered by the selected interval.
  *
  * @author Alexandre Montplaisir
@@ -36,7 +36,11 @@ import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
  * the time interval selected.
  *
  * @author Alexandre Montplaisir
+ * @deprecated The statistics are not stored in state systems anymore, use
+ *             the {@link TmfStatisticsStore} of
+ *             {@link TmfStatisticsModule#getStatistics()} instead.
  */
+@Deprecated
 public class TmfStateStatistics implements ITmfStatistics {
 
     // ------------------------------------------------------------------------
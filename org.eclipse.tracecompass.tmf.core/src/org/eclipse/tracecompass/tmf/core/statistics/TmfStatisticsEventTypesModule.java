@@ -26,7 +26,6 @@ import org.eclipse.tracecompass.tmf.core.statesystem.AbstractTmfStateProvider;
 import org.eclipse.tracecompass.tmf.core.statesystem.ITmfStateProvider;
 import org.eclipse.tracecompass.tmf.core.statesystem.TmfStateSystemAnalysisModule;
 import org.eclipse.tracecompass.tmf.core.statistics.TmfStateStatistics.Attributes;
-import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
 
 /**
@@ -36,7 +35,11 @@ import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
  * TmfAnalysisManager), as it is being handled by the TmfStatisticsModule.
  *
  * @author Alexandre Montplaisir
+ * @deprecated The {@link TmfStatisticsModule} does not use this state system
+ *             anymore, its statistics are kept in a
+ *             {@link TmfStatisticsStore}.
  */
+@Deprecated
 public class TmfStatisticsEventTypesModule extends TmfStateSystemAnalysisModule {
 
     /**
@@ -123,7 +126,7 @@ public class TmfStatisticsEventTypesModule extends TmfStateSystemAnalysisModule
 
             /* Since this can be used for any trace types, normalize all the
              * timestamp values to nanoseconds. */
-            final long ts = event.getTimestamp().normalize(0, ITmfTimestamp.NANOSECOND_SCALE).getValue();
+            final long ts = event.getTimestamp().toNanos();
 
             final String eventName = event.getType().getName();
 
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2013, 2014 Ericsson
+ * Copyright (c) 2013, 2015 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -12,23 +12,40 @@
 
 package org.eclipse.tracecompass.tmf.core.statistics;
 
-import java.util.LinkedList;
-import java.util.List;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
 import java.util.concurrent.CountDownLatch;
 
 import org.eclipse.core.runtime.IProgressMonitor;
-import org.eclipse.core.runtime.IStatus;
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.internal.tmf.core.Activator;
 import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
 import org.eclipse.tracecompass.tmf.core.analysis.TmfAbstractAnalysisModule;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.event.ITmfLostEvent;
 import org.eclipse.tracecompass.tmf.core.exceptions.TmfAnalysisException;
+import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest;
+import org.eclipse.tracecompass.tmf.core.request.TmfEventRequest;
 import org.eclipse.tracecompass.tmf.core.statesystem.ITmfAnalysisModuleWithStateSystems;
-import org.eclipse.tracecompass.tmf.core.statesystem.TmfStateSystemAnalysisModule;
+import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTraceCompleteness;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
+import org.eclipse.tracecompass.tmf.core.trace.experiment.TmfExperiment;
 
 /**
  * Analysis module to compute the statistics of a trace.
+ * <p>
+ * The statistics are computed in a single pass on the trace, into a
+ * {@link TmfStatisticsStore} saved in the trace's supplementary files.
+ * <p>
+ * Since 1.0, this module does not build state systems anymore: it still
+ * implements {@link ITmfAnalysisModuleWithStateSystems} for compatibility,
+ * but has no state system. The statistics are read with
+ * {@link #getStatistics()}.
  *
  * @author Alexandre Montplaisir
  */
@@ -38,11 +55,16 @@ public class TmfStatisticsModule extends TmfAbstractAnalysisModule
     /** ID of this analysis module */
     public static final @NonNull String ID = "org.eclipse.linuxtools.tmf.core.statistics.analysis"; //$NON-NLS-1$
 
+    /** Extension of the statistics supplementary file */
+    private static final String EXTENSION = ".stats"; //$NON-NLS-1$
+
+    /** Delay before reading a trace that is still being written again */
+    private static final long LIVE_READ_DELAY = 500;
+
     /** The trace's statistics */
-    private ITmfStatistics fStatistics = null;
+    private TmfStatisticsStore fStatistics = null;
 
-    private final TmfStateSystemAnalysisModule totalsModule = new TmfStatisticsTotalsModule();
-    private final TmfStateSystemAnalysisModule eventTypesModule = new TmfStatisticsEventTypesModule();
+    private volatile ITmfEventRequest fRequest = null;
 
     private final CountDownLatch fInitialized = new CountDownLatch(1);
 
@@ -72,39 +94,36 @@ public class TmfStatisticsModule extends TmfAbstractAnalysisModule
         } catch (InterruptedException e) {}
     }
 
+    /**
+     * Block the calling thread until the statistics are completely built, or
+     * until the analysis is cancelled. The statistics can be queried while
+     * they are being built, for the part of the trace that was already read.
+     *
+     * @param timeout
+     *            The maximum time to wait, in milliseconds
+     * @return true if the statistics are complete or cancelled, false if the
+     *         timeout expired before
+     * @since 1.0
+     */
+    public boolean waitUntilBuilt(long timeout) {
+        TmfStatisticsStore stats = fStatistics;
+        if (stats == null) {
+            return true;
+        }
+        return stats.waitUntilBuilt(timeout);
+    }
+
     // ------------------------------------------------------------------------
     // TmfAbstractAnalysisModule
     // ------------------------------------------------------------------------
 
     @Override
     public void dispose() {
-        /*
-         * The sub-analyses are not registered to the trace directly, so we need
-         * to tell them when the trace is disposed.
-         */
         super.dispose();
-        totalsModule.dispose();
-        eventTypesModule.dispose();
-    }
-
-    @Override
-    public boolean setTrace(ITmfTrace trace) throws TmfAnalysisException {
-        if (!super.setTrace(trace)) {
-            return false;
-        }
-
-        /*
-         * Since these sub-analyzes are not built from an extension point, we
-         * have to assign the trace ourselves. Very important to do so before
-         * calling schedule()!
-         */
-        if (!totalsModule.setTrace(trace)) {
-            return false;
-        }
-        if (!eventTypesModule.setTrace(trace)) {
-            return false;
+        TmfStatisticsStore stats = fStatistics;
+        if (stats != null) {
+            stats.dispose();
         }
-        return true;
     }
 
     @Override
@@ -116,38 +135,49 @@ public class TmfStatisticsModule extends TmfAbstractAnalysisModule
             return false;
         }
 
-        IStatus status1 = totalsModule.schedule();
-        IStatus status2 = eventTypesModule.schedule();
-        if (!(status1.isOK() && status2.isOK())) {
-            cancelSubAnalyses();
-            fInitialized.countDown();
-            return false;
-        }
-
-        /* Wait until the two modules are initialized */
-        totalsModule.waitForInitialization();
-        eventTypesModule.waitForInitialization();
-
-        ITmfStateSystem totalsSS = totalsModule.getStateSystem();
-        ITmfStateSystem eventTypesSS = eventTypesModule.getStateSystem();
-
-        if (totalsSS == null || eventTypesSS == null) {
-            /* This analysis was cancelled in the meantime */
-            fInitialized.countDown();
-            return false;
-        }
-
-        fStatistics = new TmfStateStatistics(totalsSS, eventTypesSS);
+        File file = new File(TmfTraceManager.getSupplementaryFileDir(trace) + getId() + EXTENSION);
+        TmfStatisticsStore stats = new TmfStatisticsStore(file, new TraceReader(trace));
+        fStatistics = stats;
 
         /* fStatistics is now set, consider this module initialized */
         fInitialized.countDown();
 
+        if (stats.isBuilt()) {
+            return true;
+        }
+
         /*
-         * The rest of this "execute" will encompass the "execute" of the two
-         * sub-analyzes.
+         * Read the whole trace once. A trace that is still being written is
+         * read again from the last event read, until it is complete.
          */
-        if (!(totalsModule.waitForCompletion(monitor) &&
-                eventTypesModule.waitForCompletion(monitor))) {
+        long nbRead = 0;
+        boolean complete;
+        do {
+            complete = isCompleteTrace(trace);
+            StatisticsRequest request = new StatisticsRequest(trace, stats, nbRead);
+            fRequest = request;
+            trace.sendRequest(request);
+            try {
+                request.waitForCompletion();
+                if (request.isCancelled() || request.isFailed() || monitor.isCanceled()) {
+                    stats.dispose();
+                    return false;
+                }
+                nbRead += request.getNbRead();
+                if (!complete && request.getNbRead() == 0) {
+                    Thread.sleep(LIVE_READ_DELAY);
+                }
+            } catch (InterruptedException e) {
+                stats.dispose();
+                return false;
+            }
+        } while (!complete);
+
+        try {
+            stats.finish();
+        } catch (IOException e) {
+            Activator.logError("Error writing statistics file " + file, e); //$NON-NLS-1$
+            stats.dispose();
             return false;
         }
         return true;
@@ -155,11 +185,10 @@ public class TmfStatisticsModule extends TmfAbstractAnalysisModule
 
     @Override
     protected void canceling() {
-        /*
-         * FIXME The "right" way to cancel state system construction is not
-         * available yet...
-         */
-        cancelSubAnalyses();
+        ITmfEventRequest request = fRequest;
+        if ((request != null) && (!request.isCompleted())) {
+            request.cancel();
+        }
 
         ITmfStatistics stats = fStatistics;
         if (stats != null) {
@@ -167,32 +196,123 @@ public class TmfStatisticsModule extends TmfAbstractAnalysisModule
         }
     }
 
-    private void cancelSubAnalyses() {
-        totalsModule.cancel();
-        eventTypesModule.cancel();
+    private static boolean isCompleteTrace(ITmfTrace trace) {
+        return !(trace instanceof ITmfTraceCompleteness) || ((ITmfTraceCompleteness) trace).isComplete();
+    }
+
+    /**
+     * Event request adding the events of the trace to the statistics
+     */
+    private static class StatisticsRequest extends TmfEventRequest {
+
+        private final ITmfTrace fTrace;
+        private final TmfStatisticsStore fStats;
+        private final long fIndex;
+
+        public StatisticsRequest(ITmfTrace trace, TmfStatisticsStore stats, long index) {
+            super(ITmfEvent.class,
+                    TmfTimeRange.ETERNITY,
+                    index,
+                    ITmfEventRequest.ALL_DATA,
+                    ITmfEventRequest.ExecutionType.BACKGROUND);
+            fTrace = trace;
+            fStats = stats;
+            fIndex = index;
+        }
+
+        @Override
+        public void handleData(final ITmfEvent event) {
+            super.handleData(event);
+            if (!isFromTrace(fTrace, event)) {
+                return;
+            }
+
+            /*
+             * Since this can be used for any trace types, normalize all the
+             * timestamp values to nanoseconds.
+             */
+            final long ts = event.getTimestamp().toNanos();
+            final String eventName = event.getType().getName();
+
+            if (event instanceof ITmfLostEvent) {
+                fStats.addLostEvents(ts, eventName, ((ITmfLostEvent) event).getNbLostEvents());
+            } else {
+                /* The rank of this event in the trace */
+                fStats.addEvent(fIndex + getNbRead() - 1, ts, eventName);
+            }
+        }
+    }
+
+    /**
+     * Reader of the events counted by the statistics, from the trace
+     */
+    private static class TraceReader implements TmfStatisticsStore.IEventReader {
+
+        private final ITmfTrace fTrace;
+
+        public TraceReader(ITmfTrace trace) {
+            fTrace = trace;
+        }
+
+        @Override
+        public int read(long rank, long[] times, String[] types) {
+            ITmfContext context = fTrace.seekEvent(rank);
+            try {
+                int nb = 0;
+                while (nb < times.length) {
+                    ITmfEvent event = fTrace.getNext(context);
+                    if (event == null) {
+                        break;
+                    }
+                    if (event instanceof ITmfLostEvent || !isFromTrace(fTrace, event)) {
+                        continue;
+                    }
+                    times[nb] = event.getTimestamp().toNanos();
+                    types[nb] = event.getType().getName();
+                    nb++;
+                }
+                return nb;
+            } finally {
+                context.dispose();
+            }
+        }
+    }
+
+    private static boolean isFromTrace(ITmfTrace trace, ITmfEvent event) {
+        if (event.getTrace() == trace) {
+            return true;
+        }
+        if (trace instanceof TmfExperiment) {
+            /*
+             * If the request is for an experiment, check if the event is from
+             * one of the child trace
+             */
+            for (ITmfTrace childTrace : ((TmfExperiment) trace).getTraces()) {
+                if (childTrace == event.getTrace()) {
+                    return true;
+                }
+            }
+        }
+        return false;
     }
 
     // ------------------------------------------------------------------------
-    // ITmfStateSystemAnalysisModule
+    // ITmfAnalysisModuleWithStateSystems
     // ------------------------------------------------------------------------
 
+    /*
+     * The statistics are not stored in state systems anymore, see
+     * TmfStatisticsTotalsModule and TmfStatisticsEventTypesModule for the
+     * deprecated state system based statistics.
+     */
+
     @Override
-    public ITmfStateSystem getStateSystem(String id) {
-        switch (id) {
-        case TmfStatisticsTotalsModule.ID:
-            return totalsModule.getStateSystem();
-        case TmfStatisticsEventTypesModule.ID:
-            return eventTypesModule.getStateSystem();
-        default:
-            return null;
-        }
+    public @Nullable ITmfStateSystem getStateSystem(String id) {
+        return null;
     }
 
     @Override
     public Iterable<ITmfStateSystem> getStateSystems() {
-        List<ITmfStateSystem> list = new LinkedList<>();
-        list.add(totalsModule.getStateSystem());
-        list.add(eventTypesModule.getStateSystem());
-        return list;
+        return Collections.<ITmfStateSystem> emptyList();
     }
 }
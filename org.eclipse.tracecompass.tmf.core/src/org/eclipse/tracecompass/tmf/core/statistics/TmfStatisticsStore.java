@@ -0,0 +1,813 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.statistics;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.tracecompass.internal.tmf.core.Activator;
+
+/**
+ * Statistics back-end that keeps prefix sums of the events of a trace, and
+ * saves them in a file.
+ * <p>
+ * The events are added in time order, and grouped in blocks of
+ * {@link #SAMPLE_INTERVAL} events. For each block, the rank of its first
+ * event and the timestamps of its first and last events are kept, so that the
+ * number of events before any time is found with a binary search on the
+ * blocks. Only when the time falls inside a block, the events of that block
+ * are read back from the trace with an {@link IEventReader}, and the most
+ * recently read blocks are cached. Every {@link #SNAPSHOT_INTERVAL} events, a
+ * snapshot of the cumulative count of each event type is taken, so that the
+ * count per type before any event is a snapshot plus the types of at most
+ * {@link #SNAPSHOT_INTERVAL} events read back from the trace.
+ * <p>
+ * A snapshot only keeps the types whose count changed since the previous one.
+ * A full copy of the counts is kept when the changes since the last copy
+ * outnumber the event types, so the copies never take more memory than the
+ * changes, and rebuilding a snapshot applies fewer changes than there are
+ * types. With many event types, the memory then grows with the number of
+ * types seen in each interval, not with the total number of types.
+ * <p>
+ * The counts are exact at the nanosecond resolution, whatever the length of
+ * the trace. Lost events are counted in their event type, but not in the
+ * total number of events.
+ * <p>
+ * Nothing is stored per event: once complete, the file contains the blocks,
+ * the snapshots, the event type names and the lost events, so its size is
+ * about 24 bytes per {@link #SAMPLE_INTERVAL} events. A complete file is
+ * reopened directly, instead of reading the trace again.
+ *
+ * @since 1.0
+ */
+public class TmfStatisticsStore implements ITmfStatistics {
+
+    /**
+     * Reads back the events of a trace that were added to a store, to count
+     * the events of a block exactly.
+     */
+    public interface IEventReader {
+        /**
+         * Read the events that were added with
+         * {@link TmfStatisticsStore#addEvent(long, long, String)}, in the same
+         * order, starting with the one added with a given rank. The lost
+         * events and the events that were not added are skipped.
+         *
+         * @param rank
+         *            The rank of the first event to read
+         * @param times
+         *            Receives the timestamp of each event, in nanoseconds
+         * @param types
+         *            Receives the event type name of each event
+         * @return The number of events read. It is less than the length of
+         *         the arrays only if the end of the trace was reached.
+         */
+        int read(long rank, long[] times, String[] types);
+    }
+
+    /** Number of events per block, each block has a sample */
+    private static final int SAMPLE_INTERVAL = 256;
+
+    /** Number of events between two snapshots of the counts per type */
+    private static final int SNAPSHOT_INTERVAL = 16 * SAMPLE_INTERVAL;
+
+    /** Number of blocks read back from the trace kept in memory */
+    private static final int CACHE_SIZE = 64;
+
+    private static final int MAGIC = 0x57A75E75;
+    private static final int VERSION = 2;
+    private static final int MAX_NAME_LENGTH = 1 << 20;
+    private static final Charset CHARSET_UTF8 = Charset.forName("UTF-8"); //$NON-NLS-1$
+
+    private final File fFile;
+    private final IEventReader fReader;
+
+    private final List<String> fTypeNames = new ArrayList<>();
+    private final Map<String, Integer> fTypeIndexes = new HashMap<>();
+
+    /* Samples of the blocks: rank, first and last timestamps */
+    private long[] fSampleRanks = new long[64];
+    private long[] fSamples = new long[64];
+    private long[] fSampleLastTimes = new long[64];
+    private long[] fTypeCounts = new long[16];
+
+    /* Snapshots of the counts per type, as changes since the previous one */
+    private int fNbSnapshots = 0;
+    private int[] fChangeStarts = new int[64];
+    private int[] fChangeTypes = new int[256];
+    private int[] fChangeCounts = new int[256];
+    private int fNbChanges = 0;
+    private long[] fSnapshotCounts = new long[16];
+
+    /* Full copies of the counts, and the snapshot of each of them */
+    private final List<long[]> fCopies = new ArrayList<>();
+    private int[] fCopySnapshots = new int[16];
+    private int fNbChangesAtCopy = 0;
+    private long fNbRecords = 0;
+    private long fLastTime = Long.MIN_VALUE;
+    private long fLastRecordTime = Long.MIN_VALUE;
+
+    /* The events of the last block, and of the blocks recently read back */
+    private Block fCurrentBlock = null;
+    private final Map<Integer, Block> fBlocks = new LinkedHashMap<Integer, Block>(CACHE_SIZE, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Block> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    /* Lost events, in time order */
+    private long[] fLostTimes = new long[16];
+    private int[] fLostTypes = new int[16];
+    private long[] fLostCounts = new long[16];
+    private int fNbLost = 0;
+
+    private final CountDownLatch fBuilt = new CountDownLatch(1);
+    private boolean fFinished = false;
+    private boolean fDisposed = false;
+
+    /** The timestamps and types of the events of a block */
+    private static final class Block {
+        private final long[] fTimes = new long[SAMPLE_INTERVAL];
+        private final int[] fTypes = new int[SAMPLE_INTERVAL];
+    }
+
+    /**
+     * Constructor. If the file contains complete statistics, they are loaded
+     * and this store is already built. Otherwise, the file is deleted and the
+     * statistics must be added with {@link #addEvent(long, long, String)} and
+     * {@link #addLostEvents(long, String, long)}, then completed with
+     * {@link #finish()}, which writes the file.
+     *
+     * @param file
+     *            The file in which to save the statistics
+     * @param reader
+     *            The reader of the events added to this store
+     */
+    public TmfStatisticsStore(File file, IEventReader reader) {
+        fFile = file;
+        fReader = reader;
+        boolean loaded = false;
+        if (file.length() > 0) {
+            try {
+                loaded = load();
+            } catch (IOException e) {
+                Activator.logWarning("Invalid statistics file " + file + ", rebuilding it", e); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+        }
+        if (loaded) {
+            fFinished = true;
+            fBuilt.countDown();
+        } else {
+            reset();
+            file.delete();
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Building
+    // ------------------------------------------------------------------------
+
+    /**
+     * Add an event. Events must be added in time order, an event earlier
+     * than the previous one is counted at the time of the previous one.
+     *
+     * @param rank
+     *            The rank of the event, from which the {@link IEventReader}
+     *            reads it back
+     * @param ts
+     *            The timestamp of the event, in nanoseconds
+     * @param type
+     *            The name of the event type
+     */
+    public synchronized void addEvent(long rank, long ts, String type) {
+        if (fFinished || fDisposed) {
+            return;
+        }
+        long time = Math.max(ts, fLastRecordTime);
+        int typeIndex = getTypeIndex(type);
+        int offset = (int) (fNbRecords % SAMPLE_INTERVAL);
+        if (offset == 0) {
+            fCurrentBlock = new Block();
+            addSample(rank, time);
+        }
+        fCurrentBlock.fTimes[offset] = time;
+        fCurrentBlock.fTypes[offset] = typeIndex;
+        if (offset == SAMPLE_INTERVAL - 1) {
+            fBlocks.put(getLastBlock(), fCurrentBlock);
+        }
+        indexRecord(time, typeIndex);
+    }
+
+    /**
+     * Add lost events. They are counted in their event type, but not in the
+     * total number of events.
+     *
+     * @param ts
+     *            The timestamp of the lost events, in nanoseconds
+     * @param type
+     *            The name of the event type
+     * @param nbLostEvents
+     *            The number of lost events
+     */
+    public synchronized void addLostEvents(long ts, String type, long nbLostEvents) {
+        if (fFinished || fDisposed) {
+            return;
+        }
+        addLost(Math.max(ts, fLastTime), getTypeIndex(type), nbLostEvents);
+    }
+
+    /**
+     * Complete the statistics, and write them to the file, from which the
+     * store can be reopened afterwards.
+     *
+     * @throws IOException
+     *             If the file couldn't be written
+     */
+    public synchronized void finish() throws IOException {
+        if (fFinished || fDisposed) {
+            return;
+        }
+        write();
+        fFinished = true;
+        fBuilt.countDown();
+    }
+
+    /**
+     * Block the calling thread until the statistics are complete, or until
+     * this store is disposed.
+     *
+     * @param timeout
+     *            The maximum time to wait, in milliseconds
+     * @return true if the statistics are complete or disposed, false if the
+     *         timeout expired before
+     */
+    public boolean waitUntilBuilt(long timeout) {
+        try {
+            return fBuilt.await(timeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return true if the statistics are complete
+     */
+    public synchronized boolean isBuilt() {
+        return fFinished;
+    }
+
+    // ------------------------------------------------------------------------
+    // ITmfStatistics
+    // ------------------------------------------------------------------------
+
+    @Override
+    public synchronized void dispose() {
+        if (fDisposed) {
+            return;
+        }
+        fDisposed = true;
+        fCurrentBlock = null;
+        fBlocks.clear();
+        if (!fFinished) {
+            /* Incomplete statistics will be rebuilt from scratch */
+            fFile.delete();
+        }
+        fBuilt.countDown();
+    }
+
+    @Override
+    public synchronized List<Long> histogramQuery(long start, long end, int nb) {
+        final long[] counts = new long[nb];
+        if (fDisposed) {
+            return toList(counts);
+        }
+        final long increment = (end - start) / nb;
+        try {
+            /* One lookup per bucket border */
+            long prevTotal = countBefore(start);
+            long curTime = start + increment;
+            for (int i = 0; i < nb - 1; i++) {
+                long curTotal = countBefore(curTime);
+                counts[i] = curTotal - prevTotal;
+                prevTotal = curTotal;
+                curTime += increment;
+            }
+            /* The last bucket is stretched to include the end time */
+            counts[nb - 1] = countUpTo(end) - prevTotal;
+        } catch (IOException e) {
+            Activator.logError("Error reading back the events of statistics " + fFile, e); //$NON-NLS-1$
+        }
+        return toList(counts);
+    }
+
+    @Override
+    public synchronized long getEventsTotal() {
+        return fNbRecords;
+    }
+
+    @Override
+    public synchronized Map<String, Long> getEventTypesTotal() {
+        long[] counts = Arrays.copyOf(fTypeCounts, fTypeNames.size());
+        for (int i = 0; i < fNbLost; i++) {
+            counts[fLostTypes[i]] += fLostCounts[i];
+        }
+        return toMap(counts);
+    }
+
+    @Override
+    public synchronized long getEventsInRange(long start, long end) {
+        if (fDisposed || end < start) {
+            return 0;
+        }
+        try {
+            return countUpTo(end) - countBefore(start);
+        } catch (IOException e) {
+            Activator.logError("Error reading back the events of statistics " + fFile, e); //$NON-NLS-1$
+            return 0;
+        }
+    }
+
+    @Override
+    public synchronized Map<String, Long> getEventTypesInRange(long start, long end) {
+        if (fDisposed || end < start) {
+            return new HashMap<>();
+        }
+        long[] counts = new long[fTypeNames.size()];
+        try {
+            long first = countBefore(start);
+            long last = countUpTo(end);
+            if (last - first <= SNAPSHOT_INTERVAL) {
+                /* Short range, count its records directly */
+                countTypes(first, last, counts);
+            } else {
+                long[] countsAtEnd = getTypeCountsBefore(last);
+                long[] countsAtStart = getTypeCountsBefore(first);
+                for (int i = 0; i < counts.length; i++) {
+                    counts[i] = countsAtEnd[i] - countsAtStart[i];
+                }
+            }
+        } catch (IOException e) {
+            Activator.logError("Error reading back the events of statistics " + fFile, e); //$NON-NLS-1$
+            return new HashMap<>();
+        }
+        for (int i = findFirstLost(start); i < fNbLost && fLostTimes[i] <= end; i++) {
+            counts[fLostTypes[i]] += fLostCounts[i];
+        }
+        return toMap(counts);
+    }
+
+    // ------------------------------------------------------------------------
+    // Queries
+    // ------------------------------------------------------------------------
+
+    /**
+     * Get the number of records with a timestamp strictly before a time.
+     */
+    private long countBefore(long time) throws IOException {
+        /* Find the last block that starts before the time */
+        int low = 0;
+        int high = getLastBlock();
+        int block = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (fSamples[mid] < time) {
+                block = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if (block < 0) {
+            return 0;
+        }
+        /*
+         * The records of the previous blocks are all before the time, and the
+         * ones of the following blocks are all at or after it.
+         */
+        long blockStart = (long) block * SAMPLE_INTERVAL;
+        int blockSize = (int) Math.min(SAMPLE_INTERVAL, fNbRecords - blockStart);
+        if (fSampleLastTimes[block] < time) {
+            return blockStart + blockSize;
+        }
+        long[] times = getBlock(block).fTimes;
+        low = 0;
+        high = blockSize;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (times[mid] < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return blockStart + low;
+    }
+
+    /**
+     * Get the number of records with a timestamp before or at a time.
+     */
+    private long countUpTo(long time) throws IOException {
+        if (time == Long.MAX_VALUE) {
+            return fNbRecords;
+        }
+        return countBefore(time + 1);
+    }
+
+    /**
+     * Get the cumulative count of each type for the records before an index.
+     */
+    private long[] getTypeCountsBefore(long index) throws IOException {
+        long[] counts = new long[fTypeNames.size()];
+        if (index == fNbRecords) {
+            System.arraycopy(fTypeCounts, 0, counts, 0, counts.length);
+            return counts;
+        }
+        int snapshot = (int) (index / SNAPSHOT_INTERVAL);
+        getSnapshotCounts(snapshot, counts);
+        countTypes((long) snapshot * SNAPSHOT_INTERVAL, index, counts);
+        return counts;
+    }
+
+    /**
+     * Get the counts per type of a snapshot: the last full copy at or before
+     * it, plus the changes of the snapshots since that copy.
+     */
+    private void getSnapshotCounts(int snapshot, long[] counts) {
+        int low = 0;
+        int high = fCopies.size() - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (fCopySnapshots[mid] <= snapshot) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        long[] copy = fCopies.get(low);
+        System.arraycopy(copy, 0, counts, 0, copy.length);
+        int first = fChangeStarts[fCopySnapshots[low] + 1];
+        int last = fChangeStarts[snapshot + 1];
+        for (int i = first; i < last; i++) {
+            counts[fChangeTypes[i]] += fChangeCounts[i];
+        }
+    }
+
+    /**
+     * Add the types of the records between two indexes to counts.
+     */
+    private void countTypes(long first, long last, long[] counts) throws IOException {
+        long index = first;
+        while (index < last) {
+            int block = (int) (index / SAMPLE_INTERVAL);
+            long blockStart = (long) block * SAMPLE_INTERVAL;
+            int end = (int) (Math.min(last, blockStart + SAMPLE_INTERVAL) - blockStart);
+            int[] types = getBlock(block).fTypes;
+            for (int i = (int) (index - blockStart); i < end; i++) {
+                counts[types[i]]++;
+            }
+            index = blockStart + end;
+        }
+    }
+
+    /**
+     * Get the events of a block: the last one is kept in memory while the
+     * store is built, the others are read back from the trace.
+     */
+    private Block getBlock(int block) throws IOException {
+        if (block == getLastBlock() && fCurrentBlock != null) {
+            return fCurrentBlock;
+        }
+        Block cached = fBlocks.get(block);
+        if (cached != null) {
+            return cached;
+        }
+        int blockSize = (int) Math.min(SAMPLE_INTERVAL, fNbRecords - (long) block * SAMPLE_INTERVAL);
+        long[] times = new long[blockSize];
+        String[] names = new String[blockSize];
+        if (fReader.read(fSampleRanks[block], times, names) < blockSize) {
+            throw new IOException("Events missing in the trace"); //$NON-NLS-1$
+        }
+        Block result = new Block();
+        /* Order the events as they were added */
+        long time = fSamples[block];
+        for (int i = 0; i < blockSize; i++) {
+            time = Math.max(time, times[i]);
+            Integer type = fTypeIndexes.get(names[i]);
+            if (type == null) {
+                throw new IOException("Unknown event type in the trace: " + names[i]); //$NON-NLS-1$
+            }
+            result.fTimes[i] = time;
+            result.fTypes[i] = type;
+        }
+        fBlocks.put(block, result);
+        return result;
+    }
+
+    private int getLastBlock() {
+        return (int) ((fNbRecords + SAMPLE_INTERVAL - 1) / SAMPLE_INTERVAL) - 1;
+    }
+
+    private int findFirstLost(long time) {
+        int low = 0;
+        int high = fNbLost;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (fLostTimes[mid] < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static List<Long> toList(long[] counts) {
+        List<Long> list = new ArrayList<>(counts.length);
+        for (long count : counts) {
+            list.add(count);
+        }
+        return list;
+    }
+
+    private Map<String, Long> toMap(long[] counts) {
+        Map<String, Long> map = new HashMap<>();
+        for (int i = 0; i < counts.length; i++) {
+            map.put(fTypeNames.get(i), counts[i]);
+        }
+        return map;
+    }
+
+    // ------------------------------------------------------------------------
+    // Helper methods
+    // ------------------------------------------------------------------------
+
+    private int getTypeIndex(String type) {
+        Integer index = fTypeIndexes.get(type);
+        if (index != null) {
+            return index;
+        }
+        int newIndex = fTypeNames.size();
+        fTypeNames.add(type);
+        fTypeIndexes.put(type, newIndex);
+        if (newIndex == fTypeCounts.length) {
+            fTypeCounts = Arrays.copyOf(fTypeCounts, newIndex * 2);
+        }
+        return newIndex;
+    }
+
+    /**
+     * Update the prefix sums with a new record.
+     */
+    private void indexRecord(long time, int typeIndex) {
+        if (fNbRecords % SNAPSHOT_INTERVAL == 0) {
+            takeSnapshot();
+        }
+        fTypeCounts[typeIndex]++;
+        fSampleLastTimes[(int) (fNbRecords / SAMPLE_INTERVAL)] = time;
+        fNbRecords++;
+        fLastTime = Math.max(fLastTime, time);
+        fLastRecordTime = time;
+    }
+
+    /**
+     * Start a new block.
+     */
+    private void addSample(long rank, long time) {
+        int sample = (int) (fNbRecords / SAMPLE_INTERVAL);
+        if (sample == fSamples.length) {
+            fSampleRanks = Arrays.copyOf(fSampleRanks, sample * 2);
+            fSamples = Arrays.copyOf(fSamples, sample * 2);
+            fSampleLastTimes = Arrays.copyOf(fSampleLastTimes, sample * 2);
+        }
+        fSampleRanks[sample] = rank;
+        fSamples[sample] = time;
+    }
+
+    /**
+     * Keep the counts per type before the next record, as the changes since
+     * the previous snapshot.
+     */
+    private void takeSnapshot() {
+        int nbTypes = fTypeNames.size();
+        if (fNbSnapshots + 1 >= fChangeStarts.length) {
+            fChangeStarts = Arrays.copyOf(fChangeStarts, fChangeStarts.length * 2);
+        }
+        if (fSnapshotCounts.length < nbTypes) {
+            fSnapshotCounts = Arrays.copyOf(fSnapshotCounts, fTypeCounts.length);
+        }
+        for (int type = 0; type < nbTypes; type++) {
+            long change = fTypeCounts[type] - fSnapshotCounts[type];
+            if (change != 0) {
+                if (fNbChanges == fChangeTypes.length) {
+                    fChangeTypes = Arrays.copyOf(fChangeTypes, fNbChanges * 2);
+                    fChangeCounts = Arrays.copyOf(fChangeCounts, fNbChanges * 2);
+                }
+                /* At most SNAPSHOT_INTERVAL events since the previous snapshot */
+                fChangeTypes[fNbChanges] = type;
+                fChangeCounts[fNbChanges] = (int) change;
+                fNbChanges++;
+                fSnapshotCounts[type] = fTypeCounts[type];
+            }
+        }
+        if (fCopies.isEmpty() || fNbChanges - fNbChangesAtCopy >= nbTypes) {
+            int nbCopies = fCopies.size();
+            if (nbCopies == fCopySnapshots.length) {
+                fCopySnapshots = Arrays.copyOf(fCopySnapshots, nbCopies * 2);
+            }
+            fCopySnapshots[nbCopies] = fNbSnapshots;
+            fCopies.add(Arrays.copyOf(fTypeCounts, nbTypes));
+            fNbChangesAtCopy = fNbChanges;
+        }
+        fNbSnapshots++;
+        fChangeStarts[fNbSnapshots] = fNbChanges;
+    }
+
+    private void addLost(long time, int typeIndex, long nbLostEvents) {
+        if (fNbLost == fLostTimes.length) {
+            fLostTimes = Arrays.copyOf(fLostTimes, fNbLost * 2);
+            fLostTypes = Arrays.copyOf(fLostTypes, fNbLost * 2);
+            fLostCounts = Arrays.copyOf(fLostCounts, fNbLost * 2);
+        }
+        fLostTimes[fNbLost] = time;
+        fLostTypes[fNbLost] = typeIndex;
+        fLostCounts[fNbLost] = nbLostEvents;
+        fNbLost++;
+        fLastTime = time;
+    }
+
+    private void reset() {
+        fTypeNames.clear();
+        fTypeIndexes.clear();
+        Arrays.fill(fTypeCounts, 0);
+        fNbSnapshots = 0;
+        fNbChanges = 0;
+        Arrays.fill(fSnapshotCounts, 0);
+        fCopies.clear();
+        fNbChangesAtCopy = 0;
+        fNbRecords = 0;
+        fLastTime = Long.MIN_VALUE;
+        fLastRecordTime = Long.MIN_VALUE;
+        fCurrentBlock = null;
+        fBlocks.clear();
+        fNbLost = 0;
+    }
+
+    /*
+     * File format: the magic number, the version and the number of records,
+     * then the number of types, and for each type the length and the UTF-8
+     * bytes of its name and its total count. Then for each block, its rank
+     * and its first and last timestamps. Then the number of snapshots, the
+     * start of the changes of each snapshot, and each change as a type and a
+     * count. Then the number of lost events, and for each of them its time,
+     * type and count. The file ends with the magic number again, so that a
+     * truncated file is detected.
+     */
+
+    private void write() throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(fNbRecords);
+            out.writeInt(fTypeNames.size());
+            for (int i = 0; i < fTypeNames.size(); i++) {
+                byte[] bytes = fTypeNames.get(i).getBytes(CHARSET_UTF8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+                out.writeLong(fTypeCounts[i]);
+            }
+            for (int i = 0; i <= getLastBlock(); i++) {
+                out.writeLong(fSampleRanks[i]);
+                out.writeLong(fSamples[i]);
+                out.writeLong(fSampleLastTimes[i]);
+            }
+            out.writeInt(fNbSnapshots);
+            for (int i = 0; i <= fNbSnapshots; i++) {
+                out.writeInt(fChangeStarts[i]);
+            }
+            for (int i = 0; i < fNbChanges; i++) {
+                out.writeInt(fChangeTypes[i]);
+                out.writeInt(fChangeCounts[i]);
+            }
+            out.writeInt(fNbLost);
+            for (int i = 0; i < fNbLost; i++) {
+                out.writeLong(fLostTimes[i]);
+                out.writeInt(fLostTypes[i]);
+                out.writeLong(fLostCounts[i]);
+            }
+            out.writeInt(MAGIC);
+        } catch (IOException e) {
+            fFile.delete();
+            throw e;
+        }
+    }
+
+    private boolean load() throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(fFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return false;
+            }
+            long nbRecords = in.readLong();
+            int nbTypes = in.readInt();
+            /* Each block takes 24 bytes in the file */
+            if (nbRecords < 0 || nbTypes < 0 || nbRecords / SAMPLE_INTERVAL > fFile.length() / 24) {
+                throw new IOException("Invalid statistics file header"); //$NON-NLS-1$
+            }
+            for (int i = 0; i < nbTypes; i++) {
+                byte[] bytes = new byte[checkSize(in.readInt(), MAX_NAME_LENGTH)];
+                in.readFully(bytes);
+                getTypeIndex(new String(bytes, CHARSET_UTF8));
+                fTypeCounts[i] = in.readLong();
+            }
+            if (fTypeNames.size() != nbTypes) {
+                throw new IOException("Duplicate event type in statistics file"); //$NON-NLS-1$
+            }
+
+            fNbRecords = nbRecords;
+            int nbBlocks = getLastBlock() + 1;
+            fSampleRanks = new long[Math.max(1, nbBlocks)];
+            fSamples = new long[fSampleRanks.length];
+            fSampleLastTimes = new long[fSampleRanks.length];
+            for (int i = 0; i < nbBlocks; i++) {
+                fSampleRanks[i] = in.readLong();
+                fSamples[i] = in.readLong();
+                fSampleLastTimes[i] = in.readLong();
+            }
+
+            /* The snapshots, and full copies of their counts from time to time */
+            fNbSnapshots = checkSize(in.readInt(), (int) ((nbRecords + SNAPSHOT_INTERVAL - 1) / SNAPSHOT_INTERVAL));
+            fChangeStarts = new int[fNbSnapshots + 1];
+            for (int i = 0; i <= fNbSnapshots; i++) {
+                fChangeStarts[i] = in.readInt();
+            }
+            fNbChanges = checkSize(fChangeStarts[fNbSnapshots], fNbSnapshots * nbTypes);
+            fChangeTypes = new int[Math.max(1, fNbChanges)];
+            fChangeCounts = new int[fChangeTypes.length];
+            fSnapshotCounts = new long[fTypeCounts.length];
+            for (int snapshot = 0; snapshot < fNbSnapshots; snapshot++) {
+                int first = fChangeStarts[snapshot];
+                int last = fChangeStarts[snapshot + 1];
+                if (first < 0 || first > last || last > fNbChanges) {
+                    throw new IOException("Invalid statistics snapshot"); //$NON-NLS-1$
+                }
+                for (int i = first; i < last; i++) {
+                    int type = checkSize(in.readInt(), nbTypes - 1);
+                    fChangeTypes[i] = type;
+                    fChangeCounts[i] = in.readInt();
+                    fSnapshotCounts[type] += fChangeCounts[i];
+                }
+                if (fCopies.isEmpty() || last - fNbChangesAtCopy >= nbTypes) {
+                    int nbCopies = fCopies.size();
+                    if (nbCopies == fCopySnapshots.length) {
+                        fCopySnapshots = Arrays.copyOf(fCopySnapshots, nbCopies * 2);
+                    }
+                    fCopySnapshots[nbCopies] = snapshot;
+                    fCopies.add(Arrays.copyOf(fSnapshotCounts, nbTypes));
+                    fNbChangesAtCopy = last;
+                }
+            }
+
+            int nbLost = checkSize(in.readInt(), Integer.MAX_VALUE);
+            for (int i = 0; i < nbLost; i++) {
+                long time = in.readLong();
+                int type = checkSize(in.readInt(), nbTypes - 1);
+                addLost(time, type, in.readLong());
+            }
+            if (in.readInt() != MAGIC || in.read() >= 0) {
+                throw new IOException("Invalid statistics file end"); //$NON-NLS-1$
+            }
+        }
+        return true;
+    }
+
+    private static int checkSize(int value, int max) throws IOException {
+        if (value < 0 || value > max) {
+            throw new IOException("Invalid statistics file"); //$NON-NLS-1$
+        }
+        return value;
+    }
+}
@@ -43,6 +43,21 @@ public interface ITmfTimestampTransform extends Serializable {
      */
     long transform(long timestamp);
 
+    /**
+     * Transforms timestamp values in place. The result is the same as calling
+     * {@link #transform(long)} on each value, but the transform can prepare
+     * its formula once for the whole range of values.
+     *
+     * @param timestamps
+     *            The timestamps to transform in nanoseconds
+     * @param offset
+     *            The index of the first timestamp to transform
+     * @param length
+     *            The number of timestamps to transform
+     * @since 1.0
+     */
+    void transform(long[] timestamps, int offset, int length);
+
     /**
      * Returns a timestamp transform that is the composition of two timestamp
      * transforms. Composed objects must be the same type.
@@ -118,7 +118,11 @@ public abstract class SynchronizationManager extends TmfComponent {
 
     private static SynchronizationAlgorithm synchronize(final File syncFile, final Collection<ITmfTrace> traces, SynchronizationAlgorithm syncAlgo) {
         ITmfEventMatching matching = new TmfEventMatching(traces, syncAlgo);
-        matching.matchEvents();
+        if (!matching.matchEvents()) {
+            /* Don't save a partial synchronization, it would be reused */
+            Activator.logError("Error while matching the events to synchronize the traces"); //$NON-NLS-1$
+            return syncAlgo;
+        }
 
         SynchronizationBackend syncBackend;
         try {
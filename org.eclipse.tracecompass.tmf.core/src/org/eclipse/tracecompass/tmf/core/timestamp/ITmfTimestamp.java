@@ -77,6 +77,18 @@ public interface ITmfTimestamp extends Comparable<ITmfTimestamp> {
      */
     int getScale();
 
+    /**
+     * Get the value of this timestamp in nanoseconds. Unlike
+     * {@link #normalize(long, int)}, this does not create a new timestamp, so
+     * it can be used on every event of a trace. The beginning and the end of
+     * time are returned as {@link Long#MIN_VALUE} and {@link Long#MAX_VALUE},
+     * and values that overflow are saturated to them.
+     *
+     * @return the timestamp value, in nanoseconds
+     * @since 1.0
+     */
+    long toNanos();
+
     // ------------------------------------------------------------------------
     // Operations
     // ------------------------------------------------------------------------
@@ -1,5 +1,5 @@
 /*******************************************************************************
- * Copyright (c) 2013, 2014 Ericsson
+ * Copyright (c) 2013, 2015 Ericsson
  *
  * All rights reserved. This program and the accompanying materials are
  * made available under the terms of the Eclipse Public License v1.0 which
@@ -48,7 +48,7 @@ public class TmfNanoTimestamp extends TmfTimestamp {
      *            The timestamp to copy
      */
     public TmfNanoTimestamp(final ITmfTimestamp timestamp) {
-        super(timestamp.normalize(0, ITmfTimestamp.NANOSECOND_SCALE).getValue(), ITmfTimestamp.NANOSECOND_SCALE);
+        super(timestamp.toNanos(), ITmfTimestamp.NANOSECOND_SCALE);
     }
 
     // ------------------------------------------------------------------------
@@ -58,23 +58,31 @@ public class TmfNanoTimestamp extends TmfTimestamp {
     @Override
     public ITmfTimestamp normalize(final long offset, final int scale) {
         if (scale == ITmfTimestamp.NANOSECOND_SCALE) {
+            if (offset == 0) {
+                return this;
+            }
             return new TmfNanoTimestamp(getValue() + offset);
         }
         return super.normalize(offset, scale);
     }
 
+    @Override
+    public long toNanos() {
+        return getValue();
+    }
+
     @Override
     public int compareTo(final ITmfTimestamp ts) {
-        if (ts instanceof TmfNanoTimestamp) {
-            final long delta = getValue() - ts.getValue();
-            return (delta == 0) ? 0 : (delta > 0) ? 1 : -1;
+        /* Any nanosecond timestamp is compared without normalization */
+        if (ts != null && ts.getScale() == ITmfTimestamp.NANOSECOND_SCALE) {
+            return Long.compare(getValue(), ts.getValue());
         }
         return super.compareTo(ts);
     }
 
     @Override
     public ITmfTimestamp getDelta(final ITmfTimestamp ts) {
-        if (ts instanceof TmfNanoTimestamp) {
+        if (ts.getScale() == ITmfTimestamp.NANOSECOND_SCALE) {
             return new TmfTimestampDelta(getValue() - ts.getValue(), ITmfTimestamp.NANOSECOND_SCALE);
         }
         return super.getDelta(ts);
@@ -93,6 +93,12 @@ public class TmfTimeRange {
      * @return True if [startTime] <= [ts] <= [endTime]
      */
     public boolean contains(final ITmfTimestamp ts) {
+        final int scale = ts.getScale();
+        if (fStartTime.getScale() == scale && fEndTime.getScale() == scale) {
+            /* Same scale, compare the raw values */
+            final long value = ts.getValue();
+            return (fStartTime.getValue() <= value) && (value <= fEndTime.getValue());
+        }
         return (fStartTime.compareTo(ts) <= 0) && (fEndTime.compareTo(ts) >= 0);
     }
 
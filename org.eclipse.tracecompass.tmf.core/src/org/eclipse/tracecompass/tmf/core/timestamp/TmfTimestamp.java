@@ -174,6 +174,27 @@ public class TmfTimestamp implements ITmfTimestamp {
         1000000000000000000L,
     };
 
+    @Override
+    public long toNanos() {
+        if (fScale == ITmfTimestamp.NANOSECOND_SCALE) {
+            return fValue;
+        }
+        if (fScale == BIG_BANG.getScale() && (fValue == Long.MIN_VALUE || fValue == Long.MAX_VALUE)) {
+            return fValue;
+        }
+        final int scaleDiff = fScale - ITmfTimestamp.NANOSECOND_SCALE;
+        if (scaleDiff < 0) {
+            return (-scaleDiff < scalingFactors.length) ? fValue / scalingFactors[-scaleDiff] : 0;
+        }
+        if (fValue == 0) {
+            return 0;
+        }
+        if (scaleDiff >= scalingFactors.length || Math.abs(fValue) > Long.MAX_VALUE / scalingFactors[scaleDiff]) {
+            return (fValue > 0) ? Long.MAX_VALUE : Long.MIN_VALUE;
+        }
+        return fValue * scalingFactors[scaleDiff];
+    }
+
     @Override
     public ITmfTimestamp normalize(final long offset, final int scale) {
 
@@ -240,9 +261,17 @@ public class TmfTimestamp implements ITmfTimestamp {
         if (ts == null) {
             return 1;
         }
-        if (this == ts || (fValue == ts.getValue() && fScale == ts.getScale())) {
+        if (this == ts) {
             return 0;
         }
+        /*
+         * Fast path for timestamps at the same scale, which also orders the
+         * big bang and the big crunch correctly since they have their own
+         * scale.
+         */
+        if (fScale == ts.getScale()) {
+            return Long.compare(fValue, ts.getValue());
+        }
         if ((fValue == BIG_BANG.getValue() && fScale == BIG_BANG.getScale()) || (ts.getValue() == BIG_CRUNCH.getValue() && ts.getScale() == BIG_CRUNCH.getScale())) {
             return -1;
         }
@@ -0,0 +1,52 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.trace;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+
+/**
+ * Interface for traces that assign dense integer IDs to the types of their
+ * events.
+ * <p>
+ * The IDs start at 0 and there is one ID per event type name in the trace, so
+ * they can be used as indexes in arrays. They are only valid for the trace
+ * that assigned them: the same event type can have a different ID in another
+ * trace.
+ *
+ * @since 1.0
+ */
+public interface ITmfTraceWithEventTypeIds extends ITmfTrace {
+
+    /**
+     * The ID returned for events whose type has no ID
+     */
+    int UNKNOWN_EVENT_TYPE_ID = -1;
+
+    /**
+     * Get the ID of the type of an event of this trace. This should be much
+     * cheaper than getting the name of the event type.
+     *
+     * @param event
+     *            The event, which must come from this trace
+     * @return The ID of the type of the event, or
+     *         {@link #UNKNOWN_EVENT_TYPE_ID} if it has none
+     */
+    int getEventTypeId(ITmfEvent event);
+
+    /**
+     * Get the name of the event type that has an ID
+     *
+     * @param id
+     *            An ID returned by {@link #getEventTypeId(ITmfEvent)}
+     * @return The name of the event type, or null if no event type has this ID
+     */
+    @Nullable String getEventTypeName(int id);
+}
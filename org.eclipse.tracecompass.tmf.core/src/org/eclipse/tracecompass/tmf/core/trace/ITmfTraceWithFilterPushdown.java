@@ -0,0 +1,48 @@
+/*******************************************************************************
+ * Copyright (c) 2015 Ericsson
+ *
+ * All rights reserved. This program and the accompanying materials are
+ * made available under the terms of the Eclipse Public License v1.0 which
+ * accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+
+package org.eclipse.tracecompass.tmf.core.trace;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
+import org.eclipse.tracecompass.tmf.core.filter.TmfFilterPushdown;
+
+/**
+ * Interface for traces that can skip the events rejected by a
+ * {@link TmfFilterPushdown} without building them.
+ * <p>
+ * Skipped events still count in the rank of the context, so that the ranks of
+ * the returned events are the same as when reading every event. To skip the
+ * beginning of the trace entirely, callers should first seek to the start time
+ * of the pushdown, which uses the trace index.
+ *
+ * @see TmfTraceUtils#getNext(ITmfTrace, ITmfContext, TmfFilterPushdown, long)
+ * @since 1.0
+ */
+public interface ITmfTraceWithFilterPushdown extends ITmfTrace {
+
+    /**
+     * Read the next event accepted by the pushdown, and advance the context
+     * past it. The rank of the returned event is the rank of the context
+     * minus one. No event is read at or after the end rank, so that the
+     * context is left at that rank if no event before it is accepted.
+     *
+     * @param context
+     *            The read context, updated by this method
+     * @param pushdown
+     *            The conditions the returned event must satisfy
+     * @param endRank
+     *            The rank of the first event not to read, or
+     *            {@link Long#MAX_VALUE} to read until the end of the trace
+     * @return The next accepted event, or null if there are no more. An
+     *         implementation may return null before the end of the trace if it
+     *         knows that no more events can be accepted.
+     */
+    @Nullable ITmfEvent getNext(ITmfContext context, TmfFilterPushdown pushdown, long endRank);
+}
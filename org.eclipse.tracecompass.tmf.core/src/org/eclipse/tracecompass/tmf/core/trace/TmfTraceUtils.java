@@ -12,14 +12,26 @@
 
 package org.eclipse.tracecompass.tmf.core.trace;
 
+import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
+
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.eclipse.jdt.annotation.NonNullByDefault;
 import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.tmf.core.analysis.IAnalysisModule;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 import org.eclipse.tracecompass.tmf.core.event.aspect.ITmfEventAspect;
+import org.eclipse.tracecompass.tmf.core.event.aspect.TmfCpuAspect;
+import org.eclipse.tracecompass.tmf.core.filter.TmfFilterPushdown;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.ITmfTraceIndexer;
+import org.eclipse.tracecompass.tmf.core.trace.indexer.checkpoint.TmfCheckpointIndexer;
+
+import com.google.common.collect.MapMaker;
 
 /**
  * Utility methods for ITmfTrace's.
@@ -29,6 +41,15 @@ import org.eclipse.tracecompass.tmf.core.event.aspect.ITmfEventAspect;
 @NonNullByDefault
 public final class TmfTraceUtils {
 
+    /*
+     * The event aspects of each trace, by aspect class. The aspects of a trace
+     * do not change once it is opened, so they are only looked up once per
+     * trace and aspect class instead of once per event. The traces are weakly
+     * referenced, so that disposed traces do not stay in memory.
+     */
+    private static final ConcurrentMap<ITmfTrace, ConcurrentMap<Class<?>, ITmfEventAspect[]>> RESOLVED_ASPECTS =
+            checkNotNull(new MapMaker().weakKeys().<ITmfTrace, ConcurrentMap<Class<?>, ITmfEventAspect[]>> makeMap());
+
     private TmfTraceUtils() {
     }
 
@@ -81,6 +102,10 @@ public final class TmfTraceUtils {
      * Return the first result of the first aspect that resolves as non null for
      * the event received in parameter. If the returned value is not null, it
      * can be safely cast to the aspect's class proper return type.
+     * <p>
+     * The aspects of the class are only looked up in the trace's
+     * {@link ITmfTrace#getEventAspects()} the first time, so they are expected
+     * not to change once the trace is opened.
      *
      * @param trace
      *            The trace for which you want the event aspects
@@ -94,14 +119,116 @@ public final class TmfTraceUtils {
      */
     public static @Nullable <T extends ITmfEventAspect> Object resolveEventAspectOfClassForEvent(
             ITmfTrace trace, Class<T> aspectClass, ITmfEvent event) {
-        Iterable<ITmfEventAspect> aspects = trace.getEventAspects();
-        for (ITmfEventAspect aspect : aspects) {
-            if (aspectClass.isAssignableFrom(aspect.getClass())) {
-                Object obj = aspect.resolve(event);
-                if (obj != null) {
-                    return obj;
+        for (ITmfEventAspect aspect : getEventAspectsOfClass(trace, aspectClass)) {
+            Object obj = aspect.resolve(event);
+            if (obj != null) {
+                return obj;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Return the CPU of an event, as resolved by the first CPU aspect of the
+     * trace that knows it. This is the same as resolving the
+     * {@link TmfCpuAspect} with
+     * {@link #resolveEventAspectOfClassForEvent(ITmfTrace, Class, ITmfEvent)},
+     * without boxing the result.
+     *
+     * @param trace
+     *            The trace for which you want the event aspects
+     * @param event
+     *            The event for which to get the CPU
+     * @return The CPU of the event, or {@link TmfCpuAspect#UNKNOWN_CPU} if no
+     *         aspect of the trace resolves it
+     * @since 1.0
+     */
+    public static int resolveCpuOfEvent(ITmfTrace trace, ITmfEvent event) {
+        for (ITmfEventAspect aspect : getEventAspectsOfClass(trace, TmfCpuAspect.class)) {
+            int cpu = ((TmfCpuAspect) aspect).resolveCpu(event);
+            if (cpu != TmfCpuAspect.UNKNOWN_CPU) {
+                return cpu;
+            }
+        }
+        return TmfCpuAspect.UNKNOWN_CPU;
+    }
+
+    private static ITmfEventAspect[] getEventAspectsOfClass(ITmfTrace trace, Class<?> aspectClass) {
+        ConcurrentMap<Class<?>, ITmfEventAspect[]> traceAspects = RESOLVED_ASPECTS.get(trace);
+        if (traceAspects == null) {
+            traceAspects = new ConcurrentHashMap<>();
+            ConcurrentMap<Class<?>, ITmfEventAspect[]> previous = RESOLVED_ASPECTS.putIfAbsent(trace, traceAspects);
+            if (previous != null) {
+                traceAspects = previous;
+            }
+        }
+        ITmfEventAspect[] aspects = traceAspects.get(aspectClass);
+        if (aspects == null) {
+            List<ITmfEventAspect> matching = new ArrayList<>();
+            for (ITmfEventAspect aspect : trace.getEventAspects()) {
+                if (aspectClass.isAssignableFrom(aspect.getClass())) {
+                    matching.add(aspect);
                 }
             }
+            aspects = matching.toArray(new ITmfEventAspect[matching.size()]);
+            traceAspects.put(aspectClass, aspects);
+        }
+        return aspects;
+    }
+
+    /**
+     * Get the number of events between two checkpoints of the index of a
+     * trace. It is the interval of the trace's checkpoint indexer, which can
+     * differ from the cache size of the trace, or the cache size if the trace
+     * has no checkpoint indexer.
+     *
+     * @param trace
+     *            The trace
+     * @return The checkpoint interval, at least 1
+     * @since 1.0
+     */
+    public static int getCheckpointInterval(ITmfTrace trace) {
+        int interval = trace.getCacheSize();
+        if (trace instanceof TmfTrace) {
+            ITmfTraceIndexer indexer = ((TmfTrace) trace).getIndexer();
+            if (indexer instanceof TmfCheckpointIndexer) {
+                interval = ((TmfCheckpointIndexer) indexer).getCheckpointInterval();
+            }
+        }
+        return Math.max(1, interval);
+    }
+
+    /**
+     * Read the next event of a trace that is accepted by a filter pushdown.
+     * Traces that implement {@link ITmfTraceWithFilterPushdown} skip the
+     * rejected events without building them, other traces are read normally
+     * and their events are checked afterwards.
+     *
+     * @param trace
+     *            The trace to read
+     * @param context
+     *            The read context, updated by this method
+     * @param pushdown
+     *            The conditions the returned event must satisfy
+     * @param endRank
+     *            The rank of the first event not to read, or
+     *            {@link Long#MAX_VALUE} to read until the end of the trace
+     * @return The next accepted event, or null if there are no more before
+     *         the end rank
+     * @since 1.0
+     */
+    public static @Nullable ITmfEvent getNext(ITmfTrace trace, ITmfContext context, TmfFilterPushdown pushdown, long endRank) {
+        if (pushdown.isEmpty()) {
+            return null;
+        }
+        if (trace instanceof ITmfTraceWithFilterPushdown) {
+            return ((ITmfTraceWithFilterPushdown) trace).getNext(context, pushdown, endRank);
+        }
+        while (context.getRank() < endRank) {
+            ITmfEvent event = trace.getNext(context);
+            if (event == null || pushdown.matches(event)) {
+                return event;
+            }
         }
         return null;
     }
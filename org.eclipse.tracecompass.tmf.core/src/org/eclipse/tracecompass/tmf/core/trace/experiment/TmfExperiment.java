@@ -403,7 +403,7 @@ public class TmfExperiment extends TmfTrace implements ITmfPersistentlyIndexable
 
             if (event != null) {
                 final ITmfTimestamp otherTS = event.getTimestamp();
-                if (otherTS.compareTo(timestamp) < 0) {
+                if (isBefore(otherTS, timestamp)) {
                     trace = i;
                     timestamp = otherTS;
                 }
@@ -433,6 +433,14 @@ public class TmfExperiment extends TmfTrace implements ITmfPersistentlyIndexable
         return event;
     }
 
+    private static boolean isBefore(ITmfTimestamp ts, ITmfTimestamp other) {
+        /* The children traces are usually at the same scale */
+        if (ts.getScale() == other.getScale()) {
+            return ts.getValue() < other.getValue();
+        }
+        return ts.compareTo(other) < 0;
+    }
+
     @Override
     public ITmfTimestamp getInitialRangeOffset() {
 
@@ -77,6 +77,12 @@ public class TmfCheckpointIndexer implements ITmfTraceIndexer {
      */
     private ITmfEventRequest fIndexingRequest = null;
 
+    /**
+     * Range of an index update received while the trace was being indexed. It
+     * is consumed by an incremental pass once the current request completes.
+     */
+    private TmfTimeRange fPendingRange = null;
+
     // ------------------------------------------------------------------------
     // Construction
     // ------------------------------------------------------------------------
@@ -104,6 +110,16 @@ public class TmfCheckpointIndexer implements ITmfTraceIndexer {
         fIsIndexing = false;
     }
 
+    /**
+     * Get the number of events between two checkpoints of this indexer
+     *
+     * @return The checkpoint interval
+     * @since 1.0
+     */
+    public int getCheckpointInterval() {
+        return fCheckpointInterval;
+    }
+
     /**
      * Creates the index instance. Classes extending this class
      * can override this to provide a different index implementation.
@@ -140,9 +156,14 @@ public class TmfCheckpointIndexer implements ITmfTraceIndexer {
     @Override
     public void buildIndex(final long offset, final TmfTimeRange range, final boolean waitForCompletion) {
 
-        // Don't do anything if we are already indexing
+        // Don't start another request if we are already indexing. For a
+        // growing trace, remember the new range so the appended events get
+        // indexed as soon as the current pass is done.
         synchronized (fTraceIndex) {
             if (fIsIndexing) {
+                if (!isCompleteTrace(fTrace)) {
+                    fPendingRange = range;
+                }
                 return;
             }
             fIsIndexing = true;
@@ -161,30 +182,14 @@ public class TmfCheckpointIndexer implements ITmfTraceIndexer {
             return;
         }
 
-        // The monitoring job
-        final Job job = new Job("Indexing " + fTrace.getName() + "...") { //$NON-NLS-1$ //$NON-NLS-2$
-            @Override
-            protected IStatus run(final IProgressMonitor monitor) {
-                monitor.beginTask("", IProgressMonitor.UNKNOWN); //$NON-NLS-1$
-                while (!monitor.isCanceled()) {
-                    try {
-                        long prevNbEvents = fTrace.getNbEvents();
-                        Thread.sleep(250);
-                        long nbEvents = fTrace.getNbEvents();
-                        setName(Messages.TmfCheckpointIndexer_Indexing + ' ' + fTrace.getName() + " (" + nbEvents + ")"); //$NON-NLS-1$ //$NON-NLS-2$
-                        // setName doesn't refresh the UI, setTaskName does
-                        long rate = (nbEvents - prevNbEvents) * 4;
-                        monitor.setTaskName(rate + " " + Messages.TmfCheckpointIndexer_EventsPerSecond); //$NON-NLS-1$
-                    } catch (final InterruptedException e) {
-                        return Status.OK_STATUS;
-                    }
-                }
-                monitor.done();
-                return Status.OK_STATUS;
-            }
-        };
-        job.setSystem(!isCompleteTrace(fTrace));
-        job.schedule();
+        // The monitoring job. Incremental passes over the newly appended events
+        // of a live trace resume from the last indexed rank, they do not need
+        // their own progress report.
+        final Job job = (offset == 0) ? createMonitoringJob() : null;
+        if (job != null) {
+            job.setSystem(!isCompleteTrace(fTrace));
+            job.schedule();
+        }
 
         // Build a background request for all the trace data. The index is
         // updated as we go by readNextEvent().
@@ -212,9 +217,20 @@ public class TmfCheckpointIndexer implements ITmfTraceIndexer {
 
             @Override
             public void handleCompleted() {
-                job.cancel();
+                if (job != null) {
+                    job.cancel();
+                }
                 super.handleCompleted();
-                fIsIndexing = false;
+                TmfTimeRange pendingRange;
+                synchronized (fTraceIndex) {
+                    fIsIndexing = false;
+                    pendingRange = fPendingRange;
+                    fPendingRange = null;
+                }
+                // Index the events appended while this request was running
+                if ((pendingRange != null) && !isCancelled()) {
+                    buildIndex(fTrace.getNbEvents(), pendingRange, false);
+                }
             }
 
             private void updateTraceStatus() {
@@ -234,6 +250,35 @@ public class TmfCheckpointIndexer implements ITmfTraceIndexer {
         }
     }
 
+    /**
+     * Create the job reporting the indexing progress of a full pass
+     *
+     * @return the monitoring job, not yet scheduled
+     */
+    private Job createMonitoringJob() {
+        return new Job("Indexing " + fTrace.getName() + "...") { //$NON-NLS-1$ //$NON-NLS-2$
+            @Override
+            protected IStatus run(final IProgressMonitor monitor) {
+                monitor.beginTask("", IProgressMonitor.UNKNOWN); //$NON-NLS-1$
+                while (!monitor.isCanceled()) {
+                    try {
+                        long prevNbEvents = fTrace.getNbEvents();
+                        Thread.sleep(250);
+                        long nbEvents = fTrace.getNbEvents();
+                        setName(Messages.TmfCheckpointIndexer_Indexing + ' ' + fTrace.getName() + " (" + nbEvents + ")"); //$NON-NLS-1$ //$NON-NLS-2$
+                        // setName doesn't refresh the UI, setTaskName does
+                        long rate = (nbEvents - prevNbEvents) * 4;
+                        monitor.setTaskName(rate + " " + Messages.TmfCheckpointIndexer_EventsPerSecond); //$NON-NLS-1$
+                    } catch (final InterruptedException e) {
+                        return Status.OK_STATUS;
+                    }
+                }
+                monitor.done();
+                return Status.OK_STATUS;
+            }
+        };
+    }
+
     /**
      * Notify the interested parties that the trace time range has changed
      *
@@ -27,9 +27,11 @@ import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.tracecompass.internal.tmf.core.Activator;
+import org.eclipse.tracecompass.internal.tmf.core.trace.indexer.CheckpointIntervalEstimator;
+import org.eclipse.tracecompass.internal.tmf.core.trace.indexer.CheckpointIntervalEstimator.IEventLineMatcher;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
 import org.eclipse.tracecompass.tmf.core.exceptions.TmfTraceException;
-import org.eclipse.tracecompass.tmf.core.io.BufferedRandomAccessFile;
+import org.eclipse.tracecompass.tmf.core.io.MappedTextFile;
 import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
 import org.eclipse.tracecompass.tmf.core.trace.TmfTrace;
@@ -61,7 +63,7 @@ public abstract class TextTrace<T extends TextTraceEvent> extends TmfTrace imple
     protected static final String SEPARATOR = " | "; //$NON-NLS-1$
 
     /** The text file */
-    protected BufferedRandomAccessFile fFile;
+    protected MappedTextFile fFile;
 
     /**
      * Constructor
@@ -88,13 +90,13 @@ public abstract class TextTrace<T extends TextTraceEvent> extends TmfTrace imple
             return new Status(IStatus.ERROR, Activator.PLUGIN_ID, "Not a file. It's a directory: " + path); //$NON-NLS-1$
         }
         int confidence = 0;
-        try (BufferedRandomAccessFile rafile = new BufferedRandomAccessFile(path, "r")) { //$NON-NLS-1$
+        try (MappedTextFile rafile = new MappedTextFile(path)) {
             int lineCount = 0;
             double matches = 0.0;
-            String line = rafile.getNextLine();
+            CharSequence rawLine = rafile.getNextLine();
             List<Pattern> validationPatterns = getValidationPatterns();
-            while ((line != null) && (lineCount++ < MAX_LINES)) {
-                line = preProcessLine(line);
+            while ((rawLine != null) && (lineCount++ < MAX_LINES)) {
+                String line = preProcessLine(rawLine.toString());
                 for(Pattern pattern : validationPatterns) {
                     Matcher matcher = pattern.matcher(line);
                     if (matcher.matches()) {
@@ -103,7 +105,7 @@ public abstract class TextTrace<T extends TextTraceEvent> extends TmfTrace imple
                     }
                 }
                 confidence = (int) (MAX_CONFIDENCE * matches / lineCount);
-                line = rafile.getNextLine();
+                rawLine = rafile.getNextLine();
             }
         } catch (IOException e) {
             Activator.logError("Error validating file: " + path, e); //$NON-NLS-1$
@@ -117,7 +119,7 @@ public abstract class TextTrace<T extends TextTraceEvent> extends TmfTrace imple
     public void initTrace(IResource resource, String path, Class<? extends ITmfEvent> type) throws TmfTraceException {
         super.initTrace(resource, path, type);
         try {
-            fFile = new BufferedRandomAccessFile(getPath(), "r"); //$NON-NLS-1$
+            fFile = new MappedTextFile(getPath());
         } catch (IOException e) {
             throw new TmfTraceException(e.getMessage(), e);
         }
@@ -149,16 +151,16 @@ public abstract class TextTrace<T extends TextTraceEvent> extends TmfTrace imple
                 fFile.seek((Long) location.getLocationInfo());
             }
             long rawPos = fFile.getFilePointer();
-            String line = fFile.getNextLine();
-            while (line != null) {
-                line = preProcessLine(line);
+            CharSequence rawLine = fFile.getNextLine();
+            while (rawLine != null) {
+                String line = preProcessLine(rawLine.toString());
                 Matcher matcher = getFirstLinePattern().matcher(line);
                 if (matcher.matches()) {
                     setupContext(context, rawPos, line, matcher);
                     return context;
                 }
                 rawPos = fFile.getFilePointer();
-                line = fFile.getNextLine();
+                rawLine = fFile.getNextLine();
             }
             return context;
         } catch (IOException e) {
@@ -167,7 +169,7 @@ public abstract class TextTrace<T extends TextTraceEvent> extends TmfTrace imple
         }
     }
 
-    private void setupContext(TextTraceContext context, long rawPos, String line, Matcher matcher) throws IOException {
+    private void setupContext(TextTraceContext context, long rawPos, String line, Matcher matcher) {
         context.setLocation(new TmfLongLocation(rawPos));
         context.firstLineMatcher = matcher;
         context.firstLine = line;
@@ -265,9 +267,9 @@ public abstract class TextTrace<T extends TextTraceEvent> extends TmfTrace imple
                 fFile.seek(context.nextLineLocation);
             }
             long rawPos = fFile.getFilePointer();
-            String line = fFile.getNextLine();
-            while (line != null) {
-                line = preProcessLine(line);
+            CharSequence rawLine = fFile.getNextLine();
+            while (rawLine != null) {
+                String line = preProcessLine(rawLine.toString());
                 Matcher matcher = getFirstLinePattern().matcher(line);
                 if (matcher.matches()) {
                     setupContext(context, rawPos, line, matcher);
@@ -275,7 +277,7 @@ public abstract class TextTrace<T extends TextTraceEvent> extends TmfTrace imple
                 }
                 parseNextLine(event, line);
                 rawPos = fFile.getFilePointer();
-                line = fFile.getNextLine();
+                rawLine = fFile.getNextLine();
             }
         } catch (IOException e) {
             Activator.logError("Error reading file: " + getPath(), e); //$NON-NLS-1$
@@ -385,7 +387,29 @@ public abstract class TextTrace<T extends TextTraceEvent> extends TmfTrace imple
 
     @Override
     protected ITmfTraceIndexer createIndexer(int interval) {
-        return new TmfBTreeTraceIndexer(this, interval);
+        return new TmfBTreeTraceIndexer(this, getCheckpointInterval(interval));
+    }
+
+    /**
+     * Compute the checkpoint interval from the average event size at the
+     * beginning of the file, so that a seek parses a bounded number of bytes
+     * whatever the size of the events.
+     *
+     * @param defaultInterval
+     *            the interval to use if the file can't be sampled
+     * @return the checkpoint interval
+     */
+    private int getCheckpointInterval(int defaultInterval) {
+        final Pattern firstLinePattern = getFirstLinePattern();
+        if (firstLinePattern == null) {
+            return defaultInterval;
+        }
+        return CheckpointIntervalEstimator.sampleInterval(getPath(), new IEventLineMatcher() {
+            @Override
+            public boolean isEventLine(CharSequence line) {
+                return firstLinePattern.matcher(preProcessLine(line.toString())).matches();
+            }
+        }, defaultInterval);
     }
 
     @Override
@@ -21,12 +21,9 @@ import static org.junit.Assume.assumeTrue;
 import java.util.Map;
 
 import org.eclipse.tracecompass.ctf.core.CTFStrings;
-import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
 import org.eclipse.tracecompass.tmf.core.exceptions.TmfAnalysisException;
 import org.eclipse.tracecompass.tmf.core.statistics.ITmfStatistics;
-import org.eclipse.tracecompass.tmf.core.statistics.TmfStateStatistics;
-import org.eclipse.tracecompass.tmf.core.statistics.TmfStatisticsEventTypesModule;
-import org.eclipse.tracecompass.tmf.core.statistics.TmfStatisticsTotalsModule;
+import org.eclipse.tracecompass.tmf.core.statistics.TmfStatisticsModule;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
 import org.eclipse.tracecompass.tmf.ctf.core.tests.shared.CtfTmfTestTrace;
 import org.junit.After;
@@ -56,9 +53,8 @@ public class CtfTmfLostEventStatisticsTest {
     /** The statistics back-end object for the trace with lost events */
     private ITmfStatistics fStats;
 
-    /* The two analysis modules needed for fStats */
-    private TmfStatisticsTotalsModule fTotalsMod;
-    private TmfStatisticsEventTypesModule fEventTypesMod;
+    /* The analysis module that builds fStats */
+    private TmfStatisticsModule fModule;
 
     // ------------------------------------------------------------------------
     // Maintenance
@@ -80,27 +76,20 @@ public class CtfTmfLostEventStatisticsTest {
         ITmfTrace trace = lostEventsTrace.getTrace();
         fTrace = trace;
 
-        /* Prepare the two analysis-backed state systems */
-        fTotalsMod = new TmfStatisticsTotalsModule();
-        fEventTypesMod = new TmfStatisticsEventTypesModule();
+        fModule = new TmfStatisticsModule();
         try {
-            fTotalsMod.setTrace(trace);
-            fEventTypesMod.setTrace(trace);
+            fModule.setTrace(trace);
         } catch (TmfAnalysisException e) {
             fail();
         }
 
-        fTotalsMod.schedule();
-        fEventTypesMod.schedule();
-        assertTrue(fTotalsMod.waitForCompletion());
-        assertTrue(fEventTypesMod.waitForCompletion());
+        fModule.schedule();
+        assertTrue(fModule.waitForCompletion());
+        assertTrue(fModule.waitUntilBuilt(0));
 
-        ITmfStateSystem totalsSS = fTotalsMod.getStateSystem();
-        ITmfStateSystem eventTypesSS = fEventTypesMod.getStateSystem();
-        assertNotNull(totalsSS);
-        assertNotNull(eventTypesSS);
-
-        fStats = new TmfStateStatistics(totalsSS, eventTypesSS);
+        ITmfStatistics stats = fModule.getStatistics();
+        assertNotNull(stats);
+        fStats = stats;
     }
 
     /**
@@ -108,9 +97,7 @@ public class CtfTmfLostEventStatisticsTest {
      */
     @After
     public void tearDown() {
-        fStats.dispose();
-        fTotalsMod.dispose();
-        fEventTypesMod.dispose();
+        fModule.dispose();
         fTrace.dispose();
     }
 
@@ -32,6 +32,7 @@ import org.junit.BeforeClass;
  *
  * @author Alexandre Montplaisir
  */
+@SuppressWarnings("deprecation")
 public class TmfStateStatisticsTest extends TmfStatisticsTest {
 
     private ITmfTrace fTrace;
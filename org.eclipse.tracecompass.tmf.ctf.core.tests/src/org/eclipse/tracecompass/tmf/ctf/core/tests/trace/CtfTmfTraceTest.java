@@ -21,7 +21,10 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assume.assumeTrue;
 
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 import org.eclipse.core.resources.IProject;
@@ -29,6 +32,7 @@ import org.eclipse.core.resources.IResource;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEventType;
 import org.eclipse.tracecompass.tmf.core.exceptions.TmfTraceException;
+import org.eclipse.tracecompass.tmf.core.filter.TmfFilterPushdown;
 import org.eclipse.tracecompass.tmf.core.signal.TmfEndSynchSignal;
 import org.eclipse.tracecompass.tmf.core.signal.TmfSignal;
 import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
@@ -36,6 +40,7 @@ import org.eclipse.tracecompass.tmf.core.timestamp.TmfNanoTimestamp;
 import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
 import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTraceWithEventTypeIds;
 import org.eclipse.tracecompass.tmf.core.trace.TmfEventTypeCollectionHelper;
 import org.eclipse.tracecompass.tmf.ctf.core.context.CtfLocation;
 import org.eclipse.tracecompass.tmf.ctf.core.context.CtfLocationInfo;
@@ -381,6 +386,65 @@ public class CtfTmfTraceTest {
         assertFalse(eventNames.containsAll(Arrays.asList(names)));
     }
 
+    /**
+     * Test that the event type IDs are dense and match the event type names
+     */
+    @Test
+    public void testEventTypeIds() {
+        Map<String, Integer> ids = new HashMap<>();
+        ITmfContext ctx = fixture.seekEvent(0);
+        CtfTmfEvent event = fixture.getNext(ctx);
+        for (int i = 0; i < 10000 && event != null; i++) {
+            int id = fixture.getEventTypeId(event);
+            String name = event.getType().getName();
+            Integer previous = ids.get(name);
+            if (previous == null) {
+                assertEquals(ids.size(), id);
+                ids.put(name, id);
+            } else {
+                assertEquals(previous.intValue(), id);
+            }
+            assertEquals(name, fixture.getEventTypeName(id));
+            event = fixture.getNext(ctx);
+        }
+        assertNull(fixture.getEventTypeName(ids.size()));
+        assertEquals(ITmfTraceWithEventTypeIds.UNKNOWN_EVENT_TYPE_ID, fixture.getEventTypeId(new CtfTmfEvent()));
+    }
+
+    /**
+     * Test that the events skipped by a filter pushdown update the rank of the
+     * context and the attributes of the trace like the events that are read
+     *
+     * @throws TmfTraceException
+     *             If the test trace is not found
+     */
+    @Test
+    public void testGetNextPushdown() throws TmfTraceException {
+        final long endRank = 10000;
+        TmfFilterPushdown pushdown = new TmfFilterPushdown(Collections.singleton("sched_switch"), Long.MIN_VALUE, Long.MAX_VALUE);
+        ITmfContext ctx = fixture.seekEvent(0);
+        int nbAccepted = 0;
+        CtfTmfEvent event = fixture.getNext(ctx, pushdown, endRank);
+        while (event != null) {
+            assertEquals("sched_switch", event.getType().getName());
+            nbAccepted++;
+            event = fixture.getNext(ctx, pushdown, endRank);
+        }
+        assertTrue(nbAccepted > 0);
+        assertEquals(endRank, ctx.getRank());
+
+        try (CtfTmfTrace reference = new CtfTmfTrace();) {
+            reference.initTrace((IResource) null, testTrace.getPath(), CtfTmfEvent.class);
+            ITmfContext refCtx = reference.seekEvent(0);
+            for (long i = 0; i < endRank; i++) {
+                assertNotNull(reference.getNext(refCtx));
+            }
+            assertEquals(reference.getNbEvents(), fixture.getNbEvents());
+            assertEquals(reference.getStartTime(), fixture.getStartTime());
+            assertEquals(reference.getEndTime(), fixture.getEndTime());
+        }
+    }
+
     /**
      * Run the String getHostId() method test
      */
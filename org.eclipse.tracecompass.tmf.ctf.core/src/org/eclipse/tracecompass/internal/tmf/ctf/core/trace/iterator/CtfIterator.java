@@ -15,7 +15,9 @@ package org.eclipse.tracecompass.internal.tmf.ctf.core.trace.iterator;
 
 import static org.eclipse.tracecompass.common.core.NonNullUtils.equalsNullable;
 
+import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.ctf.core.CTFReaderException;
+import org.eclipse.tracecompass.ctf.core.event.EventDefinition;
 import org.eclipse.tracecompass.ctf.core.trace.CTFStreamInputReader;
 import org.eclipse.tracecompass.ctf.core.trace.CTFTrace;
 import org.eclipse.tracecompass.ctf.core.trace.CTFTraceReader;
@@ -153,6 +155,20 @@ public class CtfIterator extends CTFTraceReader
         return null;
     }
 
+    /**
+     * Return the definition of the current event, without building the
+     * corresponding {@link CtfTmfEvent}.
+     *
+     * @return The current event definition, or null at the end of the trace
+     */
+    public synchronized @Nullable EventDefinition getCurrentEventDefinition() {
+        final CTFStreamInputReader top = super.getPrio().peek();
+        if (top != null) {
+            return top.getCurrentEvent();
+        }
+        return null;
+    }
+
     /**
      * Return the current timestamp location pointed to by the iterator. This is
      * the timestamp for use in CtfLocation, not the event timestamp.
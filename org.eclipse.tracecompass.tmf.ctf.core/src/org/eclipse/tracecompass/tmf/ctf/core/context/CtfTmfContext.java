@@ -13,6 +13,8 @@
 
 package org.eclipse.tracecompass.tmf.ctf.core.context;
 
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.ctf.core.event.EventDefinition;
 import org.eclipse.tracecompass.internal.tmf.ctf.core.trace.iterator.CtfIterator;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
 import org.eclipse.tracecompass.tmf.core.trace.location.ITmfLocation;
@@ -113,6 +115,17 @@ public class CtfTmfContext implements ITmfContext {
         return getIterator().getCurrentEvent();
     }
 
+    /**
+     * Gets the definition of the current event, without building the event.
+     * Wrapper to help CtfTmfTrace
+     *
+     * @return The event definition or null
+     * @since 1.0
+     */
+    public synchronized @Nullable EventDefinition getCurrentEventDefinition() {
+        return getIterator().getCurrentEventDefinition();
+    }
+
     /**
      * Advances to a the next event. Wrapper to help CtfTmfTrace
      *
@@ -122,9 +135,8 @@ public class CtfTmfContext implements ITmfContext {
         final CtfLocationInfo curLocationData = fCurLocation.getLocationInfo();
         CtfIterator iterator = getIterator();
         boolean retVal = iterator.advance();
-        CtfTmfEvent currentEvent = iterator.getCurrentEvent();
 
-        if (currentEvent != null) {
+        if (iterator.getCurrentEventDefinition() != null) {
             final long timestampValue = iterator.getCurrentTimestamp();
             if (curLocationData.getTimestamp() == timestampValue) {
                 fCurLocation = new CtfLocation(timestampValue, curLocationData.getIndex() + 1);
@@ -23,6 +23,7 @@ import org.eclipse.tracecompass.ctf.core.event.EventDefinition;
 import org.eclipse.tracecompass.ctf.core.event.IEventDeclaration;
 import org.eclipse.tracecompass.ctf.core.event.types.ICompositeDefinition;
 import org.eclipse.tracecompass.ctf.core.event.types.IDefinition;
+import org.eclipse.tracecompass.ctf.core.trace.CTFStream;
 import org.eclipse.tracecompass.tmf.core.event.ITmfCustomAttributes;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEventType;
@@ -157,6 +158,26 @@ public class CtfTmfEvent extends TmfEvent
         return fTypeId;
     }
 
+    /**
+     * Return the ID of the stream of this event, according to the trace's
+     * metadata. Like the event ID, it is not constant from one trace to
+     * another.
+     *
+     * @return The stream ID, 0 if the trace does not give IDs to its only
+     *         stream, or -1 for an empty event
+     * @since 1.0
+     */
+    public long getStreamId() {
+        if (fEventDeclaration == null) {
+            return -1;
+        }
+        CTFStream stream = fEventDeclaration.getStream();
+        if (stream == null || stream.getId() == null) {
+            return 0;
+        }
+        return stream.getId().longValue();
+    }
+
     /**
      * Return this event's reference
      *
@@ -31,4 +31,12 @@ public class CtfCpuAspect extends TmfCpuAspect {
         int cpu = ((CtfTmfEvent) event).getCPU();
         return cpu;
     }
+
+    @Override
+    public int resolveCpu(ITmfEvent event) {
+        if (!(event instanceof CtfTmfEvent)) {
+            return UNKNOWN_CPU;
+        }
+        return ((CtfTmfEvent) event).getCPU();
+    }
 }
@@ -19,6 +19,7 @@ import static org.eclipse.tracecompass.common.core.NonNullUtils.checkNotNull;
 import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -36,6 +37,7 @@ import org.eclipse.jdt.annotation.Nullable;
 import org.eclipse.tracecompass.ctf.core.CTFReaderException;
 import org.eclipse.tracecompass.ctf.core.event.CTFCallsite;
 import org.eclipse.tracecompass.ctf.core.event.CTFClock;
+import org.eclipse.tracecompass.ctf.core.event.EventDefinition;
 import org.eclipse.tracecompass.ctf.core.event.IEventDeclaration;
 import org.eclipse.tracecompass.ctf.core.trace.CTFTrace;
 import org.eclipse.tracecompass.ctf.core.trace.CTFTraceReader;
@@ -47,11 +49,14 @@ import org.eclipse.tracecompass.tmf.core.event.ITmfEventField;
 import org.eclipse.tracecompass.tmf.core.event.TmfEventField;
 import org.eclipse.tracecompass.tmf.core.event.aspect.ITmfEventAspect;
 import org.eclipse.tracecompass.tmf.core.exceptions.TmfTraceException;
+import org.eclipse.tracecompass.tmf.core.filter.TmfFilterPushdown;
 import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
 import org.eclipse.tracecompass.tmf.core.timestamp.TmfNanoTimestamp;
 import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimestamp;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfContext;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTraceProperties;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTraceWithEventTypeIds;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTraceWithFilterPushdown;
 import org.eclipse.tracecompass.tmf.core.trace.ITmfTraceWithPreDefinedEvents;
 import org.eclipse.tracecompass.tmf.core.trace.TmfTrace;
 import org.eclipse.tracecompass.tmf.core.trace.TraceValidationStatus;
@@ -82,7 +87,8 @@ import com.google.common.collect.ImmutableSet;
  */
 public class CtfTmfTrace extends TmfTrace
         implements ITmfTraceProperties, ITmfPersistentlyIndexable,
-        ITmfTraceWithPreDefinedEvents, AutoCloseable {
+        ITmfTraceWithPreDefinedEvents, ITmfTraceWithFilterPushdown,
+        ITmfTraceWithEventTypeIds, AutoCloseable {
 
     // -------------------------------------------
     // Constants
@@ -112,6 +118,12 @@ public class CtfTmfTrace extends TmfTrace
     private static final String CLOCK_HOST_PROPERTY = "uuid"; //$NON-NLS-1$
     private static final int CONFIDENCE = 10;
 
+    /*
+     * Maximum stream and event declaration IDs kept in the event type ID
+     * tables. The types of events with larger IDs are looked up by name.
+     */
+    private static final int MAX_TABLE_ID = 1 << 16;
+
     // -------------------------------------------
     // Fields
     // -------------------------------------------
@@ -119,6 +131,16 @@ public class CtfTmfTrace extends TmfTrace
     private final Map<String, CtfTmfEventType> fContainedEventTypes =
             Collections.synchronizedMap(new HashMap<String, CtfTmfEventType>());
 
+    /*
+     * The event type IDs: the names of the types, by ID, and the ID of each
+     * event declaration, by stream ID and declaration ID (plus one, 0 meaning
+     * that the declaration has no ID yet). The names are guarded by
+     * themselves, the table is replaced when it changes.
+     */
+    private final List<String> fEventTypeNames = new ArrayList<>();
+    private final Map<String, Integer> fEventTypeIds = new HashMap<>();
+    private volatile int[][] fEventTypeIdTable = new int[0][];
+
     private final CtfIteratorManager fIteratorManager =
             new CtfIteratorManager(this);
 
@@ -361,6 +383,46 @@ public class CtfTmfTrace extends TmfTrace
         return event;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The event type and timestamp are read from the event definition, and
+     * rejected events are skipped without building the corresponding
+     * {@link CtfTmfEvent}. The skipped events still update the number of
+     * events, the time range and the index of the trace, as if they were
+     * read. Since the events are read in timestamp order, this returns null
+     * as soon as an event is after the end of the time range.
+     *
+     * @since 1.0
+     */
+    @Override
+    public synchronized @Nullable CtfTmfEvent getNext(final ITmfContext context, final TmfFilterPushdown pushdown, final long endRank) {
+        if (fTrace == null || !(context instanceof CtfTmfContext)) {
+            return null;
+        }
+        if (pushdown.isUnconstrained()) {
+            return (context.getRank() < endRank ? getNext(context) : null);
+        }
+        CtfTmfContext ctfContext = (CtfTmfContext) context;
+        while (context.getRank() < endRank && context.getLocation() != null && !CtfLocation.INVALID_LOCATION.equals(context.getLocation().getLocationInfo())) {
+            EventDefinition eventDef = ctfContext.getCurrentEventDefinition();
+            if (eventDef == null) {
+                return null;
+            }
+            TmfNanoTimestamp timestamp = createTimestamp(timestampCyclesToNanos(eventDef.getTimestamp()));
+            if (timestamp.getValue() > pushdown.getEndTime()) {
+                return null;
+            }
+            if (timestamp.getValue() >= pushdown.getStartTime() && pushdown.acceptsEventType(eventDef.getDeclaration().getName())) {
+                return getNext(context);
+            }
+            updateAttributes(context, timestamp);
+            ctfContext.advance();
+            ctfContext.increaseRank();
+        }
+        return null;
+    }
+
     /**
      * Ctf traces have a clock with a unique uuid that will be used to identify
      * the host. Traces with the same clock uuid will be known to have been made
@@ -496,6 +558,84 @@ public class CtfTmfTrace extends TmfTrace
         fContainedEventTypes.put(eventType.getName(), eventType);
     }
 
+    // -------------------------------------------
+    // ITmfTraceWithEventTypeIds
+    // -------------------------------------------
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The event declarations of each stream are mapped to the IDs in a table,
+     * so that the name of the event type is only needed the first time a
+     * declaration is seen.
+     *
+     * @since 1.0
+     */
+    @Override
+    public int getEventTypeId(ITmfEvent event) {
+        if (!(event instanceof CtfTmfEvent)) {
+            return UNKNOWN_EVENT_TYPE_ID;
+        }
+        CtfTmfEvent ctfEvent = (CtfTmfEvent) event;
+        long streamId = ctfEvent.getStreamId();
+        long declarationId = ctfEvent.getID();
+        if (streamId < 0 || declarationId < 0) {
+            return UNKNOWN_EVENT_TYPE_ID;
+        }
+        int[][] table = fEventTypeIdTable;
+        if (streamId < table.length) {
+            int[] ids = table[(int) streamId];
+            if (ids != null && declarationId < ids.length && ids[(int) declarationId] != 0) {
+                return ids[(int) declarationId] - 1;
+            }
+        }
+        return assignEventTypeId(streamId, declarationId, ctfEvent.getType().getName());
+    }
+
+    private int assignEventTypeId(long streamId, long declarationId, String name) {
+        synchronized (fEventTypeNames) {
+            Integer id = fEventTypeIds.get(name);
+            if (id == null) {
+                id = fEventTypeNames.size();
+                fEventTypeNames.add(name);
+                fEventTypeIds.put(name, id);
+            }
+            if (streamId < MAX_TABLE_ID && declarationId < MAX_TABLE_ID) {
+                int[][] table = fEventTypeIdTable;
+                if (streamId >= table.length) {
+                    table = Arrays.copyOf(table, (int) streamId + 1);
+                } else {
+                    table = table.clone();
+                }
+                int[] ids = table[(int) streamId];
+                if (ids == null) {
+                    ids = new int[(int) declarationId + 1];
+                } else if (declarationId >= ids.length) {
+                    ids = Arrays.copyOf(ids, Math.max((int) declarationId + 1, ids.length * 2));
+                } else {
+                    ids = ids.clone();
+                }
+                ids[(int) declarationId] = id + 1;
+                table[(int) streamId] = ids;
+                fEventTypeIdTable = table;
+            }
+            return id;
+        }
+    }
+
+    /**
+     * @since 1.0
+     */
+    @Override
+    public @Nullable String getEventTypeName(int id) {
+        synchronized (fEventTypeNames) {
+            if (id < 0 || id >= fEventTypeNames.size()) {
+                return null;
+            }
+            return fEventTypeNames.get(id);
+        }
+    }
+
     // -------------------------------------------
     // Parser
     // -------------------------------------------
@@ -22,6 +22,9 @@ import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.tracecompass.internal.tmf.core.filter.TmfCollapseFilter;
+import org.eclipse.tracecompass.internal.tmf.core.filter.TmfFilterCompiler;
+import org.eclipse.tracecompass.internal.tmf.core.filter.TmfFilterIndex;
+import org.eclipse.tracecompass.internal.tmf.core.filter.TmfFilterIndexBuilder;
 import org.eclipse.tracecompass.internal.tmf.ui.Activator;
 import org.eclipse.tracecompass.tmf.core.component.ITmfEventProvider;
 import org.eclipse.tracecompass.tmf.core.event.ITmfEvent;
@@ -122,6 +125,7 @@ public class TmfEventsCache {
     private final TmfEventsTable fTable;
     private ITmfFilter fFilter;
     private final List<Integer> fFilterIndex = new ArrayList<>(); // contains the event rank at each 'cache size' filtered events
+    private TmfFilterIndex fFilterRankIndex; // contains the rank of every filtered event, when built in parallel
 
     /**
      * Constructor for the event cache
@@ -146,6 +150,9 @@ public class TmfEventsCache {
      */
     public void setTrace(ITmfTrace trace) {
         fTrace = trace;
+        if (fFilterRankIndex != null) {
+            fFilterRankIndex = new TmfFilterIndex();
+        }
         clear();
     }
 
@@ -170,7 +177,8 @@ public class TmfEventsCache {
      *            The ITmfFilter to apply.
      */
     public void applyFilter(ITmfFilter filter) {
-        fFilter = filter;
+        fFilter = TmfFilterCompiler.compile(filter);
+        fFilterRankIndex = TmfFilterIndexBuilder.canPartition(filter) ? new TmfFilterIndex() : null;
         clear();
     }
 
@@ -180,6 +188,7 @@ public class TmfEventsCache {
      */
     public void clearFilter() {
         fFilter = null;
+        fFilterRankIndex = null;
         clear();
     }
 
@@ -252,6 +261,17 @@ public class TmfEventsCache {
         }
     }
 
+    /**
+     * Get the index of the ranks of the filtered events, which the filter
+     * thread builds when the filter can be evaluated in parallel.
+     *
+     * @return The filter rank index, or null if the filter is evaluated
+     *         sequentially or if there is no filter
+     */
+    synchronized TmfFilterIndex getFilterRankIndex() {
+        return fFilterRankIndex;
+    }
+
     /**
      * Get the cache index of an event from his rank in the trace. This will
      * take in consideration any filter that might be applied.
@@ -266,6 +286,9 @@ public class TmfEventsCache {
         TmfEventRequest request;
         final ITmfFilter filter = fFilter;
         synchronized (this) {
+            if (fFilterRankIndex != null && rank <= fFilterRankIndex.getNbRanks()) {
+                return (int) fFilterRankIndex.getMatchIndex(Math.max(0, rank));
+            }
             int start = 0;
             int end = fFilterIndex.size();
 
@@ -390,7 +413,10 @@ public class TmfEventsCache {
                 } else {
                     nbRequested = ITmfEventRequest.ALL_DATA;
                     int i = startIndex / fCacheSize;
-                    if (i < fFilterIndex.size()) {
+                    long startRank = (fFilterRankIndex != null) ? fFilterRankIndex.getRank(startIndex) : -1;
+                    if (startRank >= 0) {
+                        startIndex = (int) startRank;
+                    } else if (i < fFilterIndex.size()) {
                         skipCount = startIndex - (i * fCacheSize);
                         startIndex = fFilterIndex.get(i);
                     }
@@ -411,7 +437,8 @@ public class TmfEventsCache {
                             return;
                         }
                         super.handleData(event);
-                        if (((fFilter == null) || fFilter.matches(event)) && (skipCount-- <= 0)) {
+                        boolean match = isMatch(event, rank);
+                        if (match && (skipCount-- <= 0)) {
                             synchronized (TmfEventsCache.this) {
                                 if (monitor.isCanceled()) {
                                     return;
@@ -423,7 +450,7 @@ public class TmfEventsCache {
                             if (fFilter != null) {
                                 fTable.cacheUpdated(false);
                             }
-                        } else if (((fFilter != null) && !fFilter.matches(event)) && (skipCount <= 0)) { // TODO fix duplicated call to matches()
+                        } else if ((fFilter != null) && !match && (skipCount <= 0)) {
                             if ((count > 0) && (fFilter instanceof TmfCollapseFilter)) {
                                 fCache[count - 1].repeatCount++;
                             }
@@ -458,4 +485,15 @@ public class TmfEventsCache {
         job.schedule();
     }
 
+    private boolean isMatch(ITmfEvent event, long rank) {
+        if (fFilter == null) {
+            return true;
+        }
+        TmfFilterIndex filterRankIndex = fFilterRankIndex;
+        if (filterRankIndex != null && rank < filterRankIndex.getNbRanks()) {
+            return filterRankIndex.isMatch(rank);
+        }
+        return fFilter.matches(event);
+    }
+
 }
@@ -113,6 +113,10 @@ import org.eclipse.swt.widgets.TableItem;
 import org.eclipse.swt.widgets.Text;
 import org.eclipse.tracecompass.common.core.NonNullUtils;
 import org.eclipse.tracecompass.internal.tmf.core.filter.TmfCollapseFilter;
+import org.eclipse.tracecompass.internal.tmf.core.filter.TmfFilterCompiler;
+import org.eclipse.tracecompass.internal.tmf.core.filter.TmfFilterIndex;
+import org.eclipse.tracecompass.internal.tmf.core.filter.TmfFilterIndexBuilder;
+import org.eclipse.tracecompass.internal.tmf.core.filter.TmfFilterIndexStore;
 import org.eclipse.tracecompass.internal.tmf.ui.Activator;
 import org.eclipse.tracecompass.internal.tmf.ui.Messages;
 import org.eclipse.tracecompass.internal.tmf.ui.commands.ExportToTextCommandHandler;
@@ -1745,7 +1749,10 @@ public class TmfEventsTable extends TmfComponent implements IGotoMarker, IColorS
      */
     protected class FilterThread extends Thread {
         private final ITmfFilterTreeNode filter;
+        private final ITmfFilter compiledFilter;
         private TmfEventRequest request;
+        private TmfFilterIndexBuilder builder;
+        private volatile boolean cancelled = false;
         private boolean refreshBusy = false;
         private boolean refreshPending = false;
         private final Object syncObj = new Object();
@@ -1759,6 +1766,7 @@ public class TmfEventsTable extends TmfComponent implements IGotoMarker, IColorS
         public FilterThread(final ITmfFilterTreeNode filter) {
             super("Filter Thread"); //$NON-NLS-1$
             this.filter = filter;
+            this.compiledFilter = TmfFilterCompiler.compile(filter);
         }
 
         @Override
@@ -1770,6 +1778,60 @@ public class TmfEventsTable extends TmfComponent implements IGotoMarker, IColorS
             if (nbRequested <= 0) {
                 return;
             }
+            final TmfFilterIndex filterRankIndex = fCache.getFilterRankIndex();
+            if (filterRankIndex != null) {
+                buildFilterIndex(filterRankIndex);
+            } else {
+                filterSequentially(nbRequested);
+            }
+            refreshTable();
+            synchronized (fFilterSyncObj) {
+                fFilterThread = null;
+                if (fFilterThreadResume) {
+                    fFilterThreadResume = false;
+                    fFilterThread = new FilterThread(filter);
+                    fFilterThread.start();
+                }
+            }
+        }
+
+        /**
+         * Evaluate the filter on partitions of the trace in parallel. The
+         * table is refreshed each time the filter index grows. The index is
+         * loaded from the supplementary files if this filter was already
+         * applied to this trace, and saved once it is extended.
+         */
+        private void buildFilterIndex(final TmfFilterIndex filterRankIndex) {
+            if (filterRankIndex.getNbRanks() == 0 && TmfFilterIndexStore.load(fTrace, filter, filterRankIndex)) {
+                fFilterMatchCount = filterRankIndex.getNbMatches();
+                fFilterCheckCount = filterRankIndex.getNbRanks();
+                refreshTable();
+            }
+            final long loadedRanks = filterRankIndex.getNbRanks();
+            synchronized (fFilterSyncObj) {
+                if (cancelled) {
+                    return;
+                }
+                builder = new TmfFilterIndexBuilder(fTrace, filter) {
+                    @Override
+                    protected void indexUpdated(TmfFilterIndex index) {
+                        fFilterMatchCount = index.getNbMatches();
+                        fFilterCheckCount = index.getNbRanks();
+                        refreshTable();
+                    }
+                };
+            }
+            builder.build(filterRankIndex, fTrace.getNbEvents());
+            if (!builder.isCancelled() && filterRankIndex.getNbRanks() > loadedRanks) {
+                TmfFilterIndexStore.save(fTrace, filter, filterRankIndex);
+            }
+        }
+
+        /**
+         * Evaluate the filter on each event in rank order, with a single
+         * request.
+         */
+        private void filterSequentially(final int nbRequested) {
             request = new TmfEventRequest(ITmfEvent.class, TmfTimeRange.ETERNITY,
                     (int) fFilterCheckCount, nbRequested, ExecutionType.BACKGROUND) {
                 @Override
@@ -1779,7 +1841,7 @@ public class TmfEventsTable extends TmfComponent implements IGotoMarker, IColorS
                         return;
                     }
                     boolean refresh = false;
-                    if (filter.matches(event)) {
+                    if (compiledFilter.matches(event)) {
                         final long rank = fFilterCheckCount;
                         final int index = (int) fFilterMatchCount;
                         fFilterMatchCount++;
@@ -1802,15 +1864,6 @@ public class TmfEventsTable extends TmfComponent implements IGotoMarker, IColorS
                 request.waitForCompletion();
             } catch (final InterruptedException e) {
             }
-            refreshTable();
-            synchronized (fFilterSyncObj) {
-                fFilterThread = null;
-                if (fFilterThreadResume) {
-                    fFilterThreadResume = false;
-                    fFilterThread = new FilterThread(filter);
-                    fFilterThread.start();
-                }
-            }
         }
 
         /**
@@ -1827,7 +1880,7 @@ public class TmfEventsTable extends TmfComponent implements IGotoMarker, IColorS
             Display.getDefault().asyncExec(new Runnable() {
                 @Override
                 public void run() {
-                    if (request.isCancelled()) {
+                    if (cancelled || (request != null && request.isCancelled())) {
                         return;
                     }
                     if (fTable.isDisposed()) {
@@ -1850,8 +1903,14 @@ public class TmfEventsTable extends TmfComponent implements IGotoMarker, IColorS
          * Cancel this filtering thread.
          */
         public void cancel() {
-            if (request != null) {
-                request.cancel();
+            synchronized (fFilterSyncObj) {
+                cancelled = true;
+                if (request != null) {
+                    request.cancel();
+                }
+                if (builder != null) {
+                    builder.cancel();
+                }
             }
         }
     }
@@ -1934,6 +1993,8 @@ public class TmfEventsTable extends TmfComponent implements IGotoMarker, IColorS
 
         private ITmfFilterTreeNode searchFilter;
         private ITmfFilterTreeNode eventFilter;
+        private ITmfFilter compiledSearchFilter;
+        private ITmfFilter compiledEventFilter;
         private int startIndex;
         private int direction;
         private long rank;
@@ -1961,6 +2022,8 @@ public class TmfEventsTable extends TmfComponent implements IGotoMarker, IColorS
             super(Messages.TmfEventsTable_SearchingJobName);
             this.searchFilter = searchFilter;
             this.eventFilter = eventFilter;
+            this.compiledSearchFilter = TmfFilterCompiler.compile(searchFilter);
+            this.compiledEventFilter = TmfFilterCompiler.compile(eventFilter);
             this.startIndex = startIndex;
             this.rank = currentRank;
             this.direction = direction;
@@ -1984,7 +2047,7 @@ public class TmfEventsTable extends TmfComponent implements IGotoMarker, IColorS
                         break;
                     }
                     rank = event.rank;
-                    if (searchFilter.matches(event.event) && ((eventFilter == null) || eventFilter.matches(event.event))) {
+                    if (compiledSearchFilter.matches(event.event) && ((compiledEventFilter == null) || compiledEventFilter.matches(event.event))) {
                         foundRank = event.rank;
                         foundTimestamp = event.event.getTimestamp();
                         break;
@@ -2023,7 +2086,7 @@ public class TmfEventsTable extends TmfComponent implements IGotoMarker, IColorS
                     @Override
                     public void handleData(final ITmfEvent event) {
                         super.handleData(event);
-                        if (searchFilter.matches(event) && ((eventFilter == null) || eventFilter.matches(event))) {
+                        if (compiledSearchFilter.matches(event) && ((compiledEventFilter == null) || compiledEventFilter.matches(event))) {
                             foundRank = currentRank;
                             foundTimestamp = event.getTimestamp();
                             if (direction == Direction.FORWARD) {
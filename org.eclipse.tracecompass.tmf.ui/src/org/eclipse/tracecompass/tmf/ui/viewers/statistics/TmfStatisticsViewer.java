@@ -40,14 +40,12 @@ import org.eclipse.swt.widgets.Control;
 import org.eclipse.swt.widgets.Display;
 import org.eclipse.swt.widgets.Event;
 import org.eclipse.swt.widgets.Listener;
-import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
 import org.eclipse.tracecompass.tmf.core.component.TmfComponent;
 import org.eclipse.tracecompass.tmf.core.request.ITmfEventRequest;
 import org.eclipse.tracecompass.tmf.core.signal.TmfSignalHandler;
 import org.eclipse.tracecompass.tmf.core.signal.TmfSelectionRangeUpdatedSignal;
 import org.eclipse.tracecompass.tmf.core.signal.TmfTraceRangeUpdatedSignal;
 import org.eclipse.tracecompass.tmf.core.statistics.ITmfStatistics;
-import org.eclipse.tracecompass.tmf.core.statistics.TmfStatisticsEventTypesModule;
 import org.eclipse.tracecompass.tmf.core.statistics.TmfStatisticsModule;
 import org.eclipse.tracecompass.tmf.core.timestamp.ITmfTimestamp;
 import org.eclipse.tracecompass.tmf.core.timestamp.TmfTimeRange;
@@ -682,18 +680,6 @@ public class TmfStatisticsViewer extends TmfViewer {
                 throw new IllegalStateException();
             }
 
-            /*
-             * TODO Eventually this could be exposed through the
-             * TmfStateSystemAnalysisModule directly.
-             */
-            ITmfStateSystem ss = fStatsMod.getStateSystem(TmfStatisticsEventTypesModule.ID);
-            if (ss == null) {
-                /* It should be instantiated after the
-                 * statsMod.waitForInitialization() above. */
-                throw new IllegalStateException();
-            }
-
-
             /*
              * Periodically update the statistics while they are
              * being built (or, if the back-end is already completely
@@ -706,7 +692,7 @@ public class TmfStatisticsViewer extends TmfViewer {
                 if (monitor.isCanceled()) {
                     return Status.CANCEL_STATUS;
                 }
-                finished = ss.waitUntilBuilt(LIVE_UPDATE_DELAY);
+                finished = fStatsMod.waitUntilBuilt(LIVE_UPDATE_DELAY);
 
                 TmfTimeRange localtimeRange = fIsGlobal ? fTimeRange : fTimeRangePartial;
                 /*
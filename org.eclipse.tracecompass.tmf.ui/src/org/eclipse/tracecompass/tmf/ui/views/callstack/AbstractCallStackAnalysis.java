@@ -13,8 +13,21 @@
 
 package org.eclipse.tracecompass.tmf.ui.views.callstack;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.jdt.annotation.Nullable;
+import org.eclipse.tracecompass.internal.tmf.ui.Activator;
+import org.eclipse.tracecompass.statesystem.core.ITmfStateSystem;
+import org.eclipse.tracecompass.statesystem.core.exceptions.StateSystemDisposedException;
 import org.eclipse.tracecompass.tmf.core.callstack.CallStackStateProvider;
+import org.eclipse.tracecompass.tmf.core.callstack.FlatCallStack;
+import org.eclipse.tracecompass.tmf.core.statesystem.ITmfStateProvider;
 import org.eclipse.tracecompass.tmf.core.statesystem.TmfStateSystemAnalysisModule;
+import org.eclipse.tracecompass.tmf.core.trace.ITmfTrace;
+import org.eclipse.tracecompass.tmf.core.trace.TmfTraceManager;
 import org.eclipse.tracecompass.tmf.ui.analysis.TmfAnalysisViewOutput;
 
 /**
@@ -30,6 +43,10 @@ public abstract class AbstractCallStackAnalysis extends TmfStateSystemAnalysisMo
     private static final String[] DEFAULT_CALL_STACK_PATH =
             new String[] { CallStackStateProvider.CALL_STACK };
 
+    private static final String CALLS_FILE_EXTENSION = ".calls"; //$NON-NLS-1$
+
+    private @Nullable FlatCallStack fFlatCallStack = null;
+
     /**
      * Abstract constructor (should only be called via the sub-classes'
      * constructors.
@@ -61,4 +78,82 @@ public abstract class AbstractCallStackAnalysis extends TmfStateSystemAnalysisMo
     public String[] getCallStackPath() {
         return DEFAULT_CALL_STACK_PATH;
     }
+
+    /**
+     * Get the calls of the call stack state system, flattened in arrays. The
+     * first time, they are read from a supplementary file of the trace. If
+     * the file is missing or stale, they are taken from the state provider
+     * when it just built the state system, or else read from the state system,
+     * which can take a while, and written to that file. The state system must
+     * be completely built.
+     *
+     * @param monitor
+     *            The progress monitor, can be null
+     * @return The calls, or null if the state system is not available or the
+     *         monitor was cancelled
+     * @since 1.0
+     */
+    public synchronized @Nullable FlatCallStack getFlatCallStack(@Nullable IProgressMonitor monitor) {
+        FlatCallStack calls = fFlatCallStack;
+        if (calls != null) {
+            return calls;
+        }
+        ITmfTrace trace = getTrace();
+        ITmfStateSystem ss = getStateSystem();
+        if (trace == null || ss == null || !ss.waitUntilBuilt(0)) {
+            return null;
+        }
+        String directory = TmfTraceManager.getSupplementaryFileDir(trace);
+        File file = new File(directory + getId() + CALLS_FILE_EXTENSION);
+        /*
+         * The calls are rebuilt if the state provider changed, or if the state
+         * history file was rebuilt, even with the same time range
+         */
+        File htFile = new File(directory + getSsFileName());
+        String source = getStateProviderVersion() + ":" + htFile.length() + ":" + htFile.lastModified(); //$NON-NLS-1$ //$NON-NLS-2$
+        if (file.exists()) {
+            try {
+                calls = FlatCallStack.read(file, source);
+            } catch (IOException e) {
+                Activator.getDefault().logWarning("Error reading call stack file " + file, e); //$NON-NLS-1$
+            }
+            if (calls != null && calls.getStartTime() == ss.getStartTime() && calls.getEndTime() == ss.getCurrentEndTime()) {
+                fFlatCallStack = calls;
+                return calls;
+            }
+        }
+        calls = getRecordedCalls(ss);
+        if (calls == null) {
+            try {
+                calls = FlatCallStack.build(ss, getThreadsPattern(), getCallStackPath(), monitor);
+            } catch (StateSystemDisposedException e) {
+                return null;
+            }
+        }
+        if (calls == null) {
+            return null;
+        }
+        try {
+            calls.write(file, source);
+        } catch (IOException e) {
+            Activator.getDefault().logWarning("Error writing call stack file " + file, e); //$NON-NLS-1$
+            file.delete();
+        }
+        fFlatCallStack = calls;
+        return calls;
+    }
+
+    /*
+     * The calls recorded by the state provider, if it built the state system
+     * in this session with the default attribute layout
+     */
+    private @Nullable FlatCallStack getRecordedCalls(ITmfStateSystem ss) {
+        ITmfStateProvider provider = getStateProvider();
+        if (!(provider instanceof CallStackStateProvider) ||
+                !Arrays.equals(getThreadsPattern(), DEFAULT_THREADS_PATTERN) ||
+                !Arrays.equals(getCallStackPath(), DEFAULT_CALL_STACK_PATH)) {
+            return null;
+        }
+        return ((CallStackStateProvider) provider).takeRecordedCalls(ss);
+    }
 }
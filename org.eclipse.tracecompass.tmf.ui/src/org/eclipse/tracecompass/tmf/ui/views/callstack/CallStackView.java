@@ -63,6 +63,7 @@ import org.eclipse.swt.widgets.FileDialog;
 import org.eclipse.swt.widgets.Menu;
 import org.eclipse.swt.widgets.Tree;
 import org.eclipse.tracecompass.internal.tmf.core.callstack.FunctionNameMapper;
+import org.eclipse.tracecompass.internal.tmf.core.callstack.SymbolTable;
 import org.eclipse.tracecompass.internal.tmf.ui.Activator;
 import org.eclipse.tracecompass.internal.tmf.ui.ITmfImageConstants;
 import org.eclipse.tracecompass.internal.tmf.ui.Messages;
@@ -75,6 +76,7 @@ import org.eclipse.tracecompass.statesystem.core.exceptions.TimeRangeException;
 import org.eclipse.tracecompass.statesystem.core.interval.ITmfStateInterval;
 import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue;
 import org.eclipse.tracecompass.statesystem.core.statevalue.ITmfStateValue.Type;
+import org.eclipse.tracecompass.tmf.core.callstack.FlatCallStack;
 import org.eclipse.tracecompass.tmf.core.signal.TmfWindowRangeUpdatedSignal;
 import org.eclipse.tracecompass.tmf.core.signal.TmfSignalHandler;
 import org.eclipse.tracecompass.tmf.core.signal.TmfSelectionRangeUpdatedSignal;
@@ -199,8 +201,8 @@ public class CallStackView extends TmfView {
     // The trace to build thread hash map
     private final Map<ITmfTrace, BuildThread> fBuildThreadMap = new HashMap<>();
 
-    /** The map to map function addresses to function names */
-    private Map<String, String> fNameMapping;
+    /** The table to map function addresses to function names */
+    private volatile SymbolTable fNameMapping;
 
     // The start time
     private long fStartTime;
@@ -267,6 +269,10 @@ public class CallStackView extends TmfView {
         private final ITmfStateSystem fSS;
         // The thread id
         private final long fThreadId;
+        // The flattened calls, once the state system is built
+        private volatile @Nullable FlatCallStack fCalls;
+        // The index of this thread in the flattened calls
+        private int fThreadIndex = -1;
 
         public ThreadEntry(ITmfStateSystem ss, String name, long threadId, int callStackQuark, long startTime, long endTime) {
             super(name, startTime, endTime);
@@ -292,6 +298,19 @@ public class CallStackView extends TmfView {
         public ITmfStateSystem getStateSystem() {
             return fSS;
         }
+
+        public @Nullable FlatCallStack getCalls() {
+            return fCalls;
+        }
+
+        public int getThreadIndex() {
+            return fThreadIndex;
+        }
+
+        public void setCalls(FlatCallStack calls, int threadIndex) {
+            fThreadIndex = threadIndex;
+            fCalls = calls;
+        }
     }
 
     private class ThreadNameComparator implements Comparator<ITimeGraphEntry> {
@@ -873,6 +892,13 @@ public class CallStackView extends TmfView {
 
         long start = ss.getStartTime();
 
+        /*
+         * If the state system is already built, load the flattened calls
+         * first, so that the status events of each depth are built from them
+         * instead of querying the state system.
+         */
+        FlatCallStack calls = (ss.waitUntilBuilt(0) ? module.getFlatCallStack(monitor) : null);
+
         boolean complete = false;
         while (!complete) {
             if (monitor.isCanceled()) {
@@ -919,6 +945,10 @@ public class CallStackView extends TmfView {
                             threadStart = Math.min(startInterval.getEndTime() + 1, end + 1);
                         }
                         threadEntry = new ThreadEntry(ss, threadName, threadId, callStackQuark, threadStart, threadEnd);
+                        int threadIndex = (calls == null ? -1 : calls.getThreadIndex(callStackQuark));
+                        if (calls != null && threadIndex >= 0) {
+                            threadEntry.setCalls(calls, threadIndex);
+                        }
                         threadEntryMap.put(threadQuark, threadEntry);
                         traceEntry.addChild(threadEntry);
                     } else {
@@ -955,6 +985,25 @@ public class CallStackView extends TmfView {
             }
             start = end;
         }
+
+        if (calls != null) {
+            return;
+        }
+
+        /*
+         * Now that the state system is built, zoom using the flattened calls,
+         * which does not query the state system.
+         */
+        calls = module.getFlatCallStack(monitor);
+        if (calls == null) {
+            return;
+        }
+        for (ThreadEntry threadEntry : threadEntryMap.values()) {
+            int threadIndex = calls.getThreadIndex(threadEntry.getCallStackQuark());
+            if (threadIndex >= 0) {
+                threadEntry.setCalls(calls, threadIndex);
+            }
+        }
     }
 
     private void addToEntryList(ITmfTrace trace, List<TraceEntry> list) {
@@ -1000,6 +1049,14 @@ public class CallStackView extends TmfView {
         if (end <= start) {
             return null;
         }
+        ITimeGraphEntry parent = entry.getParent();
+        if (parent instanceof ThreadEntry) {
+            ThreadEntry threadEntry = (ThreadEntry) parent;
+            FlatCallStack calls = threadEntry.getCalls();
+            if (calls != null) {
+                return getEventList(entry, calls, threadEntry.getThreadIndex(), start, end, resolution, monitor);
+            }
+        }
         List<ITimeEvent> eventList = null;
         try {
             List<ITmfStateInterval> stackIntervals = StateSystemUtils.queryHistoryRange(ss, entry.getQuark(), start, end - 1, resolution, monitor);
@@ -1045,6 +1102,40 @@ public class CallStackView extends TmfView {
         return eventList;
     }
 
+    private static List<ITimeEvent> getEventList(CallStackEntry entry, FlatCallStack calls,
+            int thread, long start, long end, long resolution, IProgressMonitor monitor) {
+        int[] indexes = calls.getCalls(thread, entry.getStackLevel(), start, end - 1, resolution);
+        List<ITimeEvent> eventList = new ArrayList<>(indexes.length + 2);
+        final int modulo = CallStackPresentationProvider.NUM_COLORS / 2;
+        long lastEndTime = start;
+        int lastCall = -1;
+        for (int call : indexes) {
+            if (monitor.isCanceled()) {
+                return null;
+            }
+            long time = calls.getEntryTime(thread, call);
+            if (time > lastEndTime) {
+                if (lastCall == -1) {
+                    // add null event if it intersects the start time
+                    eventList.add(new NullTimeEvent(entry, lastEndTime, time - lastEndTime));
+                } else if (call != lastCall + 1) {
+                    // add unknown event for the calls skipped by the resolution
+                    eventList.add(new TimeEvent(entry, lastEndTime, time - lastEndTime));
+                }
+            }
+            long duration = calls.getExitTime(thread, call) - time + 1;
+            int value = calls.getSymbol(calls.getSymbolId(thread, call)).toString().hashCode() % modulo + modulo;
+            eventList.add(new CallStackEvent(entry, time, duration, value));
+            lastEndTime = time + duration;
+            lastCall = call;
+        }
+        if (lastEndTime < end) {
+            // add null event if it intersects the end time
+            eventList.add(new NullTimeEvent(entry, lastEndTime, end - lastEndTime));
+        }
+        return eventList;
+    }
+
     private void synchingToTime(long time) {
         if (fEntryList == null) {
             return;
@@ -1392,7 +1483,7 @@ public class CallStackView extends TmfView {
             job.schedule();
         }
 
-        abstract Map<String, String> doMapping(File file);
+        abstract SymbolTable doMapping(File file);
     }
 
     /**
@@ -1404,7 +1495,7 @@ public class CallStackView extends TmfView {
         }
         fImportMappingAction = new AbstractImportFileMappingAction(Messages.CallStackView_ImportMappingDialogTitle) {
             @Override
-            Map<String, String> doMapping(File file) {
+            SymbolTable doMapping(File file) {
                 return FunctionNameMapper.mapFromNmTextFile(file);
             }
         };
@@ -1546,7 +1637,7 @@ public class CallStackView extends TmfView {
 
         fImportBinaryFileMappingAction = new AbstractImportFileMappingAction(Messages.CallStackView_ImportBinaryFileDialogTitle) {
             @Override
-            Map<String, String> doMapping(File file) {
+            SymbolTable doMapping(File file) {
                 return FunctionNameMapper.mapFromBinaryFile(file);
             }
         };
@@ -1559,11 +1650,18 @@ public class CallStackView extends TmfView {
     }
 
     String getFunctionName(String address) {
-        if (fNameMapping == null) {
+        SymbolTable nameMapping = fNameMapping;
+        if (nameMapping == null) {
             /* No mapping available, just print the addresses */
             return address;
         }
-        String ret = fNameMapping.get(address);
+        String ret;
+        try {
+            ret = nameMapping.getContainingName(SymbolTable.parseAddress(address));
+        } catch (NumberFormatException e) {
+            /* Not an address */
+            return address;
+        }
         if (ret == null) {
             /*
              * We didn't find this address in the mapping file, just use the